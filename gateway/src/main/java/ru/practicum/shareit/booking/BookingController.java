@@ -3,15 +3,27 @@ package ru.practicum.shareit.booking;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import reactor.core.publisher.Mono;
 import ru.practicum.shareit.booking.client.BookingClient;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoIn;
 
 import javax.validation.Valid;
+import javax.validation.Validator;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.Positive;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static ru.practicum.shareit.util.Util.DEFAULT_PAGE_SIZE;
@@ -21,12 +33,15 @@ import static ru.practicum.shareit.util.Util.USER_ID_HEADER;
 @RequestMapping(path = "/bookings", produces = "application/json")
 @RequiredArgsConstructor
 @Validated
+@Slf4j
 public class BookingController {
 
     private final BookingClient client;
 
     private final ObjectMapper objectMapper;
 
+    private final Validator validator;
+
     @PostMapping
     public Mono<ResponseEntity<String>> create(
             @RequestHeader(USER_ID_HEADER) Integer userId,
@@ -35,6 +50,103 @@ public class BookingController {
         return client.post("/", userId, objectMapper.writeValueAsString(bookingDto));
     }
 
+    // A list is not a bean, so @Valid does not reach its elements: every booking is validated here
+    // and the whole batch is refused if any of them is invalid.
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<String>> createAll(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @RequestBody List<BookingDtoIn> bookingDtos) throws JsonProcessingException {
+
+        if (bookingDtos.isEmpty() || bookingDtos.stream().anyMatch(bookingDto -> bookingDto == null
+                || !validator.validate(bookingDto).isEmpty())) {
+            log.error("Batch of bookings {} is not valid", bookingDtos);
+            return Mono.just(ResponseEntity.badRequest().body("Validation error"));
+        }
+
+        return client.post("/batch", userId, objectMapper.writeValueAsString(bookingDtos));
+    }
+
+    @PostMapping("/recurring")
+    public Mono<ResponseEntity<String>> createRecurring(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @Valid @RequestBody RecurringBookingDtoIn ruleDto) throws JsonProcessingException {
+
+        if (!isRepeatable(ruleDto)) {
+            log.error("Recurring booking {} is not valid", ruleDto);
+            return Mono.just(ResponseEntity.badRequest().body("Validation error"));
+        }
+
+        return client.post("/recurring", userId, objectMapper.writeValueAsString(ruleDto));
+    }
+
+    @GetMapping("/recurring")
+    public Mono<ResponseEntity<String>> getAllRecurringByBooker(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @RequestParam(required = false, defaultValue = "ALL") String state,
+            @Min(0) @RequestParam(required = false, defaultValue = "0") Integer from,
+            @Min(1) @RequestParam(required = false, defaultValue = DEFAULT_PAGE_SIZE) Integer size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until) {
+
+        if (since == null || until == null || !since.isBefore(until)) {
+            log.error("Recurring booking window from {} to {} is not valid", since, until);
+            return Mono.just(ResponseEntity.badRequest().body("Validation error"));
+        }
+
+        return client.get("/recurring", userId,
+                Map.of("state", state, "from", from, "size", size, "since", since, "until", until));
+    }
+
+    @GetMapping("/recurring/owner")
+    public Mono<ResponseEntity<String>> getAllRecurringByOwner(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @RequestParam(required = false, defaultValue = "ALL") String state,
+            @Min(0) @RequestParam(required = false, defaultValue = "0") Integer from,
+            @Min(1) @RequestParam(required = false, defaultValue = DEFAULT_PAGE_SIZE) Integer size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until) {
+
+        if (since == null || until == null || !since.isBefore(until)) {
+            log.error("Recurring booking window from {} to {} is not valid", since, until);
+            return Mono.just(ResponseEntity.badRequest().body("Validation error"));
+        }
+
+        return client.get("/recurring/owner", userId,
+                Map.of("state", state, "from", from, "size", size, "since", since, "until", until));
+    }
+
+    @PatchMapping("/recurring/{id}")
+    public Mono<ResponseEntity<String>> approveRecurring(@RequestHeader(USER_ID_HEADER) Integer userId,
+                                                         @PathVariable Integer id,
+                                                         @RequestParam Boolean approved) {
+
+        return client.patch(String.format("/recurring/%d", id), userId, Map.of("approved", approved));
+    }
+
+    @GetMapping("/summary")
+    public Mono<ResponseEntity<String>> getSummaryByBooker(@RequestHeader(USER_ID_HEADER) Integer userId) {
+        return client.get("/summary", userId, null);
+    }
+
+    @GetMapping("/owner/summary")
+    public Mono<ResponseEntity<String>> getSummaryByOwner(@RequestHeader(USER_ID_HEADER) Integer userId) {
+        return client.get("/owner/summary", userId, null);
+    }
+
+    // Relays the server's stream without buffering: each chunk is written to the response as it arrives
+    @GetMapping(path = "/owner/export", produces = {"application/x-ndjson", "text/csv", "application/json"})
+    public Mono<ResponseEntity<StreamingResponseBody>> exportByOwner(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @RequestParam(required = false, defaultValue = "NDJSON") String format) {
+
+        return client.stream("/owner/export", userId, Map.of("format", format))
+                .map(response -> ResponseEntity.status(response.getStatusCode())
+                        .headers(relayedHeaders(response.getHeaders()))
+                        .body(out -> DataBufferUtils.write(response.getBody(), out)
+                                .map(DataBufferUtils::release)
+                                .blockLast()));
+    }
+
     @GetMapping("/{id}")
     public Mono<ResponseEntity<String>> getById(
             @RequestHeader(USER_ID_HEADER) Integer userId,
@@ -49,9 +161,19 @@ public class BookingController {
             @RequestHeader(USER_ID_HEADER) Integer userId,
             @RequestParam(defaultValue = "ALL", required = false) String state,
             @Min(0) @RequestParam(required = false, defaultValue = "0") Integer from,
-            @Min(1) @RequestParam(required = false, defaultValue = DEFAULT_PAGE_SIZE) Integer size) {
-
-        return client.get("/", userId, Map.of("from", from, "size", size, "state", state));
+            @Min(1) @RequestParam(required = false, defaultValue = DEFAULT_PAGE_SIZE) Integer size,
+            @RequestParam(required = false) String cursor,
+            @Positive @RequestParam(required = false) Integer itemId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until,
+            @RequestParam(required = false, defaultValue = "START") String sort) {
+
+        if (since != null && until != null && since.isAfter(until)) {
+            log.error("Booking window from {} to {} is not valid", since, until);
+            return Mono.just(ResponseEntity.badRequest().body("Validation error"));
+        }
+
+        return client.get("/", userId, pageParams(state, from, size, cursor, itemId, since, until, sort));
     }
 
     @GetMapping("/owner")
@@ -59,16 +181,73 @@ public class BookingController {
             @RequestHeader(USER_ID_HEADER) Integer userId,
             @RequestParam(required = false, defaultValue = "ALL") String state,
             @Min(0) @RequestParam(required = false, defaultValue = "0") Integer from,
-            @Min(1) @RequestParam(required = false, defaultValue = DEFAULT_PAGE_SIZE) Integer size) {
-
-        return client.get("/owner", userId, Map.of("from", from, "size", size, "state", state));
+            @Min(1) @RequestParam(required = false, defaultValue = DEFAULT_PAGE_SIZE) Integer size,
+            @RequestParam(required = false) String cursor,
+            @Positive @RequestParam(required = false) Integer itemId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until,
+            @RequestParam(required = false, defaultValue = "START") String sort) {
+
+        if (since != null && until != null && since.isAfter(until)) {
+            log.error("Booking window from {} to {} is not valid", since, until);
+            return Mono.just(ResponseEntity.badRequest().body("Validation error"));
+        }
+
+        return client.get("/owner", userId, pageParams(state, from, size, cursor, itemId, since, until, sort));
     }
 
     @PatchMapping("/{id}")
     public Mono<ResponseEntity<String>> approve(@RequestHeader(USER_ID_HEADER) Integer userId,
                                                 @PathVariable Integer id,
-                                                @RequestParam Boolean approved) {
+                                                @RequestParam Boolean approved,
+                                                @RequestParam(required = false, defaultValue = "false")
+                                                Boolean rejectOverlapping) {
+
+        return client.patch(String.format("/%d", id), userId,
+                Map.of("approved", approved, "rejectOverlapping", rejectOverlapping));
+    }
+
+    // Exactly one of count and until bounds the rule, and an occurrence must end before the next one starts
+    private static boolean isRepeatable(RecurringBookingDtoIn ruleDto) {
+        if ((ruleDto.getCount() == null) == (ruleDto.getUntil() == null)) {
+            return false;
+        }
+        if (ruleDto.getUntil() != null && ruleDto.getUntil().isBefore(ruleDto.getStartDate())) {
+            return false;
+        }
+
+        int days = "WEEKLY".equals(ruleDto.getFrequency()) ? 7 : 1;
+        int interval = ruleDto.getInterval() == null ? 1 : ruleDto.getInterval();
+        return Duration.between(ruleDto.getStartDate(), ruleDto.getEndDate())
+                .compareTo(Duration.ofDays((long) days * interval)) <= 0;
+    }
+
+    private static HttpHeaders relayedHeaders(HttpHeaders serverHeaders) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(serverHeaders.getContentType());
+        String disposition = serverHeaders.getFirst(HttpHeaders.CONTENT_DISPOSITION);
+        if (disposition != null) {
+            headers.set(HttpHeaders.CONTENT_DISPOSITION, disposition);
+        }
+        return headers;
+    }
 
-        return client.patch(String.format("/%d", id), userId, Map.of("approved", approved));
+    private static Map<String, Object> pageParams(String state, Integer from, Integer size, String cursor,
+                                                  Integer itemId, LocalDateTime since, LocalDateTime until,
+                                                  String sort) {
+        Map<String, Object> params = new HashMap<>(Map.of("from", from, "size", size, "state", state, "sort", sort));
+        if (cursor != null) {
+            params.put("cursor", cursor);
+        }
+        if (itemId != null) {
+            params.put("itemId", itemId);
+        }
+        if (since != null) {
+            params.put("since", since);
+        }
+        if (until != null) {
+            params.put("until", until);
+        }
+        return params;
     }
 }
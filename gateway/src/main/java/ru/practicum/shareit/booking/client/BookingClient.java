@@ -1,9 +1,11 @@
 package ru.practicum.shareit.booking.client;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.practicum.shareit.client.BaseClient;
 
@@ -26,6 +28,10 @@ public class BookingClient extends BaseClient {
         return super.get(path, userId, params);
     }
 
+    public Mono<ResponseEntity<Flux<DataBuffer>>> stream(String path, Integer userId, Map<String, Object> params) {
+        return super.stream(path, userId, params);
+    }
+
     public Mono<ResponseEntity<String>> patch(String path, Integer userId, Map<String, Object> params) {
         return super.patch(path, userId, params);
     }
@@ -0,0 +1,55 @@
+package ru.practicum.shareit.booking.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+import ru.practicum.shareit.util.validation.EarlierThan;
+
+import javax.validation.constraints.Future;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+import java.time.LocalDateTime;
+
+/**
+ * A booking repeated every {@code interval} days or weeks, either {@code count} times or while its occurrences
+ * start no later than {@code until}. The first occurrence runs from {@code start} to {@code end}.
+ */
+@EarlierThan(value = "startDate", earlierThan = "endDate")
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringBookingDtoIn {
+
+    @NotNull
+    private Integer itemId;
+
+    @Future
+    @NotNull
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    @JsonProperty("start")
+    private LocalDateTime startDate;
+
+    @Future
+    @NotNull
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    @JsonProperty("end")
+    private LocalDateTime endDate;
+
+    @NotNull
+    @Pattern(regexp = "DAILY|WEEKLY")
+    private String frequency;
+
+    @Positive
+    private Integer interval;
+
+    @Positive
+    private Integer count;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime until;
+}
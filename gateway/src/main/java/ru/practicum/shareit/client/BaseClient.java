@@ -1,5 +1,7 @@
 package ru.practicum.shareit.client;
 
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -7,6 +9,7 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
@@ -47,6 +50,24 @@ public class BaseClient {
         return makeAndFetch(HttpMethod.DELETE, path, userId, mapToMultiValueMap(parameters));
     }
 
+    // The body is relayed buffer by buffer as the server writes it; errors arrive as a single buffer
+    protected Mono<ResponseEntity<Flux<DataBuffer>>> stream(
+            String path, Integer userId, Map<String, Object> parameters) {
+        return webClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(path).queryParams(mapToMultiValueMap(parameters)).build())
+                .header(USER_ID_HEADER, String.valueOf(userId))
+                .retrieve()
+                .toEntityFlux(DataBuffer.class)
+                .onErrorResume(WebClientResponseException.class,
+                        ex -> Mono.just(ResponseEntity
+                                .status(ex.getStatusCode())
+                                .headers(ex.getHeaders())
+                                .body(Flux.just(DefaultDataBufferFactory.sharedInstance
+                                        .wrap(ex.getResponseBodyAsByteArray()))))
+                );
+    }
+
     private Mono<ResponseEntity<String>> makeAndFetch(
             HttpMethod method, String path, Integer userId, MultiValueMap<String, String> parameters, String body) {
         return webClient
@@ -3,6 +3,8 @@ package ru.practicum.shareit.item;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -14,6 +16,9 @@ import ru.practicum.shareit.util.validation.Create;
 import ru.practicum.shareit.util.validation.Update;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 
 import static ru.practicum.shareit.util.Util.USER_ID_HEADER;
@@ -23,8 +28,11 @@ import static ru.practicum.shareit.util.Util.USER_ID_HEADER;
 @RequestMapping(path = "/items", produces = "application/json")
 @RequiredArgsConstructor
 @Validated
+@Slf4j
 public class ItemController {
 
+    private static final int MAX_SUGGESTIONS = 20;
+
     private final ItemClient client;
 
     private final ObjectMapper objectMapper;
@@ -45,6 +53,21 @@ public class ItemController {
         return client.get(String.format("/%d", id), userId, null);
     }
 
+    @GetMapping("/{id}/availability")
+    public Mono<ResponseEntity<String>> getAvailability(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @PathVariable Integer id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        if (!from.isBefore(to)) {
+            log.error("Availability window from {} to {} is not valid", from, to);
+            return Mono.just(ResponseEntity.badRequest().body("Validation error"));
+        }
+
+        return client.get(String.format("/%d/availability", id), userId, Map.of("from", from, "to", to));
+    }
+
     @GetMapping
     public Mono<ResponseEntity<String>> getAll(
             @RequestHeader(USER_ID_HEADER) Integer userId) {
@@ -54,12 +77,52 @@ public class ItemController {
 
     @GetMapping("/search")
     public Mono<ResponseEntity<String>> searchByKeyword(
-            @RequestParam(required = false, defaultValue = "") String text) {
+            @RequestParam(required = false, defaultValue = "") String text,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false, defaultValue = "false") Boolean fuzzy,
+            @Min(1) @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor) {
+
+        if ((from == null) != (to == null) || from != null && !from.isBefore(to)) {
+            log.error("Search window from {} to {} is not valid", from, to);
+            return Mono.just(ResponseEntity.badRequest().body("Validation error"));
+        }
 
         if (text.isEmpty()) {
             return Mono.just(ResponseEntity.ok().body("[]"));
         }
-        return client.get("/search", null, Map.of("text", text));
+        Map<String, Object> params = new HashMap<>(Map.of("text", text));
+        if (from != null) {
+            params.put("from", from);
+            params.put("to", to);
+        }
+        if (fuzzy) {
+            params.put("fuzzy", true);
+        }
+        if (size != null) {
+            params.put("size", size);
+        }
+        if (cursor != null) {
+            params.put("cursor", cursor);
+        }
+        return client.get("/search", null, params);
+    }
+
+    @GetMapping("/suggest")
+    public Mono<ResponseEntity<String>> suggest(
+            @RequestParam(required = false, defaultValue = "") String prefix,
+            @RequestParam(required = false, defaultValue = "10") Integer limit) {
+
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            log.error("Suggestion limit {} is not valid", limit);
+            return Mono.just(ResponseEntity.badRequest().body("Validation error"));
+        }
+
+        if (prefix.isBlank()) {
+            return Mono.just(ResponseEntity.ok().body("[]"));
+        }
+        return client.get("/suggest", null, Map.of("prefix", prefix, "limit", limit));
     }
 
    @PatchMapping("/{id}")
@@ -2,7 +2,6 @@ package ru.practicum.shareit.util.validation;
 
 import lombok.SneakyThrows;
 import org.springframework.stereotype.Component;
-import ru.practicum.shareit.booking.dto.BookingDtoIn;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
@@ -10,7 +9,7 @@ import java.lang.reflect.Field;
 import java.time.LocalDateTime;
 
 @Component
-public class EarlierValidator implements ConstraintValidator<EarlierThan, BookingDtoIn> {
+public class EarlierValidator implements ConstraintValidator<EarlierThan, Object> {
 
     private String startField;
     private String endField;
@@ -21,7 +20,7 @@ public class EarlierValidator implements ConstraintValidator<EarlierThan, Bookin
     }
 
     @SneakyThrows
-    public boolean isValid(BookingDtoIn value, ConstraintValidatorContext context) {
+    public boolean isValid(Object value, ConstraintValidatorContext context) {
         Field declaredField = value.getClass().getDeclaredField(startField);
         declaredField.setAccessible(true);
         LocalDateTime start = (LocalDateTime)declaredField.get(value);
@@ -8,22 +8,36 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.practicum.shareit.booking.BookingController;
 import ru.practicum.shareit.booking.client.BookingClient;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoIn;
 import ru.practicum.shareit.util.ErrorHandler;
 
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static ru.practicum.shareit.util.Util.USER_ID_HEADER;
 
@@ -146,6 +160,25 @@ public class BookingControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @SneakyThrows
+    @Test
+    void getSummary_shouldForwardBookerAndOwnerSummaries() {
+        when(client.get(anyString(), anyInt(), any()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("OK")));
+
+        mvc.perform(get("/bookings/summary")
+                        .header(USER_ID_HEADER, "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mvc.perform(get("/bookings/owner/summary")
+                        .header(USER_ID_HEADER, "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(client).get("/summary", 1, null);
+        verify(client).get("/owner/summary", 1, null);
+    }
+
     @SneakyThrows
     @Test
     void getById_shouldAnswerBadRequestWhenUserIdIsMissing() {
@@ -254,6 +287,26 @@ public class BookingControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @SneakyThrows
+    @Test
+    void getAllByOwner_shouldPassCursorToServer() {
+        when(client.get(anyString(), anyInt(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("OK")));
+
+        mvc.perform(get("/bookings/owner")
+                        .header(USER_ID_HEADER, "1")
+                        .param("cursor", "cursor")
+                        .param("size", "10")
+                        .param("state", "ALL")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(client).get("/owner", 1, Map.of("from", 0, "size", 10, "state", "ALL", "sort", "START",
+                "cursor", "cursor"));
+    }
+
     @SneakyThrows
     @Test
     void getAllByOwner_shouldAnswerOKWhenFromParamIsMissing() {
@@ -355,4 +408,285 @@ public class BookingControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @SneakyThrows
+    @Test
+    void setApproved_shouldForwardRejectOverlapping() {
+        when(client.patch(anyString(), anyInt(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("OK")));
+
+        mvc.perform(patch("/bookings/1")
+                        .header(USER_ID_HEADER, "1")
+                        .param("approved", "true")
+                        .param("rejectOverlapping", "true")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(client).patch("/1", 1, Map.of("approved", true, "rejectOverlapping", true));
+    }
+
+    @SneakyThrows
+    @Test
+    void createAll_shouldForwardWholeBatch() {
+        when(client.post(anyString(), anyInt(), anyString()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("OK")));
+
+        mvc.perform(post("/bookings/batch")
+                        .header(USER_ID_HEADER, "1")
+                        .content(mapper.writeValueAsString(List.of(bookingDtoIn, bookingDtoIn)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(client).post(eq("/batch"), eq(1), anyString());
+    }
+
+    @SneakyThrows
+    @Test
+    void createAll_shouldAnswerBadRequestWhenAnyBookingIsNotValid() {
+        BookingDtoIn invalid = BookingDtoIn.builder()
+                .itemId(1)
+                .startDate(now.plusDays(2))
+                .endDate(now.plusDays(1))
+                .build();
+
+        MvcResult result = mvc.perform(post("/bookings/batch")
+                        .header(USER_ID_HEADER, "1")
+                        .content(mapper.writeValueAsString(List.of(bookingDtoIn, invalid)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+
+        verify(client, never()).post(anyString(), anyInt(), anyString());
+    }
+
+    @SneakyThrows
+    @Test
+    void createAll_shouldAnswerBadRequestWhenBatchIsEmpty() {
+        MvcResult result = mvc.perform(post("/bookings/batch")
+                        .header(USER_ID_HEADER, "1")
+                        .content("[]")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+
+        verify(client, never()).post(anyString(), anyInt(), anyString());
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllByOwner_shouldForwardItemWindowAndSort() {
+        when(client.get(anyString(), anyInt(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("OK")));
+
+        mvc.perform(get("/bookings/owner")
+                        .header(USER_ID_HEADER, "1")
+                        .param("itemId", "5")
+                        .param("since", "2030-01-01T00:00:00")
+                        .param("until", "2030-02-01T00:00:00")
+                        .param("sort", "END")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(client).get("/owner", 1, Map.of("from", 0, "size", 100, "state", "ALL", "sort", "END",
+                "itemId", 5, "since", LocalDateTime.of(2030, 1, 1, 0, 0),
+                "until", LocalDateTime.of(2030, 2, 1, 0, 0)));
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllByBooker_shouldAnswerBadRequestWhenWindowEndsBeforeItStarts() {
+        MvcResult result = mvc.perform(get("/bookings")
+                        .header(USER_ID_HEADER, "1")
+                        .param("since", "2030-02-01T00:00:00")
+                        .param("until", "2030-01-01T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+
+        verify(client, never()).get(anyString(), anyInt(), anyMap());
+    }
+
+    @SneakyThrows
+    @Test
+    void exportByOwner_shouldRelayServerStream() {
+        when(client.stream(anyString(), anyInt(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("text/csv"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"bookings.csv\"")
+                        .body(Flux.just(buffer("id\r\n"), buffer("1\r\n")))));
+
+        MvcResult result = mvc.perform(get("/bookings/owner/export")
+                        .header(USER_ID_HEADER, "1")
+                        .param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // The relayed response is resolved first, then its body is streamed in a second asynchronous step
+        MvcResult streamed = mvc.perform(asyncDispatch(result))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(streamed))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"bookings.csv\""))
+                .andExpect(content().string("id\r\n1\r\n"));
+
+        verify(client).stream("/owner/export", 1, Map.of("format", "CSV"));
+    }
+
+    @SneakyThrows
+    @Test
+    void exportByOwner_shouldRelayServerError() {
+        when(client.stream(anyString(), anyInt(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .body(Flux.just(buffer("User is not found")))));
+
+        MvcResult result = mvc.perform(get("/bookings/owner/export")
+                        .header(USER_ID_HEADER, "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult streamed = mvc.perform(asyncDispatch(result))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(streamed))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("User is not found"));
+
+        verify(client).stream("/owner/export", 1, Map.of("format", "NDJSON"));
+    }
+
+    private static DataBuffer buffer(String text) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SneakyThrows
+    @Test
+    void createRecurring_shouldRelayValidRule() {
+        when(client.post(anyString(), anyInt(), anyString()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("OK")));
+
+        MvcResult result = mvc.perform(post("/bookings/recurring")
+                        .header(USER_ID_HEADER, "1")
+                        .content(mapper.writeValueAsString(weeklyRule().build()))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        verify(client).post(eq("/recurring"), eq(1), contains("\"frequency\":\"WEEKLY\""));
+    }
+
+    @SneakyThrows
+    @Test
+    void createRecurring_shouldAnswerBadRequestWhenCountAndUntilAreBothSet() {
+        assertRecurringIsBadRequest(weeklyRule().until(now.plusWeeks(5)).build());
+        assertRecurringIsBadRequest(weeklyRule().count(null).build());
+    }
+
+    @SneakyThrows
+    @Test
+    void createRecurring_shouldAnswerBadRequestWhenOccurrencesWouldOverlap() {
+        assertRecurringIsBadRequest(weeklyRule().frequency("DAILY").endDate(now.plusDays(3)).build());
+    }
+
+    @SneakyThrows
+    @Test
+    void createRecurring_shouldAnswerBadRequestWhenFrequencyIsUnknown() {
+        mvc.perform(post("/bookings/recurring")
+                        .header(USER_ID_HEADER, "1")
+                        .content(mapper.writeValueAsString(weeklyRule().frequency("MONTHLY").build()))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(client, never()).post(anyString(), anyInt(), anyString());
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllRecurringByOwner_shouldPassWindowToServer() {
+        when(client.get(anyString(), anyInt(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("[]")));
+
+        MvcResult result = mvc.perform(get("/bookings/recurring/owner")
+                        .header(USER_ID_HEADER, "1")
+                        .param("since", "2030-01-01T00:00:00")
+                        .param("until", "2030-02-01T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        verify(client).get("/recurring/owner", 1, Map.of("state", "ALL", "from", 0, "size", 100,
+                "since", LocalDateTime.of(2030, 1, 1, 0, 0), "until", LocalDateTime.of(2030, 2, 1, 0, 0)));
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllRecurringByBooker_shouldAnswerBadRequestWithoutWindow() {
+        MvcResult result = mvc.perform(get("/bookings/recurring")
+                        .header(USER_ID_HEADER, "1")
+                        .param("since", "2030-01-01T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+
+        verify(client, never()).get(anyString(), anyInt(), anyMap());
+    }
+
+    private RecurringBookingDtoIn.RecurringBookingDtoInBuilder weeklyRule() {
+        return RecurringBookingDtoIn.builder()
+                .itemId(1)
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(3))
+                .frequency("WEEKLY")
+                .count(4);
+    }
+
+    @SneakyThrows
+    private void assertRecurringIsBadRequest(RecurringBookingDtoIn ruleDto) {
+        MvcResult result = mvc.perform(post("/bookings/recurring")
+                        .header(USER_ID_HEADER, "1")
+                        .content(mapper.writeValueAsString(ruleDto))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+
+        verify(client, never()).post(anyString(), anyInt(), anyString());
+    }
 }
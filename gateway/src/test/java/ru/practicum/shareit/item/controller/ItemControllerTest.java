@@ -11,6 +11,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import reactor.core.publisher.Mono;
 import ru.practicum.shareit.item.ItemController;
@@ -20,10 +21,16 @@ import ru.practicum.shareit.item.dto.ItemDtoIn;
 import ru.practicum.shareit.util.ErrorHandler;
 
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static ru.practicum.shareit.util.Util.USER_ID_HEADER;
 
@@ -214,6 +221,54 @@ public class ItemControllerTest {
     }
 
 
+    @SneakyThrows
+    @Test
+    void getAvailability_shouldPassWindowToServer() {
+        when(client.get(anyString(), anyInt(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("[]")));
+
+        MvcResult result = mvc.perform(get("/items/5/availability")
+                        .header(USER_ID_HEADER, "1")
+                        .param("from", "2030-01-01T00:00:00")
+                        .param("to", "2030-02-01T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        verify(client).get("/5/availability", 1, Map.of("from", LocalDateTime.of(2030, 1, 1, 0, 0),
+                "to", LocalDateTime.of(2030, 2, 1, 0, 0)));
+    }
+
+    @SneakyThrows
+    @Test
+    void getAvailability_shouldAnswerBadRequestWhenWindowIsEmpty() {
+        MvcResult result = mvc.perform(get("/items/5/availability")
+                        .header(USER_ID_HEADER, "1")
+                        .param("from", "2030-01-01T00:00:00")
+                        .param("to", "2030-01-01T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+
+        verify(client, never()).get(anyString(), anyInt(), anyMap());
+    }
+
+    @SneakyThrows
+    @Test
+    void getAvailability_shouldAnswerInternalServerErrorWhenWindowIsMissing() {
+        mvc.perform(get("/items/5/availability")
+                        .header(USER_ID_HEADER, "1")
+                        .param("from", "2030-01-01T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isInternalServerError());
+    }
+
     @SneakyThrows
     @Test
     void getAll_shouldAnswerOK() {
@@ -256,6 +311,82 @@ public class ItemControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @SneakyThrows
+    @Test
+    void searchByKeyword_shouldPassWindowToServer() {
+        when(client.get(anyString(), any(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("[]")));
+
+        MvcResult result = mvc.perform(get("/items/search")
+                        .param("text", "drill")
+                        .param("from", "2030-01-01T00:00:00")
+                        .param("to", "2030-01-03T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        verify(client).get("/search", null, Map.of("text", "drill",
+                "from", LocalDateTime.of(2030, 1, 1, 0, 0), "to", LocalDateTime.of(2030, 1, 3, 0, 0)));
+    }
+
+    @SneakyThrows
+    @Test
+    void searchByKeyword_shouldPassFuzzyToServer() {
+        when(client.get(anyString(), any(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("[]")));
+
+        MvcResult result = mvc.perform(get("/items/search")
+                        .param("text", "drlil")
+                        .param("fuzzy", "true")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        verify(client).get("/search", null, Map.of("text", "drlil", "fuzzy", true));
+    }
+
+    @SneakyThrows
+    @Test
+    void searchByKeyword_shouldPassPageToServer() {
+        when(client.get(anyString(), any(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("[]")));
+
+        MvcResult result = mvc.perform(get("/items/search")
+                        .param("text", "drill")
+                        .param("size", "20")
+                        .param("cursor", "cursor")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        verify(client).get("/search", null, Map.of("text", "drill", "size", 20, "cursor", "cursor"));
+    }
+
+    @SneakyThrows
+    @Test
+    void searchByKeyword_shouldAnswerBadRequestWhenWindowIsIncomplete() {
+        MvcResult result = mvc.perform(get("/items/search")
+                        .param("text", "drill")
+                        .param("from", "2030-01-01T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+
+        verify(client, never()).get(anyString(), any(), anyMap());
+    }
+
     @SneakyThrows
     @Test
     void searchByKeyword_shouldAnswerOKWhenTextParamIsMissing() {
@@ -269,6 +400,57 @@ public class ItemControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @SneakyThrows
+    @Test
+    void suggest_shouldPassPrefixAndLimitToServer() {
+        when(client.get(anyString(), any(), anyMap()))
+                .thenReturn(Mono.just(ResponseEntity.ok().body("[\"Drill\"]")));
+
+        MvcResult result = mvc.perform(get("/items/suggest")
+                        .param("prefix", "dr")
+                        .param("limit", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        verify(client).get("/suggest", null, Map.of("prefix", "dr", "limit", 5));
+    }
+
+    @SneakyThrows
+    @Test
+    void suggest_shouldAnswerEmptyListWithoutPrefix() {
+        MvcResult result = mvc.perform(get("/items/suggest")
+                        .param("prefix", " ")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+
+        verify(client, never()).get(anyString(), any(), anyMap());
+    }
+
+    @SneakyThrows
+    @Test
+    void suggest_shouldAnswerBadRequestWhenLimitIsOutOfRange() {
+        MvcResult result = mvc.perform(get("/items/suggest")
+                        .param("prefix", "dr")
+                        .param("limit", "21")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+
+        verify(client, never()).get(anyString(), any(), anyMap());
+    }
+
     @SneakyThrows
     @Test
     void update_shouldAnswerOKWhenNameAndDescriptionAndAvailableAreNew() {
@@ -2,16 +2,33 @@ package ru.practicum.shareit.booking.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
 import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
-import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoIn;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoOut;
+import ru.practicum.shareit.booking.model.BookingExportFormat;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.service.BookingExporter;
+import ru.practicum.shareit.booking.service.BookingIngestion;
 import ru.practicum.shareit.booking.service.BookingService;
-import ru.practicum.shareit.util.exception.UnsupportedStateException;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import static ru.practicum.shareit.util.Util.NEXT_CURSOR_HEADER;
 import static ru.practicum.shareit.util.Util.USER_ID_HEADER;
 
 @RestController
@@ -23,12 +40,94 @@ public class BookingController {
 
     private final BookingService bookingService;
 
+    private final BookingIngestion bookingIngestion;
+
+    private final BookingExporter bookingExporter;
+
     @PostMapping
     public BookingDtoOutAbs create(
             @RequestHeader(USER_ID_HEADER) Integer userId,
             @RequestBody BookingDtoIn bookingDto) {
 
-        return bookingService.create(bookingDto, userId);
+        return bookingIngestion.create(bookingDto, userId);
+    }
+
+    @PostMapping("/batch")
+    public List<? extends BookingDtoOutAbs> createAll(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @RequestBody List<BookingDtoIn> bookingDtos) {
+
+        return bookingService.createAll(bookingDtos, userId);
+    }
+
+    @PostMapping("/recurring")
+    public RecurringBookingDtoOut createRecurring(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @RequestBody RecurringBookingDtoIn ruleDto) {
+
+        return bookingService.createRecurring(ruleDto, userId);
+    }
+
+    @GetMapping("/recurring")
+    public List<RecurringBookingDtoOut> getAllRecurringByBooker(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @RequestParam String state,
+            @RequestParam(required = false, defaultValue = "0") Integer from,
+            @RequestParam Integer size,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until) {
+
+        return bookingService.getAllRecurring(query(BookingRole.BOOKER, userId, state, from, size, null)
+                .since(since)
+                .until(until)
+                .build());
+    }
+
+    @GetMapping("/recurring/owner")
+    public List<RecurringBookingDtoOut> getAllRecurringByOwner(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @RequestParam String state,
+            @RequestParam(required = false, defaultValue = "0") Integer from,
+            @RequestParam Integer size,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until) {
+
+        return bookingService.getAllRecurring(query(BookingRole.OWNER, userId, state, from, size, null)
+                .since(since)
+                .until(until)
+                .build());
+    }
+
+    @PatchMapping("/recurring/{id}")
+    public RecurringBookingDtoOut approveRecurring(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @PathVariable Integer id,
+            @RequestParam Boolean approved) {
+
+        return bookingService.approveRecurring(id, userId, approved);
+    }
+
+    @GetMapping("/summary")
+    public BookingSummary getSummaryByBooker(@RequestHeader(USER_ID_HEADER) Integer userId) {
+        return bookingService.getSummary(BookingRole.BOOKER, userId);
+    }
+
+    @GetMapping("/owner/summary")
+    public BookingSummary getSummaryByOwner(@RequestHeader(USER_ID_HEADER) Integer userId) {
+        return bookingService.getSummary(BookingRole.OWNER, userId);
+    }
+
+    @GetMapping("/owner/export")
+    public ResponseEntity<StreamingResponseBody> exportByOwner(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @RequestParam(required = false, defaultValue = "NDJSON") String format) {
+
+        BookingExportFormat exportFormat = BookingExportFormat.from(format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"bookings." + exportFormat.getExtension() + "\"")
+                .body(bookingExporter.exportByOwner(userId, exportFormat));
     }
 
     @GetMapping("/{id}")
@@ -40,61 +139,80 @@ public class BookingController {
     }
 
     @GetMapping
-    public List<? extends BookingDtoOutAbs> getAllByBooker(
+    public ResponseEntity<List<? extends BookingDtoOutAbs>> getAllByBooker(
             @RequestHeader(value = USER_ID_HEADER) Integer userId,
             @RequestParam String state,
-            @RequestParam Integer from,
-            @RequestParam Integer size) {
-
-        switch (state) {
-            case "ALL":
-                return bookingService.getAllByBooker(userId, from, size);
-            case "CURRENT":
-                return bookingService.getCurrentBookingByBooker(userId, from, size);
-            case "PAST":
-                return bookingService.getPastBookingByBooker(userId, from, size);
-            case "FUTURE":
-                return bookingService.getFutureBookingByBooker(userId, from, size);
-            case "WAITING":
-                return bookingService.getBookingByBookerAndStatus(userId, BookingStatus.WAITING, from, size);
-            case "REJECTED":
-                return bookingService.getBookingByBookerAndStatus(userId, BookingStatus.REJECTED, from, size);
-            default:
-                throw new UnsupportedStateException(state);
-        }
+            @RequestParam(required = false, defaultValue = "0") Integer from,
+            @RequestParam Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer itemId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until,
+            @RequestParam(required = false, defaultValue = "START") String sort) {
+
+        BookingQuery query = query(BookingRole.BOOKER, userId, state, from, size, cursor)
+                .itemId(itemId)
+                .since(since)
+                .until(until)
+                .sort(BookingSort.from(sort))
+                .build();
+
+        return withNextCursor(bookingService.getAll(query), query);
     }
 
     @GetMapping("/owner")
-    public List<? extends BookingDtoOutAbs> getAllByOwner(
+    public ResponseEntity<List<? extends BookingDtoOutAbs>> getAllByOwner(
             @RequestHeader(USER_ID_HEADER) Integer userId,
             @RequestParam String state,
-            @RequestParam Integer from,
-            @RequestParam Integer size) {
-
-        switch (state) {
-            case "ALL":
-                return bookingService.getAllByOwner(userId, from, size);
-            case "CURRENT":
-                return bookingService.getCurrentBookingByOwner(userId, from, size);
-            case "PAST":
-                return bookingService.getPastBookingByOwner(userId, from, size);
-            case "FUTURE":
-                return bookingService.getFutureBookingByOwner(userId, from, size);
-            case "WAITING":
-                return bookingService.getBookingByOwnerAndStatus(userId, BookingStatus.WAITING, from, size);
-            case "REJECTED":
-                return bookingService.getBookingByOwnerAndStatus(userId, BookingStatus.REJECTED, from, size);
-            default:
-                throw new UnsupportedStateException(state);
-        }
+            @RequestParam(required = false, defaultValue = "0") Integer from,
+            @RequestParam Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer itemId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until,
+            @RequestParam(required = false, defaultValue = "START") String sort) {
+
+        BookingQuery query = query(BookingRole.OWNER, userId, state, from, size, cursor)
+                .itemId(itemId)
+                .since(since)
+                .until(until)
+                .sort(BookingSort.from(sort))
+                .build();
+
+        return withNextCursor(bookingService.getAll(query), query);
     }
 
     @PatchMapping("/{id}")
     public BookingDtoOutAbs approve(
             @RequestHeader(USER_ID_HEADER) Integer userId,
             @PathVariable Integer id,
-            @RequestParam Boolean approved) {
+            @RequestParam Boolean approved,
+            @RequestParam(required = false, defaultValue = "false") Boolean rejectOverlapping) {
 
-        return bookingService.approve(id, userId, approved);
+        return bookingService.approve(id, userId, approved, rejectOverlapping);
+    }
+
+    private static BookingQuery.BookingQueryBuilder query(BookingRole role, int userId, String state, int from,
+                                                          int size, String cursor) {
+        return BookingQuery.builder()
+                .role(role)
+                .userId(userId)
+                .state(BookingState.from(state))
+                .cursor(cursor == null ? null : BookingCursor.decode(cursor))
+                .from(from)
+                .size(size);
+    }
+
+    private static ResponseEntity<List<? extends BookingDtoOutAbs>> withNextCursor(
+            List<? extends BookingDtoOutAbs> bookings, BookingQuery query) {
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!bookings.isEmpty() && bookings.size() == query.getSize()) {
+            BookingDtoOutAbs last = bookings.get(bookings.size() - 1);
+            if (last instanceof BookingDtoOut) {
+                response.header(NEXT_CURSOR_HEADER, BookingCursor.of((BookingDtoOut) last, query.getSort()).encode());
+            }
+        }
+        return response.body(bookings);
     }
 }
@@ -0,0 +1,92 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.*;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.util.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.regex.Pattern;
+
+/**
+ * Continuation token of a booking listing ordered by {@code <sort key> DESC, id DESC}.
+ * Points at the last booking of the previous page; the next page starts strictly after it.
+ * <p>
+ * An occurrence of a recurring booking has no id of its own: it takes the negated id of its rule, which orders
+ * it after the bookings of the same key, and its start, which orders the occurrences of one rule.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class BookingCursor {
+
+    // Listing order: the first row of a page is the least
+    public static final Comparator<BookingCursor> LISTING_ORDER = Comparator.comparing(BookingCursor::getKey)
+            .thenComparing(BookingCursor::getId)
+            .thenComparing(BookingCursor::getOccurrence, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .reversed();
+
+    private static final String SEPARATOR = "|";
+
+    @NonNull
+    private final BookingSort sort;
+
+    @NonNull
+    private final LocalDateTime key;
+
+    @NonNull
+    private final Integer id;
+
+    // Start of the occurrence, only when the cursor points at one
+    private final LocalDateTime occurrence;
+
+    public BookingCursor(BookingSort sort, LocalDateTime key, Integer id) {
+        this(sort, key, id, null);
+    }
+
+    public static BookingCursor of(BookingDtoOut booking, BookingSort sort) {
+        Integer id = booking.getId() != null ? booking.getId() : -booking.getRuleId();
+        LocalDateTime occurrence = booking.getId() != null ? null : booking.getStartDate();
+        switch (sort) {
+            case START:
+                return new BookingCursor(sort, booking.getStartDate(), id, occurrence);
+            case END:
+                return new BookingCursor(sort, booking.getEndDate(), id, occurrence);
+            case CREATED:
+                return new BookingCursor(sort, booking.getCreated(), id, occurrence);
+            default:
+                throw new IllegalArgumentException("Unknown sort " + sort);
+        }
+    }
+
+    public static BookingCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(Pattern.quote(SEPARATOR), -1);
+            if (parts.length < 3 || parts.length > 4) {
+                throw new InvalidCursorException("Cursor " + token + " is malformed");
+            }
+            return new BookingCursor(
+                    BookingSort.valueOf(parts[0]),
+                    LocalDateTime.parse(parts[1]),
+                    Integer.valueOf(parts[2]),
+                    parts.length == 4 ? LocalDateTime.parse(parts[3]) : null);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Cursor " + token + " is malformed");
+        }
+    }
+
+    public String encode() {
+        String token = sort + SEPARATOR + key + SEPARATOR + id + (occurrence == null ? "" : SEPARATOR + occurrence);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Whether the row of the other cursor comes after this one in the listing
+    public boolean isBefore(BookingCursor other) {
+        return LISTING_ORDER.compare(this, other) < 0;
+    }
+}
@@ -1,6 +1,7 @@
 package ru.practicum.shareit.booking.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 import ru.practicum.shareit.booking.model.BookingStatus;
@@ -8,6 +9,7 @@ import ru.practicum.shareit.item.dto.ItemDtoOut;
 import ru.practicum.shareit.user.dto.UserDtoOut;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Objects;
 
 @Getter
@@ -18,6 +20,7 @@ import java.util.Objects;
 @AllArgsConstructor
 public class BookingDtoOut extends BookingDtoOutAbs {
 
+    // Null for an occurrence of a recurring booking, which has the id of its rule instead
     private Integer id;
 
     @JsonProperty("start")
@@ -34,12 +37,22 @@ public class BookingDtoOut extends BookingDtoOutAbs {
 
     private BookingStatus status;
 
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime created;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Integer> rejectedBookingIds;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer ruleId;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         BookingDtoOut that = (BookingDtoOut) o;
         return Objects.equals(id, that.id) &&
+                Objects.equals(ruleId, that.ruleId) &&
                 Objects.equals(startDate, that.startDate) &&
                 Objects.equals(endDate, that.endDate) &&
                 Objects.equals(item, that.item) &&
@@ -49,6 +62,6 @@ public class BookingDtoOut extends BookingDtoOutAbs {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, startDate, endDate, item, booker, status);
+        return Objects.hash(id, ruleId, startDate, endDate, item, booker, status);
     }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Number of bookings of a user in every {@link ru.practicum.shareit.booking.model.BookingState}.
+ */
+@Getter
+@Builder
+@ToString
+@EqualsAndHashCode
+public class BookingSummary {
+
+    private final long all;
+
+    private final long current;
+
+    private final long past;
+
+    private final long future;
+
+    private final long waiting;
+
+    private final long rejected;
+
+    public BookingSummary plus(BookingSummary other) {
+        return BookingSummary.builder()
+                .all(all + other.all)
+                .current(current + other.current)
+                .past(past + other.past)
+                .future(future + other.future)
+                .waiting(waiting + other.waiting)
+                .rejected(rejected + other.rejected)
+                .build();
+    }
+}
@@ -0,0 +1,57 @@
+package ru.practicum.shareit.booking.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+import ru.practicum.shareit.booking.model.BookingFrequency;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.item.dto.ItemDtoOut;
+import ru.practicum.shareit.user.dto.UserDtoOut;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringBookingDtoOut {
+
+    private Integer id;
+
+    @JsonProperty("start")
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime startDate;
+
+    @JsonProperty("end")
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime endDate;
+
+    private BookingFrequency frequency;
+
+    private int interval;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer count;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime until;
+
+    private ItemDtoOut item;
+
+    private UserDtoOut booker;
+
+    private BookingStatus status;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime created;
+
+    // The occurrences in the window of a listing; absent when the rule itself is returned
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Occurrence> occurrences;
+}
@@ -6,6 +6,7 @@ import ru.practicum.shareit.user.model.User;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 
 @Table(name = "bookings")
@@ -19,7 +20,8 @@ import java.util.Objects;
 public class Booking {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookings_seq")
+    @SequenceGenerator(name = "bookings_seq", sequenceName = "bookings_seq", allocationSize = 50)
     private Integer id;
 
     @NonNull
@@ -39,6 +41,31 @@ public class Booking {
     @Enumerated(value = EnumType.STRING)
     private BookingStatus status;
 
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private User owner;
+
+    @Enumerated(value = EnumType.STRING)
+    private BookingPhase phase;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime created;
+
+    @PrePersist
+    protected void onCreate() {
+        owner = item.getOwner();
+        if (created == null) {
+            created = now();
+        }
+    }
+
+    // Truncated to the precision the database keeps, so that a cursor taken from a saved booking matches its row
+    public static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
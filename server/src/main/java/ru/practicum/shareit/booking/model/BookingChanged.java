@@ -0,0 +1,77 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Bookings or recurring bookings written by one transaction. The event is published inside the transaction, and
+ * the caches that subscribe to it apply it once the transaction commits. Users and items are read when the event
+ * is built, while the transaction can still load them.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class BookingChanged {
+
+    private final Type type;
+
+    // Bookings created, decided, expired or deleted; none for recurring bookings
+    private final List<Booking> bookings;
+
+    // Bookers and owners whose booking listings change
+    private final Set<Integer> userIds;
+
+    // Items whose booked periods change
+    private final Set<Integer> itemIds;
+
+    public enum Type {
+        CREATED,
+        DECIDED,
+        EXPIRED,
+        DELETED,
+        RECURRING
+    }
+
+    public static BookingChanged created(List<Booking> bookings) {
+        return of(Type.CREATED, bookings, Set.of());
+    }
+
+    // Bookings rejected along with the decision are known by their bookers only
+    public static BookingChanged decided(Booking booking, Collection<Integer> rejectedBookerIds) {
+        return of(Type.DECIDED, List.of(booking), rejectedBookerIds);
+    }
+
+    // Waiting bookings rejected by the lifecycle once their start passed
+    public static BookingChanged expired(List<Booking> bookings) {
+        return of(Type.EXPIRED, bookings, Set.of());
+    }
+
+    public static BookingChanged deleted(Booking booking) {
+        return of(Type.DELETED, List.of(booking), Set.of());
+    }
+
+    // Occurrences are listed as bookings of the booker and the owner of the rule
+    public static BookingChanged recurring(BookingRule rule) {
+        Set<Integer> userIds = new TreeSet<>(List.of(rule.getBooker().getId(), rule.getItem().getOwner().getId()));
+        return new BookingChanged(Type.RECURRING, List.of(), userIds, Set.of(rule.getItem().getId()));
+    }
+
+    private static BookingChanged of(Type type, List<Booking> bookings, Collection<Integer> otherUserIds) {
+        Set<Integer> userIds = new TreeSet<>(otherUserIds);
+        Set<Integer> itemIds = new TreeSet<>();
+        for (Booking booking : bookings) {
+            userIds.add(booking.getBooker().getId());
+            userIds.add(booking.getItem().getOwner().getId());
+            itemIds.add(booking.getItem().getId());
+        }
+        return new BookingChanged(type, List.copyOf(bookings), userIds, itemIds);
+    }
+}
@@ -0,0 +1,25 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.shareit.util.exception.UnsupportedFormatException;
+
+@Getter
+@AllArgsConstructor
+public enum BookingExportFormat {
+
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+
+    private final String extension;
+
+    public static BookingExportFormat from(String format) {
+        try {
+            return valueOf(format);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedFormatException(format);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class BookingExportRow {
+
+    private final int id;
+
+    private final int itemId;
+
+    private final String itemName;
+
+    private final int bookerId;
+
+    private final LocalDateTime startDate;
+
+    private final LocalDateTime endDate;
+
+    private final BookingStatus status;
+
+    private final LocalDateTime created;
+}
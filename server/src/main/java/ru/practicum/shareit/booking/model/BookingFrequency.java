@@ -0,0 +1,17 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * How often a recurring booking repeats, before its interval is applied.
+ */
+@AllArgsConstructor
+public enum BookingFrequency {
+
+    DAILY(1),
+    WEEKLY(7);
+
+    @Getter
+    private final int days;
+}
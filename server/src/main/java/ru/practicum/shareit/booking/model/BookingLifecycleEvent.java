@@ -0,0 +1,23 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class BookingLifecycleEvent {
+
+    private final Type type;
+
+    private final int bookingId;
+
+    public enum Type {
+        EXPIRED,
+        STARTED,
+        ENDED
+    }
+}
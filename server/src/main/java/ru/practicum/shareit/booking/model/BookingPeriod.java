@@ -0,0 +1,26 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class BookingPeriod {
+
+    private final int id;
+
+    private final int bookerId;
+
+    private final LocalDateTime startDate;
+
+    private final LocalDateTime endDate;
+
+    public static BookingPeriod of(Booking booking) {
+        return new BookingPeriod(booking.getId(), booking.getBooker().getId(),
+                booking.getStartDate(), booking.getEndDate());
+    }
+}
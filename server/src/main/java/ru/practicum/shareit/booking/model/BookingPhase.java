@@ -0,0 +1,9 @@
+package ru.practicum.shareit.booking.model;
+
+/**
+ * Lifecycle events already emitted for an approved booking; {@code null} until it starts.
+ */
+public enum BookingPhase {
+    STARTED,
+    ENDED
+}
@@ -0,0 +1,49 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One page of the bookings of a user, seen either as the booker or as the owner, optionally narrowed to one item
+ * and to the bookings that overlap {@code [since, until]}. Either end of the window may be left open.
+ * Pages by {@code cursor} when it is set, otherwise by the {@code from} offset.
+ */
+@Getter
+@Builder(toBuilder = true)
+@ToString
+public class BookingQuery {
+
+    @NonNull
+    private final BookingRole role;
+
+    private final int userId;
+
+    @NonNull
+    @Builder.Default
+    private final BookingState state = BookingState.ALL;
+
+    private final Integer itemId;
+
+    private final LocalDateTime since;
+
+    private final LocalDateTime until;
+
+    @NonNull
+    @Builder.Default
+    private final BookingSort sort = BookingSort.START;
+
+    private final BookingCursor cursor;
+
+    private final int from;
+
+    private final int size;
+
+    @NonNull
+    @Builder.Default
+    private final LocalDateTime now = LocalDateTime.now();
+}
@@ -0,0 +1,190 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.*;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * A recurring booking stored as one row: the first occurrence runs from {@code startDate} to {@code endDate}
+ * and repeats every {@code interval} days or weeks, {@code count} times or while it starts no later than
+ * {@code until}. Occurrences are never stored; they are computed for the window a caller asks for, jumping
+ * straight to the first one that reaches the window.
+ * <p>
+ * {@code lastEndDate} is the end of the last occurrence, so that rules touching a window can be found by range.
+ * <p>
+ * Occurrences are not bookings. They block the overlap checks of new bookings and rules, the availability of
+ * the item and the search for items free in a window; they are listed under {@code /bookings/recurring} and
+ * merged into the booking listings by state, and the summary counts them. The booking counters, the lifecycle
+ * events and the last and next booking of an item do not see them.
+ */
+@Table(name = "booking_rules")
+@Entity
+@Getter
+@Setter
+@ToString
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @NonNull
+    private LocalDateTime startDate;
+
+    @NonNull
+    private LocalDateTime endDate;
+
+    @NonNull
+    @Enumerated(value = EnumType.STRING)
+    private BookingFrequency frequency;
+
+    @Column(name = "repeat_interval", nullable = false)
+    private int interval;
+
+    @Column(name = "repeat_count")
+    private Integer count;
+
+    @Column(name = "repeat_until")
+    private LocalDateTime until;
+
+    @Setter(AccessLevel.NONE)
+    private LocalDateTime lastEndDate;
+
+    @NonNull
+    @ManyToOne
+    private Item item;
+
+    @NonNull
+    @ManyToOne
+    private User booker;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private User owner;
+
+    @Enumerated(value = EnumType.STRING)
+    private BookingStatus status;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime created;
+
+    @PrePersist
+    protected void onCreate() {
+        owner = item.getOwner();
+        lastEndDate = lastEnd();
+        if (created == null) {
+            created = Booking.now();
+        }
+    }
+
+    public int occurrenceCount() {
+        int occurrences = count != null ? count : Integer.MAX_VALUE;
+        if (until != null) {
+            long untilOccurrences = until.isBefore(startDate) ? 0 :
+                    Duration.between(startDate, until).toSeconds() / step().toSeconds() + 1;
+            occurrences = (int) Math.min(occurrences, untilOccurrences);
+        }
+        return occurrences;
+    }
+
+    public ItemPeriod occurrence(int index) {
+        long days = (long) index * frequency.getDays() * interval;
+        return new ItemPeriod(item.getId(), startDate.plusDays(days), endDate.plusDays(days));
+    }
+
+    public LocalDateTime lastEnd() {
+        return occurrence(Math.max(occurrenceCount() - 1, 0)).getEndDate();
+    }
+
+    // Occurrences overlapping [from, to), in start order
+    public List<ItemPeriod> occurrences(LocalDateTime from, LocalDateTime to) {
+        int index = 0;
+        if (from.isAfter(endDate)) {
+            index = (int) Math.min(Duration.between(endDate, from).toSeconds() / step().toSeconds() + 1,
+                    Integer.MAX_VALUE);
+        }
+
+        List<ItemPeriod> occurrences = new ArrayList<>();
+        for (int last = occurrenceCount(); index < last; index++) {
+            ItemPeriod occurrence = occurrence(index);
+            if (!occurrence.getStartDate().isBefore(to)) {
+                break;
+            }
+            if (occurrence.getEndDate().isAfter(from)) {
+                occurrences.add(occurrence);
+            }
+        }
+        return occurrences;
+    }
+
+    // The last limit occurrences overlapping [from, to) that pass the filter, in start order. They are expanded
+    // backwards from the end of the window, so the occurrences before them are never computed.
+    public List<ItemPeriod> lastOccurrences(LocalDateTime from, LocalDateTime to, int limit,
+                                            Predicate<ItemPeriod> filter) {
+        List<ItemPeriod> occurrences = new ArrayList<>();
+        for (int index = countBefore(startDate, to) - 1; index >= 0 && occurrences.size() < limit; index--) {
+            ItemPeriod occurrence = occurrence(index);
+            if (!occurrence.getEndDate().isAfter(from)) {
+                break;
+            }
+            if (filter.test(occurrence)) {
+                occurrences.add(occurrence);
+            }
+        }
+        Collections.reverse(occurrences);
+        return occurrences;
+    }
+
+    public int countEndedBefore(LocalDateTime now) {
+        return countBefore(endDate, now);
+    }
+
+    public int countStartingAfter(LocalDateTime now) {
+        return occurrenceCount() - countBefore(startDate, now.plusNanos(1));
+    }
+
+    // The first start after now, with the bounds of BookingRepository.findNextStart
+    public Optional<LocalDateTime> nextStart(LocalDateTime now) {
+        int index = countBefore(startDate, now.plusNanos(1));
+        return index < occurrenceCount() ? Optional.of(occurrence(index).getStartDate()) : Optional.empty();
+    }
+
+    // The first end not before now, with the bounds of BookingRepository.findNextEnd
+    public Optional<LocalDateTime> nextEnd(LocalDateTime now) {
+        int index = countBefore(endDate, now);
+        return index < occurrenceCount() ? Optional.of(occurrence(index).getEndDate()) : Optional.empty();
+    }
+
+    public boolean overlaps(ItemPeriod period) {
+        return !occurrences(period.getStartDate(), period.getEndDate()).isEmpty();
+    }
+
+    // Occurrences whose date, first at the given one and moving a step each time, is before the bound
+    private int countBefore(LocalDateTime first, LocalDateTime bound) {
+        if (!bound.isAfter(first)) {
+            return 0;
+        }
+
+        Duration span = Duration.between(first, bound);
+        long step = step().toSeconds();
+        long steps = span.toSeconds() / step + (span.toSeconds() % step != 0 || span.getNano() > 0 ? 1 : 0);
+        return (int) Math.min(steps, occurrenceCount());
+    }
+
+    private Duration step() {
+        return Duration.ofDays((long) frequency.getDays() * interval);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.shareit.util.exception.UnsupportedSortException;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sort key of a booking listing. Every listing is ordered by the key descending, ties broken by id.
+ */
+@AllArgsConstructor
+public enum BookingSort {
+
+    START("startDate", "start_date"),
+    END("endDate", "end_date"),
+    CREATED("created", "created");
+
+    @Getter
+    private final String property;
+
+    @Getter
+    private final String column;
+
+    public static BookingSort from(String sort) {
+        try {
+            return valueOf(sort);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedSortException(sort);
+        }
+    }
+
+    public LocalDateTime key(Booking booking) {
+        switch (this) {
+            case START:
+                return booking.getStartDate();
+            case END:
+                return booking.getEndDate();
+            case CREATED:
+                return booking.getCreated();
+            default:
+                throw new IllegalArgumentException("Unknown sort " + this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.shareit.util.exception.UnsupportedStateException;
+
+import java.time.LocalDateTime;
+
+@AllArgsConstructor
+public enum BookingState {
+
+    ALL(null),
+    CURRENT(null),
+    PAST(null),
+    FUTURE(null),
+    WAITING(BookingStatus.WAITING),
+    REJECTED(BookingStatus.REJECTED);
+
+    @Getter
+    private final BookingStatus status;
+
+    public static BookingState from(String state) {
+        try {
+            return valueOf(state);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedStateException(state);
+        }
+    }
+
+    // Whether a period is in the state by time, with the bounds the booking listings use
+    public boolean includes(LocalDateTime startDate, LocalDateTime endDate, LocalDateTime now) {
+        switch (this) {
+            case CURRENT:
+                return !startDate.isAfter(now) && !endDate.isBefore(now);
+            case PAST:
+                return endDate.isBefore(now);
+            case FUTURE:
+                return startDate.isAfter(now);
+            default:
+                return true;
+        }
+    }
+}
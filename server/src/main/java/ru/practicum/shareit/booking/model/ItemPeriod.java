@@ -0,0 +1,23 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class ItemPeriod {
+
+    private final int itemId;
+
+    private final LocalDateTime startDate;
+
+    private final LocalDateTime endDate;
+
+    public boolean overlaps(Booking booking) {
+        return startDate.isBefore(booking.getEndDate()) && endDate.isAfter(booking.getStartDate());
+    }
+}
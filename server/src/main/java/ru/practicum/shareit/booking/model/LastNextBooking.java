@@ -0,0 +1,17 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class LastNextBooking {
+
+    private final int itemId;
+
+    private final BookingPeriod last;
+
+    private final BookingPeriod next;
+}
@@ -1,46 +1,103 @@
 package ru.practicum.shareit.booking.repository;
 
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingPeriod;
+import ru.practicum.shareit.booking.model.BookingPhase;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.model.ItemPeriod;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 
 @Repository
-public interface BookingRepository extends JpaRepository<Booking, Integer> {
+public interface BookingRepository extends JpaRepository<Booking, Integer>, BookingRepositoryCustom {
 
-    @Query("SELECT b FROM Booking b WHERE b.booker.id = :bookerId")
-    List<Booking> getBookingByBooker(@Param("bookerId") int bookerId, Pageable pageable);
+    @Query("SELECT new ru.practicum.shareit.booking.model.BookingPeriod(b.id, b.booker.id, b.startDate, b.endDate)" +
+            " FROM Booking b WHERE b.item.id = :itemId")
+    List<BookingPeriod> getPeriodsByItem(@Param("itemId") int itemId);
 
-    @Query("SELECT b FROM Booking b WHERE b.booker.id = :bookerId AND b.status = :status")
-    List<Booking> getBookingByBookerAndStatus(@Param("bookerId") int bookerId, @Param("status") BookingStatus status, Pageable pageable);
+    @Query("SELECT new ru.practicum.shareit.booking.model.ItemPeriod(b.item.id, b.startDate, b.endDate)" +
+            " FROM Booking b WHERE b.item.id IN :itemIds AND b.startDate < :endDate AND b.endDate > :startDate" +
+            " AND b.status IN (ru.practicum.shareit.booking.model.BookingStatus.WAITING," +
+            " ru.practicum.shareit.booking.model.BookingStatus.APPROVED)")
+    List<ItemPeriod> findBlockingPeriods(@Param("itemIds") Collection<Integer> itemIds,
+                                         @Param("startDate") LocalDateTime startDate,
+                                         @Param("endDate") LocalDateTime endDate);
 
-    @Query("SELECT b FROM Booking b WHERE b.booker.id = :bookerId AND b.endDate < NOW()")
-    List<Booking> getPastBookingByBooker(@Param("bookerId") int bookerId, Pageable pageable);
+    // Read through ix_bookings_item_period, so the periods come in start order
+    @Query("SELECT new ru.practicum.shareit.booking.model.ItemPeriod(b.item.id, b.startDate, b.endDate)" +
+            " FROM Booking b WHERE b.item.id = :itemId AND b.startDate < :endDate AND b.endDate > :startDate" +
+            " AND b.status IN (ru.practicum.shareit.booking.model.BookingStatus.WAITING," +
+            " ru.practicum.shareit.booking.model.BookingStatus.APPROVED) ORDER BY b.startDate")
+    List<ItemPeriod> findBlockingPeriodsByItem(@Param("itemId") int itemId,
+                                               @Param("startDate") LocalDateTime startDate,
+                                               @Param("endDate") LocalDateTime endDate);
 
-    @Query("SELECT b FROM Booking b WHERE b.booker.id = :bookerId AND b.startDate <= NOW() AND b.endDate >= NOW()")
-    List<Booking> getCurrentBookingByBooker(@Param("bookerId") int bookerId, Pageable pageable);
+    @Query("SELECT DISTINCT b.item.id FROM Booking b WHERE b.id IN :ids")
+    List<Integer> findItemIds(@Param("ids") Collection<Integer> ids);
 
-    @Query("SELECT b FROM Booking b WHERE b.booker.id = :bookerId AND b.startDate > NOW()")
-    List<Booking> getFutureBookingByBooker(@Param("bookerId") int bookerId, Pageable pageable);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Booking b SET b.status = :status" +
+            " WHERE b.id = :id AND b.owner.id = :ownerId AND b.status = ru.practicum.shareit.booking.model.BookingStatus.WAITING")
+    int decideWaiting(@Param("id") int id, @Param("ownerId") int ownerId, @Param("status") BookingStatus status);
 
-    @Query("SELECT b FROM Booking b WHERE b.item.owner.id = :ownerId")
-    List<Booking> getBookingByOwner(@Param("ownerId") int ownerId, Pageable pageable);
+    @Query("SELECT b.owner.id FROM Booking b WHERE b.id = :id")
+    Optional<Integer> findOwnerIdById(@Param("id") int id);
 
-    @Query("SELECT b FROM Booking b WHERE b.item.owner.id = :ownerId AND b.status = :status")
-    List<Booking> getBookingByOwnerAndStatus(@Param("ownerId") int ownerId, @Param("status") BookingStatus status, Pageable pageable);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b.id FROM Booking b" +
+            " WHERE b.item.id = :itemId AND b.id <> :id AND b.status = ru.practicum.shareit.booking.model.BookingStatus.WAITING" +
+            " AND b.startDate < :endDate AND b.endDate > :startDate")
+    List<Integer> lockOverlappingWaiting(@Param("id") int id,
+                                         @Param("itemId") int itemId,
+                                         @Param("startDate") LocalDateTime startDate,
+                                         @Param("endDate") LocalDateTime endDate);
 
-    @Query("SELECT b FROM Booking b WHERE b.item.owner.id = :ownerId AND b.endDate < NOW()")
-    List<Booking> getPastBookingByOwner(@Param("ownerId") int ownerId, Pageable pageable);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Booking b SET b.status = ru.practicum.shareit.booking.model.BookingStatus.REJECTED" +
+            " WHERE b.id IN :ids AND b.status = ru.practicum.shareit.booking.model.BookingStatus.WAITING")
+    int rejectWaiting(@Param("ids") Collection<Integer> ids);
 
-    @Query("SELECT b FROM Booking b WHERE b.item.owner.id = :ownerId AND b.startDate <= NOW() AND b.endDate >= NOW()")
-    List<Booking> getCurrentBookingByOwner(@Param("ownerId") int ownerId, Pageable pageable);
+    @Query("SELECT new ru.practicum.shareit.booking.model.BookingPeriod(b.id, b.booker.id, b.startDate, b.endDate)" +
+            " FROM Booking b WHERE b.status = ru.practicum.shareit.booking.model.BookingStatus.WAITING AND b.startDate < :before")
+    List<BookingPeriod> findWaitingStartingBefore(@Param("before") LocalDateTime before);
 
-    @Query("SELECT b FROM Booking b WHERE b.item.owner.id = :ownerId AND b.startDate > NOW()")
-    List<Booking> getFutureBookingByOwner(@Param("ownerId") int ownerId, Pageable pageable);
-}
\ No newline at end of file
+    @Query("SELECT new ru.practicum.shareit.booking.model.BookingPeriod(b.id, b.booker.id, b.startDate, b.endDate)" +
+            " FROM Booking b WHERE b.status IN (ru.practicum.shareit.booking.model.BookingStatus.WAITING, ru.practicum.shareit.booking.model.BookingStatus.APPROVED)" +
+            " AND b.startDate >= :from AND b.startDate < :to AND b.phase IS NULL")
+    List<BookingPeriod> findStartingBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT new ru.practicum.shareit.booking.model.BookingPeriod(b.id, b.booker.id, b.startDate, b.endDate)" +
+            " FROM Booking b WHERE b.status IN (ru.practicum.shareit.booking.model.BookingStatus.WAITING, ru.practicum.shareit.booking.model.BookingStatus.APPROVED)" +
+            " AND b.endDate >= :from AND b.endDate < :to" +
+            " AND (b.phase IS NULL OR b.phase <> ru.practicum.shareit.booking.model.BookingPhase.ENDED)")
+    List<BookingPeriod> findEndingBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b.id FROM Booking b WHERE b.id IN :ids AND b.status = ru.practicum.shareit.booking.model.BookingStatus.WAITING AND b.startDate <= :now")
+    List<Integer> lockWaitingStarted(@Param("ids") Collection<Integer> ids, @Param("now") LocalDateTime now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b.id FROM Booking b WHERE b.id IN :ids AND b.status = ru.practicum.shareit.booking.model.BookingStatus.APPROVED AND b.startDate <= :now" +
+            " AND b.phase IS NULL")
+    List<Integer> lockApprovedStarted(@Param("ids") Collection<Integer> ids, @Param("now") LocalDateTime now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b.id FROM Booking b WHERE b.id IN :ids AND b.status = ru.practicum.shareit.booking.model.BookingStatus.APPROVED AND b.endDate <= :now" +
+            " AND (b.phase IS NULL OR b.phase = ru.practicum.shareit.booking.model.BookingPhase.STARTED)")
+    List<Integer> lockApprovedEnded(@Param("ids") Collection<Integer> ids, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Booking b SET b.phase = :phase WHERE b.id IN :ids")
+    int updatePhase(@Param("ids") Collection<Integer> ids, @Param("phase") BookingPhase phase);
+}
@@ -0,0 +1,66 @@
+package ru.practicum.shareit.booking.repository;
+
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingExportRow;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.model.LastNextBooking;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public interface BookingRepositoryCustom {
+
+    List<Booking> findBookings(BookingQuery query);
+
+    List<Booking> findArchivedBookings(BookingQuery query);
+
+    Optional<Booking> findArchivedById(int id);
+
+    BookingSummary countArchivedByState(BookingRole role, int userId, LocalDateTime now);
+
+    Optional<LocalDateTime> findArchiveWatermark();
+
+    List<Integer> findArchivable(LocalDateTime before, LocalDateTime now, int limit);
+
+    int archive(Collection<Integer> ids);
+
+    int deleteArchivedByItem(int itemId);
+
+    Set<Integer> findBookerIdsByItem(int itemId);
+
+    void streamByOwner(int ownerId, int fetchSize, Consumer<BookingExportRow> consumer);
+
+    Map<Integer, LastNextBooking> findLastAndNextByOwner(int ownerId, LocalDateTime now);
+
+    Optional<Booking> insertWaiting(int itemId, int bookerId, LocalDateTime startDate, LocalDateTime endDate);
+
+    BookingSummary countByState(BookingRole role, int userId, LocalDateTime now);
+
+    BookingSummary countUnfinishedByState(BookingRole role, int userId, LocalDateTime now);
+
+    Map<Integer, Long> countByUser(BookingRole role, Collection<Integer> ids);
+
+    Map<Integer, Map<BookingStatus, Long>> countByItem(BookingRole role, int itemId);
+
+    Optional<LocalDateTime> findNextStart(BookingRole role, int userId, LocalDateTime now);
+
+    Optional<LocalDateTime> findNextEnd(BookingRole role, int userId, LocalDateTime now);
+
+    Map<BookingStatus, Long> findCounters(BookingRole role, int userId);
+
+    void addToCounter(BookingRole role, int userId, BookingStatus status, long delta);
+
+    boolean hasCounters();
+
+    void rebuildCounters();
+
+    void clearCounters();
+}
@@ -0,0 +1,650 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingExportRow;
+import ru.practicum.shareit.booking.model.BookingPeriod;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.model.LastNextBooking;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.util.exception.InvalidCursorException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Builds every booking listing from the same template: the role column, an optional state predicate, optional
+ * item and time window predicates, an optional keyset seek and {@code ORDER BY <sort key> DESC, id DESC}.
+ * The statement text depends only on which of them are present, so each combination is compiled once and
+ * reused by Hibernate's plan cache.
+ */
+public class BookingRepositoryImpl implements BookingRepositoryCustom {
+
+    private static final Map<String, String> JPQL_CACHE = new ConcurrentHashMap<>();
+
+    // Flat rows of the owner's live and archived bookings in the order of the default owner listing, read through
+    // the owner's start date indexes
+    private static final String EXPORT_BY_OWNER_SQL = "SELECT b.id, b.item_id, i.name, b.booker_id, b.start_date, " +
+            "b.end_date, b.status, b.created FROM (" +
+            "SELECT id, item_id, booker_id, start_date, end_date, status, created FROM bookings " +
+            "WHERE owner_id = :ownerId " +
+            "UNION ALL " +
+            "SELECT id, item_id, booker_id, start_date, end_date, status, created FROM bookings_archive " +
+            "WHERE owner_id = :ownerId" +
+            ") b JOIN items i ON i.id = b.item_id ORDER BY b.start_date DESC, b.id DESC";
+
+    private static final String BOOKING_COLUMNS = "id, start_date, end_date, item_id, booker_id, status, owner_id, " +
+            "phase, created";
+
+    private static final String ARCHIVE_SQL = "INSERT INTO bookings_archive (" + BOOKING_COLUMNS + ") " +
+            "SELECT " + BOOKING_COLUMNS + " FROM bookings WHERE id IN (:ids)";
+
+    private static final String CREATE_ARCHIVE_PARTITION_SQL = "CREATE TABLE IF NOT EXISTS " +
+            "bookings_archive_p%d%02d PARTITION OF bookings_archive FOR VALUES FROM ('%s') TO ('%s')";
+
+    // One pass over the owner's bookings: the latest finished and the earliest upcoming booking of every item.
+    private static final String LAST_AND_NEXT_BY_OWNER_SQL = "SELECT item_id, is_next, id, booker_id, start_date, end_date " +
+            "FROM (" +
+            "SELECT b.item_id, FALSE AS is_next, b.id, b.booker_id, b.start_date, b.end_date, " +
+            "ROW_NUMBER() OVER (PARTITION BY b.item_id ORDER BY b.end_date DESC, b.id DESC) AS rn " +
+            "FROM bookings b WHERE b.owner_id = :ownerId AND b.end_date < :now " +
+            "UNION ALL " +
+            "SELECT b.item_id, TRUE AS is_next, b.id, b.booker_id, b.start_date, b.end_date, " +
+            "ROW_NUMBER() OVER (PARTITION BY b.item_id ORDER BY b.start_date, b.id) AS rn " +
+            "FROM bookings b WHERE b.owner_id = :ownerId AND b.start_date > :now" +
+            ") ranked WHERE rn = 1";
+
+    // Inserts the booking only if the item exists and is available, the booker exists and is not the owner, and
+    // no pending or approved booking of the item overlaps the period.
+    private static final String INSERT_WAITING_SQL = "INSERT INTO bookings (id, start_date, end_date, item_id, booker_id, " +
+            "owner_id, status, created) " +
+            "SELECT :id, :startDate, :endDate, i.id, u.id, i.owner_id, 'WAITING', :created " +
+            "FROM items i JOIN users u ON u.id = :bookerId " +
+            "WHERE i.id = :itemId AND i.available = TRUE AND i.owner_id <> u.id " +
+            "AND NOT EXISTS (SELECT 1 FROM bookings o WHERE o.item_id = i.id AND o.status IN ('WAITING', 'APPROVED') " +
+            "AND o.start_date < :endDate AND o.end_date > :startDate)";
+
+    private static final String INSERTED_COLUMNS = "SELECT b.id, i.id AS item_id, i.name AS item_name, i.description, " +
+            "i.available, i.owner_id, u.id AS booker_id, u.name AS booker_name, u.email ";
+
+    private static final String INSERTED_JOINS = " JOIN items i ON i.id = b.item_id JOIN users u ON u.id = b.booker_id";
+
+    // PostgreSQL reads the inserted row back through a data-modifying CTE, H2 through a delta table.
+    private static final String INSERT_WAITING_POSTGRESQL = "WITH b AS (" + INSERT_WAITING_SQL +
+            " RETURNING id, item_id, booker_id) " + INSERTED_COLUMNS + "FROM b" + INSERTED_JOINS;
+
+    private static final String INSERT_WAITING_H2 = INSERTED_COLUMNS + "FROM FINAL TABLE (" + INSERT_WAITING_SQL + ") b" +
+            INSERTED_JOINS;
+
+    private static final String STATUS = "ru.practicum.shareit.booking.model.BookingStatus.";
+
+    private static final String ALL_BOOKINGS_SQL = "SELECT booker_id, owner_id, status FROM bookings " +
+            "UNION ALL SELECT booker_id, owner_id, status FROM bookings_archive";
+
+    // Every state counted in one pass over the user's bookings
+    private static final String COUNT_BY_STATE_JPQL = "SELECT COUNT(b)," +
+            " COALESCE(SUM(CASE WHEN b.startDate <= :now AND b.endDate >= :now THEN 1 ELSE 0 END), 0)," +
+            " COALESCE(SUM(CASE WHEN b.endDate < :now THEN 1 ELSE 0 END), 0)," +
+            " COALESCE(SUM(CASE WHEN b.startDate > :now THEN 1 ELSE 0 END), 0)," +
+            " COALESCE(SUM(CASE WHEN b.status = " + STATUS + "WAITING THEN 1 ELSE 0 END), 0)," +
+            " COALESCE(SUM(CASE WHEN b.status = " + STATUS + "REJECTED THEN 1 ELSE 0 END), 0)" +
+            " FROM Booking b WHERE ";
+
+    private static final String UPSERT_COUNTER_POSTGRESQL = "INSERT INTO booking_counters (user_id, role, status, " +
+            "bookings) VALUES (:userId, :role, :status, :delta) ON CONFLICT (user_id, role, status) " +
+            "DO UPDATE SET bookings = booking_counters.bookings + EXCLUDED.bookings";
+
+    private static final String UPSERT_COUNTER_H2 = "MERGE INTO booking_counters c USING (VALUES (CAST(:userId AS INT), " +
+            "CAST(:role AS VARCHAR(16)), CAST(:status AS VARCHAR(16)), CAST(:delta AS BIGINT))) " +
+            "v (user_id, role, status, bookings) ON c.user_id = v.user_id AND c.role = v.role AND c.status = v.status " +
+            "WHEN MATCHED THEN UPDATE SET bookings = c.bookings + v.bookings " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, role, status, bookings) " +
+            "VALUES (v.user_id, v.role, v.status, v.bookings)";
+
+    // Counters cover archived bookings too: archiving moves a booking without changing its status
+    private static final String REBUILD_COUNTERS_SQL = "INSERT INTO booking_counters (user_id, role, status, bookings) " +
+            "SELECT booker_id, 'BOOKER', status, COUNT(*) FROM (" + ALL_BOOKINGS_SQL + ") b GROUP BY booker_id, status " +
+            "UNION ALL " +
+            "SELECT owner_id, 'OWNER', status, COUNT(*) FROM (" + ALL_BOOKINGS_SQL + ") b GROUP BY owner_id, status";
+
+    // Hot and archived bookings of one item by user and status
+    private static final String COUNT_BY_ITEM_SQL = "SELECT %1$s, status, COUNT(*) FROM (" +
+            "SELECT booker_id, owner_id, status FROM bookings WHERE item_id = :itemId " +
+            "UNION ALL SELECT booker_id, owner_id, status FROM bookings_archive WHERE item_id = :itemId) b " +
+            "GROUP BY %1$s, status";
+
+    private static final String COUNT_ARCHIVED_BY_STATE_SQL = "SELECT COUNT(*)," +
+            " COALESCE(SUM(CASE WHEN b.start_date <= :now AND b.end_date >= :now THEN 1 ELSE 0 END), 0)," +
+            " COALESCE(SUM(CASE WHEN b.end_date < :now THEN 1 ELSE 0 END), 0)," +
+            " COALESCE(SUM(CASE WHEN b.start_date > :now THEN 1 ELSE 0 END), 0)," +
+            " COALESCE(SUM(CASE WHEN b.status = 'WAITING' THEN 1 ELSE 0 END), 0)," +
+            " COALESCE(SUM(CASE WHEN b.status = 'REJECTED' THEN 1 ELSE 0 END), 0)" +
+            " FROM bookings_archive b WHERE ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Boolean h2;
+
+    @Override
+    public List<Booking> findBookings(BookingQuery query) {
+        BookingCursor cursor = query.getCursor();
+        if (cursor != null && cursor.getSort() != query.getSort()) {
+            throw new InvalidCursorException("Cursor " + cursor + " does not match sort " + query.getSort());
+        }
+
+        String jpql = jpql(query);
+        TypedQuery<Booking> typedQuery = entityManager.createQuery(jpql, Booking.class);
+        bind(typedQuery, jpql, query, query.getState().getStatus());
+
+        return typedQuery
+                .setFirstResult(cursor != null ? 0 : query.getFrom())
+                .setMaxResults(query.getSize())
+                .getResultList();
+    }
+
+    // Archived rows have the columns of bookings, so they map onto the entity; read-only, as they have no row to
+    // flush changes to
+    @Override
+    public List<Booking> findArchivedBookings(BookingQuery query) {
+        BookingCursor cursor = query.getCursor();
+        if (cursor != null && cursor.getSort() != query.getSort()) {
+            throw new InvalidCursorException("Cursor " + cursor + " does not match sort " + query.getSort());
+        }
+
+        String sql = archiveSql(query);
+        Query nativeQuery = entityManager.createNativeQuery(sql, Booking.class)
+                .setHint(QueryHints.HINT_READONLY, true);
+        BookingStatus status = query.getState().getStatus();
+        bind(nativeQuery, sql, query, status == null ? null : status.name());
+
+        @SuppressWarnings("unchecked")
+        List<Booking> bookings = nativeQuery
+                .setFirstResult(cursor != null ? 0 : query.getFrom())
+                .setMaxResults(query.getSize())
+                .getResultList();
+        return bookings;
+    }
+
+    @Override
+    public Optional<Booking> findArchivedById(int id) {
+        @SuppressWarnings("unchecked")
+        List<Booking> bookings = entityManager.createNativeQuery("SELECT b.* FROM bookings_archive b WHERE b.id = :id",
+                        Booking.class)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setParameter("id", id)
+                .getResultList();
+        return bookings.stream().findFirst();
+    }
+
+    @Override
+    public BookingSummary countArchivedByState(BookingRole role, int userId, LocalDateTime now) {
+        Object[] row = (Object[]) entityManager.createNativeQuery(COUNT_ARCHIVED_BY_STATE_SQL +
+                        (role == BookingRole.BOOKER ? "b.booker_id" : "b.owner_id") + " = :userId")
+                .setParameter("userId", userId)
+                .setParameter("now", now)
+                .getSingleResult();
+        return summary(row);
+    }
+
+    // The latest end or creation date in the archive: every archived booking started, ended and was created before it
+    @Override
+    public Optional<LocalDateTime> findArchiveWatermark() {
+        Object[] row = (Object[]) entityManager.createNativeQuery("SELECT " +
+                        "(SELECT MAX(end_date) FROM bookings_archive), (SELECT MAX(created) FROM bookings_archive)")
+                .getSingleResult();
+        if (row[0] == null) {
+            return Optional.empty();
+        }
+        LocalDateTime end = ((Timestamp) row[0]).toLocalDateTime();
+        LocalDateTime created = ((Timestamp) row[1]).toLocalDateTime();
+        return Optional.of(end.isAfter(created) ? end : created);
+    }
+
+    // An item's latest ended booking is its last booking and a booker's latest approved one lets them comment
+    @Override
+    public List<Integer> findArchivable(LocalDateTime before, LocalDateTime now, int limit) {
+        return entityManager.createQuery("SELECT b.id FROM Booking b WHERE b.endDate < :before AND b.created < :before" +
+                        " AND EXISTS (SELECT o.id FROM Booking o" +
+                        " WHERE o.item = b.item AND o.endDate > b.endDate AND o.endDate < :now)" +
+                        " AND (b.status <> ru.practicum.shareit.booking.model.BookingStatus.APPROVED" +
+                        " OR EXISTS (SELECT o.id FROM Booking o WHERE o.item = b.item AND o.booker = b.booker" +
+                        " AND o.status = ru.practicum.shareit.booking.model.BookingStatus.APPROVED" +
+                        " AND o.endDate > b.endDate AND o.endDate < :now))" +
+                        " ORDER BY b.endDate", Integer.class)
+                .setParameter("before", before)
+                .setParameter("now", now)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // PostgreSQL routes each row to the partition of its end month, which has to exist first
+    @Transactional
+    @Override
+    public int archive(Collection<Integer> ids) {
+        if (!h2()) {
+            Object[] range = (Object[]) entityManager.createNativeQuery("SELECT MIN(end_date), MAX(end_date) " +
+                            "FROM bookings WHERE id IN (:ids)")
+                    .setParameter("ids", ids)
+                    .getSingleResult();
+            if (range[0] != null) {
+                YearMonth last = YearMonth.from(((Timestamp) range[1]).toLocalDateTime());
+                for (YearMonth month = YearMonth.from(((Timestamp) range[0]).toLocalDateTime());
+                     !month.isAfter(last); month = month.plusMonths(1)) {
+                    entityManager.createNativeQuery(String.format(CREATE_ARCHIVE_PARTITION_SQL,
+                            month.getYear(), month.getMonthValue(), month.atDay(1), month.plusMonths(1).atDay(1)))
+                            .executeUpdate();
+                }
+            }
+        }
+
+        int archived = entityManager.createNativeQuery(ARCHIVE_SQL)
+                .setParameter("ids", ids)
+                .executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM bookings WHERE id IN (:ids)")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        return archived;
+    }
+
+    // The archive is not mapped by Item, so its rows do not follow the item the way hot bookings do
+    @Transactional
+    @Override
+    public int deleteArchivedByItem(int itemId) {
+        return entityManager.createNativeQuery("DELETE FROM bookings_archive WHERE item_id = :itemId")
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+    }
+
+    // Hot and archived bookings alike
+    @Override
+    public Set<Integer> findBookerIdsByItem(int itemId) {
+        @SuppressWarnings("unchecked")
+        List<Number> rows = entityManager.createNativeQuery("SELECT booker_id FROM bookings WHERE item_id = :itemId " +
+                        "UNION SELECT booker_id FROM bookings_archive WHERE item_id = :itemId")
+                .setParameter("itemId", itemId)
+                .getResultList();
+
+        return rows.stream().map(Number::intValue).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    // Scalar rows never enter the persistence context and the forward-only cursor fetches fetchSize rows at a time,
+    // so memory does not grow with the number of bookings. PostgreSQL only honours the fetch size inside a transaction.
+    @Transactional(readOnly = true)
+    @Override
+    public void streamByOwner(int ownerId, int fetchSize, Consumer<BookingExportRow> consumer) {
+        try (ScrollableResults rows = entityManager.createNativeQuery(EXPORT_BY_OWNER_SQL)
+                .setParameter("ownerId", ownerId)
+                .unwrap(NativeQuery.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rows.next()) {
+                Object[] row = rows.get();
+                consumer.accept(new BookingExportRow(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+                        (String) row[2], ((Number) row[3]).intValue(), ((Timestamp) row[4]).toLocalDateTime(),
+                        ((Timestamp) row[5]).toLocalDateTime(), BookingStatus.valueOf((String) row[6]),
+                        ((Timestamp) row[7]).toLocalDateTime()));
+            }
+        }
+    }
+
+    @Override
+    public Map<Integer, LastNextBooking> findLastAndNextByOwner(int ownerId, LocalDateTime now) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(LAST_AND_NEXT_BY_OWNER_SQL)
+                .setParameter("ownerId", ownerId)
+                .setParameter("now", now)
+                .getResultList();
+
+        Map<Integer, LastNextBooking> bookings = new HashMap<>();
+        for (Object[] row : rows) {
+            int itemId = ((Number) row[0]).intValue();
+            boolean next = (Boolean) row[1];
+            BookingPeriod period = new BookingPeriod(((Number) row[2]).intValue(), ((Number) row[3]).intValue(),
+                    ((Timestamp) row[4]).toLocalDateTime(), ((Timestamp) row[5]).toLocalDateTime());
+
+            LastNextBooking current = bookings.get(itemId);
+            bookings.put(itemId, next ?
+                    new LastNextBooking(itemId, current == null ? null : current.getLast(), period) :
+                    new LastNextBooking(itemId, period, current == null ? null : current.getNext()));
+        }
+        return bookings;
+    }
+
+    @Transactional
+    @Override
+    public Optional<Booking> insertWaiting(int itemId, int bookerId, LocalDateTime startDate, LocalDateTime endDate) {
+        LocalDateTime created = Booking.now();
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(insertWaitingSql())
+                .setParameter("id", nextId())
+                .setParameter("itemId", itemId)
+                .setParameter("bookerId", bookerId)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .setParameter("created", created)
+                .getResultList();
+
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Object[] row = rows.get(0);
+        User owner = new User();
+        owner.setId(((Number) row[5]).intValue());
+
+        return Optional.of(Booking.builder()
+                .id(((Number) row[0]).intValue())
+                .startDate(startDate)
+                .endDate(endDate)
+                .status(BookingStatus.WAITING)
+                .created(created)
+                .item(Item.builder()
+                        .id(((Number) row[1]).intValue())
+                        .name((String) row[2])
+                        .description((String) row[3])
+                        .available((Boolean) row[4])
+                        .owner(owner)
+                        .build())
+                .booker(User.builder()
+                        .id(((Number) row[6]).intValue())
+                        .name((String) row[7])
+                        .email((String) row[8])
+                        .build())
+                .build());
+    }
+
+    // Takes the id from the same pooled generator as Hibernate inserts, usually without a database call.
+    private int nextId() {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        return ((Number) session.getFactory().getIdentifierGenerator(Booking.class.getName())
+                .generate(session, null)).intValue();
+    }
+
+    @Override
+    public BookingSummary countByState(BookingRole role, int userId, LocalDateTime now) {
+        return countByState(COUNT_BY_STATE_JPQL + userPredicate(role), userId, now);
+    }
+
+    // Only bookings that have not ended yet: the index range stays small however long the user's history is
+    @Override
+    public BookingSummary countUnfinishedByState(BookingRole role, int userId, LocalDateTime now) {
+        return countByState(COUNT_BY_STATE_JPQL + userPredicate(role) + " AND b.endDate >= :now", userId, now);
+    }
+
+    @Override
+    public Map<Integer, Long> countByUser(BookingRole role, Collection<Integer> ids) {
+        String user = role == BookingRole.BOOKER ? "b.booker.id" : "b.owner.id";
+        List<Object[]> rows = entityManager.createQuery("SELECT " + user + ", COUNT(b) FROM Booking b" +
+                        " WHERE b.id IN :ids GROUP BY " + user, Object[].class)
+                .setParameter("ids", ids)
+                .getResultList();
+
+        Map<Integer, Long> counts = new TreeMap<>();
+        rows.forEach(row -> counts.put(((Number) row[0]).intValue(), ((Number) row[1]).longValue()));
+        return counts;
+    }
+
+    @Override
+    public Map<Integer, Map<BookingStatus, Long>> countByItem(BookingRole role, int itemId) {
+        String user = role == BookingRole.BOOKER ? "booker_id" : "owner_id";
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(String.format(COUNT_BY_ITEM_SQL, user))
+                .setParameter("itemId", itemId)
+                .getResultList();
+
+        Map<Integer, Map<BookingStatus, Long>> counts = new TreeMap<>();
+        rows.forEach(row -> counts.computeIfAbsent(((Number) row[0]).intValue(),
+                        userId -> new EnumMap<>(BookingStatus.class))
+                .put(BookingStatus.valueOf((String) row[1]), ((Number) row[2]).longValue()));
+        return counts;
+    }
+
+    @Override
+    public Optional<LocalDateTime> findNextStart(BookingRole role, int userId, LocalDateTime now) {
+        return findFirstAfter(role, userId, now, "b.startDate", ">");
+    }
+
+    @Override
+    public Optional<LocalDateTime> findNextEnd(BookingRole role, int userId, LocalDateTime now) {
+        return findFirstAfter(role, userId, now, "b.endDate", ">=");
+    }
+
+    @Override
+    public Map<BookingStatus, Long> findCounters(BookingRole role, int userId) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery("SELECT status, bookings FROM booking_counters " +
+                        "WHERE user_id = :userId AND role = :role")
+                .setParameter("userId", userId)
+                .setParameter("role", role.name())
+                .getResultList();
+
+        Map<BookingStatus, Long> counters = new EnumMap<>(BookingStatus.class);
+        rows.forEach(row -> counters.put(BookingStatus.valueOf((String) row[0]), ((Number) row[1]).longValue()));
+        return counters;
+    }
+
+    @Transactional
+    @Override
+    public void addToCounter(BookingRole role, int userId, BookingStatus status, long delta) {
+        entityManager.createNativeQuery(h2() ? UPSERT_COUNTER_H2 : UPSERT_COUNTER_POSTGRESQL)
+                .setParameter("userId", userId)
+                .setParameter("role", role.name())
+                .setParameter("status", status.name())
+                .setParameter("delta", delta)
+                .executeUpdate();
+    }
+
+    @Override
+    public boolean hasCounters() {
+        return !entityManager.createNativeQuery("SELECT 1 FROM booking_counters")
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+    }
+
+    @Transactional
+    @Override
+    public void rebuildCounters() {
+        entityManager.createNativeQuery(REBUILD_COUNTERS_SQL).executeUpdate();
+    }
+
+    @Transactional
+    @Override
+    public void clearCounters() {
+        entityManager.createNativeQuery("DELETE FROM booking_counters").executeUpdate();
+    }
+
+    private Optional<LocalDateTime> findFirstAfter(BookingRole role, int userId, LocalDateTime now, String date,
+                                                   String comparison) {
+        return Optional.ofNullable(entityManager.createQuery("SELECT MIN(" + date + ") FROM Booking b WHERE " +
+                        userPredicate(role) + " AND " + date + " " + comparison + " :now", LocalDateTime.class)
+                .setParameter("userId", userId)
+                .setParameter("now", now)
+                .getSingleResult());
+    }
+
+    private BookingSummary countByState(String jpql, int userId, LocalDateTime now) {
+        return summary(entityManager.createQuery(jpql, Object[].class)
+                .setParameter("userId", userId)
+                .setParameter("now", now)
+                .getSingleResult());
+    }
+
+    private static BookingSummary summary(Object[] row) {
+        return BookingSummary.builder()
+                .all(((Number) row[0]).longValue())
+                .current(((Number) row[1]).longValue())
+                .past(((Number) row[2]).longValue())
+                .future(((Number) row[3]).longValue())
+                .waiting(((Number) row[4]).longValue())
+                .rejected(((Number) row[5]).longValue())
+                .build();
+    }
+
+    private String insertWaitingSql() {
+        return h2() ? INSERT_WAITING_H2 : INSERT_WAITING_POSTGRESQL;
+    }
+
+    private boolean h2() {
+        if (h2 == null) {
+            Dialect dialect = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices().getDialect();
+            h2 = dialect instanceof H2Dialect;
+        }
+        return h2;
+    }
+
+    private static void bind(Query typedQuery, String text, BookingQuery query, Object status) {
+        typedQuery.setParameter("userId", query.getUserId());
+
+        if (status != null) {
+            typedQuery.setParameter("status", status);
+        }
+
+        if (text.contains(":now")) {
+            typedQuery.setParameter("now", query.getNow());
+        }
+
+        if (query.getItemId() != null) {
+            typedQuery.setParameter("itemId", query.getItemId());
+        }
+
+        if (query.getSince() != null) {
+            typedQuery.setParameter("since", query.getSince());
+        }
+
+        if (query.getUntil() != null) {
+            typedQuery.setParameter("until", query.getUntil());
+        }
+
+        if (query.getCursor() != null) {
+            typedQuery.setParameter("key", query.getCursor().getKey())
+                    .setParameter("id", query.getCursor().getId());
+        }
+    }
+
+    // The listing of jpql(query) over bookings_archive, in SQL
+    static String archiveSql(BookingQuery query) {
+        BookingRole role = query.getRole();
+        BookingState state = query.getState();
+        String key = "b." + query.getSort().getColumn();
+        boolean item = query.getItemId() != null;
+        boolean since = query.getSince() != null;
+        boolean until = query.getUntil() != null;
+        boolean seek = query.getCursor() != null;
+
+        return JPQL_CACHE.computeIfAbsent(String.join(":", "ARCHIVE", role.name(), state.name(),
+                        query.getSort().name(), String.valueOf(item), String.valueOf(since), String.valueOf(until),
+                        String.valueOf(seek)),
+                cacheKey -> "SELECT b.* FROM bookings_archive b WHERE " +
+                        (role == BookingRole.BOOKER ? "b.booker_id" : "b.owner_id") + " = :userId" +
+                        stateSql(state) +
+                        (item ? " AND b.item_id = :itemId" : "") +
+                        (since ? " AND b.end_date >= :since" : "") +
+                        (until ? " AND b.start_date <= :until" : "") +
+                        (seek ? " AND (" + key + " < :key OR (" + key + " = :key AND b.id < :id))" : "") +
+                        " ORDER BY " + key + " DESC, b.id DESC");
+    }
+
+    static String jpql(BookingQuery query) {
+        BookingRole role = query.getRole();
+        BookingState state = query.getState();
+        String key = "b." + query.getSort().getProperty();
+        boolean item = query.getItemId() != null;
+        boolean since = query.getSince() != null;
+        boolean until = query.getUntil() != null;
+        boolean seek = query.getCursor() != null;
+
+        return JPQL_CACHE.computeIfAbsent(String.join(":", role.name(), state.name(), query.getSort().name(),
+                        String.valueOf(item), String.valueOf(since), String.valueOf(until), String.valueOf(seek)),
+                cacheKey -> "SELECT b FROM Booking b WHERE " + userPredicate(role) +
+                        statePredicate(state) +
+                        (item ? " AND b.item.id = :itemId" : "") +
+                        (since ? " AND b.endDate >= :since" : "") +
+                        (until ? " AND b.startDate <= :until" : "") +
+                        (seek ? " AND (" + key + " < :key OR (" + key + " = :key AND b.id < :id))" : "") +
+                        " ORDER BY " + key + " DESC, b.id DESC");
+    }
+
+    private static String userPredicate(BookingRole role) {
+        switch (role) {
+            case BOOKER:
+                return "b.booker.id = :userId";
+            case OWNER:
+                return "b.owner.id = :userId";
+            default:
+                throw new IllegalArgumentException("Unknown role " + role);
+        }
+    }
+
+    private static String stateSql(BookingState state) {
+        if (state.getStatus() != null) {
+            return " AND b.status = :status";
+        }
+
+        switch (state) {
+            case ALL:
+                return "";
+            case CURRENT:
+                return " AND b.start_date <= :now AND b.end_date >= :now";
+            case PAST:
+                return " AND b.end_date < :now";
+            case FUTURE:
+                return " AND b.start_date > :now";
+            default:
+                throw new IllegalArgumentException("Unknown state " + state);
+        }
+    }
+
+    private static String statePredicate(BookingState state) {
+        if (state.getStatus() != null) {
+            return " AND b.status = :status";
+        }
+
+        switch (state) {
+            case ALL:
+                return "";
+            case CURRENT:
+                return " AND b.startDate <= :now AND b.endDate >= :now";
+            case PAST:
+                return " AND b.endDate < :now";
+            case FUTURE:
+                return " AND b.startDate > :now";
+            default:
+                throw new IllegalArgumentException("Unknown state " + state);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.booking.model.BookingRule;
+import ru.practicum.shareit.booking.model.BookingStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BookingRuleRepository extends JpaRepository<BookingRule, Integer> {
+
+    // Rules whose first occurrence starts before the window ends and whose last one ends after it starts,
+    // read through ix_booking_rules_item_period
+    @Query("SELECT r FROM BookingRule r WHERE r.item.id IN :itemIds AND r.startDate < :endDate" +
+            " AND r.lastEndDate > :startDate AND r.status IN :statuses")
+    List<BookingRule> findOverlapping(@Param("itemIds") Collection<Integer> itemIds,
+                                      @Param("startDate") LocalDateTime startDate,
+                                      @Param("endDate") LocalDateTime endDate,
+                                      @Param("statuses") Collection<BookingStatus> statuses);
+
+    // Rules of a user in one of the statuses whose span reaches the window, in id order after afterId: a listing
+    // reads them a batch at a time, as some of them have no occurrence in the window
+    @Query("SELECT r FROM BookingRule r WHERE r.booker.id = :userId AND r.id > :afterId AND r.status IN :statuses" +
+            " AND r.startDate < :endDate AND r.lastEndDate > :startDate ORDER BY r.id")
+    List<BookingRule> findByBookerOverlappingAfter(@Param("userId") int userId,
+                                                   @Param("afterId") int afterId,
+                                                   @Param("startDate") LocalDateTime startDate,
+                                                   @Param("endDate") LocalDateTime endDate,
+                                                   @Param("statuses") Collection<BookingStatus> statuses,
+                                                   Pageable pageable);
+
+    @Query("SELECT r FROM BookingRule r WHERE r.owner.id = :userId AND r.id > :afterId AND r.status IN :statuses" +
+            " AND r.startDate < :endDate AND r.lastEndDate > :startDate ORDER BY r.id")
+    List<BookingRule> findByOwnerOverlappingAfter(@Param("userId") int userId,
+                                                  @Param("afterId") int afterId,
+                                                  @Param("startDate") LocalDateTime startDate,
+                                                  @Param("endDate") LocalDateTime endDate,
+                                                  @Param("statuses") Collection<BookingStatus> statuses,
+                                                  Pageable pageable);
+
+    // Every rule of a user, for the summary and the listings that are open at one end
+    @Query("SELECT r FROM BookingRule r WHERE r.booker.id = :userId")
+    List<BookingRule> findByBooker(@Param("userId") int userId);
+
+    @Query("SELECT r FROM BookingRule r WHERE r.owner.id = :userId")
+    List<BookingRule> findByOwner(@Param("userId") int userId);
+
+    @Query("SELECT DISTINCT r.booker.id FROM BookingRule r WHERE r.item.id = :itemId")
+    List<Integer> findBookerIdsByItem(@Param("itemId") int itemId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE BookingRule r SET r.status = :status" +
+            " WHERE r.id = :id AND r.owner.id = :ownerId AND r.status = ru.practicum.shareit.booking.model.BookingStatus.WAITING")
+    int decideWaiting(@Param("id") int id, @Param("ownerId") int ownerId, @Param("status") BookingStatus status);
+
+    @Query("SELECT r.owner.id FROM BookingRule r WHERE r.id = :id")
+    Optional<Integer> findOwnerIdById(@Param("id") int id);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM BookingRule r WHERE r.item.id = :itemId")
+    int deleteByItemId(@Param("itemId") int itemId);
+}
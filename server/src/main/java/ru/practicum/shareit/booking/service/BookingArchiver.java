@@ -0,0 +1,205 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Moves bookings that ended and were created more than {@code after-days} ago from {@code bookings} into
+ * {@code bookings_archive}, in batches of {@code batch-size} every {@code interval-minutes}. On PostgreSQL the
+ * archive is partitioned by the month of the end date, so the hot table and its indexes hold recent bookings only.
+ * <p>
+ * Every archived booking started, ended and was created before the archive bound, so a listing ordered by any
+ * sort key reaches the archive only when its page goes past the hot bookings newer than the bound. CURRENT and
+ * FUTURE listings never do. Archived bookings are read-only.
+ * <p>
+ * The latest ended booking of each item and the latest approved one of each of its bookers stay in the hot table
+ * whatever their age: the item shows the first as its last booking and the second lets the booker comment.
+ */
+@Component
+@Slf4j
+public class BookingArchiver {
+
+    private final BookingRepository bookingRepository;
+
+    private final BookingListCache bookingListCache;
+
+    private final ItemAvailability itemAvailability;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final Duration after;
+
+    private final int batchSize;
+
+    private final long intervalMinutes;
+
+    // The latest end or creation date archived before this instance started, when archiving was on
+    private volatile LocalDateTime watermark;
+
+    private ScheduledExecutorService executor;
+
+    public BookingArchiver(BookingRepository bookingRepository,
+                           BookingListCache bookingListCache,
+                           ItemAvailability itemAvailability,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${shareit.booking.archive.enabled:false}") boolean enabled,
+                           @Value("${shareit.booking.archive.after-days:90}") long afterDays,
+                           @Value("${shareit.booking.archive.batch-size:1000}") int batchSize,
+                           @Value("${shareit.booking.archive.interval-minutes:60}") long intervalMinutes) {
+        this.bookingRepository = bookingRepository;
+        this.bookingListCache = bookingListCache;
+        this.itemAvailability = itemAvailability;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.after = Duration.ofDays(afterDays);
+        this.batchSize = batchSize;
+        this.intervalMinutes = intervalMinutes;
+    }
+
+    // The archive is read even with archiving switched off, as long as it holds bookings
+    @PostConstruct
+    void start() {
+        watermark = bookingRepository.findArchiveWatermark().orElse(null);
+        if (!enabled) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> archive(LocalDateTime.now()), 0, intervalMinutes, TimeUnit.MINUTES);
+        log.info("Booking archive is enabled: bookings older than {} are archived every {} minutes",
+                after, intervalMinutes);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Each batch is moved in its own transaction, so a failure loses no more than the batch it stopped at. The
+    // users and items of a batch are read before its bookings move and evicted once the batch is committed.
+    public int archive(LocalDateTime now) {
+        LocalDateTime before = now.minus(after);
+        int archived = 0;
+        try {
+            Batch batch;
+            do {
+                batch = transactionTemplate.execute(status -> {
+                    List<Integer> ids = bookingRepository.findArchivable(before, now, batchSize);
+                    if (ids.isEmpty()) {
+                        return Batch.EMPTY;
+                    }
+                    Set<Integer> userIds = bookingListCache.isEnabled() ? bookingListCache.findUsers(ids) : Set.of();
+                    List<Integer> itemIds = itemAvailability.isEnabled() ? bookingRepository.findItemIds(ids) : List.of();
+                    return new Batch(bookingRepository.archive(ids), userIds, itemIds);
+                });
+                bookingListCache.evictUsers(batch.userIds);
+                batch.itemIds.forEach(itemAvailability::evict);
+                archived += batch.moved;
+            } while (batch.moved == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Booking archive failed", e);
+        }
+
+        if (archived > 0) {
+            log.info("{} bookings ended before {} are archived", archived, before);
+        }
+        return archived;
+    }
+
+    public List<Booking> findBookings(BookingQuery query) {
+        List<Booking> hot = bookingRepository.findBookings(query);
+        LocalDateTime bound = bound(query.getNow());
+        if (bound == null || query.getState() == BookingState.CURRENT || query.getState() == BookingState.FUTURE) {
+            return hot;
+        }
+
+        BookingSort sort = query.getSort();
+        if (hot.size() == query.getSize() && sort.key(hot.get(hot.size() - 1)).isAfter(bound)) {
+            return hot;
+        }
+
+        // The page crosses the bound: both sources are read up to its end and merged in listing order
+        int from = query.getCursor() != null ? 0 : query.getFrom();
+        BookingQuery head = query.toBuilder().from(0).size(from + query.getSize()).build();
+        List<Booking> newer = from == 0 ? hot : bookingRepository.findBookings(head);
+        List<Booking> older = bookingRepository.findArchivedBookings(head);
+
+        return Stream.concat(newer.stream(), older.stream())
+                .sorted(Comparator.comparing(sort::key).thenComparing(Booking::getId).reversed())
+                .skip(from)
+                .limit(query.getSize())
+                .collect(Collectors.toList());
+    }
+
+    public Optional<Booking> findById(int id) {
+        return isRouting() ? bookingRepository.findArchivedById(id) : Optional.empty();
+    }
+
+    public BookingSummary plusArchived(BookingSummary summary, BookingRole role, int userId, LocalDateTime now) {
+        return isRouting() ? summary.plus(bookingRepository.countArchivedByState(role, userId, now)) : summary;
+    }
+
+    // Bookings newer than the bound are never in the archive
+    private LocalDateTime bound(LocalDateTime now) {
+        LocalDateTime archived = watermark;
+        if (!enabled) {
+            return archived;
+        }
+
+        LocalDateTime before = now.minus(after);
+        return archived != null && archived.isAfter(before) ? archived : before;
+    }
+
+    private boolean isRouting() {
+        return enabled || watermark != null;
+    }
+
+    private static class Batch {
+
+        static final Batch EMPTY = new Batch(0, Set.of(), List.of());
+
+        final int moved;
+
+        final Set<Integer> userIds;
+
+        final List<Integer> itemIds;
+
+        Batch(int moved, Set<Integer> userIds, List<Integer> itemIds) {
+            this.moved = moved;
+            this.userIds = userIds;
+            this.itemIds = itemIds;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Optional per-user booking counters by status in {@code booking_counters}, for users with so many bookings
+ * that counting them on every summary is too slow. Every write that adds, removes or changes the status of
+ * a booking updates the counters in its own transaction, so a counter commits or rolls back with the rows it
+ * counts. CURRENT, PAST and FUTURE depend on the clock rather than on writes, so the summary still counts the
+ * bookings that have not ended yet and derives PAST from the total.
+ * <p>
+ * When enabled, an empty table is filled from {@code bookings} at startup. When disabled, the counters are
+ * neither read nor written, and the table is left as it is for the instances that use it. The flag is meant
+ * to be the same on every instance: counters that missed writes while it was off are rebuilt by emptying
+ * the table before the next enabled start.
+ */
+@Component
+@Slf4j
+public class BookingCounters {
+
+    private final BookingRepository bookingRepository;
+
+    private final boolean enabled;
+
+    public BookingCounters(BookingRepository bookingRepository,
+                           @Value("${shareit.booking.summary.counters-enabled:false}") boolean enabled) {
+        this.bookingRepository = bookingRepository;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled && !bookingRepository.hasCounters()) {
+            try {
+                bookingRepository.rebuildCounters();
+                log.info("Booking counters are rebuilt");
+            } catch (DataIntegrityViolationException e) {
+                log.info("Booking counters are already rebuilt by another instance");
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void added(Booking booking) {
+        add(booking, 1);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removed(Booking booking) {
+        add(booking, -1);
+    }
+
+    // Bookings with the given ids have just moved from one status to the other in the current transaction.
+    // Users are updated in ascending order so that concurrent transactions lock counter rows in the same order.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void changed(Collection<Integer> ids, BookingStatus from, BookingStatus to) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+
+        for (BookingRole role : BookingRole.values()) {
+            bookingRepository.countByUser(role, ids).forEach((userId, bookings) -> {
+                bookingRepository.addToCounter(role, userId, from, -bookings);
+                bookingRepository.addToCounter(role, userId, to, bookings);
+            });
+        }
+    }
+
+    // The item is about to be deleted with its hot and archived bookings in the current transaction
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removedItem(int itemId) {
+        if (!enabled) {
+            return;
+        }
+
+        for (BookingRole role : BookingRole.values()) {
+            bookingRepository.countByItem(role, itemId).forEach((userId, counts) ->
+                    counts.forEach((status, bookings) -> bookingRepository.addToCounter(role, userId, status, -bookings)));
+        }
+    }
+
+    public BookingSummary summary(BookingRole role, int userId, LocalDateTime now) {
+        Map<BookingStatus, Long> counters = bookingRepository.findCounters(role, userId);
+        BookingSummary unfinished = bookingRepository.countUnfinishedByState(role, userId, now);
+        long all = counters.values().stream().mapToLong(Long::longValue).sum();
+
+        return BookingSummary.builder()
+                .all(all)
+                .current(unfinished.getCurrent())
+                .past(all - unfinished.getAll())
+                .future(unfinished.getFuture())
+                .waiting(counters.getOrDefault(BookingStatus.WAITING, 0L))
+                .rejected(counters.getOrDefault(BookingStatus.REJECTED, 0L))
+                .build();
+    }
+
+    private void add(Booking booking, long delta) {
+        if (!enabled) {
+            return;
+        }
+
+        bookingRepository.addToCounter(BookingRole.BOOKER, booking.getBooker().getId(), booking.getStatus(), delta);
+        bookingRepository.addToCounter(BookingRole.OWNER, booking.getItem().getOwner().getId(), booking.getStatus(),
+                delta);
+    }
+}
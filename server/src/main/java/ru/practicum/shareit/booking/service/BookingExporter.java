@@ -0,0 +1,135 @@
+package ru.practicum.shareit.booking.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.booking.model.BookingExportFormat;
+import ru.practicum.shareit.booking.model.BookingExportRow;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.user.service.UserService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Full booking history of an owner as NDJSON or CSV, one line per booking in the order of the owner listing.
+ * Rows are written to the response as they are read from the database cursor, so neither the server nor the
+ * client holds the whole export in memory.
+ */
+@Component
+@Slf4j
+public class BookingExporter {
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static final String CSV_HEADER = "id,itemId,itemName,bookerId,start,end,status,created";
+
+    private final BookingRepository bookingRepository;
+
+    private final UserService userService;
+
+    private final JsonFactory jsonFactory;
+
+    private final int fetchSize;
+
+    public BookingExporter(BookingRepository bookingRepository,
+                           UserService userService,
+                           ObjectMapper objectMapper,
+                           @Value("${shareit.booking.export.fetch-size:500}") int fetchSize) {
+        this.bookingRepository = bookingRepository;
+        this.userService = userService;
+        this.jsonFactory = objectMapper.getFactory();
+        this.fetchSize = fetchSize;
+    }
+
+    // The owner is checked before the response starts, so an unknown owner still gets a 404
+    public StreamingResponseBody exportByOwner(int ownerId, BookingExportFormat format) {
+        userService.existenceCheck(ownerId);
+
+        return out -> {
+            long rows = format == BookingExportFormat.CSV ? writeCsv(ownerId, out) : writeNdjson(ownerId, out);
+            log.info("Exported {} bookings of owner with ID {} as {}", rows, ownerId, format);
+        };
+    }
+
+    private long writeNdjson(int ownerId, OutputStream out) throws IOException {
+        long[] rows = {0};
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            stream(ownerId, row -> {
+                generator.writeStartObject();
+                generator.writeNumberField("id", row.getId());
+                generator.writeNumberField("itemId", row.getItemId());
+                generator.writeStringField("itemName", row.getItemName());
+                generator.writeNumberField("bookerId", row.getBookerId());
+                generator.writeStringField("start", format(row.getStartDate()));
+                generator.writeStringField("end", format(row.getEndDate()));
+                generator.writeStringField("status", row.getStatus().name());
+                generator.writeStringField("created", format(row.getCreated()));
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                rows[0]++;
+            });
+        }
+        return rows[0];
+    }
+
+    private long writeCsv(int ownerId, OutputStream out) throws IOException {
+        long[] rows = {0};
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write(CSV_HEADER);
+            writer.write("\r\n");
+            stream(ownerId, row -> {
+                writer.write(String.join(",", String.valueOf(row.getId()), String.valueOf(row.getItemId()),
+                        csv(row.getItemName()), String.valueOf(row.getBookerId()), format(row.getStartDate()),
+                        format(row.getEndDate()), row.getStatus().name(), format(row.getCreated())));
+                writer.write("\r\n");
+                rows[0]++;
+            });
+        }
+        return rows[0];
+    }
+
+    private void stream(int ownerId, RowWriter rowWriter) throws IOException {
+        try {
+            bookingRepository.streamByOwner(ownerId, fetchSize, row -> {
+                try {
+                    rowWriter.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String format(LocalDateTime dateTime) {
+        return DATE_TIME.format(dateTime);
+    }
+
+    // RFC 4180: a field with a separator, a quote or a line break is quoted, quotes inside are doubled
+    static String csv(String value) {
+        if (value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\r' || c == '\n')) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+
+        void write(BookingExportRow row) throws IOException;
+    }
+}
@@ -0,0 +1,239 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
+import ru.practicum.shareit.util.Stripes;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Optional group-commit path for booking creation. Requests are routed by item to a fixed number of shards;
+ * each shard has a single writer thread that drains its queue into micro-batches of at most {@code batch-size}
+ * requests, waiting at most {@code max-linger-ms} for a batch to fill, and creates the whole batch in one
+ * transaction. The item locks of the whole batch are taken before the transaction starts and released only
+ * after it ends, so no other create of these items can pass its checks before the batch is committed. When
+ * disabled, creates go straight to {@link BookingService}.
+ * <p>
+ * A booking refused by the checks fails alone: it writes nothing and leaves the batch transaction intact.
+ * Only a failing write, such as an overlap caught by the database constraint of another instance, rolls the
+ * batch back, and its requests are then created one by one.
+ * <p>
+ * Batches, batched bookings, retried batches and the queue depth of each shard are published as
+ * {@code booking.ingestion.*} metrics.
+ */
+@Component
+@Slf4j
+public class BookingIngestion {
+
+    private final BookingService bookingService;
+
+    private final BookingLocks bookingLocks;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final long maxLingerNanos;
+
+    private final Shard[] shards;
+
+    private final Counter batches;
+
+    private final Counter batchedBookings;
+
+    private final Counter retriedBatches;
+
+    public BookingIngestion(BookingService bookingService,
+                            BookingLocks bookingLocks,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${shareit.booking.ingestion.enabled:false}") boolean enabled,
+                            @Value("${shareit.booking.ingestion.shards:4}") int shards,
+                            @Value("${shareit.booking.ingestion.batch-size:32}") int batchSize,
+                            @Value("${shareit.booking.ingestion.max-linger-ms:5}") long maxLingerMs) {
+        this.bookingService = bookingService;
+        this.bookingLocks = bookingLocks;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+        this.shards = new Shard[enabled ? shards : 0];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard(i);
+            Gauge.builder("booking.ingestion.queue.depth", this.shards[i].queue, BlockingQueue::size)
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+        this.batches = meterRegistry.counter("booking.ingestion.batches");
+        this.batchedBookings = meterRegistry.counter("booking.ingestion.bookings");
+        this.retriedBatches = meterRegistry.counter("booking.ingestion.retried.batches");
+    }
+
+    @PostConstruct
+    void start() {
+        Arrays.stream(shards).forEach(shard -> shard.worker.start());
+        if (enabled) {
+            log.info("Booking ingestion is enabled: {} shards, batches of up to {} bookings", shards.length, batchSize);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        Arrays.stream(shards).forEach(shard -> shard.worker.interrupt());
+    }
+
+    public BookingDtoOutAbs create(BookingDtoIn bookingDtoIn, int userId) {
+        if (!enabled) {
+            return bookingService.create(bookingDtoIn, userId);
+        }
+
+        Request request = new Request(bookingDtoIn, userId);
+        shard(bookingDtoIn.getItemId()).queue.add(request);
+
+        try {
+            return request.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Shard shard(Integer itemId) {
+        return shards[Stripes.of(itemId == null ? 0 : itemId, shards.length)];
+    }
+
+    private void process(List<Request> batch) {
+        batches.increment();
+        batchedBookings.increment(batch.size());
+
+        try {
+            bookingLocks.withItemLocks(itemIds(batch), () -> transactionTemplate.execute(status -> {
+                batch.forEach(this::attempt);
+                return null;
+            }));
+            batch.forEach(Request::complete);
+            return;
+        } catch (RuntimeException e) {
+            retriedBatches.increment();
+            log.warn("Batch of {} bookings is rolled back, creating them one by one", batch.size(), e);
+        }
+
+        for (Request request : batch) {
+            try {
+                request.future.complete(bookingLocks.withItemLocks(itemIds(List.of(request)),
+                        () -> transactionTemplate.execute(
+                                status -> bookingService.create(request.bookingDtoIn, request.userId))));
+            } catch (RuntimeException e) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static Set<Integer> itemIds(List<Request> requests) {
+        return requests.stream()
+                .map(request -> request.bookingDtoIn.getItemId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    // A refused create is recorded rather than rethrown so the rest of the batch still commits.
+    private void attempt(Request request) {
+        try {
+            request.result = bookingService.createInTransaction(request.bookingDtoIn, request.userId);
+        } catch (RuntimeException e) {
+            request.error = e;
+        }
+    }
+
+    private final class Shard {
+
+        private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+        private final Thread worker;
+
+        private Shard(int index) {
+            worker = new Thread(this::run, "booking-ingestion-" + index);
+            worker.setDaemon(true);
+        }
+
+        private void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    process(nextBatch());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            List<Request> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            rest.forEach(request -> request.future.completeExceptionally(
+                    new IllegalStateException("Booking ingestion is stopped")));
+        }
+
+        private List<Request> nextBatch() throws InterruptedException {
+            List<Request> batch = new ArrayList<>(batchSize);
+            batch.add(queue.take());
+
+            long deadline = System.nanoTime() + maxLingerNanos;
+            while (batch.size() < batchSize) {
+                Request request = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (request == null) {
+                    break;
+                }
+                batch.add(request);
+            }
+            return batch;
+        }
+    }
+
+    private static final class Request {
+
+        private final BookingDtoIn bookingDtoIn;
+
+        private final int userId;
+
+        private final CompletableFuture<BookingDtoOutAbs> future = new CompletableFuture<>();
+
+        private BookingDtoOutAbs result;
+
+        private RuntimeException error;
+
+        private Request(BookingDtoIn bookingDtoIn, int userId) {
+            this.bookingDtoIn = bookingDtoIn;
+            this.userId = userId;
+        }
+
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
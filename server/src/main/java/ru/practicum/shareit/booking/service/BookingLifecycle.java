@@ -0,0 +1,281 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingChanged;
+import ru.practicum.shareit.booking.model.BookingLifecycleEvent;
+import ru.practicum.shareit.booking.model.BookingPeriod;
+import ru.practicum.shareit.booking.model.BookingPhase;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static ru.practicum.shareit.booking.model.BookingLifecycleEvent.Type.ENDED;
+import static ru.practicum.shareit.booking.model.BookingLifecycleEvent.Type.EXPIRED;
+import static ru.practicum.shareit.booking.model.BookingLifecycleEvent.Type.STARTED;
+
+/**
+ * Moves bookings through their lifecycle: a booking still WAITING at its start date is rejected as expired,
+ * and an approved booking emits {@link BookingLifecycleEvent}s when it starts and ends.
+ * <p>
+ * Start and end dates that fall within {@code horizon-minutes} are kept in a {@link TimingWheel}. The horizon
+ * is reloaded from the status/date indexes every half horizon, and bookings created by this instance are added
+ * as they are committed. Every event is claimed in the database before it is emitted: the booking row is locked and
+ * its status or {@code phase} is updated only if no other instance got there first, so each event is emitted
+ * once however many instances run the scheduler.
+ */
+@Component
+@Slf4j
+public class BookingLifecycle {
+
+    private final BookingRepository bookingRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final BookingCounters bookingCounters;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final long tickMillis;
+
+    private final Duration horizon;
+
+    private final int batchSize;
+
+    private final TimingWheel<Task> wheel;
+
+    private final Set<Task> scheduled = ConcurrentHashMap.newKeySet();
+
+    private volatile LocalDateTime loadedUntil;
+
+    private ScheduledExecutorService executor;
+
+    public BookingLifecycle(BookingRepository bookingRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            BookingCounters bookingCounters,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${shareit.booking.lifecycle.enabled:false}") boolean enabled,
+                            @Value("${shareit.booking.lifecycle.tick-ms:1000}") long tickMillis,
+                            @Value("${shareit.booking.lifecycle.wheel-size:512}") int wheelSize,
+                            @Value("${shareit.booking.lifecycle.horizon-minutes:10}") long horizonMinutes,
+                            @Value("${shareit.booking.lifecycle.batch-size:500}") int batchSize) {
+        this.bookingRepository = bookingRepository;
+        this.eventPublisher = eventPublisher;
+        this.bookingCounters = bookingCounters;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.tickMillis = tickMillis;
+        this.horizon = Duration.ofMinutes(horizonMinutes);
+        this.batchSize = batchSize;
+        this.wheel = new TimingWheel<>(wheelSize, tickMillis, LocalDateTime.now());
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-lifecycle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(() -> loadStale(LocalDateTime.now()));
+        executor.scheduleWithFixedDelay(() -> load(LocalDateTime.now()),
+                0, horizon.toMillis() / 2, TimeUnit.MILLISECONDS);
+        executor.scheduleAtFixedRate(() -> tick(LocalDateTime.now()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        log.info("Booking lifecycle is enabled: ticks of {} ms, horizon of {}", tickMillis, horizon);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Bookings created by this instance are tracked once they are committed
+    @TransactionalEventListener
+    public void onBookingChanged(BookingChanged event) {
+        if (event.getType() == BookingChanged.Type.CREATED) {
+            event.getBookings().forEach(this::track);
+        }
+    }
+
+    // Called for every saved booking; the ones beyond the loaded horizon are picked up by a later load.
+    public void track(Booking booking) {
+        LocalDateTime until = loadedUntil;
+        if (until == null) {
+            return;
+        }
+
+        if (booking.getStartDate().isBefore(until)) {
+            schedule(new Task(STARTED, booking.getId()), booking.getStartDate());
+        }
+        if (booking.getEndDate().isBefore(until)) {
+            schedule(new Task(ENDED, booking.getId()), booking.getEndDate());
+        }
+    }
+
+    // WAITING bookings whose start passed while no instance was running, however long ago
+    void loadStale(LocalDateTime now) {
+        safely(() -> bookingRepository.findWaitingStartingBefore(now)
+                .forEach(period -> schedule(new Task(STARTED, period.getId()), period.getStartDate())));
+    }
+
+    // Reloads the whole window rather than its new part: bookings created by other instances, or tracked
+    // by an instance that stopped before their time came, are found here. Bookings already moved on are not
+    // returned by the queries, and the ones still pending are skipped by the scheduled set.
+    void load(LocalDateTime now) {
+        safely(() -> {
+            LocalDateTime from = now.minus(horizon);
+            LocalDateTime to = now.plus(horizon);
+
+            List<BookingPeriod> starting = bookingRepository.findStartingBetween(from, to);
+            List<BookingPeriod> ending = bookingRepository.findEndingBetween(from, to);
+            starting.forEach(period -> schedule(new Task(STARTED, period.getId()), period.getStartDate()));
+            ending.forEach(period -> schedule(new Task(ENDED, period.getId()), period.getEndDate()));
+            loadedUntil = to;
+
+            log.debug("Booking lifecycle is loaded until {}: {} starts, {} ends", to, starting.size(), ending.size());
+        });
+    }
+
+    void tick(LocalDateTime now) {
+        safely(() -> {
+            List<Task> due = wheel.advance(now);
+            if (due.isEmpty()) {
+                return;
+            }
+            due.forEach(scheduled::remove);
+
+            List<Integer> starts = ids(due, STARTED);
+            List<Integer> ends = ids(due, ENDED);
+            for (int from = 0; from < Math.max(starts.size(), ends.size()); from += batchSize) {
+                List<Integer> startPage = page(starts, from);
+                List<Integer> endPage = page(ends, from);
+                List<BookingLifecycleEvent> events = transactionTemplate.execute(status -> claim(startPage, endPage,
+                        now));
+                events.forEach(eventPublisher::publishEvent);
+                if (!events.isEmpty()) {
+                    log.info("Booking lifecycle events: {}", events);
+                }
+            }
+        });
+    }
+
+    int pending() {
+        return wheel.size();
+    }
+
+    // Starts are claimed before ends, so a booking due to both in the same tick passes STARTED first.
+    private List<BookingLifecycleEvent> claim(List<Integer> starts, List<Integer> ends, LocalDateTime now) {
+        List<BookingLifecycleEvent> events = new ArrayList<>();
+        if (!starts.isEmpty()) {
+            List<Integer> expired = bookingRepository.lockWaitingStarted(starts, now);
+            if (!expired.isEmpty()) {
+                bookingRepository.rejectWaiting(expired);
+                bookingCounters.changed(expired, BookingStatus.WAITING, BookingStatus.REJECTED);
+                eventPublisher.publishEvent(BookingChanged.expired(bookingRepository.findAllById(expired)));
+            }
+            events.addAll(events(EXPIRED, expired));
+
+            events.addAll(events(STARTED, update(starts, now, BookingPhase.STARTED,
+                    bookingRepository::lockApprovedStarted)));
+        }
+        if (!ends.isEmpty()) {
+            events.addAll(events(ENDED, update(ends, now, BookingPhase.ENDED, bookingRepository::lockApprovedEnded)));
+        }
+        return events;
+    }
+
+    private List<Integer> update(List<Integer> ids, LocalDateTime now, BookingPhase phase,
+                                 BiFunction<Collection<Integer>, LocalDateTime, List<Integer>> lock) {
+        List<Integer> locked = lock.apply(ids, now);
+        if (!locked.isEmpty()) {
+            bookingRepository.updatePhase(locked, phase);
+        }
+        return locked;
+    }
+
+    private void schedule(Task task, LocalDateTime at) {
+        if (scheduled.add(task)) {
+            wheel.schedule(at, task);
+        }
+    }
+
+    // A failed load or tick is logged and retried by the next run instead of cancelling the schedule.
+    private void safely(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            log.error("Booking lifecycle failed", e);
+        }
+    }
+
+    private static List<Integer> ids(List<Task> tasks, BookingLifecycleEvent.Type type) {
+        return tasks.stream()
+                .filter(task -> task.type == type)
+                .map(task -> task.bookingId)
+                .collect(Collectors.toList());
+    }
+
+    private List<Integer> page(List<Integer> ids, int from) {
+        return ids.subList(Math.min(from, ids.size()), Math.min(from + batchSize, ids.size()));
+    }
+
+    private static List<BookingLifecycleEvent> events(BookingLifecycleEvent.Type type, List<Integer> ids) {
+        return ids.stream()
+                .map(id -> new BookingLifecycleEvent(type, id))
+                .collect(Collectors.toList());
+    }
+
+    private static final class Task {
+
+        private final BookingLifecycleEvent.Type type;
+
+        private final int bookingId;
+
+        private Task(BookingLifecycleEvent.Type type, int bookingId) {
+            this.type = type;
+            this.bookingId = bookingId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Task task = (Task) o;
+            return bookingId == task.bookingId && type == task.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, bookingId);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
+import ru.practicum.shareit.booking.model.BookingChanged;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.util.StripedLruCache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static ru.practicum.shareit.util.Transactions.afterCommit;
+
+/**
+ * Bounded LRU cache of booking listings, keyed by the user, role, state, filters and page of the query.
+ * <p>
+ * The listings of a user are evicted once a transaction that creates, decides, expires or deletes one of
+ * their bookings, as booker or as owner, commits; the booking service announces its writes with a
+ * {@link BookingChanged} event. A listing read while such a transaction was running could
+ * be stale and is not stored; the users are the groups of a {@link StripedLruCache}. Updates of items and users change the bookings they appear in
+ * and evict the users who see them.
+ * <p>
+ * CURRENT, PAST and FUTURE listings also change with the clock: they expire at the next start or end date
+ * that could move a booking into or out of the listing. Dates of bookings leaving the listing are read from
+ * the listing itself; only bookings entering a CURRENT or PAST listing are looked up in the repository.
+ * Writes committed by other instances and expiries claimed by their lifecycle are not announced here, so no
+ * listing is kept longer than {@code max-ttl-seconds}.
+ * <p>
+ * Hits, misses, expirations, evictions and the size are published as {@code booking.list.cache.*} metrics.
+ */
+@Component
+@Slf4j
+public class BookingListCache {
+
+    private final BookingRepository bookingRepository;
+
+    private final BookingRules bookingRules;
+
+    private final boolean enabled;
+
+    private final Duration maxTtl;
+
+    private final StripedLruCache<Key, Entry> entries;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter expirations;
+
+    private final Counter evictions;
+
+    public BookingListCache(BookingRepository bookingRepository,
+                            BookingRules bookingRules,
+                            MeterRegistry meterRegistry,
+                            @Value("${shareit.booking.list-cache.enabled:false}") boolean enabled,
+                            @Value("${shareit.booking.list-cache.max-entries:10000}") int maxEntries,
+                            @Value("${shareit.booking.list-cache.max-ttl-seconds:60}") long maxTtlSeconds) {
+        this.bookingRepository = bookingRepository;
+        this.bookingRules = bookingRules;
+        this.enabled = enabled;
+        this.maxTtl = Duration.ofSeconds(maxTtlSeconds);
+        this.hits = meterRegistry.counter("booking.list.cache.hits");
+        this.misses = meterRegistry.counter("booking.list.cache.misses");
+        this.expirations = meterRegistry.counter("booking.list.cache.expirations");
+        this.evictions = meterRegistry.counter("booking.list.cache.evictions");
+        this.entries = new StripedLruCache<>(maxEntries, key -> key.userId, evictions::increment);
+        meterRegistry.gauge("booking.list.cache.size", this, BookingListCache::size);
+    }
+
+    public List<? extends BookingDtoOutAbs> get(BookingQuery query,
+                                                Supplier<List<? extends BookingDtoOutAbs>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        Key key = Key.of(query);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isValidAt(query.getNow())) {
+            hits.increment();
+            return entry.bookings;
+        }
+        if (entry != null) {
+            entries.remove(key);
+            expirations.increment();
+        }
+        misses.increment();
+
+        long generation = entries.generation(query.getUserId());
+        List<? extends BookingDtoOutAbs> bookings = loader.get();
+        LocalDateTime validUntil = earliest(validUntil(query, bookings), query.getNow().plus(maxTtl));
+        entries.put(key, new Entry(List.copyOf(bookings), validUntil), generation);
+        return bookings;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Bookers and owners of the bookings, read in the current transaction
+    public Set<Integer> findUsers(Collection<Integer> ids) {
+        Set<Integer> userIds = new TreeSet<>();
+        for (BookingRole role : BookingRole.values()) {
+            userIds.addAll(bookingRepository.countByUser(role, ids).keySet());
+        }
+        return userIds;
+    }
+
+    // Listings show the item of every booking: its owner and the bookers of its hot and archived bookings and of
+    // its recurring bookings see it. Bookers are read in the current transaction.
+    public void evictItem(int itemId, int ownerId) {
+        if (!enabled) {
+            return;
+        }
+
+        Set<Integer> userIds = new TreeSet<>(bookingRepository.findBookerIdsByItem(itemId));
+        userIds.addAll(bookingRules.findBookerIdsByItem(itemId));
+        userIds.add(ownerId);
+        evictUsers(userIds);
+    }
+
+    public void evictAll() {
+        if (!enabled) {
+            return;
+        }
+
+        afterCommit(() -> evictions.increment(entries.dropAll()));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    public void evictUsers(Collection<Integer> userIds) {
+        if (enabled) {
+            afterCommit(() -> drop(userIds));
+        }
+    }
+
+    // Runs once the transaction that wrote the bookings has committed
+    @TransactionalEventListener
+    public void onBookingChanged(BookingChanged event) {
+        if (enabled && !event.getUserIds().isEmpty()) {
+            drop(event.getUserIds());
+        }
+    }
+
+    private void drop(Collection<Integer> userIds) {
+        for (Integer userId : userIds) {
+            evictions.increment(entries.drop(userId));
+        }
+        log.debug("Booking listings of users with IDs {} are evicted", userIds);
+    }
+
+    // Bookings leave a FUTURE listing when they start and a CURRENT one when they end; bookings enter a CURRENT
+    // listing when they start and a PAST one when they end, and those are not in the listing yet.
+    // Occurrences of recurring bookings are listed too, so their dates count as well.
+    private LocalDateTime validUntil(BookingQuery query, List<? extends BookingDtoOutAbs> bookings) {
+        switch (query.getState()) {
+            case FUTURE:
+                return leaving(query, bookings, BookingSort.START, BookingDtoOut::getStartDate, this::findNextStart);
+            case CURRENT:
+                return earliest(leaving(query, bookings, BookingSort.END, BookingDtoOut::getEndDate,
+                        this::findNextEnd),
+                        findNextStart(query.getRole(), query.getUserId(), query.getNow()).orElse(null));
+            case PAST:
+                return findNextEnd(query.getRole(), query.getUserId(), query.getNow()).orElse(null);
+            default:
+                return null;
+        }
+    }
+
+    private Optional<LocalDateTime> findNextStart(BookingRole role, int userId, LocalDateTime now) {
+        return Optional.ofNullable(earliest(bookingRepository.findNextStart(role, userId, now).orElse(null),
+                bookingRules.findNextStart(role, userId, now).orElse(null)));
+    }
+
+    private Optional<LocalDateTime> findNextEnd(BookingRole role, int userId, LocalDateTime now) {
+        return Optional.ofNullable(earliest(bookingRepository.findNextEnd(role, userId, now).orElse(null),
+                bookingRules.findNextEnd(role, userId, now).orElse(null)));
+    }
+
+    // Bookings ahead of an offset page shift it when they leave. Sorted by the date that moves them out, they
+    // leave after the bookings of the page, so only other sorts have to look beyond the page.
+    private LocalDateTime leaving(BookingQuery query, List<? extends BookingDtoOutAbs> bookings, BookingSort sort,
+                                  Function<BookingDtoOut, LocalDateTime> date, Boundary boundary) {
+        if (query.getCursor() == null && query.getFrom() > 0 && query.getSort() != sort) {
+            return boundary.find(query.getRole(), query.getUserId(), query.getNow()).orElse(null);
+        }
+
+        return bookings.stream()
+                .filter(BookingDtoOut.class::isInstance)
+                .map(booking -> date.apply((BookingDtoOut) booking))
+                .filter(Objects::nonNull)
+                .min(Comparator.naturalOrder())
+                .orElse(null);
+    }
+
+    private static LocalDateTime earliest(LocalDateTime first, LocalDateTime second) {
+        if (first == null || second == null) {
+            return first == null ? second : first;
+        }
+        return first.isBefore(second) ? first : second;
+    }
+
+    @FunctionalInterface
+    private interface Boundary {
+
+        Optional<LocalDateTime> find(BookingRole role, int userId, LocalDateTime now);
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class Key {
+
+        private final int userId;
+
+        private final BookingRole role;
+
+        private final BookingState state;
+
+        private final BookingSort sort;
+
+        private final Integer itemId;
+
+        private final LocalDateTime since;
+
+        private final LocalDateTime until;
+
+        private final BookingCursor cursor;
+
+        private final int from;
+
+        private final int size;
+
+        private static Key of(BookingQuery query) {
+            return new Key(query.getUserId(), query.getRole(), query.getState(), query.getSort(), query.getItemId(),
+                    query.getSince(), query.getUntil(), query.getCursor(), query.getFrom(), query.getSize());
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Entry {
+
+        private final List<? extends BookingDtoOutAbs> bookings;
+
+        private final LocalDateTime validUntil;
+
+        private boolean isValidAt(LocalDateTime now) {
+            return now.isBefore(validUntil);
+        }
+    }
+}
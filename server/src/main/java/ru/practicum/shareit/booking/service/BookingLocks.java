@@ -0,0 +1,58 @@
+package ru.practicum.shareit.booking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.util.Stripes;
+
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of locks shared by all items: creates for the same item are serialized,
+ * while items mapped to different stripes proceed in parallel.
+ */
+@Component
+public class BookingLocks {
+
+    private final Lock[] stripes;
+
+    public BookingLocks(@Value("${shareit.booking.lock-stripes:64}") int stripes) {
+        this.stripes = new Lock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withItemLock(int itemId, Supplier<T> action) {
+        Lock lock = stripes[stripe(itemId)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Stripes are always taken in ascending order, so two batches sharing items can not deadlock.
+    public <T> T withItemLocks(Collection<Integer> itemIds, Supplier<T> action) {
+        int[] indexes = itemIds.stream().mapToInt(this::stripe).distinct().sorted().toArray();
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                stripes[index].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlock();
+            }
+        }
+    }
+
+    private int stripe(int itemId) {
+        return Stripes.of(itemId, stripes.length);
+    }
+}
@@ -4,8 +4,12 @@ import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoIn;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoOut;
 import ru.practicum.shareit.booking.dto.ShortBookingDtoOut;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingPeriod;
+import ru.practicum.shareit.booking.model.BookingRule;
 import ru.practicum.shareit.item.service.CommentMapper;
 import ru.practicum.shareit.item.service.ItemFactory;
 import ru.practicum.shareit.user.service.UserFactory;
@@ -20,6 +24,7 @@ import java.util.List;
 )
 public interface BookingMapper {
 
+    @Mapping(target = "rejectedBookingIds", ignore = true)
     BookingDtoOut toDto(Booking booking);
 
     List<BookingDtoOut> toDto(List<Booking> bookings);
@@ -27,7 +32,27 @@ public interface BookingMapper {
     @Mapping(source = "booker.id", target = "bookerId")
     ShortBookingDtoOut toShortDto(Booking booking);
 
+    ShortBookingDtoOut toShortDto(BookingPeriod period);
+
     @Mapping(source = "bookingDto.itemId", target = "item")
     @Mapping(source = "userId", target = "booker")
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "status", ignore = true)
+    @Mapping(target = "owner", ignore = true)
+    @Mapping(target = "phase", ignore = true)
+    @Mapping(target = "created", ignore = true)
     Booking fromDto(BookingDtoIn bookingDto, Integer userId);
+
+    @Mapping(target = "occurrences", ignore = true)
+    RecurringBookingDtoOut toDto(BookingRule rule);
+
+    @Mapping(source = "ruleDto.itemId", target = "item")
+    @Mapping(source = "userId", target = "booker")
+    @Mapping(source = "ruleDto.interval", target = "interval", defaultValue = "1")
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "lastEndDate", ignore = true)
+    @Mapping(target = "owner", ignore = true)
+    @Mapping(target = "status", ignore = true)
+    @Mapping(target = "created", ignore = true)
+    BookingRule fromDto(RecurringBookingDtoIn ruleDto, Integer userId);
 }
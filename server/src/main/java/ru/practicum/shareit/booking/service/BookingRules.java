@@ -0,0 +1,125 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingRule;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.model.ItemPeriod;
+import ru.practicum.shareit.booking.repository.BookingRuleRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Occurrences of recurring bookings in a window, for the checks and listings that also look at plain bookings.
+ * Only the rules whose span reaches the window are read, and each of them is expanded within the window only.
+ * The summary and the next start or end of the occurrences of a user are computed from the rules alone.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookingRules {
+
+    private static final Set<BookingStatus> BLOCKING = EnumSet.of(BookingStatus.WAITING, BookingStatus.APPROVED);
+
+    private final BookingRuleRepository bookingRuleRepository;
+
+    public List<ItemPeriod> findBlockingOccurrences(Collection<Integer> itemIds, LocalDateTime from,
+                                                    LocalDateTime to) {
+        return findOccurrences(itemIds, from, to, BLOCKING);
+    }
+
+    public List<ItemPeriod> findOccurrences(Collection<Integer> itemIds, LocalDateTime from, LocalDateTime to,
+                                            Collection<BookingStatus> statuses) {
+        if (itemIds.isEmpty()) {
+            return List.of();
+        }
+
+        return bookingRuleRepository.findOverlapping(itemIds, from, to, statuses).stream()
+                .flatMap(rule -> rule.occurrences(from, to).stream())
+                .collect(Collectors.toList());
+    }
+
+    // Rules of a user whose span reaches [from, to); with an open end every rule of the user is read
+    public List<BookingRule> findByUser(BookingRole role, int userId, LocalDateTime from, LocalDateTime to,
+                                        Collection<BookingStatus> statuses) {
+        if (from != null && to != null) {
+            return role == BookingRole.BOOKER ?
+                    bookingRuleRepository.findByBookerOverlappingAfter(userId, 0, from, to, statuses,
+                            Pageable.unpaged()) :
+                    bookingRuleRepository.findByOwnerOverlappingAfter(userId, 0, from, to, statuses,
+                            Pageable.unpaged());
+        }
+
+        return findByUser(role, userId).stream()
+                .filter(rule -> statuses.contains(rule.getStatus()))
+                .filter(rule -> to == null || rule.getStartDate().isBefore(to))
+                .filter(rule -> from == null || rule.getLastEndDate().isAfter(from))
+                .collect(Collectors.toList());
+    }
+
+    // Occurrences counted by state from the rules, none of them expanded
+    public BookingSummary summary(BookingRole role, int userId, LocalDateTime now) {
+        long all = 0;
+        long past = 0;
+        long future = 0;
+        long waiting = 0;
+        long rejected = 0;
+        for (BookingRule rule : findByUser(role, userId)) {
+            int occurrences = rule.occurrenceCount();
+            all += occurrences;
+            past += rule.countEndedBefore(now);
+            future += rule.countStartingAfter(now);
+            waiting += rule.getStatus() == BookingStatus.WAITING ? occurrences : 0;
+            rejected += rule.getStatus() == BookingStatus.REJECTED ? occurrences : 0;
+        }
+
+        return BookingSummary.builder()
+                .all(all)
+                .current(all - past - future)
+                .past(past)
+                .future(future)
+                .waiting(waiting)
+                .rejected(rejected)
+                .build();
+    }
+
+    public Optional<LocalDateTime> findNextStart(BookingRole role, int userId, LocalDateTime now) {
+        return findByUser(role, userId).stream()
+                .map(rule -> rule.nextStart(now))
+                .flatMap(Optional::stream)
+                .min(Comparator.naturalOrder());
+    }
+
+    public Optional<LocalDateTime> findNextEnd(BookingRole role, int userId, LocalDateTime now) {
+        return findByUser(role, userId).stream()
+                .map(rule -> rule.nextEnd(now))
+                .flatMap(Optional::stream)
+                .min(Comparator.naturalOrder());
+    }
+
+    public List<Integer> findBookerIdsByItem(int itemId) {
+        return bookingRuleRepository.findBookerIdsByItem(itemId);
+    }
+
+    // Item does not map its rules, so they are removed before the item
+    public void deleteByItem(int itemId) {
+        int deleted = bookingRuleRepository.deleteByItemId(itemId);
+        log.info("{} recurring bookings of item with ID {} are removed", deleted, itemId);
+    }
+
+    private List<BookingRule> findByUser(BookingRole role, int userId) {
+        return role == BookingRole.BOOKER ? bookingRuleRepository.findByBooker(userId) :
+                bookingRuleRepository.findByOwner(userId);
+    }
+}
@@ -2,7 +2,11 @@ package ru.practicum.shareit.booking.service;
 
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
-import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoIn;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoOut;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
 
 import java.util.List;
 
@@ -10,29 +14,24 @@ public interface BookingService {
 
     BookingDtoOutAbs create(BookingDtoIn bookingDtoIn, int userId);
 
-    BookingDtoOutAbs getById(int id, int userId);
-
-    List<? extends BookingDtoOutAbs> getAllByBooker(int userId, int from, int size);
-
-    List<? extends BookingDtoOutAbs> getBookingByOwnerAndStatus(int userId, BookingStatus status, int from, int size);
+    // Joins the caller's transaction, which must hold the item lock; a refused booking does not roll it back
+    BookingDtoOutAbs createInTransaction(BookingDtoIn bookingDtoIn, int userId);
 
-    List<? extends BookingDtoOutAbs> getPastBookingByOwner(int userId, int from, int size);
+    List<? extends BookingDtoOutAbs> createAll(List<BookingDtoIn> bookingDtos, int userId);
 
-    List<? extends BookingDtoOutAbs> getCurrentBookingByOwner(int userId, int from, int size);
+    RecurringBookingDtoOut createRecurring(RecurringBookingDtoIn ruleDto, int userId);
 
-    List<? extends BookingDtoOutAbs> getFutureBookingByOwner(int userId, int from, int size);
-
-    List<? extends BookingDtoOutAbs> getAllByOwner(int ownerId, int from, int size);
+    BookingDtoOutAbs getById(int id, int userId);
 
-    List<? extends BookingDtoOutAbs> getBookingByBookerAndStatus(int userId, BookingStatus status, int from, int size);
+    List<? extends BookingDtoOutAbs> getAll(BookingQuery query);
 
-    List<? extends BookingDtoOutAbs> getPastBookingByBooker(int userId, int from, int size);
+    List<RecurringBookingDtoOut> getAllRecurring(BookingQuery query);
 
-    List<? extends BookingDtoOutAbs> getCurrentBookingByBooker(int userId, int from, int size);
+    BookingSummary getSummary(BookingRole role, int userId);
 
-    List<? extends BookingDtoOutAbs> getFutureBookingByBooker(int userId, int from, int size);
+    BookingDtoOutAbs approve(int id, int ownerId, boolean approved, boolean rejectOverlapping);
 
-    BookingDtoOutAbs approve(int id, int ownerId, boolean approved);
+    RecurringBookingDtoOut approveRecurring(int id, int ownerId, boolean approved);
 
     void delete(int id);
 }
@@ -2,276 +2,572 @@ package ru.practicum.shareit.booking.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
 import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.dto.Occurrence;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoIn;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoOut;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingChanged;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingRule;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.model.ItemPeriod;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.BookingRuleRepository;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.service.UserService;
 import ru.practicum.shareit.util.OffsetLimitPageable;
+import ru.practicum.shareit.util.exception.BookingOverlapException;
 import ru.practicum.shareit.util.exception.ForbiddenException;
 import ru.practicum.shareit.util.exception.ItemIsNotAvailableException;
 import ru.practicum.shareit.util.exception.NotFoundException;
 import ru.practicum.shareit.util.exception.StatusChangeException;
 
 import javax.transaction.Transactional;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BookingServiceImpl implements BookingService {
 
+    private static final String EXCLUSION_VIOLATION = "23P01";
+
+    // Rules read at a time by a recurring listing when its page is smaller
+    private static final int RECURRING_BATCH_SIZE = 100;
+
     private final BookingRepository bookingRepository;
 
     private final UserService userService;
 
     private final BookingMapper bookingMapper;
 
-    @Override
-    public BookingDtoOutAbs create(BookingDtoIn bookingDtoIn, int userId) {
-        Booking booking = bookingMapper.fromDto(bookingDtoIn, userId);
-        booking.setStatus(BookingStatus.WAITING);
+    private final BookingLocks bookingLocks;
 
-        Item item = booking.getItem();
+    private final BookingCounters bookingCounters;
 
-        if (!item.getAvailable()) {
-            log.warn("{} of {} is not available", item, booking);
-            throw new ItemIsNotAvailableException("Item with ID" + item.getId() + " is not available");
-        }
+    private final BookingListCache bookingListCache;
 
-        if (booking.getBooker().getId().equals(item.getOwner().getId())) {
-            log.warn("The booker can not be the owner: {}", booking);
-            throw new NotFoundException("The booker can not be the owner");
-        }
+    private final BookingArchiver bookingArchiver;
 
-        Booking savedBooking = bookingRepository.save(booking);
-        log.info("{} is saved", savedBooking);
+    private final BookingRuleRepository bookingRuleRepository;
 
-        return bookingMapper.toDto(savedBooking);
-    }
+    private final BookingRules bookingRules;
 
-    @Override
-    public BookingDtoOutAbs getById(int id, int userId) {
-        Booking booking = bookingRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException("The booking with ID " + id + " is not found"));
+    private final TransactionTemplate transactionTemplate;
 
-        if (booking.getBooker().getId() != userId && booking.getItem().getOwner().getId() != userId) {
-            log.warn("Access of user with ID {} to {} is prohibited. " +
-                    "Only the booker or the owner can get the book", id, booking);
-            throw new ForbiddenException("Forbidden. User is not owner or booker");
-        }
+    private final ApplicationEventPublisher eventPublisher;
 
-        log.info("{} is found", booking);
+    // The transaction runs under the item lock, so the lock is held until the booking is committed.
+    // Counters are written by the transaction; caches, timelines and the lifecycle apply the published
+    // BookingChanged once it commits.
+    @Override
+    public BookingDtoOutAbs create(BookingDtoIn bookingDtoIn, int userId) {
+        Booking savedBooking = bookingLocks.withItemLock(bookingDtoIn.getItemId(),
+                () -> transactionTemplate.execute(status -> save(bookingDtoIn, userId)));
+        log.info("{} is saved", savedBooking);
 
-        return bookingMapper.toDto(booking);
+        return bookingMapper.toDto(savedBooking);
     }
 
+    // Without a rollback rule a refusal passing the transaction boundary would mark the caller's whole
+    // transaction rollback-only, even though nothing was written
     @Override
-    public List<? extends BookingDtoOutAbs> getAllByBooker(int bookerId,
-                                                           int from,
-                                                           int size) {
-        userService.existenceCheck(bookerId);
-
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
+    @Transactional(value = Transactional.TxType.MANDATORY, dontRollbackOn = RuntimeException.class)
+    public BookingDtoOutAbs createInTransaction(BookingDtoIn bookingDtoIn, int userId) {
+        Booking savedBooking = save(bookingDtoIn, userId);
+        log.info("{} is saved", savedBooking);
 
-        List<Booking> bookings = bookingRepository.getBookingByBooker(bookerId, pageable);
-        log.info("Found {} booking by the booker with ID {}. From {}, size {}",
-                bookings.size(), bookerId, from, size);
+        return bookingMapper.toDto(savedBooking);
+    }
 
-        return bookingMapper.toDto(bookings);
+    private Booking save(BookingDtoIn bookingDtoIn, int userId) {
+        Booking booking = insert(bookingDtoIn, userId);
+        bookingCounters.added(booking);
+        eventPublisher.publishEvent(BookingChanged.created(List.of(booking)));
+        return booking;
     }
 
-    @Override
-    public List<? extends BookingDtoOutAbs> getBookingByBookerAndStatus(int bookerId,
-                                                                        BookingStatus status,
-                                                                        int from,
-                                                                        int size) {
-        userService.existenceCheck(bookerId);
+    // The exclusion constraint of schema-postgresql.sql catches overlaps written by other server instances;
+    // occurrences of recurring bookings are only checked here, under the item lock
+    private Booking insert(BookingDtoIn bookingDtoIn, int userId) {
+        if (!bookingRules.findBlockingOccurrences(Set.of(bookingDtoIn.getItemId()), bookingDtoIn.getStartDate(),
+                bookingDtoIn.getEndDate()).isEmpty()) {
+            throw rejection(bookingDtoIn, userId);
+        }
 
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
+        try {
+            return bookingRepository.insertWaiting(bookingDtoIn.getItemId(), userId, bookingDtoIn.getStartDate(),
+                            bookingDtoIn.getEndDate())
+                    .orElseThrow(() -> rejection(bookingDtoIn, userId));
+        } catch (DataIntegrityViolationException e) {
+            if (isExclusionViolation(e)) {
+                throw new BookingOverlapException("Booking of item with ID " + bookingDtoIn.getItemId() +
+                        " overlaps an existing booking");
+            }
+            throw e;
+        }
+    }
 
-        List<Booking> bookings = bookingRepository.getBookingByBookerAndStatus(bookerId, status, pageable);
-        log.info("Found {} booking by the booker with ID {} and {}. From {}, size {}",
-                bookings.size(), bookerId, status, from, size);
+    // Runs only when the insert was refused: repeats its checks one by one to tell which of them failed.
+    private RuntimeException rejection(BookingDtoIn bookingDtoIn, int userId) {
+        Booking booking = bookingMapper.fromDto(bookingDtoIn, userId);
+        checkBookable(booking.getItem(), booking.getBooker());
 
-        return bookingMapper.toDto(bookings);
+        log.warn("{} overlaps an existing booking of {}", booking, booking.getItem());
+        return overlap(booking);
     }
 
     @Override
-    public List<? extends BookingDtoOutAbs> getPastBookingByBooker(int bookerId,
-                                                                   int from,
-                                                                   int size) {
-        userService.existenceCheck(bookerId);
-
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
-
-        List<Booking> bookings = bookingRepository.getPastBookingByBooker(bookerId, pageable);
-        log.info("Found {} booking by the booker with ID {}. From {}, size {}",
-                bookings.size(), bookerId, from, size);
+    public List<? extends BookingDtoOutAbs> createAll(List<BookingDtoIn> bookingDtos, int userId) {
+        if (bookingDtos.isEmpty()) {
+            return List.of();
+        }
 
-        return bookingMapper.toDto(bookings);
+        Set<Integer> itemIds = bookingDtos.stream().map(BookingDtoIn::getItemId).collect(Collectors.toSet());
+        List<Booking> savedBookings = bookingLocks.withItemLocks(itemIds,
+                () -> transactionTemplate.execute(status -> {
+                    List<Booking> bookings = insertAll(bookingDtos, userId);
+                    bookings.forEach(bookingCounters::added);
+                    eventPublisher.publishEvent(BookingChanged.created(bookings));
+                    return bookings;
+                }));
+        log.info("{} bookings are saved by user with ID {}", savedBookings.size(), userId);
+
+        return bookingMapper.toDto(savedBookings);
     }
 
-    @Override
-    public List<? extends BookingDtoOutAbs> getCurrentBookingByBooker(int bookerId,
-                                                                      int from,
-                                                                      int size) {
-        userService.existenceCheck(bookerId);
-
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
+    // The whole batch is validated before anything is written, then saved by one saveAll so that it is
+    // committed or rolled back as a unit; Hibernate sends the inserts in JDBC batches.
+    private List<Booking> insertAll(List<BookingDtoIn> bookingDtos, int userId) {
+        Map<Integer, Booking> loaded = new HashMap<>();
+        List<Booking> bookings = bookingDtos.stream()
+                .map(bookingDto -> toBooking(bookingDto, userId, loaded))
+                .collect(Collectors.toList());
+        loaded.values().forEach(booking -> checkBookable(booking.getItem(), booking.getBooker()));
+        checkOverlapsWithinBatch(bookings);
+        checkOverlapsWithExisting(bookings);
+
+        bookings.forEach(booking -> booking.setStatus(BookingStatus.WAITING));
+        try {
+            return bookingRepository.saveAllAndFlush(bookings);
+        } catch (DataIntegrityViolationException e) {
+            if (isExclusionViolation(e)) {
+                throw new BookingOverlapException("Bookings of user with ID " + userId +
+                        " overlap an existing booking");
+            }
+            throw e;
+        }
+    }
 
-        List<Booking> bookings = bookingRepository.getCurrentBookingByBooker(bookerId, pageable);
-        log.info("Found {} booking by the booker with ID {}. From {}, size {}",
-                bookings.size(), bookerId, from, size);
+    // Item and booker are loaded once per item of the batch and shared by all of its bookings.
+    private Booking toBooking(BookingDtoIn bookingDto, int userId, Map<Integer, Booking> loaded) {
+        Booking first = loaded.get(bookingDto.getItemId());
+        if (first == null) {
+            Booking booking = bookingMapper.fromDto(bookingDto, userId);
+            loaded.put(bookingDto.getItemId(), booking);
+            return booking;
+        }
 
-        return bookingMapper.toDto(bookings);
+        return Booking.builder()
+                .item(first.getItem())
+                .booker(first.getBooker())
+                .startDate(bookingDto.getStartDate())
+                .endDate(bookingDto.getEndDate())
+                .build();
     }
 
-    @Override
-    public List<? extends BookingDtoOutAbs> getFutureBookingByBooker(int bookerId,
-                                                                     int from,
-                                                                     int size) {
-        userService.existenceCheck(bookerId);
+    private void checkBookable(Item item, User booker) {
+        if (!item.getAvailable()) {
+            log.warn("{} is not available to {}", item, booker);
+            throw new ItemIsNotAvailableException("Item with ID" + item.getId() + " is not available");
+        }
 
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
+        if (booker.getId().equals(item.getOwner().getId())) {
+            log.warn("The booker can not be the owner: {} of {}", booker, item);
+            throw new NotFoundException("The booker can not be the owner");
+        }
+    }
 
-        List<Booking> bookings = bookingRepository.getFutureBookingByBooker(bookerId, pageable);
-        log.info("Found {} booking by the booker with ID {}. From {}, size {}",
-                bookings.size(), bookerId, from, size);
+    private void checkOverlapsWithinBatch(List<Booking> bookings) {
+        List<Booking> sorted = bookings.stream()
+                .sorted(Comparator.comparing((Booking booking) -> booking.getItem().getId())
+                        .thenComparing(Booking::getStartDate))
+                .collect(Collectors.toList());
+
+        Booking latest = null;
+        for (Booking booking : sorted) {
+            if (latest != null && latest.getItem().getId().equals(booking.getItem().getId())
+                    && booking.getStartDate().isBefore(latest.getEndDate())) {
+                log.warn("{} overlaps {} of the same batch", booking, latest);
+                throw overlap(booking);
+            }
+            if (latest == null || !latest.getItem().getId().equals(booking.getItem().getId())
+                    || booking.getEndDate().isAfter(latest.getEndDate())) {
+                latest = booking;
+            }
+        }
+    }
 
-        return bookingMapper.toDto(bookings);
+    private void checkOverlapsWithExisting(List<Booking> bookings) {
+        Map<Integer, List<Booking>> byItem = bookings.stream()
+                .collect(Collectors.groupingBy(booking -> booking.getItem().getId()));
+        LocalDateTime startDate = bookings.stream().map(Booking::getStartDate).min(Comparator.naturalOrder())
+                .orElseThrow();
+        LocalDateTime endDate = bookings.stream().map(Booking::getEndDate).max(Comparator.naturalOrder())
+                .orElseThrow();
+
+        List<ItemPeriod> periods = Stream.concat(
+                        bookingRepository.findBlockingPeriods(byItem.keySet(), startDate, endDate).stream(),
+                        bookingRules.findBlockingOccurrences(byItem.keySet(), startDate, endDate).stream())
+                .collect(Collectors.toList());
+        for (ItemPeriod period : periods) {
+            for (Booking booking : byItem.get(period.getItemId())) {
+                if (period.overlaps(booking)) {
+                    log.warn("{} overlaps an existing booking {}", booking, period);
+                    throw overlap(booking);
+                }
+            }
+        }
     }
 
     @Override
-    public List<? extends BookingDtoOutAbs> getAllByOwner(int ownerId,
-                                                          int from,
-                                                          int size) {
-        userService.existenceCheck(ownerId);
+    public RecurringBookingDtoOut createRecurring(RecurringBookingDtoIn ruleDto, int userId) {
+        BookingRule savedRule = bookingLocks.withItemLock(ruleDto.getItemId(),
+                () -> transactionTemplate.execute(status -> {
+                    BookingRule rule = insertRule(ruleDto, userId);
+                    eventPublisher.publishEvent(BookingChanged.recurring(rule));
+                    return rule;
+                }));
+        log.info("{} is saved", savedRule);
+
+        return bookingMapper.toDto(savedRule);
+    }
 
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
+    // Bookings and occurrences of other rules are read over the whole span of the rule, then each is tested
+    // against the occurrences of the rule that it could meet; the rule itself is never expanded in full.
+    private BookingRule insertRule(RecurringBookingDtoIn ruleDto, int userId) {
+        BookingRule rule = bookingMapper.fromDto(ruleDto, userId);
+        checkBookable(rule.getItem(), rule.getBooker());
+
+        Set<Integer> itemIds = Set.of(rule.getItem().getId());
+        LocalDateTime lastEnd = rule.lastEnd();
+        Stream.concat(bookingRepository.findBlockingPeriods(itemIds, rule.getStartDate(), lastEnd).stream(),
+                        bookingRules.findBlockingOccurrences(itemIds, rule.getStartDate(), lastEnd).stream())
+                .filter(rule::overlaps)
+                .findFirst()
+                .ifPresent(period -> {
+                    log.warn("{} overlaps an existing booking {}", rule, period);
+                    throw new BookingOverlapException("Recurring booking of item with ID " +
+                            rule.getItem().getId() + " overlaps an existing booking from " +
+                            period.getStartDate() + " to " + period.getEndDate());
+                });
+
+        rule.setStatus(BookingStatus.WAITING);
+        return bookingRuleRepository.save(rule);
+    }
 
-        List<Booking> bookings = bookingRepository.getBookingByOwner(ownerId, pageable);
-        log.info("Found {} booking by the owner with ID {}. From {}, size {}",
-                bookings.size(), ownerId, from, size);
+    private static BookingOverlapException overlap(Booking booking) {
+        return new BookingOverlapException("Booking of item with ID " + booking.getItem().getId() + " from " +
+                booking.getStartDate() + " to " + booking.getEndDate() + " overlaps an existing booking");
+    }
 
-        return bookingMapper.toDto(bookings);
+    private static boolean isExclusionViolation(DataIntegrityViolationException e) {
+        Throwable cause = e.getMostSpecificCause();
+        return cause instanceof SQLException && EXCLUSION_VIOLATION.equals(((SQLException) cause).getSQLState());
     }
 
     @Override
-    public List<? extends BookingDtoOutAbs> getBookingByOwnerAndStatus(int ownerId,
-                                                                       BookingStatus status,
-                                                                       int from,
-                                                                       int size) {
-        userService.existenceCheck(ownerId);
+    public BookingDtoOutAbs getById(int id, int userId) {
+        Booking booking = bookingRepository.findById(id)
+                .or(() -> bookingArchiver.findById(id))
+                .orElseThrow(() -> new NotFoundException("The booking with ID " + id + " is not found"));
 
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
+        if (booking.getBooker().getId() != userId && booking.getItem().getOwner().getId() != userId) {
+            log.warn("Access of user with ID {} to {} is prohibited. " +
+                    "Only the booker or the owner can get the book", id, booking);
+            throw new ForbiddenException("Forbidden. User is not owner or booker");
+        }
 
-        List<Booking> bookings = bookingRepository.getBookingByOwnerAndStatus(ownerId, status, pageable);
-        log.info("Found {} booking by the owner with ID {} and {}. From {}, size {}",
-                bookings.size(), ownerId, status, from, size);
+        log.info("{} is found", booking);
 
-        return bookingMapper.toDto(bookings);
+        return bookingMapper.toDto(booking);
     }
 
+    // Occurrences of recurring bookings in the state are merged into the page in listing order. An offset page is
+    // cut from the heads of both sources, a cursor page from what follows the cursor in each.
     @Override
-    public List<? extends BookingDtoOutAbs> getPastBookingByOwner(int ownerId,
-                                                                  int from,
-                                                                  int size) {
-        userService.existenceCheck(ownerId);
+    public List<? extends BookingDtoOutAbs> getAll(BookingQuery query) {
+        return bookingListCache.get(query, () -> {
+            userService.existenceCheck(query.getUserId());
+
+            int from = query.getCursor() != null ? 0 : query.getFrom();
+            List<BookingDtoOut> occurrences = findOccurrences(query, from + query.getSize());
+            if (occurrences.isEmpty()) {
+                List<Booking> bookings = bookingArchiver.findBookings(query);
+                log.info("Found {} bookings by {}", bookings.size(), query);
+
+                return bookingMapper.toDto(bookings);
+            }
+
+            BookingQuery head = query.toBuilder().from(0).size(from + query.getSize()).build();
+            List<BookingDtoOut> bookings = Stream.concat(
+                            bookingMapper.toDto(bookingArchiver.findBookings(head)).stream(), occurrences.stream())
+                    .sorted(Comparator.comparing(booking -> BookingCursor.of(booking, query.getSort()),
+                            BookingCursor.LISTING_ORDER))
+                    .skip(from)
+                    .limit(query.getSize())
+                    .collect(Collectors.toList());
+            log.info("Found {} bookings and occurrences by {}", bookings.size(), query);
+
+            return bookings;
+        });
+    }
 
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
+    // The first occurrences of the listing that follow its cursor. The state and the cursor narrow the window,
+    // and every rule is expanded backwards from the end of the window, at most limit occurrences of it.
+    private List<BookingDtoOut> findOccurrences(BookingQuery query, int limit) {
+        LocalDateTime now = query.getNow();
+        BookingState state = query.getState();
+        BookingCursor cursor = query.getCursor();
+        // Occurrences overlap [from, to) while bookings overlap [since, until]
+        LocalDateTime from = query.getSince() == null ? null : query.getSince().minusNanos(1);
+        LocalDateTime to = query.getUntil() == null ? null : query.getUntil().plusNanos(1);
+        if (state == BookingState.PAST || state == BookingState.CURRENT) {
+            to = earliest(to, now.plusNanos(1));
+        }
+        if (state == BookingState.FUTURE || state == BookingState.CURRENT) {
+            from = latest(from, now.minusNanos(1));
+        }
+        if (cursor != null && cursor.getSort() != BookingSort.CREATED) {
+            to = earliest(to, cursor.getKey().plusNanos(1));
+        }
 
-        List<Booking> bookings = bookingRepository.getPastBookingByOwner(ownerId, pageable);
-        log.info("Found {} booking by the owner with ID {}. From {}, size {}",
-                bookings.size(), ownerId, from, size);
+        Set<BookingStatus> statuses = state.getStatus() == null ? EnumSet.allOf(BookingStatus.class) :
+                EnumSet.of(state.getStatus());
+        List<BookingDtoOut> occurrences = new ArrayList<>();
+        for (BookingRule rule : bookingRules.findByUser(query.getRole(), query.getUserId(), from, to, statuses)) {
+            if (query.getItemId() != null && !query.getItemId().equals(rule.getItem().getId())) {
+                continue;
+            }
+
+            // By creation all occurrences of a rule share the key, so the cursor passes whole rules
+            LocalDateTime ruleTo = to == null ? rule.lastEnd() : to;
+            if (cursor != null && cursor.getSort() == BookingSort.CREATED) {
+                if (cursor.getId() == -rule.getId() && cursor.getOccurrence() != null) {
+                    ruleTo = earliest(ruleTo, cursor.getOccurrence());
+                } else if (!cursor.isBefore(occurrenceCursor(rule, rule.occurrence(0), cursor.getSort()))) {
+                    continue;
+                }
+            }
+
+            List<ItemPeriod> periods = rule.lastOccurrences(from == null ? rule.getStartDate() : from, ruleTo, limit,
+                    period -> state.includes(period.getStartDate(), period.getEndDate(), now) &&
+                            (cursor == null || cursor.isBefore(occurrenceCursor(rule, period, cursor.getSort()))));
+            if (periods.isEmpty()) {
+                continue;
+            }
+
+            RecurringBookingDtoOut ruleDto = bookingMapper.toDto(rule);
+            periods.forEach(period -> occurrences.add(BookingDtoOut.builder()
+                    .ruleId(rule.getId())
+                    .startDate(period.getStartDate())
+                    .endDate(period.getEndDate())
+                    .item(ruleDto.getItem())
+                    .booker(ruleDto.getBooker())
+                    .status(rule.getStatus())
+                    .created(rule.getCreated())
+                    .build()));
+        }
+        return occurrences;
+    }
 
-        return bookingMapper.toDto(bookings);
+    private static BookingCursor occurrenceCursor(BookingRule rule, ItemPeriod period, BookingSort sort) {
+        LocalDateTime key = sort == BookingSort.START ? period.getStartDate() :
+                sort == BookingSort.END ? period.getEndDate() : rule.getCreated();
+        return new BookingCursor(sort, key, -rule.getId(), period.getStartDate());
     }
 
-    @Override
-    public List<? extends BookingDtoOutAbs> getCurrentBookingByOwner(int ownerId,
-                                                                     int from,
-                                                                     int size) {
-        userService.existenceCheck(ownerId);
+    private static LocalDateTime earliest(LocalDateTime first, LocalDateTime second) {
+        return first == null || second.isBefore(first) ? second : first;
+    }
 
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
+    private static LocalDateTime latest(LocalDateTime first, LocalDateTime second) {
+        return first == null || second.isAfter(first) ? second : first;
+    }
 
-        List<Booking> bookings = bookingRepository.getCurrentBookingByOwner(ownerId, pageable);
-        log.info("Found {} booking by the owner with ID {}. From {}, size {}",
-                bookings.size(), ownerId, from, size);
+    // Rules are read in id order a batch at a time and expanded within the window only. Rules left without an
+    // occurrence of the state are skipped before the offset is counted, so SQL cannot page them by itself.
+    @Override
+    public List<RecurringBookingDtoOut> getAllRecurring(BookingQuery query) {
+        userService.existenceCheck(query.getUserId());
+
+        BookingState state = query.getState();
+        Set<BookingStatus> statuses = state.getStatus() == null ? EnumSet.allOf(BookingStatus.class) :
+                EnumSet.of(state.getStatus());
+        int batchSize = Math.max(query.getSize(), RECURRING_BATCH_SIZE);
+        int skipped = 0;
+        int afterId = 0;
+        List<RecurringBookingDtoOut> found = new ArrayList<>();
+        List<BookingRule> rules;
+        do {
+            rules = findRecurring(query, statuses, afterId, batchSize);
+            for (BookingRule rule : rules) {
+                List<Occurrence> occurrences = rule.occurrences(query.getSince(), query.getUntil()).stream()
+                        .filter(period -> state.includes(period.getStartDate(), period.getEndDate(), query.getNow()))
+                        .map(period -> new Occurrence(period.getStartDate(), period.getEndDate()))
+                        .collect(Collectors.toList());
+                if (occurrences.isEmpty() || skipped++ < query.getFrom()) {
+                    continue;
+                }
+
+                RecurringBookingDtoOut ruleDto = bookingMapper.toDto(rule);
+                ruleDto.setOccurrences(occurrences);
+                found.add(ruleDto);
+                if (found.size() == query.getSize()) {
+                    break;
+                }
+            }
+            if (!rules.isEmpty()) {
+                afterId = rules.get(rules.size() - 1).getId();
+            }
+        } while (rules.size() == batchSize && found.size() < query.getSize());
+        log.info("Found {} recurring bookings by {}", found.size(), query);
+
+        return found;
+    }
 
-        return bookingMapper.toDto(bookings);
+    private List<BookingRule> findRecurring(BookingQuery query, Set<BookingStatus> statuses, int afterId,
+                                            int batchSize) {
+        OffsetLimitPageable batch = new OffsetLimitPageable(0, batchSize, Sort.unsorted());
+        return query.getRole() == BookingRole.BOOKER ?
+                bookingRuleRepository.findByBookerOverlappingAfter(query.getUserId(), afterId, query.getSince(),
+                        query.getUntil(), statuses, batch) :
+                bookingRuleRepository.findByOwnerOverlappingAfter(query.getUserId(), afterId, query.getSince(),
+                        query.getUntil(), statuses, batch);
     }
 
     @Override
-    public List<? extends BookingDtoOutAbs> getFutureBookingByOwner(int ownerId,
-                                                                    int from,
-                                                                    int size) {
-        userService.existenceCheck(ownerId);
+    public BookingSummary getSummary(BookingRole role, int userId) {
+        userService.existenceCheck(userId);
 
-        Pageable pageable = new OffsetLimitPageable(from, size, Sort.by(Sort.Direction.DESC, "startDate"));
+        LocalDateTime now = LocalDateTime.now();
+        BookingSummary summary = (bookingCounters.isEnabled() ? bookingCounters.summary(role, userId, now) :
+                bookingArchiver.plusArchived(bookingRepository.countByState(role, userId, now), role, userId, now))
+                .plus(bookingRules.summary(role, userId, now));
+        log.info("Bookings of user with ID {} as {}: {}", userId, role, summary);
 
-        List<Booking> bookings = bookingRepository.getFutureBookingByOwner(ownerId, pageable);
-        log.info("Found {} booking by the owner with ID {}. From {}, size {}",
-                bookings.size(), ownerId, from, size);
-
-        return bookingMapper.toDto(bookings);
+        return summary;
     }
 
     @Transactional
     @Override
-    public BookingDtoOutAbs approve(int id, int ownerId, boolean approved) {
-        Booking booking = bookingRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException("The booking with ID " + id + " is not found"));
+    public BookingDtoOutAbs approve(int id, int ownerId, boolean approved, boolean rejectOverlapping) {
+        BookingStatus status = approved ? BookingStatus.APPROVED : BookingStatus.REJECTED;
 
-        if (!booking.getItem().getOwner().getId().equals(ownerId)) {
-            log.info("User with ID {} can not change status of {}. Only the owner can do it", ownerId, booking);
-            throw new ForbiddenException("Forbidden. ser is not owner");
-        }
+        if (bookingRepository.decideWaiting(id, ownerId, status) == 0) {
+            int bookingOwnerId = bookingRepository.findOwnerIdById(id)
+                    .orElseThrow(() -> new NotFoundException("The booking with ID " + id + " is not found"));
 
-        if (booking.getStatus() != BookingStatus.WAITING) {
-            log.info("The status of {} should not be WAITING", booking);
+            if (bookingOwnerId != ownerId) {
+                log.info("User with ID {} can not change status of booking with ID {}. Only the owner can do it",
+                        ownerId, id);
+                throw new ForbiddenException("Forbidden. ser is not owner");
+            }
+
+            log.info("The status of booking with ID {} should be WAITING", id);
             throw new StatusChangeException();
         }
 
-        booking.setStatus(approved ? BookingStatus.APPROVED : BookingStatus.REJECTED);
-
+        Booking booking = bookingRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("The booking with ID " + id + " is not found"));
+        bookingCounters.changed(List.of(id), BookingStatus.WAITING, status);
         log.info("The status of {} is updated", booking);
 
-        return bookingMapper.toDto(booking);
+        List<Integer> rejectedIds = approved && rejectOverlapping ? rejectOverlappingWaiting(booking) : List.of();
+        Set<Integer> rejectedBookerIds = rejectedIds.isEmpty() ? Set.of() :
+                bookingRepository.countByUser(BookingRole.BOOKER, rejectedIds).keySet();
+        eventPublisher.publishEvent(BookingChanged.decided(booking, rejectedBookerIds));
+
+        BookingDtoOut bookingDtoOut = bookingMapper.toDto(booking);
+        if (approved && rejectOverlapping) {
+            bookingDtoOut.setRejectedBookingIds(rejectedIds);
+        }
+        return bookingDtoOut;
     }
 
+    @Transactional
     @Override
-    public void delete(int id) {
-        if (!bookingRepository.existsById(id)) {
-            throw new NotFoundException("Booking with ID " + id + " is not found");
+    public RecurringBookingDtoOut approveRecurring(int id, int ownerId, boolean approved) {
+        BookingStatus status = approved ? BookingStatus.APPROVED : BookingStatus.REJECTED;
+
+        if (bookingRuleRepository.decideWaiting(id, ownerId, status) == 0) {
+            int ruleOwnerId = bookingRuleRepository.findOwnerIdById(id)
+                    .orElseThrow(() -> new NotFoundException("The recurring booking with ID " + id + " is not found"));
+
+            if (ruleOwnerId != ownerId) {
+                log.info("User with ID {} can not change status of recurring booking with ID {}. " +
+                        "Only the owner can do it", ownerId, id);
+                throw new ForbiddenException("Forbidden. User is not owner");
+            }
+
+            log.info("The status of recurring booking with ID {} should be WAITING", id);
+            throw new StatusChangeException();
         }
 
-        bookingRepository.deleteById(id);
+        BookingRule rule = bookingRuleRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("The recurring booking with ID " + id + " is not found"));
+        eventPublisher.publishEvent(BookingChanged.recurring(rule));
+        log.info("The status of {} is updated", rule);
 
-        log.info("Booking ID {} is removed", id);
+        return bookingMapper.toDto(rule);
     }
 
-    public static Booking getLastBooking(Item item, LocalDateTime now) {
-        return item.getBookings().stream()
-                .sorted(Comparator.comparing(Booking::getEndDate).reversed())
-                .filter(booking -> now.isAfter(booking.getEndDate()))
-                .findFirst()
-                .orElse(null);
+    private List<Integer> rejectOverlappingWaiting(Booking booking) {
+        List<Integer> ids = bookingRepository.lockOverlappingWaiting(booking.getId(), booking.getItem().getId(),
+                booking.getStartDate(), booking.getEndDate());
+
+        if (!ids.isEmpty()) {
+            bookingRepository.rejectWaiting(ids);
+            bookingCounters.changed(ids, BookingStatus.WAITING, BookingStatus.REJECTED);
+            log.info("Bookings with IDs {} overlapping {} are rejected", ids, booking);
+        }
+
+        return ids;
     }
 
-    public static Booking getNextBooking(Item item, LocalDateTime now) {
-        return item.getBookings().stream()
-                .sorted(Comparator.comparing(Booking::getStartDate))
-                .filter(booking -> now.isBefore(booking.getStartDate()))
-                .findFirst()
-                .orElse(null);
+    @Override
+    public void delete(int id) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Booking found = bookingRepository.findById(id)
+                    .orElseThrow(() -> new NotFoundException("Booking with ID " + id + " is not found"));
+            bookingRepository.deleteById(id);
+            bookingCounters.removed(found);
+            eventPublisher.publishEvent(BookingChanged.deleted(found));
+        });
+        log.info("Booking ID {} is removed", id);
     }
 }
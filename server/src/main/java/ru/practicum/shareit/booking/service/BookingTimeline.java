@@ -0,0 +1,127 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingChanged;
+import ru.practicum.shareit.booking.model.BookingPeriod;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.util.StripedLruCache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static ru.practicum.shareit.util.Transactions.afterCommit;
+
+/**
+ * Per-item index of booking periods answering "last" and "next" booking queries without loading
+ * {@link Item#getBookings()}. A timeline is read from the database on first use and afterwards kept up
+ * to date from {@link BookingChanged}; changes are applied once the surrounding transaction commits.
+ * <p>
+ * Timelines are bounded by an LRU limit and reloaded once older than the maximum TTL, which also bounds how
+ * long bookings written by another instance stay unseen. Loads run outside any lock; a load that raced with
+ * a change of its item is used for the request but not cached.
+ */
+@Component
+@Slf4j
+public class BookingTimeline {
+
+    private final BookingRepository bookingRepository;
+
+    private final Duration maxTtl;
+
+    private final StripedLruCache<Integer, Entry> timelines;
+
+    public BookingTimeline(BookingRepository bookingRepository,
+                           @Value("${shareit.booking.timeline.max-entries:10000}") int maxEntries,
+                           @Value("${shareit.booking.timeline.max-ttl-seconds:60}") long maxTtlSeconds) {
+        this.bookingRepository = bookingRepository;
+        this.maxTtl = Duration.ofSeconds(maxTtlSeconds);
+        this.timelines = new StripedLruCache<>(maxEntries, itemId -> itemId);
+    }
+
+    public Booking getLastBooking(Item item, LocalDateTime now) {
+        return toBooking(item, timeline(item.getId(), now).last(now));
+    }
+
+    public Booking getNextBooking(Item item, LocalDateTime now) {
+        return toBooking(item, timeline(item.getId(), now).next(now));
+    }
+
+    // Runs once the transaction that wrote the bookings has committed
+    @TransactionalEventListener
+    public void onBookingChanged(BookingChanged event) {
+        for (Booking booking : event.getBookings()) {
+            int itemId = booking.getItem().getId();
+            if (event.getType() == BookingChanged.Type.DELETED) {
+                without(itemId, booking.getId());
+            } else {
+                with(itemId, BookingPeriod.of(booking));
+            }
+        }
+    }
+
+    public void evict(int itemId) {
+        afterCommit(() -> timelines.drop(itemId));
+    }
+
+    private void with(int itemId, BookingPeriod period) {
+        timelines.change(itemId, entry -> entry.change(entry.timeline.with(period)));
+    }
+
+    private void without(int itemId, int bookingId) {
+        timelines.change(itemId, entry -> entry.change(entry.timeline.without(bookingId)));
+    }
+
+    private ItemTimeline timeline(int itemId, LocalDateTime now) {
+        Entry entry = timelines.get(itemId);
+        if (entry != null && entry.isValidAt(now)) {
+            return entry.timeline;
+        }
+
+        long generation = timelines.generation(itemId);
+        ItemTimeline timeline = ItemTimeline.of(bookingRepository.getPeriodsByItem(itemId));
+        log.debug("Timeline of item with ID {} is loaded with {} bookings", itemId, timeline.size());
+        timelines.put(itemId, new Entry(timeline, now.plus(maxTtl)), generation);
+        return timeline;
+    }
+
+    private static Booking toBooking(Item item, BookingPeriod period) {
+        if (period == null) {
+            return null;
+        }
+
+        User booker = new User();
+        booker.setId(period.getBookerId());
+
+        Booking booking = new Booking();
+        booking.setId(period.getId());
+        booking.setStartDate(period.getStartDate());
+        booking.setEndDate(period.getEndDate());
+        booking.setItem(item);
+        booking.setBooker(booker);
+        return booking;
+    }
+
+    @AllArgsConstructor
+    private static final class Entry {
+
+        private final ItemTimeline timeline;
+
+        private final LocalDateTime validUntil;
+
+        private boolean isValidAt(LocalDateTime now) {
+            return now.isBefore(validUntil);
+        }
+
+        // A change keeps the load time, so a patched timeline is still reloaded on schedule
+        private Entry change(ItemTimeline changed) {
+            return new Entry(changed, validUntil);
+        }
+    }
+}
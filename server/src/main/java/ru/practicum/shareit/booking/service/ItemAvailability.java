@@ -0,0 +1,133 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.shareit.booking.dto.FreeInterval;
+import ru.practicum.shareit.booking.model.BookingChanged;
+import ru.practicum.shareit.booking.model.ItemPeriod;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.util.StripedLruCache;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static ru.practicum.shareit.util.Transactions.afterCommit;
+
+/**
+ * Free intervals of an item in a window: the waiting and approved bookings overlapping the window are read
+ * in start order from the item/period index, merged with the occurrences of its recurring bookings in the
+ * window, and swept once, every gap between them being free.
+ * <p>
+ * Results are kept in a bounded LRU cache indexed by item. The windows of an item are evicted once a
+ * transaction that creates, decides, expires, archives or deletes one of its bookings, or changes one of its
+ * recurring bookings, commits (see {@link BookingChanged}); as in
+ * {@link BookingListCache}, a result read while such a transaction was running is not stored.
+ */
+@Component
+@Slf4j
+public class ItemAvailability {
+
+    private final BookingRepository bookingRepository;
+
+    private final BookingRules bookingRules;
+
+    private final boolean enabled;
+
+    private final StripedLruCache<Key, List<FreeInterval>> entries;
+
+    public ItemAvailability(BookingRepository bookingRepository,
+                            BookingRules bookingRules,
+                            @Value("${shareit.item.availability-cache.enabled:false}") boolean enabled,
+                            @Value("${shareit.item.availability-cache.max-entries:10000}") int maxEntries) {
+        this.bookingRepository = bookingRepository;
+        this.bookingRules = bookingRules;
+        this.enabled = enabled;
+        this.entries = new StripedLruCache<>(maxEntries, key -> key.itemId);
+    }
+
+    public List<FreeInterval> getFree(int itemId, LocalDateTime from, LocalDateTime to) {
+        if (!enabled) {
+            return load(itemId, from, to);
+        }
+
+        Key key = new Key(itemId, from, to);
+        List<FreeInterval> cached = entries.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = entries.generation(itemId);
+        List<FreeInterval> free = load(itemId, from, to);
+        entries.put(key, free, generation);
+        return free;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void evict(int itemId) {
+        if (!enabled) {
+            return;
+        }
+
+        afterCommit(() -> entries.drop(itemId));
+    }
+
+    // Runs once the transaction that wrote the bookings has committed
+    @TransactionalEventListener
+    public void onBookingChanged(BookingChanged event) {
+        if (enabled) {
+            event.getItemIds().forEach(entries::drop);
+        }
+    }
+
+    private List<FreeInterval> load(int itemId, LocalDateTime from, LocalDateTime to) {
+        List<ItemPeriod> periods = bookingRepository.findBlockingPeriodsByItem(itemId, from, to);
+        List<ItemPeriod> occurrences = bookingRules.findBlockingOccurrences(List.of(itemId), from, to);
+        if (!occurrences.isEmpty()) {
+            periods = new ArrayList<>(periods);
+            periods.addAll(occurrences);
+            periods.sort(Comparator.comparing(ItemPeriod::getStartDate));
+        }
+
+        List<FreeInterval> free = sweep(periods, from, to);
+        log.debug("Item with ID {} is free in {} intervals from {} to {}", itemId, free.size(), from, to);
+        return free;
+    }
+
+    // Periods come in start order; overlapping and touching ones merge into a single busy run.
+    static List<FreeInterval> sweep(List<ItemPeriod> periods, LocalDateTime from, LocalDateTime to) {
+        List<FreeInterval> free = new ArrayList<>();
+        LocalDateTime busyUntil = from;
+        for (ItemPeriod period : periods) {
+            if (period.getStartDate().isAfter(busyUntil)) {
+                free.add(new FreeInterval(busyUntil, period.getStartDate()));
+            }
+            if (period.getEndDate().isAfter(busyUntil)) {
+                busyUntil = period.getEndDate();
+            }
+        }
+        if (busyUntil.isBefore(to)) {
+            free.add(new FreeInterval(busyUntil, to));
+        }
+        return List.copyOf(free);
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class Key {
+
+        private final int itemId;
+
+        private final LocalDateTime from;
+
+        private final LocalDateTime to;
+    }
+}
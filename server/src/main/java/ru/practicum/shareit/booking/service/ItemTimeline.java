@@ -0,0 +1,249 @@
+package ru.practicum.shareit.booking.service;
+
+import ru.practicum.shareit.booking.model.BookingPeriod;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable snapshot of the bookings of one item. Periods are kept in parallel primitive arrays sorted by start,
+ * plus a permutation sorted by end, so the last and the next booking are found by binary search.
+ * Times are stored as epoch microseconds, the precision of the booking columns.
+ * <p>
+ * Only a load sorts; {@link #with} and {@link #without} copy the arrays once, inserting or removing a single
+ * period at its binary-searched position in both orders.
+ */
+final class ItemTimeline {
+
+    static final ItemTimeline EMPTY = new ItemTimeline(new int[0], new int[0], new long[0], new long[0],
+            new int[0], new long[0]);
+
+    private final int[] ids;
+
+    private final int[] bookerIds;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    // Positions in start order sorted by end, ties in start order
+    private final int[] byEnd;
+
+    private final long[] sortedEnds;
+
+    private ItemTimeline(int[] ids, int[] bookerIds, long[] starts, long[] ends, int[] byEnd, long[] sortedEnds) {
+        this.ids = ids;
+        this.bookerIds = bookerIds;
+        this.starts = starts;
+        this.ends = ends;
+        this.byEnd = byEnd;
+        this.sortedEnds = sortedEnds;
+    }
+
+    static ItemTimeline of(List<BookingPeriod> periods) {
+        List<BookingPeriod> sorted = new ArrayList<>(periods);
+        sorted.sort(Comparator.comparing(BookingPeriod::getStartDate).thenComparing(BookingPeriod::getId));
+
+        int size = sorted.size();
+        int[] ids = new int[size];
+        int[] bookerIds = new int[size];
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        for (int i = 0; i < size; i++) {
+            BookingPeriod period = sorted.get(i);
+            ids[i] = period.getId();
+            bookerIds[i] = period.getBookerId();
+            starts[i] = toEpochMicros(period.getStartDate());
+            ends[i] = toEpochMicros(period.getEndDate());
+        }
+
+        int[] byEnd = IntStream.range(0, size)
+                .boxed()
+                .sorted(Comparator.comparingLong(i -> ends[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        long[] sortedEnds = Arrays.stream(byEnd).mapToLong(i -> ends[i]).toArray();
+        return new ItemTimeline(ids, bookerIds, starts, ends, byEnd, sortedEnds);
+    }
+
+    /**
+     * The booking with the latest end strictly before {@code now}.
+     */
+    BookingPeriod last(LocalDateTime now) {
+        int position = lowerBound(sortedEnds, toEpochMicros(now)) - 1;
+        return position < 0 ? null : period(byEnd[position]);
+    }
+
+    /**
+     * The booking with the earliest start strictly after {@code now}.
+     */
+    BookingPeriod next(LocalDateTime now) {
+        int position = upperBound(starts, toEpochMicros(now));
+        return position == starts.length ? null : period(position);
+    }
+
+    ItemTimeline with(BookingPeriod period) {
+        ItemTimeline base = without(period.getId());
+        int id = period.getId();
+        long start = toEpochMicros(period.getStartDate());
+        long end = toEpochMicros(period.getEndDate());
+
+        int at = base.startPosition(start, id);
+        int endAt = base.endPosition(end, at);
+        int size = base.ids.length;
+
+        int[] byEnd = new int[size + 1];
+        for (int k = 0; k < size; k++) {
+            int i = base.byEnd[k];
+            byEnd[k < endAt ? k : k + 1] = i < at ? i : i + 1;
+        }
+        byEnd[endAt] = at;
+
+        return new ItemTimeline(insert(base.ids, at, id), insert(base.bookerIds, at, period.getBookerId()),
+                insert(base.starts, at, start), insert(base.ends, at, end),
+                byEnd, insert(base.sortedEnds, endAt, end));
+    }
+
+    ItemTimeline without(int bookingId) {
+        int at = indexOf(bookingId);
+        if (at < 0) {
+            return this;
+        }
+
+        int size = ids.length;
+        int[] byEnd = new int[size - 1];
+        int endAt = -1;
+        for (int k = 0, j = 0; k < size; k++) {
+            int i = this.byEnd[k];
+            if (i == at) {
+                endAt = k;
+            } else {
+                byEnd[j++] = i < at ? i : i - 1;
+            }
+        }
+
+        return new ItemTimeline(remove(ids, at), remove(bookerIds, at), remove(starts, at), remove(ends, at),
+                byEnd, remove(sortedEnds, endAt));
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    private int indexOf(int bookingId) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == bookingId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // first index ordered after (start, id)
+    private int startPosition(long start, int id) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < start || starts[mid] == start && ids[mid] < id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // first end position ordered after (end, start position), the start position already counting the insert
+    private int endPosition(long end, int at) {
+        int low = 0;
+        int high = sortedEnds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedEnds[mid] < end || sortedEnds[mid] == end && byEnd[mid] < at) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private BookingPeriod period(int i) {
+        return new BookingPeriod(ids[i], bookerIds[i], fromEpochMicros(starts[i]), fromEpochMicros(ends[i]));
+    }
+
+    // first index with values[i] >= key
+    private static int lowerBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // first index with values[i] > key
+    private static int upperBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int[] insert(int[] values, int at, int value) {
+        int[] result = new int[values.length + 1];
+        System.arraycopy(values, 0, result, 0, at);
+        result[at] = value;
+        System.arraycopy(values, at, result, at + 1, values.length - at);
+        return result;
+    }
+
+    private static long[] insert(long[] values, int at, long value) {
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, at);
+        result[at] = value;
+        System.arraycopy(values, at, result, at + 1, values.length - at);
+        return result;
+    }
+
+    private static int[] remove(int[] values, int at) {
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, at);
+        System.arraycopy(values, at + 1, result, at, values.length - at - 1);
+        return result;
+    }
+
+    private static long[] remove(long[] values, int at) {
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, at);
+        System.arraycopy(values, at + 1, result, at, values.length - at - 1);
+        return result;
+    }
+
+    private static long toEpochMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.shareit.booking.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: a task due at tick {@code t} is kept in bucket {@code t % size}, so scheduling is O(1)
+ * and advancing the clock only visits the buckets of the elapsed ticks. Tasks further away than one turn of
+ * the wheel share a bucket with nearer ones and stay there until their own tick comes.
+ */
+class TimingWheel<T> {
+
+    private final Deque<Entry<T>>[] buckets;
+
+    private final long tickMillis;
+
+    private final LocalDateTime origin;
+
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(int size, long tickMillis, LocalDateTime origin) {
+        this.buckets = new Deque[size];
+        for (int i = 0; i < size; i++) {
+            this.buckets[i] = new ArrayDeque<>();
+        }
+        this.tickMillis = tickMillis;
+        this.origin = origin;
+    }
+
+    // Rounds up, so a task never fires before its deadline; overdue tasks fire on the next advance.
+    synchronized void schedule(LocalDateTime deadline, T task) {
+        long millis = Duration.between(origin, deadline).toMillis();
+        long tick = Math.max(Math.floorDiv(millis + tickMillis - 1, tickMillis), currentTick);
+        buckets[bucket(tick)].add(new Entry<>(tick, task));
+    }
+
+    synchronized List<T> advance(LocalDateTime now) {
+        long targetTick = Math.floorDiv(Duration.between(origin, now).toMillis(), tickMillis);
+        List<T> due = new ArrayList<>();
+        if (targetTick < currentTick) {
+            return due;
+        }
+
+        // After a pause longer than one turn every bucket is visited once
+        long steps = Math.min(targetTick - currentTick + 1, buckets.length);
+        for (long step = 0; step < steps; step++) {
+            Iterator<Entry<T>> entries = buckets[bucket(currentTick + step)].iterator();
+            while (entries.hasNext()) {
+                Entry<T> entry = entries.next();
+                if (entry.tick <= targetTick) {
+                    due.add(entry.task);
+                    entries.remove();
+                }
+            }
+        }
+        currentTick = targetTick + 1;
+        return due;
+    }
+
+    synchronized int size() {
+        int size = 0;
+        for (Deque<Entry<T>> bucket : buckets) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    private int bucket(long tick) {
+        return (int) Math.floorMod(tick, (long) buckets.length);
+    }
+
+    private static final class Entry<T> {
+
+        private final long tick;
+
+        private final T task;
+
+        private Entry(long tick, T task) {
+            this.tick = tick;
+            this.task = task;
+        }
+    }
+}
@@ -2,15 +2,23 @@ package ru.practicum.shareit.item.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.booking.dto.FreeInterval;
 import ru.practicum.shareit.item.dto.CommentDtoIn;
 import ru.practicum.shareit.item.dto.CommentDtoOutAbs;
 import ru.practicum.shareit.item.dto.ItemDtoIn;
 import ru.practicum.shareit.item.dto.ItemDtoOutAbs;
+import ru.practicum.shareit.item.dto.ItemSearchCursor;
+import ru.practicum.shareit.item.dto.ItemSearchPage;
+import ru.practicum.shareit.item.model.ItemSearchQuery;
 import ru.practicum.shareit.item.service.ItemService;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import static ru.practicum.shareit.util.Util.NEXT_CURSOR_HEADER;
 import static ru.practicum.shareit.util.Util.USER_ID_HEADER;
 
 
@@ -38,6 +46,16 @@ public class ItemController {
         return itemService.getById(id, ownerId);
     }
 
+    @GetMapping("/{id}/availability")
+    public List<FreeInterval> getAvailability(
+            @RequestHeader(USER_ID_HEADER) Integer userId,
+            @PathVariable Integer id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        return itemService.getAvailability(id, userId, from, to);
+    }
+
     @GetMapping
     public List<? extends ItemDtoOutAbs> getAll(
             @RequestHeader(USER_ID_HEADER) Integer userId) {
@@ -46,10 +64,36 @@ public class ItemController {
     }
 
     @GetMapping("/search")
-    public List<? extends ItemDtoOutAbs> searchByKeyword(
-            @RequestParam String text) {
+    public ResponseEntity<List<? extends ItemDtoOutAbs>> searchByKeyword(
+            @RequestParam String text,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false, defaultValue = "false") Boolean fuzzy,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor) {
+
+        ItemSearchPage page = itemService.getAvailableItemByPattern(ItemSearchQuery.builder()
+                .text(text)
+                .from(from)
+                .to(to)
+                .fuzzy(fuzzy)
+                .cursor(cursor == null ? null : ItemSearchCursor.decode(cursor))
+                .size(size)
+                .build());
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNext() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNext().encode());
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping("/suggest")
+    public List<String> suggest(
+            @RequestParam(required = false, defaultValue = "") String prefix,
+            @RequestParam(required = false, defaultValue = "10") Integer limit) {
 
-        return itemService.getAvailableItemByPattern(text);
+        return itemService.suggestNames(prefix, limit);
     }
 
     @PatchMapping("/{id}")
@@ -0,0 +1,50 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.*;
+import ru.practicum.shareit.util.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Continuation token of an item search ordered by {@code nameHits DESC, descriptionHits DESC, id ASC}.
+ * Points at the last item of the previous page; the next page starts strictly after it.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ItemSearchCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final int nameHits;
+
+    private final int descriptionHits;
+
+    private final int id;
+
+    public static ItemSearchCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                    .split("\\" + SEPARATOR, -1);
+            if (parts.length != 3) {
+                throw new InvalidCursorException("Cursor " + token + " is malformed");
+            }
+            ItemSearchCursor cursor = new ItemSearchCursor(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]));
+            if (cursor.nameHits < 0 || cursor.descriptionHits < 0 || cursor.id < 0) {
+                throw new InvalidCursorException("Cursor " + token + " is malformed");
+            }
+            return cursor;
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Cursor " + token + " is malformed");
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((nameHits + SEPARATOR + descriptionHits + SEPARATOR + id)
+                        .getBytes(StandardCharsets.UTF_8));
+    }
+}
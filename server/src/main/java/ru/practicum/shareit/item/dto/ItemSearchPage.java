@@ -0,0 +1,22 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * One page of an item search, best match first. The cursor of the next page is set only when the page is full.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ItemSearchPage {
+
+    @NonNull
+    private final List<? extends ItemDtoOutAbs> items;
+
+    private final ItemSearchCursor next;
+}
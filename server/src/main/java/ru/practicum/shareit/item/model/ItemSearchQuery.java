@@ -0,0 +1,31 @@
+package ru.practicum.shareit.item.model;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import ru.practicum.shareit.item.dto.ItemSearchCursor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One page of the available items whose name or description contains the text, optionally only those free in
+ * {@code [from, to]}. Pages follow the relevance order and continue after {@code cursor} when it is set; without
+ * a {@code size} the page holds every match.
+ */
+@Getter
+@Builder(toBuilder = true)
+@ToString
+public class ItemSearchQuery {
+
+    private final String text;
+
+    private final LocalDateTime from;
+
+    private final LocalDateTime to;
+
+    private final boolean fuzzy;
+
+    private final ItemSearchCursor cursor;
+
+    private final Integer size;
+}
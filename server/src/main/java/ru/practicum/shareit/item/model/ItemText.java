@@ -0,0 +1,17 @@
+package ru.practicum.shareit.item.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class ItemText {
+
+    private final int id;
+
+    private final String name;
+
+    private final String description;
+}
@@ -1,12 +1,21 @@
 package ru.practicum.shareit.item.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemText;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 
 @Repository
@@ -15,9 +24,44 @@ public interface ItemRepository extends JpaRepository<Item, Integer> {
     @Query("select i from Item i where i.owner.id = :ownerId order by i.id")
     List<Item> findByOwner(@Param("ownerId") int ownerId);
 
-    @Query("select i from Item i where " +
+    // Read as a stream of rows, so the search ranks the matches without holding them
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new ru.practicum.shareit.item.model.ItemText(i.id, i.name, i.description) from Item i where " +
             "i.available = true and ( " +
             "lower(i.name) LIKE LOWER('%' || :pattern || '%') or " +
             "lower(i.description) LIKE LOWER('%' || :pattern || '%'))")
-    List<Item> findAvailableItemsByNameOrDescription(String pattern);
+    Stream<ItemText> findAvailableTextsByNameOrDescription(@Param("pattern") String pattern);
+
+    // Anti-join on ix_bookings_item_period: an item is dropped as soon as one approved booking overlaps the window
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new ru.practicum.shareit.item.model.ItemText(i.id, i.name, i.description) from Item i where " +
+            "i.available = true and ( " +
+            "lower(i.name) LIKE LOWER('%' || :pattern || '%') or " +
+            "lower(i.description) LIKE LOWER('%' || :pattern || '%')) and not exists (" +
+            "select b.id from Booking b where b.item = i " +
+            "and b.status = ru.practicum.shareit.booking.model.BookingStatus.APPROVED " +
+            "and b.startDate < :to and b.endDate > :from)")
+    Stream<ItemText> findAvailableTextsByNameOrDescriptionFreeBetween(@Param("pattern") String pattern,
+                                                                      @Param("from") LocalDateTime from,
+                                                                      @Param("to") LocalDateTime to);
+
+    // Same anti-join for items already matched by the search index
+    @Query("select i.id from Item i where " +
+            "i.id in :ids and i.available = true and not exists (" +
+            "select b.id from Booking b where b.item = i " +
+            "and b.status = ru.practicum.shareit.booking.model.BookingStatus.APPROVED " +
+            "and b.startDate < :to and b.endDate > :from)")
+    List<Integer> findAvailableIdsFreeBetween(@Param("ids") Collection<Integer> ids,
+                                              @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to);
+
+    // Keyset page over the primary key, for building the search index
+    @Query("select new ru.practicum.shareit.item.model.ItemText(i.id, i.name, i.description) from Item i " +
+            "where i.available = true and i.id > :afterId order by i.id")
+    List<ItemText> findAvailableTextsAfter(@Param("afterId") int afterId, Pageable pageable);
+
+    // Name suggestions while the search index is not loaded; the pattern is lower-cased and escaped with '\'
+    @Query("select min(i.name) from Item i where i.available = true and lower(i.name) like :pattern escape '\\' " +
+            "group by lower(i.name) order by count(i.id) desc, lower(i.name)")
+    List<String> findAvailableNamesByPrefix(@Param("pattern") String pattern, Pageable pageable);
 }
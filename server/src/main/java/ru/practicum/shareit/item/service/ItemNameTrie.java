@@ -0,0 +1,202 @@
+package ru.practicum.shareit.item.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Radix trie over normalized item names, each name counted once per available item carrying it. Chains of
+ * single-child nodes are collapsed into one edge, so there are at most two nodes per distinct name.
+ * <p>
+ * Every node keeps the {@link #TOP} names below it carrying the most items, so the suggestions for a prefix are
+ * read from the node the prefix ends in, without walking its subtree. A name gaining an item moves up in the
+ * lists of its ancestors in place; only a name losing an item while in such a list makes that list be rebuilt
+ * from the lists of the children.
+ * <p>
+ * Not thread-safe: {@link ItemSearchIndex} guards it with its lock.
+ */
+class ItemNameTrie {
+
+    static final int TOP = 20;
+
+    private static final Comparator<Node> RANK = Comparator.comparingInt((Node node) -> -node.count)
+            .thenComparing(node -> node.key);
+
+    private final Node root = new Node("");
+
+    void add(String key, String display) {
+        insert(root, key, 0, display);
+    }
+
+    void remove(String key) {
+        delete(root, key, 0);
+    }
+
+    // The names under the prefix carrying the most items, most first, as they were last written
+    List<String> suggest(String prefix, int limit) {
+        Node node = root;
+        int depth = 0;
+        while (depth < prefix.length()) {
+            Node child = node.child(prefix.charAt(depth));
+            if (child == null) {
+                return List.of();
+            }
+            int common = common(child.edge, prefix, depth);
+            if (depth + common < prefix.length() && common < child.edge.length()) {
+                return List.of();
+            }
+            node = child;
+            depth += common;
+        }
+
+        return node.top.stream()
+                .limit(limit)
+                .map(name -> name.display)
+                .collect(Collectors.toList());
+    }
+
+    private Node insert(Node node, String key, int depth, String display) {
+        Node name;
+        if (depth == key.length()) {
+            node.key = key;
+            node.display = display;
+            node.count++;
+            name = node;
+        } else {
+            int index = node.childIndex(key.charAt(depth));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(depth));
+                node.children.add(leaf);
+                name = insert(leaf, key, key.length(), display);
+            } else {
+                Node child = node.children.get(index);
+                int common = common(child.edge, key, depth);
+                if (common < child.edge.length()) {
+                    Node split = new Node(child.edge.substring(0, common));
+                    child.edge = child.edge.substring(common);
+                    split.children.add(child);
+                    split.top.addAll(child.top);
+                    node.children.set(index, split);
+                    child = split;
+                }
+                name = insert(child, key, depth + common, display);
+            }
+        }
+
+        promote(node, name);
+        return name;
+    }
+
+    // Returns the node of the name, or null when the trie does not hold it
+    private Node delete(Node node, String key, int depth) {
+        Node name;
+        if (depth == key.length()) {
+            if (node.count == 0) {
+                return null;
+            }
+            node.count--;
+            name = node;
+        } else {
+            int index = node.childIndex(key.charAt(depth));
+            if (index < 0) {
+                return null;
+            }
+            Node child = node.children.get(index);
+            if (!key.startsWith(child.edge, depth)) {
+                return null;
+            }
+            name = delete(child, key, depth + child.edge.length());
+            if (name == null) {
+                return null;
+            }
+            if (child.count == 0 && child.children.isEmpty()) {
+                node.children.remove(index);
+            } else if (child.count == 0 && child.children.size() == 1) {
+                Node only = child.children.get(0);
+                only.edge = child.edge + only.edge;
+                node.children.set(index, only);
+            }
+        }
+
+        demote(node, name);
+        return name;
+    }
+
+    private static void promote(Node node, Node name) {
+        List<Node> top = node.top;
+        int at = top.indexOf(name);
+        if (at < 0) {
+            if (top.size() == TOP) {
+                if (RANK.compare(name, top.get(TOP - 1)) >= 0) {
+                    return;
+                }
+                top.remove(TOP - 1);
+            }
+            top.add(name);
+            at = top.size() - 1;
+        }
+        for (; at > 0 && RANK.compare(top.get(at), top.get(at - 1)) < 0; at--) {
+            Collections.swap(top, at, at - 1);
+        }
+    }
+
+    private static void demote(Node node, Node name) {
+        if (!node.top.contains(name)) {
+            return;
+        }
+
+        List<Node> candidates = new ArrayList<>();
+        if (node.count > 0) {
+            candidates.add(node);
+        }
+        node.children.forEach(child -> candidates.addAll(child.top));
+        candidates.sort(RANK);
+        node.top.clear();
+        node.top.addAll(candidates.subList(0, Math.min(TOP, candidates.size())));
+    }
+
+    private static int common(String edge, String key, int depth) {
+        int common = 0;
+        while (common < edge.length() && depth + common < key.length()
+                && edge.charAt(common) == key.charAt(depth + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    private static final class Node {
+
+        private String edge;
+
+        private final List<Node> children = new ArrayList<>(2);
+
+        private final List<Node> top = new ArrayList<>(1);
+
+        // Set on the node a name ends in
+        private String key;
+
+        private String display;
+
+        private int count;
+
+        private Node(String edge) {
+            this.edge = edge;
+        }
+
+        private Node child(char first) {
+            int index = childIndex(first);
+            return index < 0 ? null : children.get(index);
+        }
+
+        private int childIndex(char first) {
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i).edge.charAt(0) == first) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.practicum.shareit.item.service;
+
+import ru.practicum.shareit.item.dto.ItemSearchCursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Keeps the best {@code size} of the items offered to it, so a page of the search is selected without holding
+ * the other matches. Items are ordered by hits in the name, then by hits in the description, then by id. A hit
+ * is an occurrence of a term of the query; a term group stands for one word of a fuzzy query and holds the word
+ * and its close words, an exact query being a single group holding the whole pattern.
+ * <p>
+ * The order is packed into one long per item, larger first: name hits, description hits and the inverted id.
+ * The items of the heap are the ones below the cursor of the previous page, and its root is the worst of them.
+ * The heap grows with the items it holds, so a search without a page size keeps every match.
+ */
+class ItemRanking {
+
+    private static final int MAX_NAME_HITS = 0x7FFF;
+
+    private static final int MAX_DESCRIPTION_HITS = 0xFFFF;
+
+    private final List<? extends Collection<String>> terms;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long after;
+
+    private final int size;
+
+    private long[] heap;
+
+    private int count;
+
+    ItemRanking(List<? extends Collection<String>> terms, ItemSearchCursor cursor, int size) {
+        this.terms = terms;
+        this.after = cursor == null ? Long.MAX_VALUE :
+                key(cursor.getNameHits(), cursor.getDescriptionHits(), cursor.getId());
+        this.size = Math.max(size, 0);
+        this.heap = new long[Math.min(this.size, INITIAL_CAPACITY)];
+    }
+
+    // Exact search: the pattern itself, ignoring case, is the only term
+    static ItemRanking exact(String pattern, ItemSearchCursor cursor, int size) {
+        return new ItemRanking(List.of(Set.of(pattern.toLowerCase(Locale.ROOT))), cursor, size);
+    }
+
+    void offer(int itemId, String name, String description) {
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        String lowerDescription = description.toLowerCase(Locale.ROOT);
+        offer(key(hits(lowerName, 0, lowerName.length()),
+                hits(lowerDescription, 0, lowerDescription.length()), itemId));
+    }
+
+    // A lower-cased text holding the name before nameEnd and the description after it
+    void offer(int itemId, String text, int nameEnd) {
+        offer(key(hits(text, 0, nameEnd), hits(text, nameEnd, text.length()), itemId));
+    }
+
+    // Ids of the page, best first
+    List<Integer> ids() {
+        long[] keys = sorted();
+        List<Integer> ids = new ArrayList<>(keys.length);
+        for (int i = keys.length - 1; i >= 0; i--) {
+            ids.add(id(keys[i]));
+        }
+        return ids;
+    }
+
+    // Cursor of the last item of a full page, null when no page follows
+    ItemSearchCursor next() {
+        if (count == 0 || count < size) {
+            return null;
+        }
+
+        long last = heap[0];
+        return new ItemSearchCursor((int) (last >>> 47), (int) (last >>> 31) & MAX_DESCRIPTION_HITS, id(last));
+    }
+
+    private void offer(long key) {
+        if (key >= after) {
+            return;
+        }
+
+        if (count < size) {
+            if (count == heap.length) {
+                heap = Arrays.copyOf(heap, (int) Math.min(size, 2L * heap.length));
+            }
+            int at = count++;
+            while (at > 0 && heap[(at - 1) / 2] > key) {
+                heap[at] = heap[(at - 1) / 2];
+                at = (at - 1) / 2;
+            }
+            heap[at] = key;
+        } else if (count > 0 && key > heap[0]) {
+            int at = 0;
+            while (2 * at + 1 < count) {
+                int child = 2 * at + 1;
+                if (child + 1 < count && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= key) {
+                    break;
+                }
+                heap[at] = heap[child];
+                at = child;
+            }
+            heap[at] = key;
+        }
+    }
+
+    private long[] sorted() {
+        long[] keys = Arrays.copyOf(heap, count);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private int hits(String text, int from, int to) {
+        int hits = 0;
+        for (Collection<String> group : terms) {
+            for (String term : group) {
+                for (int at = term.isEmpty() ? -1 : text.indexOf(term, from); at >= 0 && at + term.length() <= to;
+                     at = text.indexOf(term, at + term.length())) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static long key(int nameHits, int descriptionHits, int itemId) {
+        return (long) Math.min(nameHits, MAX_NAME_HITS) << 47
+                | (long) Math.min(descriptionHits, MAX_DESCRIPTION_HITS) << 31
+                | Integer.MAX_VALUE - itemId;
+    }
+
+    private static int id(long key) {
+        return Integer.MAX_VALUE - (int) (key & Integer.MAX_VALUE);
+    }
+}
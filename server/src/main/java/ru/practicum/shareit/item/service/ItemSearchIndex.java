@@ -0,0 +1,468 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.dto.ItemSearchCursor;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemText;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.util.OffsetLimitPageable;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static ru.practicum.shareit.util.Transactions.afterCommit;
+
+/**
+ * In-memory substring index over the names and descriptions of available items, serving the text part of the
+ * item search. Every item is one document: its lower-cased name and description between separators. Every
+ * trigram of a document points to a sorted array of document numbers, so a pattern of three or more characters
+ * is looked up by intersecting the postings of its trigrams and checking the few candidates left against their
+ * text, which gives exactly what {@code LIKE '%pattern%'} gives. A shorter pattern takes the union of the
+ * postings of the trigrams containing it; thanks to the separators every one or two characters of a name or
+ * description are inside some trigram.
+ * <p>
+ * The names of the indexed items are also kept in an {@link ItemNameTrie} serving name suggestions, and their
+ * words in an {@link ItemTermVocabulary}: a fuzzy search looks each word of the pattern up there and takes the
+ * items containing the word itself or any word within its allowed edits, keeping the items found for every word.
+ * <p>
+ * {@link #rank} selects one page of the matches with an {@link ItemRanking}, scoring every match against its
+ * document text without reading the items.
+ * <p>
+ * Documents are append-only: a change of an item drops its document and appends a new one, and the postings
+ * are rebuilt once dropped documents outnumber live ones. Changes are applied once their transaction commits.
+ * <p>
+ * The index is loaded in keyset pages on a background thread at startup. Until it is loaded {@link #search},
+ * {@link #rank} and {@link #suggest} return nothing and the caller runs SQL instead, as it does for patterns
+ * holding LIKE wildcards.
+ */
+@Component
+@Slf4j
+public class ItemSearchIndex {
+
+    private static final int GRAM = 3;
+
+    private static final char SEPARATOR = '\0';
+
+    private static final int COMPACT_AFTER = 1024;
+
+    private final ItemRepository itemRepository;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private final ItemNameTrie names = new ItemNameTrie();
+
+    private final ItemTermVocabulary vocabulary = new ItemTermVocabulary();
+
+    private final Map<Integer, Integer> documentByItem = new HashMap<>();
+
+    private final BitSet dropped = new BitSet();
+
+    private int[] itemIds = new int[COMPACT_AFTER];
+
+    private String[] texts = new String[COMPACT_AFTER];
+
+    private int documents;
+
+    private int droppedDocuments;
+
+    // Items changed while the index was loading: they are indexed already, so the load skips them
+    private final Set<Integer> changedWhileLoading = new HashSet<>();
+
+    private volatile boolean ready;
+
+    private ExecutorService executor;
+
+    public ItemSearchIndex(ItemRepository itemRepository,
+                           @Value("${shareit.item.search-index.enabled:false}") boolean enabled,
+                           @Value("${shareit.item.search-index.batch-size:10000}") int batchSize) {
+        this.itemRepository = itemRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "item-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::load);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    void load() {
+        long started = System.nanoTime();
+        try {
+            int afterId = 0;
+            List<ItemText> page;
+            do {
+                page = itemRepository.findAvailableTextsAfter(afterId,
+                        new OffsetLimitPageable(0, batchSize, Sort.unsorted()));
+                lock.writeLock().lock();
+                try {
+                    for (ItemText item : page) {
+                        if (!changedWhileLoading.contains(item.getId())) {
+                            add(item.getId(), item.getName(), item.getDescription());
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (!page.isEmpty()) {
+                    afterId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == batchSize);
+
+            lock.writeLock().lock();
+            try {
+                changedWhileLoading.clear();
+                ready = true;
+                log.info("Item search index is loaded: {} items, {} trigrams, {} words in {} ms",
+                        documentByItem.size(), postings.size(), vocabulary.size(),
+                        (System.nanoTime() - started) / 1_000_000);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            log.error("Item search index is not loaded, items are searched with SQL", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void put(Item item) {
+        if (!enabled) {
+            return;
+        }
+
+        int itemId = item.getId();
+        String name = item.getAvailable() ? item.getName() : null;
+        String description = item.getDescription();
+        afterCommit(() -> change(itemId, name, description));
+    }
+
+    public void remove(int itemId) {
+        if (enabled) {
+            afterCommit(() -> change(itemId, null, null));
+        }
+    }
+
+    // Ids of the available items whose name or description contains the pattern, ignoring case, in id order;
+    // with fuzzy, of those containing every word of the pattern or a word close to it. Empty when the index
+    // cannot answer
+    public Optional<List<Integer>> search(String pattern, boolean fuzzy) {
+        String needle = pattern.toLowerCase(Locale.ROOT);
+        Set<String> words = fuzzy ? ItemTermVocabulary.words(needle) : Set.of();
+        if (!answers(pattern, words)) {
+            return Optional.empty();
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            BitSet found = words.isEmpty() ? documents(needle) : fuzzy(words);
+            for (int document = found.nextSetBit(0); document >= 0; document = found.nextSetBit(document + 1)) {
+                ids.add(itemIds[document]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        ids.sort(Comparator.naturalOrder());
+        return Optional.of(ids);
+    }
+
+    // Ranks the available items matching the pattern after the cursor; with among, only those items, which the
+    // caller matched with search before. Empty when the index cannot answer
+    Optional<ItemRanking> rank(String pattern, boolean fuzzy, Collection<Integer> among, ItemSearchCursor cursor,
+                               int size) {
+        String needle = pattern.toLowerCase(Locale.ROOT);
+        Set<String> words = fuzzy ? ItemTermVocabulary.words(needle) : Set.of();
+        if (!answers(pattern, words)) {
+            return Optional.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            ItemRanking ranking;
+            BitSet found;
+            if (words.isEmpty()) {
+                ranking = ItemRanking.exact(needle, cursor, size);
+                found = among == null ? documents(needle) : null;
+            } else {
+                List<Set<String>> terms = new ArrayList<>(words.size());
+                for (String word : words) {
+                    Set<String> group = vocabulary.similar(word);
+                    group.add(word);
+                    terms.add(group);
+                }
+                ranking = new ItemRanking(terms, cursor, size);
+                found = among == null ? fuzzy(words) : null;
+            }
+
+            if (found == null) {
+                for (Integer itemId : among) {
+                    Integer document = documentByItem.get(itemId);
+                    if (document != null) {
+                        offer(ranking, document);
+                    }
+                }
+            } else {
+                for (int document = found.nextSetBit(0); document >= 0; document = found.nextSetBit(document + 1)) {
+                    offer(ranking, document);
+                }
+            }
+            return Optional.of(ranking);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Names of available items starting with the prefix, ignoring case and leading spaces, the names carried
+    // by the most items first; empty when the index cannot answer
+    public Optional<List<String>> suggest(String prefix, int limit) {
+        if (!ready) {
+            return Optional.empty();
+        }
+
+        String start = prefix.toLowerCase(Locale.ROOT).stripLeading();
+        lock.readLock().lock();
+        try {
+            return Optional.of(names.suggest(start, Math.min(limit, ItemNameTrie.TOP)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // LIKE wildcards only matter to an exact search
+    private boolean answers(String pattern, Set<String> words) {
+        return ready && pattern.indexOf(SEPARATOR) < 0 && (!words.isEmpty() || pattern.indexOf('%') < 0
+                && pattern.indexOf('_') < 0 && pattern.indexOf('\\') < 0);
+    }
+
+    private void offer(ItemRanking ranking, int document) {
+        ranking.offer(itemIds[document], texts[document], texts[document].indexOf(SEPARATOR, 1));
+    }
+
+    private BitSet fuzzy(Set<String> words) {
+        BitSet found = null;
+        for (String word : words) {
+            BitSet matched = documents(word);
+            for (String similar : vocabulary.similar(word)) {
+                if (!similar.equals(word)) {
+                    matched.or(documents(similar));
+                }
+            }
+
+            if (found == null) {
+                found = matched;
+            } else {
+                found.and(matched);
+            }
+            if (found.isEmpty()) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    // Live documents containing the needle
+    private BitSet documents(String needle) {
+        return needle.length() >= GRAM ? intersect(needle) : union(needle);
+    }
+
+    private BitSet intersect(String needle) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= needle.length(); i++) {
+            grams.add(needle.substring(i, i + GRAM));
+        }
+
+        List<Postings> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return new BitSet();
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        int[] candidates = Arrays.copyOf(lists.get(0).documents, lists.get(0).size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = lists.get(i).retain(candidates, count);
+        }
+
+        BitSet found = new BitSet(documents);
+        for (int i = 0; i < count; i++) {
+            int document = candidates[i];
+            if (!dropped.get(document) && texts[document].contains(needle)) {
+                found.set(document);
+            }
+        }
+        return found;
+    }
+
+    private BitSet union(String needle) {
+        BitSet matched = new BitSet(documents);
+        postings.forEach((gram, list) -> {
+            if (gram.contains(needle)) {
+                for (int i = 0; i < list.size; i++) {
+                    matched.set(list.documents[i]);
+                }
+            }
+        });
+        matched.andNot(dropped);
+        return matched;
+    }
+
+    // A null name drops the item
+    private void change(int itemId, String name, String description) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                changedWhileLoading.add(itemId);
+            }
+
+            Integer document = documentByItem.remove(itemId);
+            if (document != null) {
+                String text = texts[document];
+                names.remove(text.substring(1, text.indexOf(SEPARATOR, 1)).strip());
+                vocabulary.remove(ItemTermVocabulary.words(text));
+                dropped.set(document);
+                texts[document] = null;
+                droppedDocuments++;
+            }
+            if (name != null) {
+                add(itemId, name, description);
+            }
+            if (droppedDocuments > COMPACT_AFTER && droppedDocuments > documentByItem.size()) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(int itemId, String name, String description) {
+        String text = text(name, description);
+        append(itemId, text);
+        names.add(key(name), name);
+        vocabulary.add(ItemTermVocabulary.words(text));
+    }
+
+    private void append(int itemId, String text) {
+        if (documents == itemIds.length) {
+            itemIds = Arrays.copyOf(itemIds, documents * 2);
+            texts = Arrays.copyOf(texts, documents * 2);
+        }
+
+        int document = documents++;
+        itemIds[document] = itemId;
+        texts[document] = text;
+        documentByItem.put(itemId, document);
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            postings.computeIfAbsent(text.substring(i, i + GRAM), gram -> new Postings()).add(document);
+        }
+    }
+
+    private void compact() {
+        int[] oldItemIds = itemIds;
+        String[] oldTexts = texts;
+        int oldDocuments = documents;
+
+        postings.clear();
+        documentByItem.clear();
+        dropped.clear();
+        itemIds = new int[Math.max(COMPACT_AFTER, oldDocuments - droppedDocuments)];
+        texts = new String[itemIds.length];
+        documents = 0;
+        droppedDocuments = 0;
+        for (int document = 0; document < oldDocuments; document++) {
+            if (oldTexts[document] != null) {
+                append(oldItemIds[document], oldTexts[document]);
+            }
+        }
+    }
+
+    private static String text(String name, String description) {
+        return SEPARATOR + name.toLowerCase(Locale.ROOT) + SEPARATOR + description.toLowerCase(Locale.ROOT)
+                + SEPARATOR;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT).strip();
+    }
+
+    // Document numbers in ascending order, as documents are only appended
+    private static final class Postings {
+
+        private int[] documents = new int[4];
+
+        private int size;
+
+        private void add(int document) {
+            if (size > 0 && documents[size - 1] == document) {
+                return;
+            }
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+
+        // Keeps the candidates found in this list at the head of the array and returns how many
+        private int retain(int[] candidates, int count) {
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < count && from < size; i++) {
+                int at = Arrays.binarySearch(documents, from, size, candidates[i]);
+                if (at >= 0) {
+                    candidates[kept++] = candidates[i];
+                    from = at + 1;
+                } else {
+                    from = -at - 1;
+                }
+            }
+            return kept;
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package ru.practicum.shareit.item.service;
 
+import ru.practicum.shareit.booking.dto.FreeInterval;
 import ru.practicum.shareit.item.dto.CommentDtoIn;
 import ru.practicum.shareit.item.dto.CommentDtoOutAbs;
 import ru.practicum.shareit.item.dto.ItemDtoIn;
 import ru.practicum.shareit.item.dto.ItemDtoOutAbs;
+import ru.practicum.shareit.item.dto.ItemSearchPage;
+import ru.practicum.shareit.item.model.ItemSearchQuery;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ItemService {
@@ -15,9 +19,13 @@ public interface ItemService {
 
     ItemDtoOutAbs getById(int id, int userId);
 
+    List<FreeInterval> getAvailability(int id, int userId, LocalDateTime from, LocalDateTime to);
+
     List<? extends ItemDtoOutAbs> getAvailableItemByOwner(int userId);
 
-    List<? extends ItemDtoOutAbs> getAvailableItemByPattern(String pattern);
+    ItemSearchPage getAvailableItemByPattern(ItemSearchQuery query);
+
+    List<String> suggestNames(String prefix, int limit);
 
     ItemDtoOutAbs update(int id, ItemDtoIn itemDto, int userId);
 
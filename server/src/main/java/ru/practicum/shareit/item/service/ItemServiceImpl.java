@@ -2,34 +2,59 @@ package ru.practicum.shareit.item.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.FreeInterval;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.model.ItemPeriod;
+import ru.practicum.shareit.booking.model.LastNextBooking;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingCounters;
+import ru.practicum.shareit.booking.service.BookingMapper;
+import ru.practicum.shareit.booking.service.BookingRules;
+import ru.practicum.shareit.booking.service.BookingListCache;
+import ru.practicum.shareit.booking.service.BookingTimeline;
+import ru.practicum.shareit.booking.service.ItemAvailability;
 import ru.practicum.shareit.item.dto.CommentDtoIn;
 import ru.practicum.shareit.item.dto.CommentDtoOutAbs;
+import ru.practicum.shareit.item.dto.FullItemDtoOut;
 import ru.practicum.shareit.item.dto.ItemDtoIn;
 import ru.practicum.shareit.item.dto.ItemDtoOutAbs;
+import ru.practicum.shareit.item.dto.ItemSearchPage;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemSearchQuery;
+import ru.practicum.shareit.item.model.ItemText;
 import ru.practicum.shareit.item.repository.CommentRepository;
 import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.user.service.UserService;
+import ru.practicum.shareit.util.OffsetLimitPageable;
 import ru.practicum.shareit.util.exception.ActionIsNotAvailableException;
 import ru.practicum.shareit.util.exception.ForbiddenException;
 import ru.practicum.shareit.util.exception.NotFoundException;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
-
-import static ru.practicum.shareit.booking.service.BookingServiceImpl.getLastBooking;
-import static ru.practicum.shareit.booking.service.BookingServiceImpl.getNextBooking;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ItemServiceImpl implements ItemService {
 
+    private static final int ID_CHUNK = 1000;
+
     private final ItemRepository itemRepo;
 
     private final CommentRepository commentRepo;
@@ -40,6 +65,22 @@ public class ItemServiceImpl implements ItemService {
 
     private final CommentMapper commentMapper;
 
+    private final BookingTimeline bookingTimeline;
+
+    private final BookingListCache bookingListCache;
+
+    private final ItemAvailability itemAvailability;
+
+    private final BookingRules bookingRules;
+
+    private final BookingRepository bookingRepo;
+
+    private final BookingCounters bookingCounters;
+
+    private final BookingMapper bookingMapper;
+
+    private final ItemSearchIndex itemSearchIndex;
+
     @Override
     public ItemDtoOutAbs create(ItemDtoIn itemDtoIn, int ownerId) {
         Item item = itemMapper.fromDto(itemDtoIn, ownerId);
@@ -47,6 +88,7 @@ public class ItemServiceImpl implements ItemService {
         userService.existenceCheck(item.getOwner().getId());
 
         Item savedItem = itemRepo.save(item);
+        itemSearchIndex.put(savedItem);
 
         log.info("{} is saved", savedItem);
 
@@ -59,15 +101,13 @@ public class ItemServiceImpl implements ItemService {
         Item item = itemRepo.findById(id)
                 .orElseThrow(() -> new NotFoundException("Item with ID " + id + " is not found"));
 
-        int forLoading = item.getBookings().size();
-
         if (item.getOwner().getId().equals(userId)) {
             LocalDateTime now = LocalDateTime.now();
 
-            item.setLastBooking(getLastBooking(item, now));
-            item.setNextBooking(getNextBooking(item, now));
+            item.setLastBooking(bookingTimeline.getLastBooking(item, now));
+            item.setNextBooking(bookingTimeline.getNextBooking(item, now));
 
-            forLoading = item.getComments().size();
+            int forLoading = item.getComments().size();
 
             log.info("{} is found", item);
         }
@@ -75,6 +115,19 @@ public class ItemServiceImpl implements ItemService {
         return itemMapper.toFullDto(item);
     }
 
+    // An item that is not available for booking has no free intervals at all
+    @Override
+    public List<FreeInterval> getAvailability(int id, int userId, LocalDateTime from, LocalDateTime to) {
+        userService.existenceCheck(userId);
+        Item item = itemRepo.findById(id)
+                .orElseThrow(() -> new NotFoundException("Item with ID " + id + " is not found"));
+
+        if (!item.getAvailable() || !from.isBefore(to)) {
+            return List.of();
+        }
+        return itemAvailability.getFree(id, from, to);
+    }
+
     @Override
     public List<? extends ItemDtoOutAbs> getAvailableItemByOwner(int ownerId) {
         List<Item> items = itemRepo.findByOwner(ownerId);
@@ -82,28 +135,134 @@ public class ItemServiceImpl implements ItemService {
             return itemMapper.toDto(items);
 
         if (items.get(0).getOwner().getId().equals(ownerId)) {
-            LocalDateTime now = LocalDateTime.now();
-            items.forEach(item -> {
-                item.setLastBooking(getLastBooking(item, now));
-                item.setNextBooking(getNextBooking(item, now));
+            Map<Integer, LastNextBooking> bookings = bookingRepo.findLastAndNextByOwner(ownerId, LocalDateTime.now());
+
+            List<FullItemDtoOut> itemDtos = itemMapper.toFullDto(items);
+            itemDtos.forEach(itemDto -> {
+                LastNextBooking lastNext = bookings.get(itemDto.getId());
+                if (lastNext != null) {
+                    itemDto.setLastBooking(bookingMapper.toShortDto(lastNext.getLast()));
+                    itemDto.setNextBooking(bookingMapper.toShortDto(lastNext.getNext()));
+                }
             });
 
             log.info("Founded {} items by owner with ID {}", items.size(), ownerId);
-            return itemMapper.toFullDto(items);
+            return itemDtos;
         }
 
         return itemMapper.toDto(items);
     }
 
+    // Without a complete window the search matches text only; a fuzzy search is exact while the index loads.
+    // Only the page is held while the matches are ranked, and only its items are read
     @Override
-    public List<? extends ItemDtoOutAbs> getAvailableItemByPattern(String pattern) {
+    @Transactional(readOnly = true)
+    public ItemSearchPage getAvailableItemByPattern(ItemSearchQuery query) {
+        String pattern = query.getText();
         if (pattern == null || pattern.isBlank() || pattern.isEmpty())
+            return new ItemSearchPage(Collections.emptyList(), null);
+
+        LocalDateTime from = query.getFrom();
+        LocalDateTime to = query.getTo();
+        int size = query.getSize() == null ? Integer.MAX_VALUE : query.getSize();
+        Optional<ItemRanking> indexed = from == null || to == null ?
+                itemSearchIndex.rank(pattern, query.isFuzzy(), null, query.getCursor(), size) :
+                itemSearchIndex.search(pattern, query.isFuzzy()).flatMap(ids -> itemSearchIndex.rank(pattern,
+                        query.isFuzzy(), findFree(ids, from, to), query.getCursor(), size));
+        ItemRanking ranking = indexed.orElseGet(() -> rankMatched(query, size));
+
+        List<Item> items = findRanked(ranking.ids());
+        log.info("Founded {} items by pattern {} free from {} to {}", items.size(), pattern, from, to);
+
+        return new ItemSearchPage(itemMapper.toDto(items), ranking.next());
+    }
+
+    // Falls back to a LIKE on the names, grouped ignoring case, while the index is not loaded
+    @Override
+    public List<String> suggestNames(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank() || limit <= 0)
             return Collections.emptyList();
 
-        List<Item> items = itemRepo.findAvailableItemsByNameOrDescription(pattern);
-        log.info("Founded {} items by pattern {}", items.size(), pattern);
+        return itemSearchIndex.suggest(prefix, limit).orElseGet(() -> itemRepo.findAvailableNamesByPrefix(
+                prefix.toLowerCase(Locale.ROOT).stripLeading().replaceAll("([\\\\%_])", "\\\\$1") + "%",
+                new OffsetLimitPageable(0, limit, Sort.unsorted())));
+    }
 
-        return itemMapper.toDto(items);
+    // Items matched by the index are checked against the window by primary key, in chunks that keep the IN
+    // lists short
+    private Set<Integer> findFree(List<Integer> ids, LocalDateTime from, LocalDateTime to) {
+        Set<Integer> free = new HashSet<>();
+        for (int i = 0; i < ids.size(); i += ID_CHUNK) {
+            List<Integer> chunk = itemRepo.findAvailableIdsFreeBetween(ids.subList(i, Math.min(i + ID_CHUNK,
+                    ids.size())), from, to);
+            Set<Integer> booked = findWithApprovedOccurrences(chunk, from, to);
+            chunk.stream()
+                    .filter(id -> !booked.contains(id))
+                    .forEach(free::add);
+        }
+        return free;
+    }
+
+    // Rows matched with SQL are streamed into the ranking; a fuzzy search falls back to the exact one here, and
+    // a pattern holding LIKE wildcards is ranked by id only, as its hits cannot be counted
+    private ItemRanking rankMatched(ItemSearchQuery query, int size) {
+        ItemRanking ranking = ItemRanking.exact(query.getText(), query.getCursor(), size);
+        LocalDateTime from = query.getFrom();
+        LocalDateTime to = query.getTo();
+        if (from == null || to == null) {
+            try (Stream<ItemText> rows = itemRepo.findAvailableTextsByNameOrDescription(query.getText())) {
+                rows.forEach(row -> ranking.offer(row.getId(), row.getName(), row.getDescription()));
+            }
+            return ranking;
+        }
+
+        List<ItemText> batch = new ArrayList<>(ID_CHUNK);
+        try (Stream<ItemText> rows = itemRepo.findAvailableTextsByNameOrDescriptionFreeBetween(query.getText(),
+                from, to)) {
+            rows.forEach(row -> {
+                batch.add(row);
+                if (batch.size() == ID_CHUNK) {
+                    offerFree(ranking, batch, from, to);
+                }
+            });
+        }
+        offerFree(ranking, batch, from, to);
+        return ranking;
+    }
+
+    private void offerFree(ItemRanking ranking, List<ItemText> batch, LocalDateTime from, LocalDateTime to) {
+        Set<Integer> booked = findWithApprovedOccurrences(batch.stream()
+                .map(ItemText::getId)
+                .collect(Collectors.toList()), from, to);
+        batch.stream()
+                .filter(row -> !booked.contains(row.getId()))
+                .forEach(row -> ranking.offer(row.getId(), row.getName(), row.getDescription()));
+        batch.clear();
+    }
+
+    // Recurring bookings are one row per rule, so they are expanded for the matched items only
+    private Set<Integer> findWithApprovedOccurrences(List<Integer> itemIds, LocalDateTime from, LocalDateTime to) {
+        if (itemIds.isEmpty()) {
+            return Set.of();
+        }
+
+        return bookingRules.findOccurrences(itemIds, from, to, EnumSet.of(BookingStatus.APPROVED)).stream()
+                .map(ItemPeriod::getItemId)
+                .collect(Collectors.toSet());
+    }
+
+    // The page is read by primary key and put back in the ranked order
+    private List<Item> findRanked(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Item> items = itemRepo.findAllById(ids).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        return ids.stream()
+                .map(items::get)
+                .filter(item -> item != null && item.getAvailable())
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -118,18 +277,28 @@ public class ItemServiceImpl implements ItemService {
         }
 
         itemMapper.updateItemFromDto(itemDto, item);
+        itemSearchIndex.put(item);
+        bookingListCache.evictItem(id, userId);
+        itemAvailability.evict(id);
         log.info("{} is updated", item);
 
         return itemMapper.toDto(item);
     }
 
     @Override
+    @Transactional
     public void delete(int id) {
-        if (!itemRepo.existsById(id)) {
-            throw new NotFoundException("Item with ID " + id + " is not found");
-        }
+        Item item = itemRepo.findById(id)
+                .orElseThrow(() -> new NotFoundException("Item with ID " + id + " is not found"));
 
+        bookingListCache.evictItem(id, item.getOwner().getId());
+        bookingCounters.removedItem(id);
+        bookingRepo.deleteArchivedByItem(id);
+        bookingRules.deleteByItem(id);
         itemRepo.deleteById(id);
+        itemSearchIndex.remove(id);
+        bookingTimeline.evict(id);
+        itemAvailability.evict(id);
         log.info("Item with ID {} is removed", id);
     }
 
@@ -0,0 +1,171 @@
+package ru.practicum.shareit.item.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Words of the indexed names and descriptions with a symmetric-delete index for typo-tolerant lookup. Every word
+ * is filed under each string left by deleting up to {@link #MAX_EDITS} of its characters, and a query word is
+ * looked up under its own deletions, so two words within that many edits always share a key. The few words
+ * found so are checked with the optimal string alignment distance, which counts swapping two adjacent
+ * characters as one edit; no word outside the shared keys is ever compared.
+ * <p>
+ * Only words of letters from {@link #MIN_LENGTH} to {@link #MAX_LENGTH} characters are kept: numbers and codes
+ * are not misspelt the way words are, and they would make the deletions grow with every item.
+ * <p>
+ * Not thread-safe: {@link ItemSearchIndex} guards it with its lock.
+ */
+class ItemTermVocabulary {
+
+    static final int MAX_EDITS = 2;
+
+    static final int MIN_LENGTH = 3;
+
+    static final int MAX_LENGTH = 32;
+
+    private static final Pattern NOT_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern LETTERS = Pattern.compile("\\p{L}+");
+
+    // Number of indexed items using each word
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    private final Map<String, List<String>> deletions = new HashMap<>();
+
+    // The distinct words of a lower-cased text
+    static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        for (String word : NOT_WORD.split(text)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // Edits allowed for a query word of that length; short words have too many neighbours to be corrected
+    static int edits(int length) {
+        return length < MIN_LENGTH ? 0 : length < 6 ? 1 : MAX_EDITS;
+    }
+
+    void add(Collection<String> words) {
+        for (String word : words) {
+            if (kept(word) && counts.merge(word, 1, Integer::sum) == 1) {
+                forEachDeletion(word, MAX_EDITS, key -> deletions.computeIfAbsent(key, k -> new ArrayList<>(1))
+                        .add(word));
+            }
+        }
+    }
+
+    void remove(Collection<String> words) {
+        for (String word : words) {
+            Integer count = counts.get(word);
+            if (count == null) {
+                continue;
+            }
+            if (count > 1) {
+                counts.put(word, count - 1);
+                continue;
+            }
+
+            counts.remove(word);
+            forEachDeletion(word, MAX_EDITS, key -> {
+                List<String> filed = deletions.get(key);
+                filed.remove(word);
+                if (filed.isEmpty()) {
+                    deletions.remove(key);
+                }
+            });
+        }
+    }
+
+    int size() {
+        return counts.size();
+    }
+
+    // Kept words within the edits allowed for the query word, itself included when kept
+    Set<String> similar(String word) {
+        int edits = edits(word.length());
+        Set<String> similar = new HashSet<>();
+        if (edits == 0 || word.length() > MAX_LENGTH + MAX_EDITS) {
+            return similar;
+        }
+
+        forEachDeletion(word, edits, key -> {
+            List<String> filed = deletions.get(key);
+            if (filed != null) {
+                for (String candidate : filed) {
+                    if (!similar.contains(candidate) && distance(word, candidate, edits) <= edits) {
+                        similar.add(candidate);
+                    }
+                }
+            }
+        });
+        return similar;
+    }
+
+    // Optimal string alignment distance, or more than the bound once every alignment exceeds it
+    static int distance(String a, String b, int bound) {
+        if (Math.abs(a.length() - b.length()) > bound) {
+            return bound + 1;
+        }
+
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, previous2[j - 2] + 1);
+                }
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > bound) {
+                return bound + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    private static boolean kept(String word) {
+        return word.length() >= MIN_LENGTH && word.length() <= MAX_LENGTH && LETTERS.matcher(word).matches();
+    }
+
+    private static void forEachDeletion(String word, int edits, Consumer<String> action) {
+        Set<String> keys = new HashSet<>();
+        keys.add(word);
+        collectDeletions(word, edits, keys);
+        keys.forEach(action);
+    }
+
+    private static void collectDeletions(String word, int edits, Set<String> keys) {
+        if (edits == 0 || word.length() <= 1) {
+            return;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            String deleted = word.substring(0, i) + word.substring(i + 1);
+            if (keys.add(deleted)) {
+                collectDeletions(deleted, edits - 1, keys);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import ru.practicum.shareit.booking.service.BookingListCache;
 import ru.practicum.shareit.user.dto.UserDtoIn;
 import ru.practicum.shareit.user.dto.UserDtoOut;
 import ru.practicum.shareit.user.model.User;
@@ -22,6 +23,8 @@ public class UserServiceImpl implements UserService {
 
     private final UserMapper mapper;
 
+    private final BookingListCache bookingListCache;
+
     @Override
     public UserDtoOut create(UserDtoIn userDto) {
         User user = mapper.fromDto(userDto);
@@ -74,6 +77,7 @@ public class UserServiceImpl implements UserService {
         } catch (DataIntegrityViolationException e) {
             throw new ConflictException("Email already in use");
         }
+        bookingListCache.evictAll();
         log.info("{} is updated", user);
 
         return mapper.toDto(user);
@@ -86,6 +90,7 @@ public class UserServiceImpl implements UserService {
         }
 
         repo.deleteById(id);
+        bookingListCache.evictAll();
         log.info("User with ID {} is removed", id);
     }
 }
@@ -22,6 +22,13 @@ public class ErrorHandler {
         return "Conflict";
     }
 
+    @ExceptionHandler(BookingOverlapException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String handleBookingOverlapException(BookingOverlapException e) {
+        log.warn("{} : {}", e.getClass().getSimpleName(), e.getMessage());
+        return "Booking overlaps an existing booking";
+    }
+
     @ExceptionHandler(NotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public String handleNotFoundException(NotFoundException e) {
@@ -61,12 +68,31 @@ public class ErrorHandler {
         return Collections.singletonMap("error", "Unknown state: " + e.unknownStatus);
     }
 
+    @ExceptionHandler(UnsupportedSortException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleUnsupportedSortException(UnsupportedSortException e) {
+        return Collections.singletonMap("error", "Unknown sort: " + e.unknownSort);
+    }
+
+    @ExceptionHandler(UnsupportedFormatException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleUnsupportedFormatException(UnsupportedFormatException e) {
+        return Collections.singletonMap("error", "Unknown format: " + e.unknownFormat);
+    }
+
     @ExceptionHandler(StatusChangeException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public String handleStatusChangeException(StatusChangeException e) {
         return "Status Change is not valid";
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleInvalidCursorException(InvalidCursorException e) {
+        log.error("{} : {}", e.getClass().getSimpleName(), e.getMessage());
+        return "Cursor is not valid";
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public String handleInternalException(Exception e) {
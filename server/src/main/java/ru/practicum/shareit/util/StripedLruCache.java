@@ -0,0 +1,126 @@
+package ru.practicum.shareit.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded LRU map whose keys belong to groups, such as the user of a listing or the item of a window, so that
+ * all the entries of a group are dropped at once.
+ * <p>
+ * A value loaded while its group is dropped could be read before the write that dropped it, so every group
+ * belongs to a generation stripe that dropping advances. A loader takes {@link #generation(int)} before it
+ * reads, and {@link #put} stores the value only if the generation did not move in the meantime.
+ */
+public class StripedLruCache<K, V> {
+
+    private static final int STRIPES = 1024;
+
+    private final ToIntFunction<K> groupOf;
+
+    private final int maxEntries;
+
+    private final Runnable onOverflow;
+
+    private final Map<K, V> entries;
+
+    private final Map<Integer, Set<K>> keysByGroup = new HashMap<>();
+
+    // The last slot is advanced by dropAll and shared by every group
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES + 1);
+
+    public StripedLruCache(int maxEntries, ToIntFunction<K> groupOf) {
+        this(maxEntries, groupOf, () -> { });
+    }
+
+    // onOverflow runs for every entry pushed out by the size bound
+    public StripedLruCache(int maxEntries, ToIntFunction<K> groupOf, Runnable onOverflow) {
+        this.groupOf = groupOf;
+        this.maxEntries = maxEntries;
+        this.onOverflow = onOverflow;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= StripedLruCache.this.maxEntries) {
+                    return false;
+                }
+                unindex(eldest.getKey());
+                StripedLruCache.this.onOverflow.run();
+                return true;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public long generation(int group) {
+        return generations.get(Stripes.of(group, STRIPES)) + generations.get(STRIPES);
+    }
+
+    // Stores the value unless its group was dropped since the generation was taken
+    public synchronized boolean put(K key, V value, long generation) {
+        int group = groupOf.applyAsInt(key);
+        if (generation != generation(group)) {
+            return false;
+        }
+
+        entries.put(key, value);
+        keysByGroup.computeIfAbsent(group, id -> new HashSet<>()).add(key);
+        return true;
+    }
+
+    // Updates a cached value in place; values loaded before the change are not stored
+    public synchronized void change(K key, UnaryOperator<V> change) {
+        generations.incrementAndGet(Stripes.of(groupOf.applyAsInt(key), STRIPES));
+        entries.computeIfPresent(key, (k, value) -> change.apply(value));
+    }
+
+    public synchronized void remove(K key) {
+        if (entries.remove(key) != null) {
+            unindex(key);
+        }
+    }
+
+    // Returns the number of entries dropped
+    public synchronized int drop(int group) {
+        generations.incrementAndGet(Stripes.of(group, STRIPES));
+        Set<K> keys = keysByGroup.remove(group);
+        if (keys == null) {
+            return 0;
+        }
+
+        keys.forEach(entries::remove);
+        return keys.size();
+    }
+
+    // Returns the number of entries dropped
+    public synchronized int dropAll() {
+        generations.incrementAndGet(STRIPES);
+        int size = entries.size();
+        entries.clear();
+        keysByGroup.clear();
+        return size;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void unindex(K key) {
+        int group = groupOf.applyAsInt(key);
+        Set<K> keys = keysByGroup.get(group);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByGroup.remove(group);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.util;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class Stripes {
+
+    /**
+     * Stripe of an id among {@code stripes}. Ids are mostly sequential, so they are spread by a multiplicative
+     * hash before the modulo.
+     */
+    public static int of(int id, int stripes) {
+        return Math.floorMod(id * 0x9E3779B9, stripes);
+    }
+}
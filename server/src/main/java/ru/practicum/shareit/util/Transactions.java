@@ -0,0 +1,29 @@
+package ru.practicum.shareit.util;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class Transactions {
+
+    /**
+     * Runs the action once the current transaction commits, or at once when no transaction is active. Inside a
+     * {@code @TransactionalEventListener} the committed transaction still counts as active and the action would
+     * never run, so listeners apply their changes directly.
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -7,4 +7,6 @@ import lombok.NoArgsConstructor;
 public class Util {
 
     public static final String USER_ID_HEADER = "X-Sharer-User-Id";
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 }
@@ -0,0 +1,12 @@
+package ru.practicum.shareit.util.exception;
+
+
+public class UnsupportedFormatException extends RuntimeException {
+
+    public String unknownFormat;
+
+    public UnsupportedFormatException(String unknownFormat) {
+        super();
+        this.unknownFormat = unknownFormat;
+    }
+}
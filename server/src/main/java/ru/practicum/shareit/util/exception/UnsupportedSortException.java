@@ -0,0 +1,12 @@
+package ru.practicum.shareit.util.exception;
+
+
+public class UnsupportedSortException extends RuntimeException {
+
+    public String unknownSort;
+
+    public UnsupportedSortException(String unknownSort) {
+        super();
+        this.unknownSort = unknownSort;
+    }
+}
@@ -0,0 +1,28 @@
+-- Loaded after schema.sql when spring.sql.init.platform=h2, the default.
+-- Bookings that ended long ago, moved out of bookings by BookingArchiver. H2 has no partitioning,
+-- so the archive is a plain table; schema-postgresql.sql partitions it by month.
+CREATE TABLE IF NOT EXISTS bookings_archive (
+  id BIGINT NOT NULL,
+  start_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  end_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  item_id int NOT NULL,
+  booker_id int NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  owner_id int NOT NULL,
+  phase VARCHAR(16),
+  created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  CONSTRAINT pk_bookings_archive PRIMARY KEY (id),
+  FOREIGN KEY(item_id) REFERENCES items(id),
+  FOREIGN KEY(booker_id) REFERENCES users(id),
+  FOREIGN KEY(owner_id) REFERENCES users(id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_booker_start ON bookings_archive (booker_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_owner_start ON bookings_archive (owner_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_booker_end ON bookings_archive (booker_id, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_owner_end ON bookings_archive (owner_id, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_booker_created ON bookings_archive (booker_id, created);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_owner_created ON bookings_archive (owner_id, created);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_item_period ON bookings_archive (item_id, start_date, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_end ON bookings_archive (end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_created ON bookings_archive (created);
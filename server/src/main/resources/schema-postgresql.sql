@@ -0,0 +1,53 @@
+-- Loaded after schema.sql when spring.sql.init.platform=postgresql.
+-- Backstop for the overlap check of BookingServiceImpl.create: no two WAITING or APPROVED bookings
+-- of one item may share a moment. DO with a quoted body keeps the statement idempotent; a database
+-- that already holds overlapping bookings starts with a warning instead of failing.
+-- Recurring bookings are rules in booking_rules, and their occurrences are never rows, so the
+-- constraint does not reach them: an occurrence is only checked by the server instance that writes
+-- the booking or the rule, under its own item lock.
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+DO 'BEGIN
+  IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = ''ex_bookings_item_period'') THEN
+    ALTER TABLE bookings ADD CONSTRAINT ex_bookings_item_period
+      EXCLUDE USING gist (item_id WITH =, tsrange(start_date, end_date) WITH &&)
+      WHERE (status IN (''WAITING'', ''APPROVED''));
+  END IF;
+EXCEPTION WHEN exclusion_violation THEN
+  RAISE WARNING ''ex_bookings_item_period is not created: bookings already overlap'';
+END';
+
+-- Bookings that ended long ago, moved out of bookings by BookingArchiver. Partitioned by month of
+-- end_date; the archiver creates each month's partition before it moves bookings into it, and an old
+-- month can be detached or dropped as a whole. Indexes declared on the parent apply to every partition.
+CREATE TABLE IF NOT EXISTS bookings_archive (
+  id BIGINT NOT NULL,
+  start_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  end_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  item_id int NOT NULL,
+  booker_id int NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  owner_id int NOT NULL,
+  phase VARCHAR(16),
+  created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  CONSTRAINT pk_bookings_archive PRIMARY KEY (id, end_date),
+  FOREIGN KEY(item_id) REFERENCES items(id),
+  FOREIGN KEY(booker_id) REFERENCES users(id),
+  FOREIGN KEY(owner_id) REFERENCES users(id)
+) PARTITION BY RANGE (end_date);
+
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_booker_start ON bookings_archive (booker_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_owner_start ON bookings_archive (owner_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_booker_end ON bookings_archive (booker_id, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_owner_end ON bookings_archive (owner_id, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_booker_created ON bookings_archive (booker_id, created);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_owner_created ON bookings_archive (owner_id, created);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_item_period ON bookings_archive (item_id, start_date, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_end ON bookings_archive (end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_archive_created ON bookings_archive (created);
+
+-- Rows written while ids came from the identity columns must stay below the pooled sequences.
+SELECT setval('items_seq', (SELECT MAX(id) FROM items))
+WHERE (SELECT last_value FROM items_seq) < (SELECT MAX(id) FROM items);
+SELECT setval('bookings_seq', (SELECT MAX(id) FROM bookings))
+WHERE (SELECT last_value FROM bookings_seq) < (SELECT MAX(id) FROM bookings);
@@ -34,9 +34,61 @@ CREATE TABLE IF NOT EXISTS bookings (
   item_id int NOT NULL,
   booker_id int NOT NULL,
   status VARCHAR(16) NOT NULL,
+  owner_id int NOT NULL,
+  phase VARCHAR(16),
+  created TIMESTAMP WITHOUT TIME ZONE DEFAULT LOCALTIMESTAMP NOT NULL,
   CONSTRAINT pk_booking PRIMARY KEY (id),
   FOREIGN KEY(item_id) REFERENCES items(id),
-  FOREIGN KEY(booker_id) REFERENCES users(id)
+  FOREIGN KEY(booker_id) REFERENCES users(id),
+  FOREIGN KEY(owner_id) REFERENCES users(id)
+);
+
+-- owner_id denormalizes items.owner_id; backfill databases created before the column existed
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS owner_id int;
+UPDATE bookings SET owner_id = (SELECT i.owner_id FROM items i WHERE i.id = bookings.item_id) WHERE owner_id IS NULL;
+ALTER TABLE bookings ALTER COLUMN owner_id SET NOT NULL;
+
+-- phase records the lifecycle events already emitted for a booking, see BookingLifecycle
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS phase VARCHAR(16);
+
+-- Bookings that existed before the column was added get the time of the migration
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS created TIMESTAMP WITHOUT TIME ZONE DEFAULT LOCALTIMESTAMP NOT NULL;
+
+-- Items and bookings take ids from pooled sequences so that Hibernate can batch their inserts;
+-- INCREMENT BY must match the allocationSize of the entity mappings
+CREATE SEQUENCE IF NOT EXISTS items_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS bookings_seq INCREMENT BY 50;
+
+-- Optional per-user booking counters by status, kept up to date by BookingCounters when
+-- shareit.booking.summary.counters-enabled is set; role is BOOKER or OWNER
+CREATE TABLE IF NOT EXISTS booking_counters (
+  user_id int NOT NULL,
+  role VARCHAR(16) NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  bookings BIGINT NOT NULL,
+  CONSTRAINT pk_booking_counters PRIMARY KEY (user_id, role, status)
+);
+
+-- A recurring booking is one row whatever the number of its occurrences, see BookingRule; last_end_date is
+-- the end of its last occurrence
+CREATE TABLE IF NOT EXISTS booking_rules (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  start_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  end_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  frequency VARCHAR(16) NOT NULL,
+  repeat_interval int NOT NULL,
+  repeat_count int,
+  repeat_until TIMESTAMP WITHOUT TIME ZONE,
+  last_end_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  item_id int NOT NULL,
+  booker_id int NOT NULL,
+  owner_id int NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  created TIMESTAMP WITHOUT TIME ZONE DEFAULT LOCALTIMESTAMP NOT NULL,
+  CONSTRAINT pk_booking_rule PRIMARY KEY (id),
+  FOREIGN KEY(item_id) REFERENCES items(id),
+  FOREIGN KEY(booker_id) REFERENCES users(id),
+  FOREIGN KEY(owner_id) REFERENCES users(id)
 );
 
 CREATE TABLE IF NOT EXISTS comments (
@@ -48,4 +100,30 @@ CREATE TABLE IF NOT EXISTS comments (
   CONSTRAINT pk_comment PRIMARY KEY (id),
   FOREIGN KEY(item_id) REFERENCES items(id),
   FOREIGN KEY(author_id) REFERENCES users(id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS ix_requests_requestor_created ON requests (requestor_id, created DESC);
+CREATE INDEX IF NOT EXISTS ix_requests_created ON requests (created);
+
+CREATE INDEX IF NOT EXISTS ix_items_owner ON items (owner_id, id);
+CREATE INDEX IF NOT EXISTS ix_items_request ON items (request_id);
+
+CREATE INDEX IF NOT EXISTS ix_bookings_booker_start ON bookings (booker_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS ix_bookings_owner_start ON bookings (owner_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS ix_bookings_booker_end ON bookings (booker_id, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_owner_end ON bookings (owner_id, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_booker_created ON bookings (booker_id, created);
+CREATE INDEX IF NOT EXISTS ix_bookings_owner_created ON bookings (owner_id, created);
+DROP INDEX IF EXISTS ix_bookings_item_start;
+CREATE INDEX IF NOT EXISTS ix_bookings_item_period ON bookings (item_id, start_date, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_status_start ON bookings (status, start_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_status_end ON bookings (status, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_end ON bookings (end_date);
+
+CREATE INDEX IF NOT EXISTS ix_booking_rules_item_period ON booking_rules (item_id, start_date, last_end_date);
+DROP INDEX IF EXISTS ix_booking_rules_booker_start;
+DROP INDEX IF EXISTS ix_booking_rules_owner_start;
+CREATE INDEX IF NOT EXISTS ix_booking_rules_booker_id ON booking_rules (booker_id, id);
+CREATE INDEX IF NOT EXISTS ix_booking_rules_owner_id ON booking_rules (owner_id, id);
+
+CREATE INDEX IF NOT EXISTS ix_comments_item ON comments (item_id);
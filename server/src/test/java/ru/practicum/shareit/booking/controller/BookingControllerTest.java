@@ -9,20 +9,35 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import ru.practicum.shareit.booking.BookingBaseTest;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
-import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.dto.Occurrence;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoIn;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoOut;
+import ru.practicum.shareit.booking.model.BookingFrequency;
+import ru.practicum.shareit.booking.model.BookingExportFormat;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.service.BookingExporter;
 import ru.practicum.shareit.booking.service.BookingService;
 import ru.practicum.shareit.util.ErrorHandler;
+import ru.practicum.shareit.util.exception.BookingOverlapException;
 import ru.practicum.shareit.util.exception.ForbiddenException;
 import ru.practicum.shareit.util.exception.ItemIsNotAvailableException;
 import ru.practicum.shareit.util.exception.NotFoundException;
 import ru.practicum.shareit.util.exception.StatusChangeException;
 
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
@@ -30,8 +45,12 @@ import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.practicum.shareit.util.Util.NEXT_CURSOR_HEADER;
 import static ru.practicum.shareit.util.Util.USER_ID_HEADER;
 
 @SpringBootTest
@@ -43,6 +62,9 @@ public class BookingControllerTest extends BookingBaseTest {
     @MockBean
     private BookingService bookingService;
 
+    @MockBean
+    private BookingExporter bookingExporter;
+
     private final ObjectMapper mapper = new ObjectMapper();
 
     private MockMvc mvc;
@@ -88,6 +110,39 @@ public class BookingControllerTest extends BookingBaseTest {
                 .andExpect(jsonPath("$.booker.email", Matchers.is(booking.getBooker().getEmail())));
     }
 
+    @SneakyThrows
+    @Test
+    void createAll_shouldAnswerOKWithEveryCreatedBooking() {
+        doReturn(List.of(bookingDtoOut, bookingDtoOut)).when(bookingService).createAll(anyList(), anyInt());
+
+        mvc.perform(post("/bookings/batch")
+                        .header(USER_ID_HEADER, "2")
+                        .content(mapper.writeValueAsString(List.of(bookingDtoIn, bookingDtoIn)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", Matchers.is(booking.getId())));
+
+        verify(bookingService, times(1)).createAll(argThat(bookings -> bookings.size() == 2), eq(2));
+    }
+
+    @SneakyThrows
+    @Test
+    void createAll_shouldAnswerConflictWhenAnyBookingOverlaps() {
+        when(bookingService.createAll(anyList(), anyInt()))
+                .thenThrow(new BookingOverlapException("Booking overlaps"));
+
+        mvc.perform(post("/bookings/batch")
+                        .header(USER_ID_HEADER, "2")
+                        .content(mapper.writeValueAsString(List.of(bookingDtoIn, bookingDtoIn)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+    }
+
     @SneakyThrows
     @Test
     void create_shouldAnswerInternalServerErrorWhenUserIdIsMissing() {
@@ -114,6 +169,22 @@ public class BookingControllerTest extends BookingBaseTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @SneakyThrows
+    @Test
+    void create_shouldAnswerConflictWhenBookingOverlaps() {
+        when(bookingService.create(any(BookingDtoIn.class), anyInt()))
+                .thenThrow(new BookingOverlapException("Booking overlaps"));
+
+        mvc.perform(post("/bookings")
+                        .header(USER_ID_HEADER, "1")
+                        .content(mapper.writeValueAsString(bookingDtoIn))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict())
+                .andExpect(content().string("Booking overlaps an existing booking"));
+    }
+
     @SneakyThrows
     @Test
     void create_shouldAnswerBadRequestWhenItemDoesNotFounded() {
@@ -157,6 +228,36 @@ public class BookingControllerTest extends BookingBaseTest {
                 .andExpect(jsonPath("$.booker.email", Matchers.is(booking.getBooker().getEmail())));
     }
 
+    @SneakyThrows
+    @Test
+    void getSummary_shouldAnswerOKWithCountOfEveryState() {
+        when(bookingService.getSummary(BookingRole.BOOKER, 1))
+                .thenReturn(BookingSummary.builder().all(3).past(1).current(1).future(1).waiting(1).build());
+
+        mvc.perform(get("/bookings/summary")
+                        .header(USER_ID_HEADER, "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.all", Matchers.is(3)))
+                .andExpect(jsonPath("$.current", Matchers.is(1)))
+                .andExpect(jsonPath("$.past", Matchers.is(1)))
+                .andExpect(jsonPath("$.future", Matchers.is(1)))
+                .andExpect(jsonPath("$.waiting", Matchers.is(1)))
+                .andExpect(jsonPath("$.rejected", Matchers.is(0)));
+    }
+
+    @SneakyThrows
+    @Test
+    void getOwnerSummary_shouldAnswerNotFoundWhenUserIsNotFound() {
+        when(bookingService.getSummary(BookingRole.OWNER, 1))
+                .thenThrow(new NotFoundException("User is not found"));
+
+        mvc.perform(get("/bookings/owner/summary")
+                        .header(USER_ID_HEADER, "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
     @SneakyThrows
     @Test
     void getById_shouldAnswerInternalServerErrorWhenUserIdIsMissing() {
@@ -200,7 +301,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByBooker_shouldAnswerOK() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getAllByBooker(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings")
                         .header(USER_ID_HEADER, "1")
@@ -228,6 +329,121 @@ public class BookingControllerTest extends BookingBaseTest {
                 .andExpect(jsonPath("$[0].booker.email", Matchers.is(booking.getBooker().getEmail())));
     }
 
+    @SneakyThrows
+    @Test
+    void getAllByBooker_shouldReturnNextCursorWhenPageIsFull() {
+        doReturn(List.of(bookingDtoOut)).when(bookingService)
+                .getAll(any(BookingQuery.class));
+
+        mvc.perform(get("/bookings")
+                        .header(USER_ID_HEADER, "1")
+                        .param("from", "0")
+                        .param("size", "1")
+                        .param("state", "ALL")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER, BookingCursor.of(bookingDtoOut, BookingSort.START).encode()));
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllByBooker_shouldNotReturnNextCursorWhenPageIsNotFull() {
+        doReturn(List.of(bookingDtoOut)).when(bookingService)
+                .getAll(any(BookingQuery.class));
+
+        mvc.perform(get("/bookings")
+                        .header(USER_ID_HEADER, "1")
+                        .param("from", "0")
+                        .param("size", "10")
+                        .param("state", "ALL")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(NEXT_CURSOR_HEADER));
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllByBooker_shouldUseCursorWhenItIsPresent() {
+        BookingCursor cursor = BookingCursor.of(bookingDtoOut, BookingSort.START);
+        doReturn(List.of(bookingDtoOut)).when(bookingService)
+                .getAll(any(BookingQuery.class));
+
+        mvc.perform(get("/bookings")
+                        .header(USER_ID_HEADER, "1")
+                        .param("cursor", cursor.encode())
+                        .param("size", "10")
+                        .param("state", "FUTURE")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(1)));
+
+        verify(bookingService, times(1)).getAll(argThat(query -> query.getRole() == BookingRole.BOOKER
+                && query.getUserId() == 1
+                && query.getState() == BookingState.FUTURE
+                && cursor.equals(query.getCursor())
+                && query.getSize() == 10));
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllByOwner_shouldPassItemWindowAndSortAndReturnCursorOfSort() {
+        doReturn(List.of(bookingDtoOut)).when(bookingService).getAll(any(BookingQuery.class));
+
+        mvc.perform(get("/bookings/owner")
+                        .header(USER_ID_HEADER, "1")
+                        .param("size", "1")
+                        .param("state", "ALL")
+                        .param("itemId", "5")
+                        .param("since", "2030-01-01T00:00:00")
+                        .param("until", "2030-02-01T12:00:00")
+                        .param("sort", "END")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER,
+                        BookingCursor.of(bookingDtoOut, BookingSort.END).encode()));
+
+        verify(bookingService, times(1)).getAll(argThat(query -> query.getRole() == BookingRole.OWNER
+                && query.getItemId() == 5
+                && query.getSince().equals(LocalDateTime.of(2030, 1, 1, 0, 0))
+                && query.getUntil().equals(LocalDateTime.of(2030, 2, 1, 12, 0))
+                && query.getSort() == BookingSort.END));
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllByBooker_shouldAnswerBadRequestWhenSortIsUnsupported() {
+        mvc.perform(get("/bookings")
+                        .header(USER_ID_HEADER, "1")
+                        .param("size", "10")
+                        .param("state", "ALL")
+                        .param("sort", "PRICE")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", Matchers.is("Unknown sort: PRICE")));
+
+        verify(bookingService, never()).getAll(any(BookingQuery.class));
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllByBooker_shouldAnswerBadRequestWhenCursorIsMalformed() {
+        mvc.perform(get("/bookings")
+                        .header(USER_ID_HEADER, "1")
+                        .param("cursor", "malformed")
+                        .param("size", "10")
+                        .param("state", "ALL")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     @SneakyThrows
     @Test
     void getAllByBooker_shouldReturnBadWhenStatusIsUnsupported() {
@@ -246,7 +462,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByBooker_shouldAnswerInternalServerErrorWhenStateIsMissing() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getAllByBooker(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings")
                         .header(USER_ID_HEADER, "1")
@@ -262,7 +478,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByBooker_shouldAnswerOKAndCurrentBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getCurrentBookingByBooker(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings")
                         .header(USER_ID_HEADER, "1")
@@ -294,7 +510,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByBooker_shouldAnswerOKAndPastBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getPastBookingByBooker(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings")
                         .header(USER_ID_HEADER, "1")
@@ -326,7 +542,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByBooker_shouldAnswerOKAndFutureBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getFutureBookingByBooker(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings")
                         .header(USER_ID_HEADER, "1")
@@ -358,7 +574,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByBooker_shouldAnswerOKAnWaitingBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getBookingByBookerAndStatus(anyInt(), any(BookingStatus.class), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings")
                         .header(USER_ID_HEADER, "1")
@@ -390,7 +606,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByBooker_shouldAnswerOKAndRejectedBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getBookingByBookerAndStatus(anyInt(), any(BookingStatus.class), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings")
                         .header(USER_ID_HEADER, "1")
@@ -434,7 +650,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByOwner_shouldAnswerOK() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getAllByOwner(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings/owner")
                         .header(USER_ID_HEADER, "1")
@@ -476,11 +692,36 @@ public class BookingControllerTest extends BookingBaseTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @SneakyThrows
+    @Test
+    void getAllByOwner_shouldUseCursorWhenItIsPresent() {
+        BookingCursor cursor = BookingCursor.of(bookingDtoOut, BookingSort.START);
+        doReturn(List.of(bookingDtoOut)).when(bookingService)
+                .getAll(any(BookingQuery.class));
+
+        mvc.perform(get("/bookings/owner")
+                        .header(USER_ID_HEADER, "1")
+                        .param("cursor", cursor.encode())
+                        .param("size", "1")
+                        .param("state", "WAITING")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER, cursor.encode()));
+
+        verify(bookingService, times(1)).getAll(argThat(query -> query.getRole() == BookingRole.OWNER
+                && query.getUserId() == 1
+                && query.getState() == BookingState.WAITING
+                && cursor.equals(query.getCursor())
+                && query.getSize() == 1));
+    }
+
     @SneakyThrows
     @Test
     void getAllByOwner_shouldAnswerInternalServerErrorWhenStateIsMissing() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getAllByOwner(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings/owner")
                         .header(USER_ID_HEADER, "1")
@@ -496,7 +737,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByOwner_shouldAnswerOKAndCurrentBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getCurrentBookingByOwner(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings/owner")
                         .header(USER_ID_HEADER, "1")
@@ -528,7 +769,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByOwner_shouldAnswerOKAndPastBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getPastBookingByOwner(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings/owner")
                         .header(USER_ID_HEADER, "1")
@@ -560,7 +801,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByOwner_shouldAnswerOKAndFutureBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getFutureBookingByOwner(anyInt(), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings/owner")
                         .header(USER_ID_HEADER, "1")
@@ -592,7 +833,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByOwner_shouldAnswerOKAnWaitingBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getBookingByOwnerAndStatus(anyInt(), any(BookingStatus.class), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings/owner")
                         .header(USER_ID_HEADER, "1")
@@ -624,7 +865,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void getAllByOwner_shouldAnswerOKAndRejectedBooking() {
         doReturn(List.of(bookingDtoOut)).when(bookingService)
-                .getBookingByOwnerAndStatus(anyInt(), any(BookingStatus.class), anyInt(), anyInt());
+                .getAll(any(BookingQuery.class));
 
         mvc.perform(get("/bookings/owner")
                         .header(USER_ID_HEADER, "1")
@@ -668,7 +909,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @Test
     void setApproved_shouldAnswerOK() {
 
-        when(bookingService.approve(anyInt(), anyInt(), anyBoolean()))
+        when(bookingService.approve(anyInt(), anyInt(), anyBoolean(), anyBoolean()))
                 .thenReturn(bookingDtoOut);
 
         mvc.perform(patch("/bookings/1")
@@ -691,7 +932,30 @@ public class BookingControllerTest extends BookingBaseTest {
                 .andExpect(jsonPath("$.item.requestId").value(Matchers.nullValue()))
                 .andExpect(jsonPath("$.booker.id", Matchers.is(booking.getBooker().getId())))
                 .andExpect(jsonPath("$.booker.name", Matchers.is(booking.getBooker().getName())))
-                .andExpect(jsonPath("$.booker.email", Matchers.is(booking.getBooker().getEmail())));
+                .andExpect(jsonPath("$.booker.email", Matchers.is(booking.getBooker().getEmail())))
+                .andExpect(jsonPath("$.rejectedBookingIds").doesNotExist());
+
+        verify(bookingService).approve(1, 1, true, false);
+    }
+
+    @SneakyThrows
+    @Test
+    void setApproved_shouldAnswerRejectedBookingIdsWhenRejectOverlappingIsSet() {
+        bookingDtoOut.setRejectedBookingIds(List.of(2, 3));
+        when(bookingService.approve(anyInt(), anyInt(), anyBoolean(), anyBoolean()))
+                .thenReturn(bookingDtoOut);
+
+        mvc.perform(patch("/bookings/1")
+                        .header(USER_ID_HEADER, "1")
+                        .param("approved", "true")
+                        .param("rejectOverlapping", "true")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejectedBookingIds", Matchers.contains(2, 3)));
+
+        verify(bookingService).approve(1, 1, true, true);
     }
 
     @SneakyThrows
@@ -719,7 +983,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @SneakyThrows
     @Test
     void approve_shouldAnswerNotFoundRequestWhenActionIsForbidden() {
-        when(bookingService.approve(anyInt(), anyInt(), anyBoolean()))
+        when(bookingService.approve(anyInt(), anyInt(), anyBoolean(), anyBoolean()))
                 .thenThrow(new ForbiddenException("Forbidden. User is not owner"));
 
         mvc.perform(patch("/bookings/1")
@@ -735,7 +999,7 @@ public class BookingControllerTest extends BookingBaseTest {
     @SneakyThrows
     @Test
     void approve_shouldAnswerNotFoundRequestWhenItemStatusIsNotWaiting() {
-        when(bookingService.approve(anyInt(), anyInt(), anyBoolean()))
+        when(bookingService.approve(anyInt(), anyInt(), anyBoolean(), anyBoolean()))
                 .thenThrow(new StatusChangeException());
 
         mvc.perform(patch("/bookings/1")
@@ -747,4 +1011,106 @@ public class BookingControllerTest extends BookingBaseTest {
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
     }
+
+    @SneakyThrows
+    @Test
+    void exportByOwner_shouldStreamExportInRequestedFormat() {
+        when(bookingExporter.exportByOwner(1, BookingExportFormat.CSV))
+                .thenReturn(out -> out.write("id\r\n1\r\n".getBytes(StandardCharsets.UTF_8)));
+
+        MvcResult result = mvc.perform(get("/bookings/owner/export")
+                        .header(USER_ID_HEADER, "1")
+                        .param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"bookings.csv\""))
+                .andExpect(content().string("id\r\n1\r\n"));
+    }
+
+    @SneakyThrows
+    @Test
+    void exportByOwner_shouldAnswerBadRequestWhenFormatIsUnknown() {
+        mvc.perform(get("/bookings/owner/export")
+                        .header(USER_ID_HEADER, "1")
+                        .param("format", "XML"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", Matchers.is("Unknown format: XML")));
+
+        verify(bookingExporter, never()).exportByOwner(anyInt(), any());
+    }
+
+    @SneakyThrows
+    @Test
+    void createRecurring_shouldAnswerOKWithRule() {
+        RecurringBookingDtoIn ruleDtoIn = RecurringBookingDtoIn.builder()
+                .itemId(item.getId())
+                .startDate(booking.getStartDate())
+                .endDate(booking.getEndDate())
+                .frequency(BookingFrequency.WEEKLY)
+                .count(4)
+                .build();
+        when(bookingService.createRecurring(any(RecurringBookingDtoIn.class), anyInt()))
+                .thenReturn(RecurringBookingDtoOut.builder()
+                        .id(1)
+                        .frequency(BookingFrequency.WEEKLY)
+                        .interval(1)
+                        .count(4)
+                        .build());
+
+        mvc.perform(post("/bookings/recurring")
+                        .header(USER_ID_HEADER, booker.getId())
+                        .content(mapper.writeValueAsString(ruleDtoIn))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.frequency", Matchers.is("WEEKLY")))
+                .andExpect(jsonPath("$.count", Matchers.is(4)))
+                .andExpect(jsonPath("$.occurrences").doesNotExist());
+
+        verify(bookingService).createRecurring(argThat(rule -> rule.getFrequency() == BookingFrequency.WEEKLY
+                && rule.getCount() == 4 && rule.getInterval() == null), eq(booker.getId()));
+    }
+
+    @SneakyThrows
+    @Test
+    void getAllRecurringByOwner_shouldPassWindowAndStateToService() {
+        LocalDateTime since = LocalDateTime.of(2030, 1, 1, 0, 0);
+        LocalDateTime until = since.plusMonths(1);
+        when(bookingService.getAllRecurring(any(BookingQuery.class)))
+                .thenReturn(List.of(RecurringBookingDtoOut.builder()
+                        .id(1)
+                        .occurrences(List.of(new Occurrence(since.plusDays(1), since.plusDays(2))))
+                        .build()));
+
+        mvc.perform(get("/bookings/recurring/owner")
+                        .header(USER_ID_HEADER, owner.getId())
+                        .param("state", "FUTURE")
+                        .param("size", "10")
+                        .param("since", since.toString())
+                        .param("until", until.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].occurrences", hasSize(1)))
+                .andExpect(jsonPath("$[0].occurrences[0].start", Matchers.is("2030-01-02T00:00:00")));
+
+        verify(bookingService).getAllRecurring(argThat(query -> query.getRole() == BookingRole.OWNER
+                && query.getState() == BookingState.FUTURE && since.equals(query.getSince())
+                && until.equals(query.getUntil()) && query.getSize() == 10));
+    }
+
+    @SneakyThrows
+    @Test
+    void approveRecurring_shouldAnswerBadRequestWhenStatusIsNotWaiting() {
+        when(bookingService.approveRecurring(anyInt(), anyInt(), anyBoolean()))
+                .thenThrow(new StatusChangeException());
+
+        mvc.perform(patch("/bookings/recurring/1")
+                        .header(USER_ID_HEADER, owner.getId())
+                        .param("approved", "true"))
+                .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,90 @@
+package ru.practicum.shareit.booking.dto;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.booking.BookingBaseTest;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.util.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookingCursorTest extends BookingBaseTest {
+
+    @Test
+    void decode_shouldReturnTheSameCursorAsEncoded() {
+        BookingCursor cursor = BookingCursor.of(bookingDtoOut, BookingSort.START);
+
+        assertThat(BookingCursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThat(cursor.getSort()).isEqualTo(BookingSort.START);
+        assertThat(cursor.getKey()).isEqualTo(bookingDtoOut.getStartDate());
+        assertThat(cursor.getId()).isEqualTo(bookingDtoOut.getId());
+    }
+
+    @Test
+    void decode_shouldKeepSortOfCursor() {
+        BookingCursor cursor = BookingCursor.of(bookingDtoOut, BookingSort.END);
+
+        assertThat(BookingCursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThat(cursor.getKey()).isEqualTo(bookingDtoOut.getEndDate());
+    }
+
+    @Test
+    void of_shouldPointAtOccurrenceByNegatedRuleIdAndStart() {
+        BookingDtoOut occurrence = BookingDtoOut.builder()
+                .ruleId(3)
+                .startDate(now)
+                .endDate(now.plusDays(1))
+                .created(now.minusDays(1))
+                .build();
+
+        BookingCursor cursor = BookingCursor.of(occurrence, BookingSort.CREATED);
+
+        assertThat(cursor).isEqualTo(new BookingCursor(BookingSort.CREATED, now.minusDays(1), -3, now));
+        assertThat(BookingCursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThat(new BookingCursor(BookingSort.CREATED, now.minusDays(1), 1).isBefore(cursor)).isTrue();
+        assertThat(cursor.isBefore(new BookingCursor(BookingSort.CREATED, now.minusDays(1), -3,
+                now.minusDays(7)))).isTrue();
+    }
+
+    @Test
+    void decode_shouldThrowInvalidCursorExceptionWhenSortIsMissing() {
+        String token = Base64.getUrlEncoder()
+                .encodeToString((now + "|7").getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> BookingCursor.decode(token))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void decode_shouldThrowInvalidCursorExceptionWhenSortIsUnknown() {
+        String token = Base64.getUrlEncoder()
+                .encodeToString(("MIDDLE|" + now + "|7").getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> BookingCursor.decode(token))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void decode_shouldThrowInvalidCursorExceptionWhenTokenIsNotBase64() {
+        assertThatThrownBy(() -> BookingCursor.decode("not a cursor"))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void decode_shouldThrowInvalidCursorExceptionWhenSeparatorIsMissing() {
+        assertThatThrownBy(() -> BookingCursor.decode("MjAyMi0wMS0wMVQwMDowMA"))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void decode_shouldThrowInvalidCursorExceptionWhenIdIsNotNumber() {
+        String token = Base64.getUrlEncoder()
+                .encodeToString(("START|" + now + "|x").getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> BookingCursor.decode(token))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+}
@@ -11,6 +11,7 @@ import ru.practicum.shareit.user.dto.UserDtoOut;
 
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static ru.practicum.shareit.booking.model.BookingStatus.APPROVED;
@@ -244,7 +245,10 @@ public class BookingDtoOutTest extends BookingBaseTest {
                 booking.getEndDate(),
                 itemDtoOut,
                 bookerDtoOut,
-                booking.getStatus());
+                booking.getStatus(),
+                booking.getStartDate(),
+                List.of(2),
+                null);
 
         assertThat(bookingDto.getId()).isEqualTo(booking.getId());
         assertThat(bookingDto.getStartDate()).isEqualTo(booking.getStartDate());
@@ -252,6 +256,9 @@ public class BookingDtoOutTest extends BookingBaseTest {
         assertThat(bookingDto.getItem()).isEqualTo(itemDtoOut);
         assertThat(bookingDto.getBooker()).isEqualTo(bookerDtoOut);
         assertThat(bookingDto.getStatus()).isEqualTo(booking.getStatus());
+        assertThat(bookingDto.getCreated()).isEqualTo(booking.getStartDate());
+        assertThat(bookingDto.getRejectedBookingIds()).containsExactly(2);
+        assertThat(bookingDto.getRuleId()).isNull();
     }
 
     @Test
@@ -0,0 +1,105 @@
+package ru.practicum.shareit.booking.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.booking.BookingBaseTest;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookingRuleTest extends BookingBaseTest {
+
+    LocalDateTime saturday;
+    BookingRule weekends;
+
+    @BeforeEach
+    protected void setUp() {
+        super.setUp();
+
+        saturday = LocalDateTime.of(2030, 1, 5, 10, 0);
+        weekends = BookingRule.builder()
+                .startDate(saturday)
+                .endDate(saturday.plusDays(1))
+                .frequency(BookingFrequency.WEEKLY)
+                .interval(1)
+                .count(10)
+                .item(item)
+                .booker(booker)
+                .build();
+    }
+
+    @Test
+    void occurrences_shouldStartFromFirstOccurrenceReachingWindow() {
+        assertThat(weekends.occurrences(saturday.plusWeeks(2).plusHours(12), saturday.plusDays(29)))
+                .extracting(ItemPeriod::getStartDate)
+                .containsExactly(saturday.plusWeeks(2), saturday.plusWeeks(3), saturday.plusWeeks(4));
+        assertThat(weekends.occurrences(saturday.plusDays(15), saturday.plusDays(29)))
+                .extracting(ItemPeriod::getStartDate)
+                .containsExactly(saturday.plusWeeks(3), saturday.plusWeeks(4));
+    }
+
+    @Test
+    void occurrences_shouldStopAtCount() {
+        assertThat(weekends.occurrences(saturday, saturday.plusYears(1))).hasSize(10);
+        assertThat(weekends.occurrences(saturday.plusWeeks(10), saturday.plusYears(1))).isEmpty();
+        assertThat(weekends.lastEnd()).isEqualTo(saturday.plusWeeks(9).plusDays(1));
+    }
+
+    @Test
+    void occurrences_shouldStopAtUntilIncludingOccurrenceStartingThen() {
+        weekends.setCount(null);
+        weekends.setUntil(saturday.plusWeeks(3));
+
+        assertThat(weekends.occurrenceCount()).isEqualTo(4);
+        assertThat(weekends.occurrences(saturday, saturday.plusYears(1)))
+                .extracting(ItemPeriod::getStartDate)
+                .containsExactly(saturday, saturday.plusWeeks(1), saturday.plusWeeks(2), saturday.plusWeeks(3));
+    }
+
+    @Test
+    void occurrences_shouldApplyInterval() {
+        weekends.setFrequency(BookingFrequency.DAILY);
+        weekends.setInterval(3);
+        weekends.setEndDate(saturday.plusHours(2));
+
+        assertThat(weekends.occurrences(saturday.plusDays(4), saturday.plusDays(10)))
+                .extracting(ItemPeriod::getStartDate)
+                .containsExactly(saturday.plusDays(6), saturday.plusDays(9));
+    }
+
+    @Test
+    void lastOccurrences_shouldExpandBackwardsFromEndOfWindow() {
+        assertThat(weekends.lastOccurrences(saturday.plusDays(1), saturday.plusWeeks(5), 2, period -> true))
+                .extracting(ItemPeriod::getStartDate)
+                .containsExactly(saturday.plusWeeks(3), saturday.plusWeeks(4));
+        assertThat(weekends.lastOccurrences(saturday.plusDays(1), saturday.plusWeeks(5), 10,
+                period -> !period.getStartDate().equals(saturday.plusWeeks(2))))
+                .extracting(ItemPeriod::getStartDate)
+                .containsExactly(saturday.plusWeeks(1), saturday.plusWeeks(3), saturday.plusWeeks(4));
+        assertThat(weekends.lastOccurrences(saturday.plusYears(1), saturday.plusYears(2), 10, period -> true))
+                .isEmpty();
+    }
+
+    @Test
+    void counts_shouldSplitOccurrencesByTimeWithBoundsOfListings() {
+        LocalDateTime now = saturday.plusWeeks(2);
+
+        assertThat(weekends.countEndedBefore(now)).isEqualTo(2);
+        assertThat(weekends.countStartingAfter(now)).isEqualTo(7);
+        assertThat(weekends.countEndedBefore(now.plusDays(1))).isEqualTo(2);
+        assertThat(weekends.countEndedBefore(now.plusDays(1).plusSeconds(1))).isEqualTo(3);
+        assertThat(weekends.countStartingAfter(saturday.minusDays(1))).isEqualTo(10);
+        assertThat(weekends.nextStart(now)).contains(saturday.plusWeeks(3));
+        assertThat(weekends.nextEnd(now)).contains(now.plusDays(1));
+        assertThat(weekends.nextStart(saturday.plusWeeks(9))).isEmpty();
+    }
+
+    @Test
+    void overlaps_shouldIgnorePeriodsBetweenOccurrences() {
+        assertThat(weekends.overlaps(new ItemPeriod(1, saturday.plusDays(2), saturday.plusDays(6)))).isFalse();
+        assertThat(weekends.overlaps(new ItemPeriod(1, saturday.plusDays(1), saturday.plusDays(7)))).isFalse();
+        assertThat(weekends.overlaps(new ItemPeriod(1, saturday.plusDays(6), saturday.plusDays(7).plusHours(1))))
+                .isTrue();
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.shareit.booking.model;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.util.exception.UnsupportedStateException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookingStateTest {
+
+    @Test
+    void from_shouldReturnStateByName() {
+        assertThat(BookingState.from("CURRENT")).isEqualTo(BookingState.CURRENT);
+        assertThat(BookingState.from("REJECTED").getStatus()).isEqualTo(BookingStatus.REJECTED);
+    }
+
+    @Test
+    void from_shouldThrowUnsupportedStateExceptionWhenStateIsUnknown() {
+        assertThatThrownBy(() -> BookingState.from("UNKNOWN"))
+                .isInstanceOf(UnsupportedStateException.class)
+                .hasFieldOrPropertyWithValue("unknownStatus", "UNKNOWN");
+    }
+}
@@ -65,7 +65,10 @@ public class BookingTest extends BookingBaseTest {
                 this.booking.getEndDate(),
                 item,
                 booker,
-                this.booking.getStatus());
+                this.booking.getStatus(),
+                owner,
+                null,
+                null);
 
         assertThat(booking.getId()).isEqualTo(this.booking.getId());
         assertThat(booking.getStartDate()).isEqualTo(this.booking.getStartDate());
@@ -73,6 +76,14 @@ public class BookingTest extends BookingBaseTest {
         assertThat(booking.getItem()).isEqualTo(item);
         assertThat(booking.getBooker()).isEqualTo(booker);
         assertThat(booking.getStatus()).isEqualTo(this.booking.getStatus());
+        assertThat(booking.getOwner()).isEqualTo(owner);
+    }
+
+    @Test
+    void onCreate_shouldCopyOwnerFromItem() {
+        booking.onCreate();
+
+        assertThat(booking.getOwner()).isEqualTo(item.getOwner());
     }
 
     @Test
@@ -84,7 +95,10 @@ public class BookingTest extends BookingBaseTest {
                     this.booking.getEndDate(),
                     item,
                     booker,
-                    this.booking.getStatus());
+                    this.booking.getStatus(),
+                    owner,
+                    null,
+                    null);
         }).isInstanceOf(NullPointerException.class)
                 .hasMessage("startDate is marked non-null but is null");
     }
@@ -98,7 +112,10 @@ public class BookingTest extends BookingBaseTest {
                     null,
                     item,
                     booker,
-                    this.booking.getStatus());
+                    this.booking.getStatus(),
+                    owner,
+                    null,
+                    null);
         }).isInstanceOf(NullPointerException.class)
                 .hasMessage("endDate is marked non-null but is null");
     }
@@ -112,7 +129,10 @@ public class BookingTest extends BookingBaseTest {
                     this.booking.getEndDate(),
                     null,
                     booker,
-                    this.booking.getStatus());
+                    this.booking.getStatus(),
+                    owner,
+                    null,
+                    null);
         }).isInstanceOf(NullPointerException.class)
                 .hasMessage("item is marked non-null but is null");
     }
@@ -126,7 +146,10 @@ public class BookingTest extends BookingBaseTest {
                     this.booking.getEndDate(),
                     item,
                     null,
-                    this.booking.getStatus());
+                    this.booking.getStatus(),
+                    owner,
+                    null,
+                    null);
         }).isInstanceOf(NullPointerException.class)
                 .hasMessage("booker is marked non-null but is null");
     }
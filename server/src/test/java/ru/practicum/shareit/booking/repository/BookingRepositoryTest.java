@@ -4,21 +4,40 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingSummary;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingExportRow;
+import ru.practicum.shareit.booking.model.BookingPeriod;
+import ru.practicum.shareit.booking.model.BookingPhase;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.model.ItemPeriod;
+import ru.practicum.shareit.booking.model.LastNextBooking;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.request.repository.ItemRequestRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.util.exception.InvalidCursorException;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static ru.practicum.shareit.booking.model.BookingRole.BOOKER;
+import static ru.practicum.shareit.booking.model.BookingRole.OWNER;
 import static ru.practicum.shareit.booking.model.BookingStatus.APPROVED;
+import static ru.practicum.shareit.booking.model.BookingStatus.REJECTED;
 import static ru.practicum.shareit.booking.model.BookingStatus.WAITING;
 
 @DataJpaTest
@@ -95,7 +114,7 @@ class BookingRepositoryTest {
     }
 
     @Test
-    void getBookingByBooker_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnAllBookingsOfBooker() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking bookingByBooker1 = bookingRepository.save(Booking.builder()
@@ -114,14 +133,14 @@ class BookingRepositoryTest {
                 .endDate(now.plusDays(4))
                 .build());
 
-        List<Booking> bookings = bookingRepository.getBookingByBooker(booker1.getId(), Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(BOOKER, booker1.getId(), BookingState.ALL));
         assertThat(bookings)
                 .hasSize(1)
                 .containsAll(List.of(bookingByBooker1));
     }
 
     @Test
-    void getBookingByBookerAndStatus_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnRejectedBookingsOfBooker() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking bookingByBooker1WithWaitingStatus = bookingRepository.save(Booking.builder()
@@ -132,9 +151,9 @@ class BookingRepositoryTest {
                 .endDate(now.plusDays(2))
                 .build());
 
-        Booking bookingByBooker1WithApprovedStatus = bookingRepository.save(Booking.builder()
+        Booking bookingByBooker1WithRejectedStatus = bookingRepository.save(Booking.builder()
                 .booker(booker1)
-                .status(APPROVED)
+                .status(REJECTED)
                 .item(item1)
                 .startDate(now.plusDays(1))
                 .endDate(now.plusDays(2))
@@ -148,14 +167,14 @@ class BookingRepositoryTest {
                 .endDate(now.plusDays(4))
                 .build());
 
-        List<Booking> bookings = bookingRepository.getBookingByBookerAndStatus(booker1.getId(), APPROVED, Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(BOOKER, booker1.getId(), BookingState.REJECTED));
         assertThat(bookings)
                 .hasSize(1)
-                .containsAll(List.of(bookingByBooker1WithApprovedStatus));
+                .containsAll(List.of(bookingByBooker1WithRejectedStatus));
     }
 
     @Test
-    void getPastBookingByBooker_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnPastBookingsOfBooker() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking pastBookingByBooker1 = bookingRepository.save(Booking.builder()
@@ -191,14 +210,14 @@ class BookingRepositoryTest {
                 .build());
 
 
-        List<Booking> bookings = bookingRepository.getPastBookingByBooker(booker1.getId(), Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(BOOKER, booker1.getId(), BookingState.PAST));
         assertThat(bookings)
                 .hasSize(1)
                 .containsAll(List.of(pastBookingByBooker1));
     }
 
     @Test
-    void getCurrentBookingByBooker_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnCurrentBookingsOfBooker() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking pastBookingByBooker1 = bookingRepository.save(Booking.builder()
@@ -234,14 +253,14 @@ class BookingRepositoryTest {
                 .build());
 
 
-        List<Booking> bookings = bookingRepository.getCurrentBookingByBooker(booker1.getId(), Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(BOOKER, booker1.getId(), BookingState.CURRENT));
         assertThat(bookings)
                 .hasSize(1)
                 .containsAll(List.of(currentBookingByBooker1));
     }
 
     @Test
-    void getFutureBookingByBooker_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnFutureBookingsOfBooker() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking pastBookingByBooker1 = bookingRepository.save(Booking.builder()
@@ -276,14 +295,14 @@ class BookingRepositoryTest {
                 .endDate(now.plusDays(4))
                 .build());
 
-        List<Booking> bookings = bookingRepository.getFutureBookingByBooker(booker1.getId(), Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(BOOKER, booker1.getId(), BookingState.FUTURE));
         assertThat(bookings)
                 .hasSize(1)
                 .containsAll(List.of(futureBookingByBooker1));
     }
 
     @Test
-    void getBookingByOwner_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnAllBookingsOfOwner() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking bookingByOwner1 = bookingRepository.save(Booking.builder()
@@ -302,14 +321,14 @@ class BookingRepositoryTest {
                 .endDate(now.plusDays(4))
                 .build());
 
-        List<Booking> bookings = bookingRepository.getBookingByOwner(owner1.getId(), Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(OWNER, owner1.getId(), BookingState.ALL));
         assertThat(bookings)
                 .hasSize(1)
                 .containsAll(List.of(bookingByOwner1));
     }
 
     @Test
-    void getBookingByOwnerAndStatus_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnRejectedBookingsOfOwner() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking bookingByOwner1WithWaitingStatus = bookingRepository.save(Booking.builder()
@@ -320,9 +339,9 @@ class BookingRepositoryTest {
                 .endDate(now.plusDays(2))
                 .build());
 
-        Booking bookingByOwner1WithApprovedStatus = bookingRepository.save(Booking.builder()
+        Booking bookingByOwner1WithRejectedStatus = bookingRepository.save(Booking.builder()
                 .booker(booker1)
-                .status(APPROVED)
+                .status(REJECTED)
                 .item(item1)
                 .startDate(now.plusDays(1))
                 .endDate(now.plusDays(2))
@@ -336,14 +355,14 @@ class BookingRepositoryTest {
                 .endDate(now.plusDays(4))
                 .build());
 
-        List<Booking> bookings = bookingRepository.getBookingByOwnerAndStatus(owner1.getId(), APPROVED, Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(OWNER, owner1.getId(), BookingState.REJECTED));
         assertThat(bookings)
                 .hasSize(1)
-                .containsAll(List.of(bookingByOwner1WithApprovedStatus));
+                .containsAll(List.of(bookingByOwner1WithRejectedStatus));
     }
 
     @Test
-    void getPastBookingByOwner_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnPastBookingsOfOwner() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking pastBookingByBooker1 = bookingRepository.save(Booking.builder()
@@ -379,14 +398,14 @@ class BookingRepositoryTest {
                 .build());
 
 
-        List<Booking> bookings = bookingRepository.getPastBookingByOwner(owner1.getId(), Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(OWNER, owner1.getId(), BookingState.PAST));
         assertThat(bookings)
                 .hasSize(1)
                 .containsAll(List.of(pastBookingByBooker1));
     }
 
     @Test
-    void getCurrentBookingByOwner_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnCurrentBookingsOfOwner() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking pastBookingByOwner1 = bookingRepository.save(Booking.builder()
@@ -422,14 +441,14 @@ class BookingRepositoryTest {
                 .build());
 
 
-        List<Booking> bookings = bookingRepository.getCurrentBookingByOwner(owner1.getId(), Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(OWNER, owner1.getId(), BookingState.CURRENT));
         assertThat(bookings)
                 .hasSize(1)
                 .containsAll(List.of(currentBookingByOwner1));
     }
 
     @Test
-    void getFutureBookingByOwner_shouldInvokeRepositoryAndReturnTheSame() {
+    void findBookings_shouldReturnFutureBookingsOfOwner() {
         LocalDateTime now = LocalDateTime.now();
 
         Booking pastBookingByOwner1 = bookingRepository.save(Booking.builder()
@@ -464,9 +483,563 @@ class BookingRepositoryTest {
                 .endDate(now.plusDays(4))
                 .build());
 
-        List<Booking> bookings = bookingRepository.getFutureBookingByOwner(owner1.getId(), Pageable.unpaged());
+        List<Booking> bookings = bookingRepository.findBookings(query(OWNER, owner1.getId(), BookingState.FUTURE));
         assertThat(bookings)
                 .hasSize(1)
                 .containsAll(List.of(futureBookingByOwner1));
     }
-}
\ No newline at end of file
+
+    @Test
+    void findBookings_shouldSeekBookerBookingsAfterCursor() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        Booking first = bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(APPROVED)
+                .item(item1)
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .build());
+
+        Booking second = bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(APPROVED)
+                .item(item1)
+                .startDate(now.plusDays(2))
+                .endDate(now.plusDays(3))
+                .build());
+
+        Booking sameStartAsSecond = bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(APPROVED)
+                .item(item2)
+                .startDate(now.plusDays(2))
+                .endDate(now.plusDays(3))
+                .build());
+
+        List<Booking> bookings = bookingRepository.findBookings(BookingQuery.builder()
+                .role(BOOKER)
+                .userId(booker1.getId())
+                .cursor(new BookingCursor(BookingSort.START, sameStartAsSecond.getStartDate(), sameStartAsSecond.getId()))
+                .size(10)
+                .build());
+        assertThat(bookings).containsExactly(second, first);
+    }
+
+    @Test
+    void findBookings_shouldSeekOwnerBookingsAfterCursor() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        Booking first = bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(APPROVED)
+                .item(item1)
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .build());
+
+        Booking second = bookingRepository.save(Booking.builder()
+                .booker(booker2)
+                .status(APPROVED)
+                .item(item1)
+                .startDate(now.plusDays(3))
+                .endDate(now.plusDays(4))
+                .build());
+
+        Booking otherOwner = bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(APPROVED)
+                .item(item2)
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .build());
+
+        List<Booking> bookings = bookingRepository.findBookings(BookingQuery.builder()
+                .role(OWNER)
+                .userId(owner1.getId())
+                .cursor(new BookingCursor(BookingSort.START, second.getStartDate(), second.getId()))
+                .size(10)
+                .build());
+        assertThat(bookings).containsExactly(first);
+    }
+
+    @Test
+    void findBookings_shouldEvaluateStateAgainstBoundNow() {
+        LocalDateTime now = LocalDateTime.now();
+
+        Booking booking = bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(APPROVED)
+                .item(item1)
+                .startDate(now.minusDays(2))
+                .endDate(now.minusDays(1))
+                .build());
+
+        List<Booking> bookings = bookingRepository.findBookings(BookingQuery.builder()
+                .role(BOOKER)
+                .userId(booker1.getId())
+                .state(BookingState.FUTURE)
+                .size(10)
+                .now(now.minusDays(3))
+                .build());
+        assertThat(bookings).containsExactly(booking);
+        assertThat(bookingRepository.findBookings(query(BOOKER, booker1.getId(), BookingState.FUTURE))).isEmpty();
+    }
+
+    @Test
+    void findBookings_shouldFilterByItemAndWindow() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Item otherItem = itemRepository.save(Item.builder()
+                .name("item3")
+                .description("description3")
+                .available(true)
+                .owner(owner1)
+                .build());
+
+        Booking before = bookingRepository.save(booking(item1, APPROVED, now.minusDays(5), now.minusDays(4)));
+        Booking overlappingStart = bookingRepository.save(booking(item1, APPROVED, now.minusDays(2), now));
+        Booking inside = bookingRepository.save(booking(item1, WAITING, now.plusDays(1), now.plusDays(2)));
+        Booking after = bookingRepository.save(booking(item1, WAITING, now.plusDays(5), now.plusDays(6)));
+        bookingRepository.save(booking(otherItem, APPROVED, now.plusDays(1), now.plusDays(2)));
+
+        BookingQuery query = BookingQuery.builder()
+                .role(OWNER)
+                .userId(owner1.getId())
+                .itemId(item1.getId())
+                .since(now.minusDays(1))
+                .until(now.plusDays(3))
+                .size(10)
+                .build();
+        assertThat(bookingRepository.findBookings(query)).containsExactly(inside, overlappingStart);
+
+        assertThat(bookingRepository.findBookings(BookingQuery.builder()
+                .role(OWNER)
+                .userId(owner1.getId())
+                .itemId(item1.getId())
+                .until(now.minusDays(1))
+                .size(10)
+                .build())).containsExactly(overlappingStart, before);
+        assertThat(bookingRepository.findBookings(BookingQuery.builder()
+                .role(BOOKER)
+                .userId(booker1.getId())
+                .itemId(item1.getId())
+                .since(now.plusDays(3))
+                .size(10)
+                .build())).containsExactly(after);
+    }
+
+    @Test
+    void findBookings_shouldSortAndSeekByEndAndCreated() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        Booking longest = booking(item1, APPROVED, now.plusDays(1), now.plusDays(9));
+        Booking shortest = booking(item1, APPROVED, now.plusDays(2), now.plusDays(3));
+        Booking latest = booking(item1, APPROVED, now.plusDays(4), now.plusDays(5));
+        longest.setCreated(now.minusHours(1));
+        shortest.setCreated(now.minusHours(3));
+        latest.setCreated(now.minusHours(2));
+        bookingRepository.saveAllAndFlush(List.of(longest, shortest, latest));
+
+        assertThat(bookingRepository.findBookings(sorted(BookingSort.END, null)))
+                .containsExactly(longest, latest, shortest);
+        assertThat(bookingRepository.findBookings(sorted(BookingSort.END,
+                new BookingCursor(BookingSort.END, longest.getEndDate(), longest.getId()))))
+                .containsExactly(latest, shortest);
+        assertThat(bookingRepository.findBookings(sorted(BookingSort.CREATED, null)))
+                .containsExactly(longest, latest, shortest);
+        assertThat(bookingRepository.findBookings(sorted(BookingSort.CREATED,
+                new BookingCursor(BookingSort.CREATED, latest.getCreated(), latest.getId()))))
+                .containsExactly(shortest);
+    }
+
+    @Test
+    void findBookings_shouldThrowInvalidCursorExceptionWhenCursorIsOfOtherSort() {
+        BookingCursor cursor = new BookingCursor(BookingSort.END, LocalDateTime.now(), 1);
+
+        assertThatThrownBy(() -> bookingRepository.findBookings(sorted(BookingSort.START, cursor)))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void findLastAndNextByOwner_shouldReturnLatestFinishedAndEarliestUpcomingBookingOfEveryItem() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(APPROVED)
+                .item(item1)
+                .startDate(now.minusDays(5))
+                .endDate(now.minusDays(4))
+                .build());
+
+        Booking last = bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(APPROVED)
+                .item(item1)
+                .startDate(now.minusDays(3))
+                .endDate(now.minusDays(2))
+                .build());
+
+        bookingRepository.save(Booking.builder()
+                .booker(booker2)
+                .status(APPROVED)
+                .item(item1)
+                .startDate(now.minusDays(1))
+                .endDate(now.plusDays(1))
+                .build());
+
+        Booking next = bookingRepository.save(Booking.builder()
+                .booker(booker2)
+                .status(WAITING)
+                .item(item1)
+                .startDate(now.plusDays(2))
+                .endDate(now.plusDays(3))
+                .build());
+
+        bookingRepository.save(Booking.builder()
+                .booker(booker2)
+                .status(WAITING)
+                .item(item1)
+                .startDate(now.plusDays(4))
+                .endDate(now.plusDays(5))
+                .build());
+
+        bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(APPROVED)
+                .item(item2)
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .build());
+
+        Map<Integer, LastNextBooking> bookings = bookingRepository.findLastAndNextByOwner(owner1.getId(), now);
+
+        assertThat(bookings).containsOnlyKeys(item1.getId());
+        LastNextBooking lastNext = bookings.get(item1.getId());
+        assertThat(lastNext.getLast().getId()).isEqualTo(last.getId());
+        assertThat(lastNext.getLast().getBookerId()).isEqualTo(booker1.getId());
+        assertThat(lastNext.getLast().getEndDate()).isEqualTo(last.getEndDate());
+        assertThat(lastNext.getNext().getId()).isEqualTo(next.getId());
+        assertThat(lastNext.getNext().getStartDate()).isEqualTo(next.getStartDate());
+    }
+
+    @Test
+    void findBlockingPeriods_shouldFindIntersectingWaitingAndApprovedBookingsOfGivenItems() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        bookingRepository.save(booking(item1, APPROVED, now.plusDays(1), now.plusDays(3)));
+        bookingRepository.save(booking(item2, WAITING, now.plusDays(2), now.plusDays(4)));
+        bookingRepository.save(booking(item1, REJECTED, now.plusDays(3), now.plusDays(5)));
+        bookingRepository.save(booking(item1, WAITING, now.plusDays(6), now.plusDays(7)));
+
+        List<ItemPeriod> periods = bookingRepository.findBlockingPeriods(List.of(item1.getId(), item2.getId()),
+                now.plusDays(2), now.plusDays(6));
+
+        assertThat(periods).extracting(ItemPeriod::getItemId, ItemPeriod::getStartDate)
+                .containsExactlyInAnyOrder(tuple(item1.getId(), now.plusDays(1)), tuple(item2.getId(), now.plusDays(2)));
+        assertThat(bookingRepository.findBlockingPeriods(List.of(item2.getId()), now.plusDays(4), now.plusDays(6)))
+                .isEmpty();
+    }
+
+    @Test
+    void decideWaiting_shouldUpdateOnlyWaitingBookingOfOwner() {
+        LocalDateTime now = LocalDateTime.now();
+
+        Booking booking = bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(WAITING)
+                .item(item1)
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .build());
+
+        assertThat(bookingRepository.decideWaiting(booking.getId(), owner2.getId(), APPROVED)).isZero();
+        assertThat(bookingRepository.decideWaiting(booking.getId() + 1, owner1.getId(), APPROVED)).isZero();
+        assertThat(bookingRepository.decideWaiting(booking.getId(), owner1.getId(), APPROVED)).isEqualTo(1);
+        assertThat(bookingRepository.decideWaiting(booking.getId(), owner1.getId(), REJECTED)).isZero();
+
+        assertThat(bookingRepository.findById(booking.getId()).orElseThrow().getStatus()).isEqualTo(APPROVED);
+        assertThat(bookingRepository.findOwnerIdById(booking.getId())).contains(owner1.getId());
+        assertThat(bookingRepository.findOwnerIdById(booking.getId() + 1)).isEmpty();
+    }
+
+    @Test
+    void lockOverlappingWaiting_shouldFindOnlyOtherIntersectingWaitingBookings() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        Booking approved = bookingRepository.save(booking(item1, APPROVED, now.plusDays(2), now.plusDays(4)));
+        Booking overlapping = bookingRepository.save(booking(item1, WAITING, now.plusDays(1), now.plusDays(3)));
+        bookingRepository.save(booking(item1, REJECTED, now.plusDays(3), now.plusDays(5)));
+        bookingRepository.save(booking(item1, WAITING, now.plusDays(4), now.plusDays(5)));
+        bookingRepository.save(booking(item2, WAITING, now.plusDays(2), now.plusDays(4)));
+
+        List<Integer> ids = bookingRepository.lockOverlappingWaiting(approved.getId(), item1.getId(),
+                approved.getStartDate(), approved.getEndDate());
+
+        assertThat(ids).containsExactly(overlapping.getId());
+        assertThat(bookingRepository.rejectWaiting(ids)).isEqualTo(1);
+        assertThat(bookingRepository.findById(overlapping.getId()).orElseThrow().getStatus()).isEqualTo(REJECTED);
+        assertThat(bookingRepository.findById(approved.getId()).orElseThrow().getStatus()).isEqualTo(APPROVED);
+    }
+
+    @Test
+    void lifecycleQueries_shouldFindAndLockOnlyBookingsInTheirPhase() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        Booking stale = bookingRepository.save(booking(item1, WAITING, now.minusDays(2), now.minusDays(1)));
+        Booking approved = bookingRepository.save(booking(item1, APPROVED, now.plusMinutes(1), now.plusMinutes(2)));
+        Booking rejected = bookingRepository.save(booking(item2, REJECTED, now.plusMinutes(1), now.plusMinutes(2)));
+
+        assertThat(bookingRepository.findWaitingStartingBefore(now)).extracting(BookingPeriod::getId)
+                .containsExactly(stale.getId());
+        assertThat(bookingRepository.findStartingBetween(now, now.plusMinutes(5))).extracting(BookingPeriod::getId)
+                .containsExactly(approved.getId());
+        assertThat(bookingRepository.findEndingBetween(now.minusDays(3), now.plusMinutes(5)))
+                .extracting(BookingPeriod::getId)
+                .containsExactlyInAnyOrder(stale.getId(), approved.getId());
+
+        List<Integer> ids = List.of(stale.getId(), approved.getId(), rejected.getId());
+        assertThat(bookingRepository.lockWaitingStarted(ids, now)).containsExactly(stale.getId());
+        assertThat(bookingRepository.lockApprovedStarted(ids, now)).isEmpty();
+        assertThat(bookingRepository.lockApprovedStarted(ids, now.plusMinutes(1))).containsExactly(approved.getId());
+        assertThat(bookingRepository.updatePhase(List.of(approved.getId()), BookingPhase.STARTED)).isEqualTo(1);
+
+        assertThat(bookingRepository.lockApprovedStarted(ids, now.plusMinutes(1))).isEmpty();
+        assertThat(bookingRepository.findStartingBetween(now, now.plusMinutes(5))).isEmpty();
+        assertThat(bookingRepository.lockApprovedEnded(ids, now.plusMinutes(2))).containsExactly(approved.getId());
+        assertThat(bookingRepository.updatePhase(List.of(approved.getId()), BookingPhase.ENDED)).isEqualTo(1);
+        assertThat(bookingRepository.lockApprovedEnded(ids, now.plusMinutes(2))).isEmpty();
+        assertThat(bookingRepository.findEndingBetween(now, now.plusMinutes(5))).isEmpty();
+    }
+
+    @Test
+    void insertWaiting_shouldInsertBookingAndReturnItsItemAndBooker() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        Booking inserted = bookingRepository.insertWaiting(item1.getId(), booker1.getId(), now.plusDays(1),
+                now.plusDays(2)).orElseThrow();
+
+        assertThat(inserted.getStatus()).isEqualTo(WAITING);
+        assertThat(inserted.getStartDate()).isEqualTo(now.plusDays(1));
+        assertThat(inserted.getEndDate()).isEqualTo(now.plusDays(2));
+        assertThat(inserted.getItem().getId()).isEqualTo(item1.getId());
+        assertThat(inserted.getItem().getName()).isEqualTo(item1.getName());
+        assertThat(inserted.getItem().getDescription()).isEqualTo(item1.getDescription());
+        assertThat(inserted.getItem().getAvailable()).isTrue();
+        assertThat(inserted.getItem().getOwner().getId()).isEqualTo(owner1.getId());
+        assertThat(inserted.getBooker()).isEqualTo(booker1);
+
+        Booking saved = bookingRepository.findById(inserted.getId()).orElseThrow();
+        assertThat(saved.getItem()).isEqualTo(item1);
+        assertThat(saved.getBooker()).isEqualTo(booker1);
+        assertThat(saved.getOwner()).isEqualTo(owner1);
+        assertThat(saved.getStatus()).isEqualTo(WAITING);
+    }
+
+    @Test
+    void insertWaiting_shouldInsertNothingWhenAnyCheckFails() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        bookingRepository.save(booking(item1, APPROVED, now.plusDays(1), now.plusDays(3)));
+        bookingRepository.save(booking(item2, REJECTED, now.plusDays(1), now.plusDays(3)));
+        item2.setAvailable(false);
+        itemRepository.save(item2);
+
+        assertThat(bookingRepository.insertWaiting(item1.getId(), booker1.getId(), now.plusDays(2), now.plusDays(4)))
+                .isEmpty();
+        assertThat(bookingRepository.insertWaiting(item1.getId(), owner1.getId(), now.plusDays(3), now.plusDays(4)))
+                .isEmpty();
+        assertThat(bookingRepository.insertWaiting(item1.getId(), booker1.getId() + 100, now.plusDays(3),
+                now.plusDays(4))).isEmpty();
+        assertThat(bookingRepository.insertWaiting(item2.getId() + 100, booker1.getId(), now.plusDays(3),
+                now.plusDays(4))).isEmpty();
+        assertThat(bookingRepository.insertWaiting(item2.getId(), booker1.getId(), now.plusDays(3), now.plusDays(4)))
+                .isEmpty();
+        assertThat(bookingRepository.findAll()).hasSize(2);
+
+        assertThat(bookingRepository.insertWaiting(item1.getId(), booker1.getId(), now.plusDays(3), now.plusDays(4)))
+                .isPresent();
+    }
+
+    @Test
+    void countByState_shouldCountEveryStateOfUserInOneQuery() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        bookingRepository.save(booking(item1, APPROVED, now.minusDays(3), now.minusDays(2)));
+        bookingRepository.save(booking(item1, REJECTED, now.minusDays(1), now.plusDays(1)));
+        bookingRepository.save(booking(item1, WAITING, now.plusDays(1), now.plusDays(2)));
+        bookingRepository.save(booking(item2, WAITING, now.plusDays(3), now.plusDays(4)));
+
+        assertThat(bookingRepository.countByState(BOOKER, booker1.getId(), now)).isEqualTo(BookingSummary.builder()
+                .all(4).past(1).current(1).future(2).waiting(2).rejected(1).build());
+        assertThat(bookingRepository.countByState(OWNER, owner1.getId(), now)).isEqualTo(BookingSummary.builder()
+                .all(3).past(1).current(1).future(1).waiting(1).rejected(1).build());
+        assertThat(bookingRepository.countUnfinishedByState(OWNER, owner1.getId(), now))
+                .isEqualTo(BookingSummary.builder().all(2).current(1).future(1).waiting(1).rejected(1).build());
+        assertThat(bookingRepository.countByState(BOOKER, booker2.getId(), now))
+                .isEqualTo(BookingSummary.builder().build());
+    }
+
+    @Test
+    void streamByOwner_shouldStreamFlatRowsOfOwnerLatestStartFirst() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Booking earlier = bookingRepository.save(booking(item1, APPROVED, now.minusDays(3), now.minusDays(2)));
+        Booking later = bookingRepository.save(booking(item1, WAITING, now.plusDays(1), now.plusDays(2)));
+        bookingRepository.save(booking(item2, WAITING, now.plusDays(3), now.plusDays(4)));
+        bookingRepository.flush();
+
+        List<BookingExportRow> rows = new ArrayList<>();
+        bookingRepository.streamByOwner(owner1.getId(), 1, rows::add);
+
+        assertThat(rows)
+                .extracting(BookingExportRow::getId, BookingExportRow::getItemName, BookingExportRow::getBookerId,
+                        BookingExportRow::getStartDate, BookingExportRow::getStatus)
+                .containsExactly(
+                        tuple(later.getId(), "item1", booker1.getId(), now.plusDays(1), WAITING),
+                        tuple(earlier.getId(), "item1", booker1.getId(), now.minusDays(3), APPROVED));
+        assertThat(rows.get(0).getCreated()).isEqualTo(later.getCreated());
+    }
+
+    @Test
+    void archive_shouldMoveEndedBookingsOutOfListingsIntoArchive() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Booking older = bookingRepository.save(booking(item1, APPROVED, now.minusDays(5), now.minusDays(4)));
+        Booking old = bookingRepository.save(booking(item1, REJECTED, now.minusDays(3), now.minusDays(2)));
+        Booking current = bookingRepository.save(booking(item1, APPROVED, now.minusDays(1), now.plusDays(1)));
+        bookingRepository.save(booking(item2, APPROVED, now.minusDays(3), now.minusDays(2)));
+        bookingRepository.flush();
+
+        assertThat(bookingRepository.findArchivable(now.plusMinutes(1), now, 10)).isEmpty();
+        assertThat(bookingRepository.findArchivable(now.plusMinutes(1), now.plusDays(2), 10))
+                .containsExactly(older.getId(), old.getId());
+        assertThat(bookingRepository.archive(List.of(older.getId(), old.getId()))).isEqualTo(2);
+
+        assertThat(bookingRepository.findBookings(query(BOOKER, booker1.getId(), BookingState.ALL)))
+                .extracting(Booking::getId)
+                .doesNotContain(older.getId(), old.getId());
+        assertThat(bookingRepository.findArchivedBookings(query(OWNER, owner1.getId(), BookingState.ALL)))
+                .extracting(Booking::getId, Booking::getStartDate, Booking::getStatus)
+                .containsExactly(tuple(old.getId(), now.minusDays(3), REJECTED),
+                        tuple(older.getId(), now.minusDays(5), APPROVED));
+        assertThat(bookingRepository.findArchivedBookings(query(OWNER, owner1.getId(), BookingState.REJECTED)))
+                .extracting(Booking::getId)
+                .containsExactly(old.getId());
+        assertThat(bookingRepository.findArchivedBookings(BookingQuery.builder()
+                        .role(OWNER)
+                        .userId(owner1.getId())
+                        .cursor(new BookingCursor(BookingSort.START, now.minusDays(3), old.getId()))
+                        .size(10)
+                        .now(now)
+                        .build()))
+                .extracting(Booking::getId)
+                .containsExactly(older.getId());
+        assertThat(bookingRepository.findArchivedById(old.getId())).map(Booking::getItem).contains(item1);
+
+        assertThat(bookingRepository.countArchivedByState(OWNER, owner1.getId(), now)).isEqualTo(BookingSummary
+                .builder().all(2).past(2).rejected(1).build());
+        assertThat(bookingRepository.findArchiveWatermark())
+                .hasValueSatisfying(watermark -> assertThat(watermark).isAfterOrEqualTo(now));
+
+        List<BookingExportRow> rows = new ArrayList<>();
+        bookingRepository.streamByOwner(owner1.getId(), 1, rows::add);
+        assertThat(rows).extracting(BookingExportRow::getId)
+                .containsExactly(current.getId(), old.getId(), older.getId());
+
+        bookingRepository.clearCounters();
+        bookingRepository.rebuildCounters();
+        assertThat(bookingRepository.findCounters(OWNER, owner1.getId())).isEqualTo(Map.of(APPROVED, 2L,
+                REJECTED, 1L));
+    }
+
+    @Test
+    void findBookerIdsByItem_shouldReadBookersOfHotAndArchivedBookings() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Booking archived = bookingRepository.save(booking(item1, APPROVED, now.minusDays(3), now.minusDays(2)));
+        bookingRepository.save(Booking.builder()
+                .booker(booker2)
+                .status(WAITING)
+                .item(item1)
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .build());
+        bookingRepository.flush();
+        bookingRepository.archive(List.of(archived.getId()));
+
+        assertThat(bookingRepository.findBookerIdsByItem(item1.getId()))
+                .containsExactlyInAnyOrder(booker1.getId(), booker2.getId());
+        assertThat(bookingRepository.findBookerIdsByItem(item2.getId())).isEmpty();
+    }
+
+    @Test
+    void counters_shouldBeRebuiltAndUpdatedByUserRoleAndStatus() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Booking approved = bookingRepository.save(booking(item1, APPROVED, now.plusDays(1), now.plusDays(2)));
+        Booking waiting = bookingRepository.save(booking(item2, WAITING, now.plusDays(1), now.plusDays(2)));
+        bookingRepository.flush();
+
+        bookingRepository.clearCounters();
+        assertThat(bookingRepository.hasCounters()).isFalse();
+        bookingRepository.rebuildCounters();
+        assertThat(bookingRepository.hasCounters()).isTrue();
+        assertThat(bookingRepository.findCounters(BOOKER, booker1.getId())).isEqualTo(Map.of(APPROVED, 1L,
+                WAITING, 1L));
+        assertThat(bookingRepository.findCounters(OWNER, owner2.getId())).isEqualTo(Map.of(WAITING, 1L));
+
+        bookingRepository.addToCounter(OWNER, owner2.getId(), WAITING, -1);
+        bookingRepository.addToCounter(OWNER, owner2.getId(), REJECTED, 1);
+        assertThat(bookingRepository.findCounters(OWNER, owner2.getId())).isEqualTo(Map.of(WAITING, 0L,
+                REJECTED, 1L));
+
+        assertThat(bookingRepository.countByUser(BOOKER, List.of(approved.getId(), waiting.getId())))
+                .isEqualTo(Map.of(booker1.getId(), 2L));
+        assertThat(bookingRepository.countByUser(OWNER, List.of(approved.getId(), waiting.getId())))
+                .isEqualTo(Map.of(owner1.getId(), 1L, owner2.getId(), 1L));
+
+        assertThat(bookingRepository.countByItem(BOOKER, item2.getId()))
+                .isEqualTo(Map.of(booker1.getId(), Map.of(WAITING, 1L)));
+        assertThat(bookingRepository.countByItem(OWNER, item1.getId()))
+                .isEqualTo(Map.of(owner1.getId(), Map.of(APPROVED, 1L)));
+    }
+
+    @Test
+    void save_shouldCopyItemOwnerToBooking() {
+        LocalDateTime now = LocalDateTime.now();
+
+        Booking booking = bookingRepository.save(Booking.builder()
+                .booker(booker1)
+                .status(WAITING)
+                .item(item1)
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .build());
+
+        assertThat(booking.getOwner()).isEqualTo(owner1);
+    }
+
+    private Booking booking(Item item, BookingStatus status, LocalDateTime start, LocalDateTime end) {
+        return Booking.builder()
+                .booker(booker1)
+                .status(status)
+                .item(item)
+                .startDate(start)
+                .endDate(end)
+                .build();
+    }
+
+    private BookingQuery sorted(BookingSort sort, BookingCursor cursor) {
+        return BookingQuery.builder()
+                .role(OWNER)
+                .userId(owner1.getId())
+                .sort(sort)
+                .cursor(cursor)
+                .size(10)
+                .build();
+    }
+
+    private static BookingQuery query(BookingRole role, int userId, BookingState state) {
+        return BookingQuery.builder()
+                .role(role)
+                .userId(userId)
+                .state(state)
+                .size(10)
+                .build();
+    }
+}
@@ -0,0 +1,157 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.booking.model.BookingFrequency;
+import ru.practicum.shareit.booking.model.BookingRule;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.util.OffsetLimitPageable;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.shareit.booking.model.BookingStatus.APPROVED;
+import static ru.practicum.shareit.booking.model.BookingStatus.REJECTED;
+import static ru.practicum.shareit.booking.model.BookingStatus.WAITING;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BookingRuleRepositoryTest {
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    BookingRuleRepository bookingRuleRepository;
+
+    User owner, booker;
+    Item item;
+    LocalDateTime start;
+
+    @BeforeEach
+    void beforeEach() {
+        start = LocalDateTime.of(2030, 1, 5, 10, 0);
+
+        owner = userRepository.save(User.builder()
+                .name("owner")
+                .email("owner@mail.ru")
+                .build());
+
+        booker = userRepository.save(User.builder()
+                .name("booker")
+                .email("booker@mail.ru")
+                .build());
+
+        item = itemRepository.save(Item.builder()
+                .name("item")
+                .description("description")
+                .available(true)
+                .owner(owner)
+                .build());
+    }
+
+    @Test
+    void save_shouldStoreOwnerAndEndOfLastOccurrence() {
+        BookingRule rule = bookingRuleRepository.saveAndFlush(rule(start, 4, WAITING));
+
+        assertThat(rule.getOwner().getId()).isEqualTo(owner.getId());
+        assertThat(rule.getLastEndDate()).isEqualTo(start.plusWeeks(3).plusDays(1));
+        assertThat(rule.getCreated()).isNotNull();
+    }
+
+    @Test
+    void findOverlapping_shouldFindRulesWhoseSpanReachesWindow() {
+        BookingRule early = bookingRuleRepository.save(rule(start, 2, WAITING));
+        BookingRule late = bookingRuleRepository.save(rule(start.plusWeeks(10), 2, APPROVED));
+        bookingRuleRepository.save(rule(start.plusWeeks(3), 2, REJECTED));
+
+        assertThat(bookingRuleRepository.findOverlapping(List.of(item.getId()), start.plusWeeks(1),
+                start.plusWeeks(11), EnumSet.of(WAITING, APPROVED)))
+                .extracting(BookingRule::getId)
+                .containsExactlyInAnyOrder(early.getId(), late.getId());
+        assertThat(bookingRuleRepository.findOverlapping(List.of(item.getId()), start.plusWeeks(2),
+                start.plusWeeks(10), EnumSet.of(WAITING, APPROVED)))
+                .isEmpty();
+    }
+
+    @Test
+    void findByBookerAndOwnerOverlappingAfter_shouldReadRulesOfStatusesInIdOrderAfterId() {
+        BookingRule late = bookingRuleRepository.save(rule(start.plusWeeks(10), 2, APPROVED));
+        BookingRule early = bookingRuleRepository.save(rule(start, 2, WAITING));
+        BookingRule rejected = bookingRuleRepository.save(rule(start, 2, REJECTED));
+        EnumSet<BookingStatus> all = EnumSet.allOf(BookingStatus.class);
+
+        assertThat(bookingRuleRepository.findByBookerOverlappingAfter(booker.getId(), 0, start, start.plusYears(1),
+                all, batch(2)))
+                .extracting(BookingRule::getId)
+                .containsExactly(late.getId(), early.getId());
+        assertThat(bookingRuleRepository.findByBookerOverlappingAfter(booker.getId(), early.getId(), start,
+                start.plusYears(1), all, batch(2)))
+                .extracting(BookingRule::getId)
+                .containsExactly(rejected.getId());
+        assertThat(bookingRuleRepository.findByOwnerOverlappingAfter(owner.getId(), 0, start.plusWeeks(5),
+                start.plusYears(1), all, batch(10)))
+                .extracting(BookingRule::getId)
+                .containsExactly(late.getId());
+        assertThat(bookingRuleRepository.findByOwnerOverlappingAfter(owner.getId(), 0, start, start.plusYears(1),
+                EnumSet.of(WAITING, REJECTED), batch(10)))
+                .extracting(BookingRule::getId)
+                .containsExactly(early.getId(), rejected.getId());
+        assertThat(bookingRuleRepository.findByOwnerOverlappingAfter(booker.getId(), 0, start, start.plusYears(1),
+                all, batch(10)))
+                .isEmpty();
+    }
+
+    @Test
+    void decideWaiting_shouldChangeWaitingRuleOfOwnerOnly() {
+        BookingRule rule = bookingRuleRepository.saveAndFlush(rule(start, 2, WAITING));
+
+        assertThat(bookingRuleRepository.decideWaiting(rule.getId(), booker.getId(), APPROVED)).isZero();
+        assertThat(bookingRuleRepository.decideWaiting(rule.getId(), owner.getId(), APPROVED)).isEqualTo(1);
+        assertThat(bookingRuleRepository.decideWaiting(rule.getId(), owner.getId(), REJECTED)).isZero();
+        assertThat(bookingRuleRepository.findById(rule.getId()).orElseThrow().getStatus()).isEqualTo(APPROVED);
+        assertThat(bookingRuleRepository.findOwnerIdById(rule.getId())).contains(owner.getId());
+    }
+
+    @Test
+    void deleteByItemId_shouldLetItemBeDeleted() {
+        bookingRuleRepository.saveAndFlush(rule(start, 2, APPROVED));
+
+        assertThat(bookingRuleRepository.deleteByItemId(item.getId())).isEqualTo(1);
+        itemRepository.deleteById(item.getId());
+        itemRepository.flush();
+
+        assertThat(bookingRuleRepository.findAll()).isEmpty();
+        assertThat(itemRepository.findById(item.getId())).isEmpty();
+    }
+
+    private static OffsetLimitPageable batch(int size) {
+        return new OffsetLimitPageable(0, size, Sort.unsorted());
+    }
+
+    private BookingRule rule(LocalDateTime startDate, int count, BookingStatus status) {
+        return BookingRule.builder()
+                .startDate(startDate)
+                .endDate(startDate.plusDays(1))
+                .frequency(BookingFrequency.WEEKLY)
+                .interval(1)
+                .count(count)
+                .item(item)
+                .booker(booker)
+                .status(status)
+                .build();
+    }
+}
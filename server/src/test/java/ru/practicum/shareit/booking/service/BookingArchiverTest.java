@@ -0,0 +1,209 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.shareit.booking.model.BookingRole.BOOKER;
+import static ru.practicum.shareit.booking.model.BookingStatus.APPROVED;
+import static ru.practicum.shareit.booking.model.BookingStatus.REJECTED;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BookingArchiverTest {
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    User booker;
+    Item item;
+    LocalDateTime now;
+    Booking past1, past2, past3, future1, future2;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now().withNano(0);
+
+        User owner = userRepository.save(User.builder()
+                .name("owner")
+                .email("owner@mail.ru")
+                .build());
+
+        booker = userRepository.save(User.builder()
+                .name("booker")
+                .email("booker@mail.ru")
+                .build());
+
+        item = itemRepository.save(Item.builder()
+                .name("item")
+                .description("description")
+                .available(true)
+                .owner(owner)
+                .build());
+
+        past1 = booking(now.minusDays(10), now.minusDays(9));
+        past2 = booking(now.minusDays(8), now.minusDays(7));
+        past3 = booking(now.minusDays(6), now.minusDays(5));
+        future1 = booking(now.plusDays(1), now.plusDays(2));
+        future2 = booking(now.plusDays(3), now.plusDays(4));
+        bookingRepository.flush();
+    }
+
+    @Test
+    void archive_shouldMoveEndedBookingsInBatches() {
+        BookingArchiver archiver = archiver(true, 1);
+
+        assertThat(archiver.archive(LocalDateTime.now().plusSeconds(1))).isEqualTo(2);
+
+        assertThat(bookingRepository.findBookings(query(BookingState.ALL, 0, 10)))
+                .extracting(Booking::getId)
+                .containsExactly(future2.getId(), future1.getId(), past3.getId());
+        assertThat(archiver.archive(LocalDateTime.now().plusSeconds(1))).isZero();
+    }
+
+    @Test
+    void archive_shouldKeepLastBookingOfItemAndLastApprovedBookingOfEachBooker() {
+        User other = userRepository.save(User.builder()
+                .name("other")
+                .email("other@mail.ru")
+                .build());
+        Booking otherPast = booking(other, APPROVED, now.minusDays(12), now.minusDays(11));
+        Booking rejected = booking(booker, REJECTED, now.minusDays(4), now.minusDays(3));
+        bookingRepository.flush();
+
+        assertThat(archiver(true, 10).archive(LocalDateTime.now().plusSeconds(1))).isEqualTo(2);
+
+        assertThat(bookingRepository.findArchivedById(past1.getId())).isPresent();
+        assertThat(bookingRepository.findArchivedById(past2.getId())).isPresent();
+        assertThat(bookingRepository.findById(past3.getId())).isPresent();
+        assertThat(bookingRepository.findById(rejected.getId())).isPresent();
+        assertThat(bookingRepository.findById(otherPast.getId())).isPresent();
+    }
+
+    @Test
+    void findBookings_shouldReadHotPageOnlyWhenItEndsAfterArchiveBound() {
+        BookingArchiver archiver = archiver(true, 10);
+        archiver.archive(LocalDateTime.now().plusSeconds(1));
+
+        assertThat(archiver.findBookings(query(BookingState.ALL, 0, 2)))
+                .extracting(Booking::getId)
+                .containsExactly(future2.getId(), future1.getId());
+        assertThat(archiver.findBookings(query(BookingState.FUTURE, 0, 10))).hasSize(2);
+    }
+
+    @Test
+    void findBookings_shouldMergeHotAndArchivedBookingsByOffset() {
+        BookingArchiver archiver = archiver(true, 10);
+        archiver.archive(LocalDateTime.now().plusSeconds(1));
+
+        assertThat(archiver.findBookings(query(BookingState.ALL, 0, 3)))
+                .extracting(Booking::getId)
+                .containsExactly(future2.getId(), future1.getId(), past3.getId());
+        assertThat(archiver.findBookings(query(BookingState.ALL, 3, 3)))
+                .extracting(Booking::getId)
+                .containsExactly(past2.getId(), past1.getId());
+        assertThat(archiver.findBookings(query(BookingState.PAST, 1, 1)))
+                .extracting(Booking::getId)
+                .containsExactly(past2.getId());
+    }
+
+    @Test
+    void findBookings_shouldContinueIntoArchiveAfterCursor() {
+        BookingArchiver archiver = archiver(true, 10);
+        archiver.archive(LocalDateTime.now().plusSeconds(1));
+
+        BookingQuery query = BookingQuery.builder()
+                .role(BOOKER)
+                .userId(booker.getId())
+                .cursor(new BookingCursor(BookingSort.START, future1.getStartDate(), future1.getId()))
+                .size(2)
+                .now(LocalDateTime.now().plusSeconds(1))
+                .build();
+
+        assertThat(archiver.findBookings(query))
+                .extracting(Booking::getId)
+                .containsExactly(past3.getId(), past2.getId());
+    }
+
+    @Test
+    void start_shouldKeepReadingArchiveWhenArchivingIsSwitchedOff() {
+        archiver(true, 10).archive(LocalDateTime.now().plusSeconds(1));
+
+        BookingArchiver archiver = archiver(false, 10);
+        archiver.start();
+
+        assertThat(archiver.findBookings(query(BookingState.PAST, 0, 10))).hasSize(3);
+        assertThat(archiver.findById(past1.getId())).isPresent();
+        assertThat(archiver.plusArchived(BookingSummary.builder().all(3).past(1).future(2).build(), BOOKER,
+                booker.getId(), now)).isEqualTo(BookingSummary.builder().all(5).past(3).future(2).build());
+    }
+
+    @Test
+    void findBookings_shouldNotReadArchiveWhenNothingWasArchived() {
+        BookingArchiver archiver = archiver(false, 10);
+        archiver.start();
+
+        assertThat(archiver.findBookings(query(BookingState.ALL, 0, 10))).hasSize(5);
+        assertThat(archiver.findById(past1.getId())).isEmpty();
+    }
+
+    // Archives everything that ended before the given time, so bookings created by the test qualify
+    private BookingArchiver archiver(boolean enabled, int batchSize) {
+        return new BookingArchiver(bookingRepository,
+                new BookingListCache(bookingRepository, null, new SimpleMeterRegistry(), false, 0, 0),
+                new ItemAvailability(bookingRepository, null, false, 0), transactionManager, enabled, 0, batchSize, 60);
+    }
+
+    private BookingQuery query(BookingState state, int from, int size) {
+        return BookingQuery.builder()
+                .role(BOOKER)
+                .userId(booker.getId())
+                .state(state)
+                .from(from)
+                .size(size)
+                .now(LocalDateTime.now().plusSeconds(1))
+                .build();
+    }
+
+    private Booking booking(LocalDateTime start, LocalDateTime end) {
+        return booking(booker, APPROVED, start, end);
+    }
+
+    private Booking booking(User booker, BookingStatus status, LocalDateTime start, LocalDateTime end) {
+        return bookingRepository.save(Booking.builder()
+                .booker(booker)
+                .status(status)
+                .item(item)
+                .startDate(start)
+                .endDate(end)
+                .build());
+    }
+}
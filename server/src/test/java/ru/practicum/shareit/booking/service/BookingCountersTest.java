@@ -0,0 +1,161 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.shareit.booking.model.BookingRole.BOOKER;
+import static ru.practicum.shareit.booking.model.BookingRole.OWNER;
+import static ru.practicum.shareit.booking.model.BookingStatus.APPROVED;
+import static ru.practicum.shareit.booking.model.BookingStatus.REJECTED;
+import static ru.practicum.shareit.booking.model.BookingStatus.WAITING;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BookingCountersTest {
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    User owner, booker;
+    Item item;
+    LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now().withNano(0);
+
+        owner = userRepository.save(User.builder()
+                .name("owner")
+                .email("owner@mail.ru")
+                .build());
+
+        booker = userRepository.save(User.builder()
+                .name("booker")
+                .email("booker@mail.ru")
+                .build());
+
+        item = itemRepository.save(Item.builder()
+                .name("item")
+                .description("description")
+                .available(true)
+                .owner(owner)
+                .build());
+
+        bookingRepository.clearCounters();
+    }
+
+    @Test
+    void start_shouldRebuildEmptyCountersFromBookings() {
+        bookingRepository.saveAndFlush(booking(APPROVED, now.minusDays(3), now.minusDays(2)));
+        bookingRepository.saveAndFlush(booking(WAITING, now.plusDays(1), now.plusDays(2)));
+
+        counters(true).start();
+
+        assertSummariesMatchCount();
+    }
+
+    @Test
+    void start_shouldLeaveCountersAloneWhenDisabled() {
+        bookingRepository.saveAndFlush(booking(APPROVED, now.minusDays(3), now.minusDays(2)));
+        bookingRepository.rebuildCounters();
+
+        BookingCounters bookingCounters = counters(false);
+        bookingCounters.start();
+        bookingCounters.added(booking(WAITING, now.plusDays(1), now.plusDays(2)));
+
+        assertThat(bookingRepository.findCounters(BOOKER, booker.getId())).isEqualTo(Map.of(APPROVED, 1L));
+    }
+
+    @Test
+    void summary_shouldFollowAddedChangedAndRemovedBookings() {
+        BookingCounters bookingCounters = counters(true);
+        bookingCounters.start();
+
+        Booking past = bookingRepository.saveAndFlush(booking(APPROVED, now.minusDays(3), now.minusDays(2)));
+        Booking current = bookingRepository.saveAndFlush(booking(WAITING, now.minusDays(1), now.plusDays(1)));
+        Booking future = bookingRepository.saveAndFlush(booking(WAITING, now.plusDays(1), now.plusDays(2)));
+        List.of(past, current, future).forEach(bookingCounters::added);
+        assertSummariesMatchCount();
+
+        bookingRepository.rejectWaiting(List.of(current.getId(), future.getId()));
+        bookingCounters.changed(List.of(current.getId(), future.getId()), WAITING, REJECTED);
+        assertSummariesMatchCount();
+
+        Booking removed = bookingRepository.findById(future.getId()).orElseThrow();
+        bookingRepository.delete(removed);
+        bookingRepository.flush();
+        bookingCounters.removed(removed);
+        assertSummariesMatchCount();
+
+        assertThat(bookingCounters.summary(BOOKER, booker.getId(), now).getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void removedItem_shouldSubtractHotAndArchivedBookingsOfTheItem() {
+        Item other = itemRepository.save(Item.builder()
+                .name("other")
+                .description("description")
+                .available(true)
+                .owner(owner)
+                .build());
+        Booking archived = bookingRepository.saveAndFlush(booking(APPROVED, now.minusDays(3), now.minusDays(2)));
+        bookingRepository.saveAndFlush(booking(WAITING, now.plusDays(1), now.plusDays(2)));
+        bookingRepository.saveAndFlush(booking(WAITING, now.plusDays(3), now.plusDays(4)));
+        Booking kept = booking(APPROVED, now.plusDays(5), now.plusDays(6));
+        kept.setItem(other);
+        bookingRepository.saveAndFlush(kept);
+        bookingRepository.archive(List.of(archived.getId()));
+
+        BookingCounters bookingCounters = counters(true);
+        bookingCounters.start();
+        bookingCounters.removedItem(item.getId());
+
+        assertThat(bookingRepository.findCounters(BOOKER, booker.getId()))
+                .isEqualTo(Map.of(APPROVED, 1L, WAITING, 0L));
+        assertThat(bookingRepository.findCounters(OWNER, owner.getId()))
+                .isEqualTo(Map.of(APPROVED, 1L, WAITING, 0L));
+    }
+
+    private void assertSummariesMatchCount() {
+        BookingCounters bookingCounters = counters(true);
+        assertThat(bookingCounters.summary(BOOKER, booker.getId(), now))
+                .isEqualTo(bookingRepository.countByState(BOOKER, booker.getId(), now));
+        assertThat(bookingCounters.summary(OWNER, owner.getId(), now))
+                .isEqualTo(bookingRepository.countByState(OWNER, owner.getId(), now));
+    }
+
+    private BookingCounters counters(boolean enabled) {
+        return new BookingCounters(bookingRepository, enabled);
+    }
+
+    private Booking booking(BookingStatus status, LocalDateTime start, LocalDateTime end) {
+        return Booking.builder()
+                .booker(booker)
+                .status(status)
+                .item(item)
+                .startDate(start)
+                .endDate(end)
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.shareit.booking.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.booking.model.BookingExportFormat;
+import ru.practicum.shareit.booking.model.BookingExportRow;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.user.service.UserService;
+import ru.practicum.shareit.util.exception.NotFoundException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BookingExporterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    BookingRepository bookingRepository;
+    UserService userService;
+    BookingExporter bookingExporter;
+    LocalDateTime start;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        userService = mock(UserService.class);
+        bookingExporter = new BookingExporter(bookingRepository, userService, mapper, 50);
+        start = LocalDateTime.of(2030, 1, 2, 3, 4, 5);
+
+        doAnswer(invocation -> {
+            Consumer<BookingExportRow> consumer = invocation.getArgument(2);
+            consumer.accept(new BookingExportRow(1, 10, "drill", 100, start, start.plusDays(1),
+                    BookingStatus.APPROVED, start.minusDays(1).withNano(123_000)));
+            consumer.accept(new BookingExportRow(2, 11, "saw, \"sharp\"", 101, start, start.plusDays(2),
+                    BookingStatus.WAITING, start.minusDays(1)));
+            return null;
+        }).when(bookingRepository).streamByOwner(eq(7), eq(50), any());
+    }
+
+    @SneakyThrows
+    @Test
+    void exportByOwner_shouldWriteOneJsonObjectPerLine() {
+        String[] lines = export(BookingExportFormat.NDJSON).split("\n");
+
+        assertThat(lines).hasSize(2);
+        JsonNode first = mapper.readTree(lines[0]);
+        assertThat(first.get("id").asInt()).isEqualTo(1);
+        assertThat(first.get("itemName").asText()).isEqualTo("drill");
+        assertThat(first.get("start").asText()).isEqualTo("2030-01-02T03:04:05");
+        assertThat(first.get("created").asText()).isEqualTo("2030-01-01T03:04:05");
+        assertThat(mapper.readTree(lines[1]).get("itemName").asText()).isEqualTo("saw, \"sharp\"");
+    }
+
+    @Test
+    void exportByOwner_shouldWriteCsvWithHeaderAndQuotedText() {
+        assertThat(export(BookingExportFormat.CSV)).isEqualTo(
+                "id,itemId,itemName,bookerId,start,end,status,created\r\n" +
+                "1,10,drill,100,2030-01-02T03:04:05,2030-01-03T03:04:05,APPROVED,2030-01-01T03:04:05\r\n" +
+                "2,11,\"saw, \"\"sharp\"\"\",101,2030-01-02T03:04:05,2030-01-04T03:04:05,WAITING," +
+                "2030-01-01T03:04:05\r\n");
+    }
+
+    @Test
+    void exportByOwner_shouldCheckOwnerBeforeStreaming() {
+        doThrow(new NotFoundException("The user with ID 8 is not found")).when(userService).existenceCheck(8);
+
+        assertThatThrownBy(() -> bookingExporter.exportByOwner(8, BookingExportFormat.CSV))
+                .isInstanceOf(NotFoundException.class);
+        verify(bookingRepository, never()).streamByOwner(anyInt(), anyInt(), any());
+    }
+
+    @SneakyThrows
+    private String export(BookingExportFormat format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bookingExporter.exportByOwner(7, format).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
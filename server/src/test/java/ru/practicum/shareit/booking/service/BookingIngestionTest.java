@@ -0,0 +1,152 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.UnexpectedRollbackException;
+import ru.practicum.shareit.booking.BookingBaseTest;
+import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
+import ru.practicum.shareit.util.exception.BookingOverlapException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BookingIngestionTest extends BookingBaseTest {
+
+    BookingService bookingService;
+
+    PlatformTransactionManager transactionManager;
+
+    BookingLocks bookingLocks = new BookingLocks(4);
+
+    SimpleMeterRegistry meterRegistry;
+
+    BookingIngestion bookingIngestion;
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @BeforeEach
+    protected void setUp() {
+        super.setUp();
+
+        bookingService = mock(BookingService.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        if (bookingIngestion != null) {
+            bookingIngestion.stop();
+        }
+    }
+
+    @Test
+    void create_shouldCallServiceDirectlyWhenDisabled() {
+        bookingIngestion = ingestion(false, 4, 0);
+        when(bookingService.create(bookingDtoIn, booker.getId())).thenReturn(bookingDtoOut);
+
+        assertThat(bookingIngestion.create(bookingDtoIn, booker.getId())).isEqualTo(bookingDtoOut);
+        assertThat(meterRegistry.find("booking.ingestion.queue.depth").gauges()).isEmpty();
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void create_shouldCommitConcurrentRequestsInOneTransaction() throws Exception {
+        bookingIngestion = ingestion(true, 4, 10_000);
+        when(bookingService.createInTransaction(any(), anyInt())).thenReturn(bookingDtoOut);
+
+        List<Future<BookingDtoOutAbs>> results = submit(booker.getId(), booker.getId(), booker.getId(), booker.getId());
+
+        for (Future<BookingDtoOutAbs> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(bookingDtoOut);
+        }
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(transactionManager, times(1)).commit(any());
+        assertThat(meterRegistry.get("booking.ingestion.batches").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("booking.ingestion.bookings").counter().count()).isEqualTo(4);
+        assertThat(meterRegistry.get("booking.ingestion.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    void create_shouldCompleteEveryRequestWithItsOwnOutcome() throws Exception {
+        bookingIngestion = ingestion(true, 2, 10_000);
+        when(bookingService.createInTransaction(any(), eq(booker.getId()))).thenReturn(bookingDtoOut);
+        when(bookingService.createInTransaction(any(), eq(owner.getId()))).thenThrow(new BookingOverlapException("overlap"));
+
+        List<Future<BookingDtoOutAbs>> results = submit(booker.getId(), owner.getId());
+
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS)).isEqualTo(bookingDtoOut);
+        assertThatThrownBy(() -> results.get(1).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(BookingOverlapException.class);
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void create_shouldRetryOneByOneWhenBatchIsRolledBack() throws Exception {
+        bookingIngestion = ingestion(true, 2, 10_000);
+        when(bookingService.createInTransaction(any(), anyInt())).thenReturn(bookingDtoOut);
+        when(bookingService.create(any(), anyInt())).thenReturn(bookingDtoOut);
+        doThrow(new UnexpectedRollbackException("rollback-only"))
+                .doNothing()
+                .when(transactionManager).commit(any());
+
+        List<Future<BookingDtoOutAbs>> results = submit(booker.getId(), booker.getId());
+
+        for (Future<BookingDtoOutAbs> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(bookingDtoOut);
+        }
+        verify(transactionManager, times(3)).commit(any());
+        verify(bookingService, times(2)).createInTransaction(any(), anyInt());
+        verify(bookingService, times(2)).create(any(), anyInt());
+        assertThat(meterRegistry.get("booking.ingestion.retried.batches").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void create_shouldHoldItemLockUntilBatchIsCommitted() throws Exception {
+        bookingIngestion = ingestion(true, 1, 0);
+        when(bookingService.createInTransaction(any(), anyInt())).thenReturn(bookingDtoOut);
+        List<Future<Boolean>> competing = new ArrayList<>();
+        doAnswer(invocation -> {
+            competing.add(executor.submit(() -> bookingLocks.withItemLock(bookingDtoIn.getItemId(), () -> true)));
+            assertThatThrownBy(() -> competing.get(0).get(200, TimeUnit.MILLISECONDS))
+                    .isInstanceOf(TimeoutException.class);
+            return null;
+        }).when(transactionManager).commit(any());
+
+        assertThat(submit(booker.getId()).get(0).get(5, TimeUnit.SECONDS)).isEqualTo(bookingDtoOut);
+        assertThat(competing.get(0).get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private BookingIngestion ingestion(boolean enabled, int batchSize, long maxLingerMs) {
+        BookingIngestion ingestion = new BookingIngestion(bookingService, bookingLocks, transactionManager,
+                meterRegistry, enabled, 1, batchSize, maxLingerMs);
+        ingestion.start();
+        return ingestion;
+    }
+
+    private List<Future<BookingDtoOutAbs>> submit(int... userIds) {
+        List<Future<BookingDtoOutAbs>> results = new ArrayList<>();
+        for (int userId : userIds) {
+            results.add(executor.submit(() -> bookingIngestion.create(bookingDtoIn, userId)));
+        }
+        return results;
+    }
+}
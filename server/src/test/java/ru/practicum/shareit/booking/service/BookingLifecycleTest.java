@@ -0,0 +1,182 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingChanged;
+import ru.practicum.shareit.booking.model.BookingLifecycleEvent;
+import ru.practicum.shareit.booking.model.BookingPhase;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static ru.practicum.shareit.booking.model.BookingLifecycleEvent.Type.ENDED;
+import static ru.practicum.shareit.booking.model.BookingLifecycleEvent.Type.EXPIRED;
+import static ru.practicum.shareit.booking.model.BookingLifecycleEvent.Type.STARTED;
+import static ru.practicum.shareit.booking.model.BookingStatus.APPROVED;
+import static ru.practicum.shareit.booking.model.BookingStatus.REJECTED;
+import static ru.practicum.shareit.booking.model.BookingStatus.WAITING;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BookingLifecycleTest {
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    ApplicationEventPublisher eventPublisher;
+
+    BookingLifecycle bookingLifecycle;
+
+    User booker;
+    Item item;
+    LocalDateTime now;
+
+    // The wheel ticks once a second from its creation, so events are expected up to a second after their time
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now().withNano(0);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        bookingLifecycle = lifecycle(eventPublisher);
+
+        User owner = userRepository.save(User.builder()
+                .name("owner")
+                .email("owner@mail.ru")
+                .build());
+
+        booker = userRepository.save(User.builder()
+                .name("booker")
+                .email("booker@mail.ru")
+                .build());
+
+        item = itemRepository.save(Item.builder()
+                .name("item")
+                .description("description")
+                .available(true)
+                .owner(owner)
+                .build());
+    }
+
+    @Test
+    void tick_shouldExpireWaitingBookingsWhoseStartHasPassed() {
+        Booking stale = bookingRepository.save(booking(WAITING, now.minusYears(1), now.minusYears(1).plusDays(1)));
+        Booking recent = bookingRepository.save(booking(WAITING, now.minusMinutes(1), now.plusDays(1)));
+        Booking future = bookingRepository.save(booking(WAITING, now.plusDays(1), now.plusDays(2)));
+
+        bookingLifecycle.loadStale(now);
+        bookingLifecycle.load(now);
+        bookingLifecycle.tick(now.plusSeconds(1));
+
+        assertThat(bookingRepository.findById(stale.getId()).orElseThrow().getStatus()).isEqualTo(REJECTED);
+        assertThat(bookingRepository.findById(recent.getId()).orElseThrow().getStatus()).isEqualTo(REJECTED);
+        assertThat(bookingRepository.findById(future.getId()).orElseThrow().getStatus()).isEqualTo(WAITING);
+        verify(eventPublisher).publishEvent(new BookingLifecycleEvent(EXPIRED, stale.getId()));
+        verify(eventPublisher).publishEvent(new BookingLifecycleEvent(EXPIRED, recent.getId()));
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        BookingChanged changed = events.getAllValues().stream()
+                .filter(BookingChanged.class::isInstance)
+                .map(BookingChanged.class::cast)
+                .findFirst()
+                .orElseThrow();
+        assertThat(changed.getType()).isEqualTo(BookingChanged.Type.EXPIRED);
+        assertThat(changed.getBookings()).extracting(Booking::getId)
+                .containsExactlyInAnyOrder(stale.getId(), recent.getId());
+        assertThat(changed.getItemIds()).containsExactly(item.getId());
+    }
+
+    @Test
+    void tick_shouldEmitStartAndEndOfApprovedBookingOnTime() {
+        Booking booking = bookingRepository.save(booking(APPROVED, now.plusMinutes(1), now.plusMinutes(3)));
+
+        bookingLifecycle.load(now);
+        bookingLifecycle.tick(now.plusSeconds(59));
+        verifyNoInteractions(eventPublisher);
+
+        bookingLifecycle.tick(now.plusMinutes(1).plusSeconds(1));
+        verify(eventPublisher).publishEvent(new BookingLifecycleEvent(STARTED, booking.getId()));
+        assertThat(bookingRepository.findById(booking.getId()).orElseThrow().getPhase()).isEqualTo(BookingPhase.STARTED);
+
+        bookingLifecycle.tick(now.plusMinutes(3).plusSeconds(1));
+        verify(eventPublisher).publishEvent(new BookingLifecycleEvent(ENDED, booking.getId()));
+        assertThat(bookingRepository.findById(booking.getId()).orElseThrow().getPhase()).isEqualTo(BookingPhase.ENDED);
+        assertThat(bookingLifecycle.pending()).isZero();
+    }
+
+    @Test
+    void tick_shouldEmitEveryEventOnceWhenSeveralInstancesRun() {
+        ApplicationEventPublisher otherPublisher = mock(ApplicationEventPublisher.class);
+        BookingLifecycle other = lifecycle(otherPublisher);
+        Booking booking = bookingRepository.save(booking(APPROVED, now.plusMinutes(1), now.plusMinutes(2)));
+
+        bookingLifecycle.load(now);
+        other.load(now);
+        bookingLifecycle.tick(now.plusMinutes(1).plusSeconds(1));
+        other.tick(now.plusMinutes(1).plusSeconds(1));
+        other.tick(now.plusMinutes(2).plusSeconds(1));
+        bookingLifecycle.tick(now.plusMinutes(2).plusSeconds(1));
+
+        verify(eventPublisher).publishEvent(new BookingLifecycleEvent(STARTED, booking.getId()));
+        verify(otherPublisher).publishEvent(new BookingLifecycleEvent(ENDED, booking.getId()));
+        verifyNoMoreInteractions(eventPublisher, otherPublisher);
+
+        other.load(now.plusMinutes(3));
+        other.tick(now.plusMinutes(3).plusSeconds(1));
+        verifyNoMoreInteractions(otherPublisher);
+    }
+
+    @Test
+    void track_shouldScheduleBookingSavedAfterLoadWithinHorizon() {
+        bookingLifecycle.load(now);
+        Booking booking = bookingRepository.save(booking(WAITING, now.plusMinutes(1), now.plusMinutes(2)));
+        Booking beyondHorizon = bookingRepository.save(booking(WAITING, now.plusDays(1), now.plusDays(2)));
+
+        bookingLifecycle.track(booking);
+        bookingLifecycle.track(beyondHorizon);
+        bookingLifecycle.tick(now.plusMinutes(1).plusSeconds(1));
+
+        verify(eventPublisher).publishEvent(new BookingLifecycleEvent(EXPIRED, booking.getId()));
+        verify(eventPublisher).publishEvent(any(BookingChanged.class));
+        verify(eventPublisher, times(2)).publishEvent(any(Object.class));
+        assertThat(bookingLifecycle.pending()).isEqualTo(1);
+    }
+
+    private BookingLifecycle lifecycle(ApplicationEventPublisher publisher) {
+        BookingCounters bookingCounters = new BookingCounters(bookingRepository, false);
+        return new BookingLifecycle(bookingRepository, publisher, bookingCounters, transactionManager, false, 1000, 64,
+                10, 500);
+    }
+
+    private Booking booking(BookingStatus status, LocalDateTime start, LocalDateTime end) {
+        return Booking.builder()
+                .booker(booker)
+                .status(status)
+                .item(item)
+                .startDate(start)
+                .endDate(end)
+                .build();
+    }
+}
@@ -0,0 +1,320 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingChanged;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+import static ru.practicum.shareit.booking.model.BookingRole.BOOKER;
+import static ru.practicum.shareit.booking.model.BookingRole.OWNER;
+
+class BookingListCacheTest {
+
+    static final long MAX_TTL_SECONDS = 86_400;
+
+    BookingRepository bookingRepository;
+    BookingRules bookingRules;
+    SimpleMeterRegistry meterRegistry;
+    AtomicInteger loads;
+    LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.findNextStart(any(), anyInt(), any())).thenReturn(Optional.empty());
+        when(bookingRepository.findNextEnd(any(), anyInt(), any())).thenReturn(Optional.empty());
+        bookingRules = mock(BookingRules.class);
+        when(bookingRules.findNextStart(any(), anyInt(), any())).thenReturn(Optional.empty());
+        when(bookingRules.findNextEnd(any(), anyInt(), any())).thenReturn(Optional.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        loads = new AtomicInteger();
+        now = LocalDateTime.now().withNano(0);
+    }
+
+    @Test
+    void get_shouldServeRepeatedQueryFromCache() {
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                10, MAX_TTL_SECONDS);
+
+        List<? extends BookingDtoOutAbs> first = cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        List<? extends BookingDtoOutAbs> second = cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+
+        assertThat(second).isEqualTo(first);
+        assertThat(loads).hasValue(1);
+
+        assertThat(metric("size")).isEqualTo(1);
+        assertThat(metric("hits")).isEqualTo(1);
+        assertThat(metric("misses")).isEqualTo(1);
+    }
+
+    @Test
+    void get_shouldAlwaysLoadWhenDisabled() {
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, false,
+                10, MAX_TTL_SECONDS);
+
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+
+        assertThat(loads).hasValue(2);
+        assertThat(metric("hits")).isZero();
+        assertThat(metric("size")).isZero();
+    }
+
+    @Test
+    void get_shouldKeepPagesApart() {
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                10, MAX_TTL_SECONDS);
+
+        cache.get(BookingQuery.builder().role(BOOKER).userId(1).from(0).size(10).now(now).build(), loader());
+        cache.get(BookingQuery.builder().role(BOOKER).userId(1).from(10).size(10).now(now).build(), loader());
+        cache.get(BookingQuery.builder().role(OWNER).userId(1).from(0).size(10).now(now).build(), loader());
+
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void get_shouldExpireTimeDependentListingAtNextBoundary() {
+        when(bookingRepository.findNextStart(BOOKER, 1, now)).thenReturn(Optional.of(now.plusHours(2)));
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                10, MAX_TTL_SECONDS);
+
+        cache.get(query(BOOKER, 1, BookingState.CURRENT), loader(now.minusHours(1), now.plusHours(1)));
+        cache.get(query(BOOKER, 1, BookingState.CURRENT, now.plusMinutes(59)), loader());
+        assertThat(loads).hasValue(1);
+
+        cache.get(query(BOOKER, 1, BookingState.CURRENT, now.plusHours(1)), loader());
+        assertThat(loads).hasValue(2);
+        assertThat(metric("expirations")).isEqualTo(1);
+        verify(bookingRepository, never()).findNextEnd(any(), anyInt(), any());
+    }
+
+    @Test
+    void get_shouldExpireCurrentListingAtNextStartOfRecurringBooking() {
+        when(bookingRules.findNextStart(BOOKER, 1, now)).thenReturn(Optional.of(now.plusHours(2)));
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true, 10,
+                MAX_TTL_SECONDS);
+
+        cache.get(query(BOOKER, 1, BookingState.CURRENT), loader());
+        cache.get(query(BOOKER, 1, BookingState.CURRENT, now.plusHours(1)), loader());
+        assertThat(loads).hasValue(1);
+
+        cache.get(query(BOOKER, 1, BookingState.CURRENT, now.plusHours(2)), loader());
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void get_shouldExpireFutureListingAtFirstStartOfPageWithoutQueries() {
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                10, MAX_TTL_SECONDS);
+
+        cache.get(query(BOOKER, 1, BookingState.FUTURE), loader(now.plusHours(3), now.plusHours(4)));
+        cache.get(query(BOOKER, 1, BookingState.FUTURE, now.plusHours(2)), loader());
+        assertThat(loads).hasValue(1);
+
+        cache.get(query(BOOKER, 1, BookingState.FUTURE, now.plusHours(3)), loader());
+        assertThat(loads).hasValue(2);
+        verifyNoInteractions(bookingRepository, bookingRules);
+    }
+
+    @Test
+    void get_shouldLookBeyondOffsetPageSortedByAnotherDate() {
+        when(bookingRepository.findNextStart(BOOKER, 1, now)).thenReturn(Optional.of(now.plusHours(1)));
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                10, MAX_TTL_SECONDS);
+
+        cache.get(query(BOOKER, 1, BookingState.FUTURE).toBuilder().from(10).sort(BookingSort.CREATED).build(),
+                loader(now.plusHours(3), now.plusHours(4)));
+        cache.get(query(BOOKER, 1, BookingState.FUTURE, now.plusHours(1)).toBuilder().from(10)
+                .sort(BookingSort.CREATED).build(), loader());
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void get_shouldNotAskForBoundariesOfClockIndependentStates() {
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                10, MAX_TTL_SECONDS);
+
+        cache.get(query(BOOKER, 1, BookingState.WAITING), loader());
+        cache.get(query(BOOKER, 1, BookingState.WAITING, now.plusHours(23)), loader());
+
+        assertThat(loads).hasValue(1);
+        verify(bookingRepository, never()).findNextStart(any(), anyInt(), any());
+        verify(bookingRepository, never()).findNextEnd(any(), anyInt(), any());
+    }
+
+    @Test
+    void get_shouldExpireEveryListingAfterMaxTtl() {
+        when(bookingRepository.findNextStart(BOOKER, 1, now)).thenReturn(Optional.of(now.plusHours(2)));
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true, 10, 60);
+
+        cache.get(query(BOOKER, 1, BookingState.WAITING), loader());
+        cache.get(query(BOOKER, 1, BookingState.CURRENT), loader(now.minusHours(1), now.plusHours(1)));
+        cache.get(query(BOOKER, 1, BookingState.WAITING, now.plusSeconds(59)), loader());
+        cache.get(query(BOOKER, 1, BookingState.CURRENT, now.plusSeconds(59)), loader());
+        assertThat(loads).hasValue(2);
+
+        cache.get(query(BOOKER, 1, BookingState.WAITING, now.plusSeconds(60)), loader());
+        cache.get(query(BOOKER, 1, BookingState.CURRENT, now.plusSeconds(60)), loader());
+        assertThat(loads).hasValue(4);
+        assertThat(metric("expirations")).isEqualTo(2);
+    }
+
+    @Test
+    void evictItem_shouldDropListingsOfOwnerAndBookersOfTheItemOnly() {
+        when(bookingRepository.findBookerIdsByItem(5)).thenReturn(Set.of(1));
+        when(bookingRules.findBookerIdsByItem(5)).thenReturn(List.of(4));
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true, 10,
+                MAX_TTL_SECONDS);
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        cache.get(query(OWNER, 2, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 3, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 4, BookingState.ALL), loader());
+
+        cache.evictItem(5, 2);
+
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        cache.get(query(OWNER, 2, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 3, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 4, BookingState.ALL), loader());
+        assertThat(loads).hasValue(7);
+    }
+
+    @Test
+    void get_shouldDropLeastRecentlyUsedListingOverLimit() {
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                2, MAX_TTL_SECONDS);
+
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 2, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 3, BookingState.ALL), loader());
+        assertThat(loads).hasValue(3);
+        assertThat(metric("evictions")).isEqualTo(1);
+
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        assertThat(loads).hasValue(3);
+        cache.get(query(BOOKER, 2, BookingState.ALL), loader());
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    void onBookingChanged_shouldDropListingsOfBookerAndOwnerOnly() {
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                10, MAX_TTL_SECONDS);
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        cache.get(query(OWNER, 2, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 3, BookingState.ALL), loader());
+
+        cache.onBookingChanged(BookingChanged.created(List.of(booking(1, 2))));
+
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        cache.get(query(OWNER, 2, BookingState.ALL), loader());
+        cache.get(query(BOOKER, 3, BookingState.ALL), loader());
+        assertThat(loads).hasValue(5);
+        assertThat(metric("evictions")).isEqualTo(2);
+    }
+
+    @Test
+    void get_shouldNotStoreListingReadWhileItsUserWasEvicted() {
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                10, MAX_TTL_SECONDS);
+
+        cache.get(query(BOOKER, 1, BookingState.ALL), () -> {
+            cache.onBookingChanged(BookingChanged.created(List.of(booking(1, 2))));
+            return loader().get();
+        });
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+
+        assertThat(loads).hasValue(2);
+        assertThat(metric("size")).isEqualTo(1);
+    }
+
+    @Test
+    void evictAll_shouldDropEveryListing() {
+        BookingListCache cache = new BookingListCache(bookingRepository, bookingRules, meterRegistry, true,
+                10, MAX_TTL_SECONDS);
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        cache.get(query(OWNER, 2, BookingState.ALL), loader());
+
+        cache.evictAll();
+
+        assertThat(metric("size")).isZero();
+        cache.get(query(BOOKER, 1, BookingState.ALL), loader());
+        assertThat(loads).hasValue(3);
+    }
+
+    private BookingQuery query(BookingRole role, int userId, BookingState state) {
+        return query(role, userId, state, now);
+    }
+
+    private BookingQuery query(BookingRole role, int userId, BookingState state, LocalDateTime at) {
+        return BookingQuery.builder()
+                .role(role)
+                .userId(userId)
+                .state(state)
+                .size(10)
+                .now(at)
+                .build();
+    }
+
+    private Supplier<List<? extends BookingDtoOutAbs>> loader() {
+        return () -> List.of(BookingDtoOut.builder().id(loads.incrementAndGet()).build());
+    }
+
+    private Supplier<List<? extends BookingDtoOutAbs>> loader(LocalDateTime startDate, LocalDateTime endDate) {
+        return () -> List.of(BookingDtoOut.builder()
+                .id(loads.incrementAndGet())
+                .startDate(startDate)
+                .endDate(endDate)
+                .build());
+    }
+
+    private double metric(String name) {
+        return meterRegistry.get("booking.list.cache." + name).meter().measure().iterator().next().getValue();
+    }
+
+    private Booking booking(int bookerId, int ownerId) {
+        return Booking.builder()
+                .booker(user(bookerId))
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .item(Item.builder()
+                        .id(1)
+                        .name("item")
+                        .description("description")
+                        .available(true)
+                        .owner(user(ownerId))
+                        .build())
+                .build();
+    }
+
+    private User user(int id) {
+        return User.builder()
+                .id(id)
+                .name("user" + id)
+                .email("user" + id + "@mail.ru")
+                .build();
+    }
+}
@@ -6,32 +6,52 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import ru.practicum.shareit.booking.BookingBaseTest;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
 import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.dto.Occurrence;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoIn;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoOut;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingFrequency;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingRule;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.model.ItemPeriod;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.BookingRuleRepository;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.user.service.UserService;
-import ru.practicum.shareit.util.OffsetLimitPageable;
+import ru.practicum.shareit.util.exception.BookingOverlapException;
 import ru.practicum.shareit.util.exception.ForbiddenException;
 import ru.practicum.shareit.util.exception.ItemIsNotAvailableException;
 import ru.practicum.shareit.util.exception.NotFoundException;
 import ru.practicum.shareit.util.exception.StatusChangeException;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static ru.practicum.shareit.booking.model.BookingStatus.*;
-import static ru.practicum.shareit.booking.service.BookingServiceImpl.getLastBooking;
-import static ru.practicum.shareit.booking.service.BookingServiceImpl.getNextBooking;
 
 @SpringBootTest
 public class BookingServiceTest extends BookingBaseTest {
@@ -39,6 +59,12 @@ public class BookingServiceTest extends BookingBaseTest {
     @MockBean
     BookingRepository bookingRepository;
 
+    @MockBean
+    BookingRuleRepository bookingRuleRepository;
+
+    @MockBean
+    BookingRules bookingRules;
+
     @MockBean
     ItemService itemService;
 
@@ -65,11 +91,14 @@ public class BookingServiceTest extends BookingBaseTest {
 
     @Test
     void create_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.save(booking)).thenReturn(booking);
+        when(bookingRepository.insertWaiting(item.getId(), booker.getId(), bookingDtoIn.getStartDate(),
+                bookingDtoIn.getEndDate())).thenReturn(Optional.of(booking));
 
         BookingDtoOutAbs savedBooking = bookingService.create(bookingDtoIn, booker.getId());
 
-        verify(bookingRepository, times(1)).save(booking);
+        verify(bookingRepository, times(1)).insertWaiting(item.getId(), booker.getId(), bookingDtoIn.getStartDate(),
+                bookingDtoIn.getEndDate());
+        verify(bookingMapper, never()).fromDto(any(BookingDtoIn.class), anyInt());
         assertThat(savedBooking).isEqualTo(bookingDtoOut);
     }
 
@@ -91,6 +120,118 @@ public class BookingServiceTest extends BookingBaseTest {
         }).isInstanceOf(NotFoundException.class);
     }
 
+    @Test
+    void create_shouldThrowNotFoundExceptionWhenItemDoesNotExist() {
+        when(bookingMapper.fromDto(any(BookingDtoIn.class), anyInt()))
+                .thenThrow(new NotFoundException("Item with ID 1 not found"));
+
+        assertThatThrownBy(() -> bookingService.create(bookingDtoIn, booker.getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Item with ID 1 not found");
+    }
+
+    @Test
+    void create_shouldThrowBookingOverlapExceptionWhenItemIsAlreadyBooked() {
+        when(bookingRepository.insertWaiting(anyInt(), anyInt(), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> bookingService.create(bookingDtoIn, booker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+    }
+
+    @Test
+    void create_shouldThrowBookingOverlapExceptionWhenExclusionConstraintIsViolated() {
+        when(bookingRepository.insertWaiting(anyInt(), anyInt(), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenThrow(new DataIntegrityViolationException("overlap",
+                        new SQLException("conflicting key value violates exclusion constraint", "23P01")));
+
+        assertThatThrownBy(() -> bookingService.create(bookingDtoIn, booker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+    }
+
+    @Test
+    void create_shouldThrowBookingOverlapExceptionWhenOccurrenceOfRecurringBookingOverlaps() {
+        when(bookingRules.findBlockingOccurrences(Set.of(item.getId()), bookingDtoIn.getStartDate(),
+                bookingDtoIn.getEndDate()))
+                .thenReturn(List.of(new ItemPeriod(item.getId(), now, now.plusDays(3))));
+
+        assertThatThrownBy(() -> bookingService.create(bookingDtoIn, booker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+
+        verify(bookingRepository, never()).insertWaiting(anyInt(), anyInt(), any(), any());
+    }
+
+    @Test
+    void createAll_shouldSaveNothingWhenAnyBookingOverlapsOccurrenceOfRecurringBooking() {
+        when(bookingRules.findBlockingOccurrences(anyCollection(), any(), any()))
+                .thenReturn(List.of(new ItemPeriod(item.getId(), now, now.plusDays(3))));
+
+        assertThatThrownBy(() -> bookingService.createAll(List.of(bookingDtoIn), booker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+
+        verify(bookingRepository, never()).saveAllAndFlush(anyList());
+    }
+
+    @Test
+    void createAll_shouldSaveWholeBatchAsWaiting() {
+        BookingDtoIn nextDtoIn = nextBookingDtoIn(2);
+        when(bookingRepository.saveAllAndFlush(anyList())).thenReturn(List.of(booking, booking));
+        when(bookingMapper.toDto(anyList())).thenReturn(List.of(bookingDtoOut, bookingDtoOut));
+
+        List<? extends BookingDtoOutAbs> saved = bookingService.createAll(List.of(bookingDtoIn, nextDtoIn),
+                booker.getId());
+
+        assertThat(saved).hasSize(2);
+        verify(bookingMapper, times(1)).fromDto(any(BookingDtoIn.class), anyInt());
+        verify(bookingRepository, times(1)).findBlockingPeriods(Set.of(item.getId()), booking.getStartDate(),
+                nextDtoIn.getEndDate());
+        verify(bookingRepository, times(1)).saveAllAndFlush(argThat((List<Booking> bookings) -> bookings.size() == 2
+                && bookings.stream().allMatch(booking -> booking.getStatus() == WAITING
+                && booking.getItem().equals(item) && booking.getBooker().equals(booker))));
+        verify(bookingRepository, never()).insertWaiting(anyInt(), anyInt(), any(), any());
+    }
+
+    @Test
+    void createAll_shouldSaveNothingWhenBookingsOfBatchOverlap() {
+        BookingDtoIn nextDtoIn = nextBookingDtoIn(1);
+
+        assertThatThrownBy(() -> bookingService.createAll(List.of(bookingDtoIn, nextDtoIn), booker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+
+        verify(bookingRepository, never()).saveAllAndFlush(anyList());
+    }
+
+    @Test
+    void createAll_shouldSaveNothingWhenAnyBookingOverlapsExistingOne() {
+        BookingDtoIn nextDtoIn = nextBookingDtoIn(2);
+        when(bookingRepository.findBlockingPeriods(anyCollection(), any(), any()))
+                .thenReturn(List.of(new ItemPeriod(item.getId(), now.plusDays(4), now.plusDays(5))));
+
+        assertThatThrownBy(() -> bookingService.createAll(List.of(bookingDtoIn, nextDtoIn), booker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+
+        verify(bookingRepository, never()).saveAllAndFlush(anyList());
+    }
+
+    @Test
+    void createAll_shouldSaveNothingWhenAnyItemIsNotAvailable() {
+        item.setAvailable(false);
+
+        assertThatThrownBy(() -> bookingService.createAll(List.of(bookingDtoIn), booker.getId()))
+                .isInstanceOf(ItemIsNotAvailableException.class);
+
+        verify(bookingRepository, never()).findBlockingPeriods(anyCollection(), any(), any());
+        verify(bookingRepository, never()).saveAllAndFlush(anyList());
+    }
+
+    private BookingDtoIn nextBookingDtoIn(int startDay) {
+        return BookingDtoIn.builder()
+                .itemId(item.getId())
+                .startDate(now.plusDays(startDay))
+                .endDate(now.plusDays(startDay + 3))
+                .build();
+    }
+
     @Test
     void getById_shouldThrowNotFoundExceptionWhenRepositoryReturnsEmpty() {
         when(bookingRepository.findById(anyInt()))
@@ -141,237 +282,354 @@ public class BookingServiceTest extends BookingBaseTest {
     }
 
     @Test
-    void getAllByBooker_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.getBookingByBooker(anyInt(), any(OffsetLimitPageable.class)))
-                .thenReturn(Arrays.asList(booking));
-
-        List<? extends BookingDtoOutAbs> allByBooker = bookingService.getAllByBooker(1, 0, 10);
-
-        assertThat(allByBooker.get(0)).isEqualTo(bookingDtoOut);
-
-        verify(bookingRepository, times(1)).getBookingByBooker(eq(1), any(OffsetLimitPageable.class));
-    }
-
-    @Test
-    void getBookingByBookerAndStatus_shouldInvokeRepositoryAndReturnTheSame() {
+    void getAll_shouldInvokeRepositoryAndReturnTheSame() {
+        BookingQuery query = BookingQuery.builder()
+                .role(BookingRole.BOOKER)
+                .userId(1)
+                .state(BookingState.WAITING)
+                .size(10)
+                .build();
 
-        when(bookingRepository.getBookingByBookerAndStatus(anyInt(), any(BookingStatus.class), any(OffsetLimitPageable.class)))
+        when(bookingRepository.findBookings(any(BookingQuery.class)))
                 .thenReturn(Arrays.asList(booking));
 
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getBookingByBookerAndStatus(1, WAITING, 0, 10);
+        List<? extends BookingDtoOutAbs> bookings = bookingService.getAll(query);
 
-        assertThat(bookings.get(0))
-                .isEqualTo(bookingDtoOut);
+        assertThat(bookings.get(0)).isEqualTo(bookingDtoOut);
 
-        verify(bookingRepository, times(1)).getBookingByBookerAndStatus(eq(1), eq(WAITING), any(OffsetLimitPageable.class));
+        verify(userService, times(1)).existenceCheck(1);
+        verify(bookingRepository, times(1)).findBookings(query);
     }
 
     @Test
-    void getPastBookingByBooker_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.getPastBookingByBooker(anyInt(), any(OffsetLimitPageable.class)))
-                .thenReturn(Arrays.asList(booking));
-
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getPastBookingByBooker(1, 0, 10);
+    void getAll_shouldMergeOccurrencesOfRecurringBookingsInListingOrder() {
+        BookingRule rule = weeklyRule();
+        rule.setId(1);
+        rule.setStatus(APPROVED);
+        rule.setCreated(now);
+        when(bookingRules.findByUser(eq(BookingRole.BOOKER), eq(booker.getId()), any(), any(), anyCollection()))
+                .thenReturn(List.of(rule));
+        when(bookingMapper.toDto(any(BookingRule.class))).thenReturn(RecurringBookingDtoOut.builder()
+                .item(bookingDtoOut.getItem())
+                .booker(bookingDtoOut.getBooker())
+                .build());
+        when(bookingRepository.findBookings(any(BookingQuery.class))).thenReturn(List.of(booking));
+        BookingQuery query = BookingQuery.builder()
+                .role(BookingRole.BOOKER)
+                .userId(booker.getId())
+                .state(BookingState.FUTURE)
+                .size(3)
+                .now(now)
+                .build();
 
-        verify(bookingRepository, times(1)).getPastBookingByBooker(eq(1), any(OffsetLimitPageable.class));
-        assertThat(bookings.get(0)).isEqualTo(bookingDtoOut);
+        assertThat(bookingService.getAll(query))
+                .extracting(booking -> ((BookingDtoOut) booking).getStartDate())
+                .containsExactly(now.plusDays(22), now.plusDays(15), now.plusDays(8));
+        List<? extends BookingDtoOutAbs> second = bookingService.getAll(query.toBuilder().from(3).build());
+        assertThat(second).extracting(booking -> ((BookingDtoOut) booking).getStartDate())
+                .containsExactly(now.plusDays(1), now.plusDays(1));
+        assertThat(second.get(0)).isEqualTo(bookingDtoOut);
+        assertThat(((BookingDtoOut) second.get(1)).getRuleId()).isEqualTo(rule.getId());
+        verify(bookingRepository).findBookings(argThat(head -> head.getFrom() == 0 && head.getSize() == 6));
     }
 
     @Test
-    void getCurrentBookingByBooker_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.getCurrentBookingByBooker(anyInt(), any(OffsetLimitPageable.class)))
-                .thenReturn(Arrays.asList(booking));
-
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getCurrentBookingByBooker(1, 0, 10);
-
-        verify(bookingRepository, times(1)).getCurrentBookingByBooker(eq(1), any(OffsetLimitPageable.class));
-        assertThat(bookings.get(0)).isEqualTo(bookingDtoOut);
+    void getAll_shouldThrowNotFoundExceptionWhenUserIsNotFound() {
+        doThrow(new NotFoundException("User is not found")).when(userService).existenceCheck(anyInt());
+
+        assertThatThrownBy(() -> bookingService.getAll(BookingQuery.builder()
+                .role(BookingRole.OWNER)
+                .userId(1)
+                .cursor(BookingCursor.of(bookingDtoOut, BookingSort.START))
+                .size(10)
+                .build()))
+                .isInstanceOf(NotFoundException.class);
+
+        verify(bookingRepository, never()).findBookings(any(BookingQuery.class));
     }
 
     @Test
-    void getFutureBookingByBooker_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.getFutureBookingByBooker(anyInt(), any(OffsetLimitPageable.class)))
-                .thenReturn(Arrays.asList(booking));
+    void getSummary_shouldCountByStateInRepository() {
+        BookingSummary summary = BookingSummary.builder().all(3).past(2).future(1).waiting(1).build();
+        BookingSummary occurrences = BookingSummary.builder().all(4).future(4).build();
+        when(bookingRepository.countByState(eq(BookingRole.OWNER), eq(1), any(LocalDateTime.class)))
+                .thenReturn(summary);
+        when(bookingRules.summary(eq(BookingRole.OWNER), eq(1), any(LocalDateTime.class))).thenReturn(occurrences);
 
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getFutureBookingByBooker(1, 0, 10);
+        assertThat(bookingService.getSummary(BookingRole.OWNER, 1)).isEqualTo(summary.plus(occurrences));
 
-        verify(bookingRepository, times(1)).getFutureBookingByBooker(eq(1), any(OffsetLimitPageable.class));
-        assertThat(bookings.get(0)).isEqualTo(bookingDtoOut);
+        verify(userService, times(1)).existenceCheck(1);
+        verify(bookingRepository, never()).findCounters(any(), anyInt());
     }
 
     @Test
-    void getAllByOwner_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.getBookingByOwner(anyInt(), any(OffsetLimitPageable.class)))
-                .thenReturn(Arrays.asList(booking));
+    void getSummary_shouldThrowNotFoundExceptionWhenUserIsNotFound() {
+        doThrow(new NotFoundException("User is not found")).when(userService).existenceCheck(anyInt());
 
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getAllByOwner(1, 0, 10);
+        assertThatThrownBy(() -> bookingService.getSummary(BookingRole.BOOKER, 1))
+                .isInstanceOf(NotFoundException.class);
 
-        verify(bookingRepository, times(1)).getBookingByOwner(eq(1), any(OffsetLimitPageable.class));
-        assertThat(bookings.get(0)).isEqualTo(bookingDtoOut);
+        verify(bookingRepository, never()).countByState(any(), anyInt(), any());
     }
 
     @Test
-    void getBookingByOwnerAndStatus_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.getBookingByOwnerAndStatus(anyInt(), any(BookingStatus.class), any(OffsetLimitPageable.class)))
-                .thenReturn(Arrays.asList(booking));
+    void approve_shouldThrowForbiddenExceptionWhenUserIsNotOwner() {
+        final int OTHER_ID = 3;
+        assertThat(OTHER_ID)
+                .isNotEqualTo(booking.getItem().getOwner().getId());
 
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getBookingByOwnerAndStatus(1, WAITING, 0, 10);
+        when(bookingRepository.decideWaiting(anyInt(), anyInt(), any(BookingStatus.class)))
+                .thenReturn(0);
+        when(bookingRepository.findOwnerIdById(anyInt()))
+                .thenReturn(Optional.of(booking.getItem().getOwner().getId()));
 
-        verify(bookingRepository, times(1)).getBookingByOwnerAndStatus(eq(1), eq(WAITING), any(OffsetLimitPageable.class));
-        assertThat(bookings.get(0)).isEqualTo(bookingDtoOut);
+        assertThatThrownBy(() -> {
+            bookingService.approve(1, OTHER_ID, true, false);
+        }).isInstanceOf(ForbiddenException.class);
     }
 
     @Test
-    void getPastBookingByOwner_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.getPastBookingByOwner(anyInt(), any(OffsetLimitPageable.class)))
-                .thenReturn(Arrays.asList(booking));
-
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getPastBookingByOwner(1, 0, 10);
+    void approve_shouldThrowForbiddenExceptionWhenStatusInNotWaiting() {
+        when(bookingRepository.decideWaiting(anyInt(), anyInt(), any(BookingStatus.class)))
+                .thenReturn(0);
+        when(bookingRepository.findOwnerIdById(anyInt()))
+                .thenReturn(Optional.of(booking.getItem().getOwner().getId()));
 
-        verify(bookingRepository, times(1)).getPastBookingByOwner(eq(1), any(OffsetLimitPageable.class));
-        assertThat(bookings.get(0)).isEqualTo(bookingDtoOut);
+        assertThatThrownBy(() -> {
+            bookingService.approve(1, booking.getItem().getOwner().getId(), true, false);
+        }).isInstanceOf(StatusChangeException.class);
     }
 
     @Test
-    void getCurrentBookingByOwner_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.getCurrentBookingByOwner(anyInt(), any(OffsetLimitPageable.class)))
-                .thenReturn(Arrays.asList(booking));
-
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getCurrentBookingByOwner(1, 0, 10);
+    void approve_shouldThrowNotFoundExceptionWhenBookingDoesNotExist() {
+        when(bookingRepository.decideWaiting(anyInt(), anyInt(), any(BookingStatus.class)))
+                .thenReturn(0);
+        when(bookingRepository.findOwnerIdById(anyInt()))
+                .thenReturn(Optional.empty());
 
-        verify(bookingRepository, times(1)).getCurrentBookingByOwner(eq(1), any(OffsetLimitPageable.class));
-        assertThat(bookings.get(0)).isEqualTo(bookingDtoOut);
+        assertThatThrownBy(() -> bookingService.approve(1, booking.getItem().getOwner().getId(), true, false))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("The booking with ID 1 is not found");
     }
 
     @Test
-    void getFutureBookingByOwner_shouldInvokeRepositoryAndReturnTheSame() {
-        when(bookingRepository.getFutureBookingByOwner(anyInt(), any(OffsetLimitPageable.class)))
-                .thenReturn(Arrays.asList(booking));
+    void approve_shouldThrowForbiddenExceptionWhenStatusIsWaiting() {
+        booking.setStatus(APPROVED);
 
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getFutureBookingByOwner(1, 0, 10);
+        when(bookingRepository.decideWaiting(anyInt(), anyInt(), any(BookingStatus.class)))
+                .thenReturn(1);
+        when(bookingRepository.findById(anyInt()))
+                .thenReturn(Optional.of(booking));
 
-        verify(bookingRepository, times(1)).getFutureBookingByOwner(eq(1), any(OffsetLimitPageable.class));
-        assertThat(bookings.get(0)).isEqualTo(bookingDtoOut);
+        bookingService.approve(1, booking.getItem().getOwner().getId(), true, false);
+
+        verify(bookingRepository).decideWaiting(1, booking.getItem().getOwner().getId(), APPROVED);
+        verify(bookingRepository, never()).findOwnerIdById(anyInt());
+        verify(bookingRepository, never()).lockOverlappingWaiting(anyInt(), anyInt(), any(), any());
     }
 
     @Test
-    void approve_shouldThrowForbiddenExceptionWhenUserIsNotOwner() {
+    void approve_shouldRejectOverlappingWaitingBookingsWhenAsked() {
+        booking.setStatus(APPROVED);
+
+        when(bookingRepository.decideWaiting(anyInt(), anyInt(), any(BookingStatus.class)))
+                .thenReturn(1);
         when(bookingRepository.findById(anyInt()))
                 .thenReturn(Optional.of(booking));
+        when(bookingRepository.lockOverlappingWaiting(booking.getId(), booking.getItem().getId(),
+                booking.getStartDate(), booking.getEndDate()))
+                .thenReturn(List.of(7, 8));
 
-        final int OTHER_ID = 3;
-        assertThat(OTHER_ID)
-                .isNotEqualTo(booking.getItem().getOwner().getId());
+        BookingDtoOut approved = (BookingDtoOut) bookingService.approve(booking.getId(),
+                booking.getItem().getOwner().getId(), true, true);
 
-        assertThatThrownBy(() -> {
-            bookingService.approve(1, OTHER_ID, true);
-        }).isInstanceOf(ForbiddenException.class);
+        assertThat(approved.getRejectedBookingIds()).containsExactly(7, 8);
+        verify(bookingRepository).rejectWaiting(List.of(7, 8));
     }
 
     @Test
-    void approve_shouldThrowForbiddenExceptionWhenStatusInNotWaiting() {
+    void approve_shouldNotRejectOverlappingBookingsWhenBookingIsRejected() {
+        booking.setStatus(REJECTED);
+
+        when(bookingRepository.decideWaiting(anyInt(), anyInt(), any(BookingStatus.class)))
+                .thenReturn(1);
         when(bookingRepository.findById(anyInt()))
                 .thenReturn(Optional.of(booking));
 
-        booking.setStatus(CANCELED);
+        BookingDtoOut rejected = (BookingDtoOut) bookingService.approve(booking.getId(),
+                booking.getItem().getOwner().getId(), false, true);
 
-        assertThatThrownBy(() -> {
-            bookingService.approve(1, booking.getItem().getOwner().getId(), true);
-        }).isInstanceOf(StatusChangeException.class);
+        assertThat(rejected.getRejectedBookingIds()).isNull();
+        verify(bookingRepository, never()).lockOverlappingWaiting(anyInt(), anyInt(), any(), any());
+        verify(bookingRepository, never()).rejectWaiting(any());
     }
 
     @Test
-    void approve_shouldThrowForbiddenExceptionWhenStatusIsWaiting() {
-        booking.setStatus(WAITING);
+    void createRecurring_shouldCheckWholeSpanAndSaveRuleAsWaiting() {
+        BookingRule rule = weeklyRule();
+        when(bookingMapper.fromDto(any(RecurringBookingDtoIn.class), anyInt())).thenReturn(rule);
+        when(bookingRuleRepository.save(rule)).thenReturn(rule);
+        when(bookingRepository.findBlockingPeriods(anyCollection(), any(), any())).thenReturn(List.of(
+                new ItemPeriod(item.getId(), rule.getEndDate(), rule.getStartDate().plusWeeks(1)),
+                new ItemPeriod(item.getId(), rule.getEndDate().plusWeeks(2), rule.getStartDate().plusWeeks(3))));
+
+        bookingService.createRecurring(recurringDtoIn(), booker.getId());
+
+        verify(bookingRepository).findBlockingPeriods(Set.of(item.getId()), rule.getStartDate(),
+                rule.getEndDate().plusWeeks(3));
+        verify(bookingRules).findBlockingOccurrences(Set.of(item.getId()), rule.getStartDate(),
+                rule.getEndDate().plusWeeks(3));
+        verify(bookingRuleRepository).save(argThat(saved -> saved.getStatus() == WAITING));
+    }
 
-        when(bookingRepository.findById(anyInt()))
-                .thenReturn(Optional.of(booking));
+    @Test
+    void createRecurring_shouldThrowBookingOverlapExceptionWhenBookingMeetsAnyOccurrence() {
+        BookingRule rule = weeklyRule();
+        when(bookingMapper.fromDto(any(RecurringBookingDtoIn.class), anyInt())).thenReturn(rule);
+        when(bookingRules.findBlockingOccurrences(anyCollection(), any(), any())).thenReturn(List.of(
+                new ItemPeriod(item.getId(), rule.getStartDate().plusWeeks(3).minusHours(1),
+                        rule.getStartDate().plusWeeks(3).plusHours(1))));
+
+        assertThatThrownBy(() -> bookingService.createRecurring(recurringDtoIn(), booker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
 
-        bookingService.approve(1, booking.getItem().getOwner().getId(), true);
+        verify(bookingRuleRepository, never()).save(any());
     }
 
     @Test
-    void delete_shouldInvokeRepositoryDelete() {
-        when(bookingRepository.existsById(anyInt())).thenReturn(true);
+    void createRecurring_shouldThrowItemIsNotAvailableExceptionWhenItemIsNotAvailable() {
+        item.setAvailable(false);
+        when(bookingMapper.fromDto(any(RecurringBookingDtoIn.class), anyInt())).thenReturn(weeklyRule());
 
-        doNothing().when(bookingRepository)
-                .deleteById(anyInt());
+        assertThatThrownBy(() -> bookingService.createRecurring(recurringDtoIn(), booker.getId()))
+                .isInstanceOf(ItemIsNotAvailableException.class);
 
-        bookingService.delete(1);
-        verify(bookingRepository, times(1)).deleteById(1);
+        verify(bookingRuleRepository, never()).save(any());
     }
 
     @Test
-    void delete_shouldThrowNotFoundExceptionWhenInvokeRepositoryWithWrongId() {
-        when(bookingRepository.existsById(anyInt())).thenReturn(false);
+    void getAllRecurring_shouldReturnOccurrencesOfStateInWindowOnly() {
+        BookingRule rule = weeklyRule();
+        rule.setId(1);
+        rule.setStatus(APPROVED);
+        when(bookingRuleRepository.findByBookerOverlappingAfter(anyInt(), anyInt(), any(), any(),
+                eq(EnumSet.allOf(BookingStatus.class)), any())).thenReturn(List.of(rule));
+        when(bookingMapper.toDto(any(BookingRule.class))).thenAnswer(invocation -> new RecurringBookingDtoOut());
+        BookingQuery query = BookingQuery.builder()
+                .role(BookingRole.BOOKER)
+                .userId(booker.getId())
+                .state(BookingState.FUTURE)
+                .since(rule.getStartDate().minusWeeks(1))
+                .until(rule.getStartDate().plusWeeks(2))
+                .size(10)
+                .now(rule.getStartDate().plusDays(1))
+                .build();
 
-        assertThatThrownBy(() -> bookingService.delete(1))
-                .isInstanceOf(NotFoundException.class)
-                .hasMessage("Booking with ID 1 is not found");
+        List<RecurringBookingDtoOut> found = bookingService.getAllRecurring(query);
+
+        assertThat(found).hasSize(1);
+        assertThat(found.get(0).getOccurrences()).containsExactly(
+                new Occurrence(rule.getStartDate().plusWeeks(1), rule.getEndDate().plusWeeks(1)));
+        assertThat(bookingService.getAllRecurring(query.toBuilder().state(BookingState.WAITING).build()))
+                .isEmpty();
     }
 
     @Test
-    void getLastBooking_shouldReturnLastBooking() {
-        LocalDateTime now = LocalDateTime.now();
-
-        Booking beforeOneLastBooking = Booking.builder()
-                .startDate(now.minusMinutes(3))
-                .endDate(now.minusMinutes(2))
-                .item(item)
-                .booker(booking.getBooker())
-                .status(APPROVED)
+    void getAllRecurring_shouldCountOffsetOverRulesWithOccurrencesAndReadNextBatchAfterLastId() {
+        BookingRule first = weeklyRule();
+        first.setId(1);
+        BookingRule outside = weeklyRule();
+        outside.setId(2);
+        outside.setStartDate(now.plusYears(1));
+        outside.setEndDate(now.plusYears(1).plusDays(1));
+        BookingRule second = weeklyRule();
+        second.setId(3);
+        BookingRule third = weeklyRule();
+        third.setId(4);
+        List<BookingRule> batch = new ArrayList<>(List.of(first, outside, second));
+        batch.addAll(Collections.nCopies(97, outside));
+        when(bookingRuleRepository.findByOwnerOverlappingAfter(anyInt(), eq(0), any(), any(), any(), any()))
+                .thenReturn(batch);
+        when(bookingRuleRepository.findByOwnerOverlappingAfter(anyInt(), eq(2), any(), any(), any(), any()))
+                .thenReturn(List.of(third));
+        when(bookingMapper.toDto(any(BookingRule.class))).thenAnswer(invocation -> RecurringBookingDtoOut.builder()
+                .id(invocation.<BookingRule>getArgument(0).getId())
+                .build());
+        BookingQuery query = BookingQuery.builder()
+                .role(BookingRole.OWNER)
+                .userId(owner.getId())
+                .state(BookingState.ALL)
+                .since(now)
+                .until(now.plusWeeks(4))
+                .from(1)
+                .size(2)
+                .now(now)
                 .build();
 
-        Booking lastBooking = Booking.builder()
-                .startDate(now.minusMinutes(2))
-                .endDate(now.minusMinutes(1))
-                .item(item)
-                .booker(booking.getBooker())
-                .status(APPROVED)
-                .build();
+        assertThat(bookingService.getAllRecurring(query))
+                .extracting(RecurringBookingDtoOut::getId)
+                .containsExactly(3, 4);
+        verify(bookingRuleRepository).findByOwnerOverlappingAfter(eq(owner.getId()), eq(0), eq(now),
+                eq(now.plusWeeks(4)), eq(EnumSet.allOf(BookingStatus.class)),
+                argThat(pageable -> pageable.getOffset() == 0 && pageable.getPageSize() == 100));
+    }
 
-        Booking currentBooking = Booking.builder()
-                .startDate(now.minusMinutes(1))
-                .endDate(now.plusMinutes(1))
-                .item(item)
-                .booker(booking.getBooker())
-                .status(APPROVED)
-                .build();
-        item.setBookings(Arrays.asList(currentBooking, lastBooking, beforeOneLastBooking));
+    @Test
+    void approveRecurring_shouldThrowForbiddenExceptionWhenUserIsNotOwner() {
+        when(bookingRuleRepository.decideWaiting(anyInt(), anyInt(), any(BookingStatus.class))).thenReturn(0);
+        when(bookingRuleRepository.findOwnerIdById(1)).thenReturn(Optional.of(owner.getId()));
 
-        assertThat(getLastBooking(item, LocalDateTime.now())).isEqualTo(lastBooking);
+        assertThatThrownBy(() -> bookingService.approveRecurring(1, booker.getId(), true))
+                .isInstanceOf(ForbiddenException.class);
     }
 
     @Test
-    void getNextBooking_shouldReturnNextBooking() {
-        LocalDateTime now = LocalDateTime.now();
+    void approveRecurring_shouldReturnDecidedRule() {
+        BookingRule rule = weeklyRule();
+        rule.setStatus(APPROVED);
+        RecurringBookingDtoOut ruleDtoOut = RecurringBookingDtoOut.builder().status(APPROVED).build();
+        when(bookingRuleRepository.decideWaiting(1, owner.getId(), APPROVED)).thenReturn(1);
+        when(bookingRuleRepository.findById(1)).thenReturn(Optional.of(rule));
+        when(bookingMapper.toDto(rule)).thenReturn(ruleDtoOut);
+
+        assertThat(bookingService.approveRecurring(1, owner.getId(), true)).isEqualTo(ruleDtoOut);
+    }
 
-        Booking afterOneNextBooking = Booking.builder()
-                .startDate(now.plusMinutes(2))
-                .endDate(now.plusMinutes(3))
-                .item(item)
-                .booker(booking.getBooker())
-                .status(APPROVED)
+    private RecurringBookingDtoIn recurringDtoIn() {
+        return RecurringBookingDtoIn.builder()
+                .itemId(item.getId())
                 .build();
+    }
 
-        Booking nextBooking = Booking.builder()
-                .startDate(now.plusMinutes(1))
-                .endDate(now.plusMinutes(2))
+    private BookingRule weeklyRule() {
+        return BookingRule.builder()
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .frequency(BookingFrequency.WEEKLY)
+                .interval(1)
+                .count(4)
                 .item(item)
-                .booker(booking.getBooker())
-                .status(APPROVED)
+                .booker(booker)
                 .build();
+    }
 
-        Booking currentBooking = Booking.builder()
-                .startDate(now.minusMinutes(1))
-                .endDate(now.plusMinutes(1))
-                .item(item)
-                .booker(booking.getBooker())
-                .status(APPROVED)
-                .build();
-        item.setBookings(Arrays.asList(currentBooking, nextBooking, afterOneNextBooking));
+    @Test
+    void delete_shouldInvokeRepositoryDelete() {
+        when(bookingRepository.findById(anyInt())).thenReturn(Optional.of(booking));
+
+        doNothing().when(bookingRepository)
+                .deleteById(anyInt());
 
-        assertThat(getNextBooking(item, LocalDateTime.now())).isEqualTo(nextBooking);
+        bookingService.delete(1);
+        verify(bookingRepository, times(1)).deleteById(1);
     }
 
+    @Test
+    void delete_shouldThrowNotFoundExceptionWhenInvokeRepositoryWithWrongId() {
+        when(bookingRepository.findById(anyInt())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> bookingService.delete(1))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Booking with ID 1 is not found");
+    }
 }
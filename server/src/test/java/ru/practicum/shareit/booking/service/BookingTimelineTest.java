@@ -0,0 +1,236 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.BookingBaseTest;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingChanged;
+import ru.practicum.shareit.booking.model.BookingPeriod;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class BookingTimelineTest extends BookingBaseTest {
+
+    private static final long MAX_TTL_SECONDS = 30 * 86_400;
+
+    BookingRepository bookingRepository;
+
+    BookingTimeline bookingTimeline;
+
+    @BeforeEach
+    protected void setUp() {
+        super.setUp();
+        now = now.withNano(0);
+
+        bookingRepository = mock(BookingRepository.class);
+        bookingTimeline = new BookingTimeline(bookingRepository, 2, MAX_TTL_SECONDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void getLastBooking_shouldReturnBookingWithLatestEndBeforeNow() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of(
+                period(1, now.minusMinutes(2), now.plusMinutes(1)),
+                period(2, now.minusMinutes(3), now.minusMinutes(1)),
+                period(3, now.minusMinutes(5), now.minusMinutes(4))));
+
+        Booking last = bookingTimeline.getLastBooking(item, now);
+
+        assertThat(last.getId()).isEqualTo(2);
+        assertThat(last.getBooker().getId()).isEqualTo(booker.getId());
+        assertThat(last.getStartDate()).isEqualTo(now.minusMinutes(3));
+        assertThat(last.getEndDate()).isEqualTo(now.minusMinutes(1));
+        assertThat(last.getItem()).isEqualTo(item);
+    }
+
+    @Test
+    void getNextBooking_shouldReturnBookingWithEarliestStartAfterNow() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of(
+                period(1, now.plusMinutes(2), now.plusMinutes(3)),
+                period(2, now.minusMinutes(1), now.plusMinutes(1)),
+                period(3, now.plusMinutes(1), now.plusMinutes(2))));
+
+        assertThat(bookingTimeline.getNextBooking(item, now).getId()).isEqualTo(3);
+    }
+
+    @Test
+    void getLastAndNextBooking_shouldReturnNullWhenItemHasNoBookings() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of());
+
+        assertThat(bookingTimeline.getLastBooking(item, now)).isNull();
+        assertThat(bookingTimeline.getNextBooking(item, now)).isNull();
+    }
+
+    @Test
+    void getLastAndNextBooking_shouldLoadTimelineOnlyOnce() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of());
+
+        bookingTimeline.getLastBooking(item, now);
+        bookingTimeline.getNextBooking(item, now);
+        bookingTimeline.getNextBooking(item, now.plusHours(23));
+
+        verify(bookingRepository, times(1)).getPeriodsByItem(item.getId());
+    }
+
+    @Test
+    void getNextBooking_shouldReloadTimelineAfterMaxTtl() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of());
+
+        bookingTimeline.getNextBooking(item, now);
+        bookingTimeline.getNextBooking(item, now.plusSeconds(MAX_TTL_SECONDS));
+
+        verify(bookingRepository, times(2)).getPeriodsByItem(item.getId());
+    }
+
+    @Test
+    void getNextBooking_shouldReloadLeastRecentlyUsedTimelineBeyondTheBound() {
+        when(bookingRepository.getPeriodsByItem(anyInt())).thenReturn(List.of());
+        Item other = new Item();
+        other.setId(item.getId() + 1);
+        Item third = new Item();
+        third.setId(item.getId() + 2);
+
+        bookingTimeline.getNextBooking(item, now);
+        bookingTimeline.getNextBooking(other, now);
+        bookingTimeline.getNextBooking(third, now);
+        bookingTimeline.getNextBooking(item, now);
+
+        verify(bookingRepository, times(2)).getPeriodsByItem(item.getId());
+    }
+
+    @Test
+    void onBookingChanged_shouldKeepBothOrdersWhenBookingsAreAddedAndDeleted() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of(
+                period(1, now.minusMinutes(10), now.minusMinutes(5)),
+                period(2, now.plusMinutes(5), now.plusMinutes(10))));
+        assertThat(bookingTimeline.getNextBooking(item, now).getId()).isEqualTo(2);
+
+        bookingTimeline.onBookingChanged(BookingChanged.created(List.of(
+                booking(3, now.minusMinutes(20), now.minusMinutes(2)),
+                booking(4, now.plusMinutes(1), now.plusMinutes(30)))));
+
+        assertThat(bookingTimeline.getLastBooking(item, now).getId()).isEqualTo(3);
+        assertThat(bookingTimeline.getNextBooking(item, now).getId()).isEqualTo(4);
+        assertThat(bookingTimeline.getLastBooking(item, now.plusMinutes(20)).getId()).isEqualTo(2);
+
+        bookingTimeline.onBookingChanged(BookingChanged.deleted(booking(3, now.minusMinutes(20),
+                now.minusMinutes(2))));
+        bookingTimeline.onBookingChanged(BookingChanged.deleted(booking(4, now.plusMinutes(1),
+                now.plusMinutes(30))));
+
+        assertThat(bookingTimeline.getLastBooking(item, now).getId()).isEqualTo(1);
+        assertThat(bookingTimeline.getNextBooking(item, now).getId()).isEqualTo(2);
+        verify(bookingRepository, times(1)).getPeriodsByItem(item.getId());
+    }
+
+    @Test
+    void onBookingChanged_shouldAddCreatedBookingToLoadedTimeline() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of());
+        assertThat(bookingTimeline.getNextBooking(item, now)).isNull();
+
+        bookingTimeline.onBookingChanged(BookingChanged.created(List.of(booking)));
+
+        assertThat(bookingTimeline.getNextBooking(item, now).getId()).isEqualTo(booking.getId());
+    }
+
+    @Test
+    void onBookingChanged_shouldReplaceDecidedBookingWithTheSameId() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of(
+                period(booking.getId(), now.plusDays(5), now.plusDays(6))));
+        assertThat(bookingTimeline.getNextBooking(item, now).getStartDate()).isEqualTo(now.plusDays(5));
+
+        bookingTimeline.onBookingChanged(BookingChanged.decided(booking, List.of()));
+
+        assertThat(bookingTimeline.getNextBooking(item, now).getStartDate())
+                .isEqualTo(booking.getStartDate().withNano(booking.getStartDate().getNano() / 1_000 * 1_000));
+        assertThat(bookingTimeline.getLastBooking(item, now.plusDays(7)).getEndDate())
+                .isEqualTo(booking.getEndDate().withNano(booking.getEndDate().getNano() / 1_000 * 1_000));
+    }
+
+    @Test
+    void onBookingChanged_shouldNotLoadTimelineThatIsNotLoaded() {
+        bookingTimeline.onBookingChanged(BookingChanged.created(List.of(booking)));
+
+        verify(bookingRepository, never()).getPeriodsByItem(anyInt());
+    }
+
+    @Test
+    void onBookingChanged_shouldDeleteDeletedBookingFromTimeline() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of(
+                period(1, now.plusMinutes(1), now.plusMinutes(2)),
+                period(2, now.plusMinutes(3), now.plusMinutes(4))));
+        assertThat(bookingTimeline.getNextBooking(item, now).getId()).isEqualTo(1);
+
+        bookingTimeline.onBookingChanged(BookingChanged.deleted(Booking.builder()
+                .id(1)
+                .booker(booker)
+                .item(item)
+                .startDate(now.plusMinutes(1))
+                .endDate(now.plusMinutes(2))
+                .build()));
+
+        assertThat(bookingTimeline.getNextBooking(item, now).getId()).isEqualTo(2);
+    }
+
+    @Test
+    void evict_shouldReloadTimelineOnNextRead() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of());
+        bookingTimeline.getNextBooking(item, now);
+
+        bookingTimeline.evict(item.getId());
+        bookingTimeline.getNextBooking(item, now);
+
+        verify(bookingRepository, times(2)).getPeriodsByItem(item.getId());
+    }
+
+    @Test
+    void evict_shouldWaitForTransactionCommit() {
+        when(bookingRepository.getPeriodsByItem(item.getId())).thenReturn(List.of());
+        bookingTimeline.getNextBooking(item, now);
+
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        bookingTimeline.evict(item.getId());
+        bookingTimeline.getNextBooking(item, now);
+
+        verify(bookingRepository, times(1)).getPeriodsByItem(item.getId());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        bookingTimeline.getNextBooking(item, now);
+
+        verify(bookingRepository, times(2)).getPeriodsByItem(item.getId());
+    }
+
+    private Booking booking(int id, LocalDateTime start, LocalDateTime end) {
+        return Booking.builder()
+                .id(id)
+                .booker(booker)
+                .item(item)
+                .startDate(start)
+                .endDate(end)
+                .build();
+    }
+
+    private BookingPeriod period(int id, LocalDateTime start, LocalDateTime end) {
+        return new BookingPeriod(id, booker.getId(), start, end);
+    }
+}
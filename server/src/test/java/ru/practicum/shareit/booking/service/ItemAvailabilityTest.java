@@ -0,0 +1,134 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.booking.dto.FreeInterval;
+import ru.practicum.shareit.booking.model.BookingChanged;
+import ru.practicum.shareit.booking.model.ItemPeriod;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ItemAvailabilityTest {
+
+    BookingRepository bookingRepository;
+    BookingRules bookingRules;
+    LocalDateTime from, to;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        from = LocalDateTime.of(2030, 1, 1, 0, 0);
+        to = from.plusDays(10);
+        bookingRules = mock(BookingRules.class);
+        when(bookingRepository.findBlockingPeriodsByItem(anyInt(), any(), any())).thenReturn(List.of());
+        when(bookingRules.findBlockingOccurrences(any(), any(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    void sweep_shouldMergeOverlappingAndTouchingPeriods() {
+        List<FreeInterval> free = ItemAvailability.sweep(List.of(
+                period(-2, 1),
+                period(2, 4),
+                period(3, 5),
+                period(5, 6),
+                period(8, 12)), from, to);
+
+        assertThat(free).containsExactly(
+                new FreeInterval(from.plusDays(1), from.plusDays(2)),
+                new FreeInterval(from.plusDays(6), from.plusDays(8)));
+    }
+
+    @Test
+    void sweep_shouldSkipPeriodInsideEarlierOne() {
+        List<FreeInterval> free = ItemAvailability.sweep(List.of(period(1, 6), period(2, 3)), from, to);
+
+        assertThat(free).containsExactly(
+                new FreeInterval(from, from.plusDays(1)),
+                new FreeInterval(from.plusDays(6), to));
+    }
+
+    @Test
+    void sweep_shouldReturnWholeWindowWithoutBookings() {
+        assertThat(ItemAvailability.sweep(List.of(), from, to)).containsExactly(new FreeInterval(from, to));
+    }
+
+    @Test
+    void getFree_shouldServeRepeatedWindowFromCacheUntilItemIsEvicted() {
+        ItemAvailability availability = new ItemAvailability(bookingRepository, bookingRules, true, 10);
+
+        availability.getFree(1, from, to);
+        availability.getFree(1, from, to);
+        availability.getFree(2, from, to);
+        verify(bookingRepository, times(1)).findBlockingPeriodsByItem(1, from, to);
+
+        availability.evict(1);
+        availability.getFree(1, from, to);
+        availability.getFree(2, from, to);
+        verify(bookingRepository, times(2)).findBlockingPeriodsByItem(1, from, to);
+        verify(bookingRepository, times(1)).findBlockingPeriodsByItem(2, from, to);
+    }
+
+    @Test
+    void getFree_shouldAlwaysLoadWhenDisabled() {
+        ItemAvailability availability = new ItemAvailability(bookingRepository, bookingRules, false, 10);
+
+        availability.getFree(1, from, to);
+        availability.getFree(1, from, to);
+
+        verify(bookingRepository, times(2)).findBlockingPeriodsByItem(1, from, to);
+    }
+
+    @Test
+    void getFree_shouldNotStoreWindowReadWhileItsItemWasEvicted() {
+        ItemAvailability availability = new ItemAvailability(bookingRepository, bookingRules, true, 10);
+        when(bookingRepository.findBlockingPeriodsByItem(1, from, to)).thenAnswer(invocation -> {
+            availability.evict(1);
+            return List.of();
+        });
+
+        availability.getFree(1, from, to);
+        availability.getFree(1, from, to);
+
+        verify(bookingRepository, times(2)).findBlockingPeriodsByItem(1, from, to);
+    }
+
+    @Test
+    void getFree_shouldLeaveOutOccurrencesOfRecurringBookings() {
+        when(bookingRepository.findBlockingPeriodsByItem(1, from, to)).thenReturn(List.of(period(1, 2), period(6, 7)));
+        when(bookingRules.findBlockingOccurrences(List.of(1), from, to)).thenReturn(List.of(period(3, 4)));
+        ItemAvailability availability = new ItemAvailability(bookingRepository, bookingRules, false, 10);
+
+        assertThat(availability.getFree(1, from, to)).containsExactly(
+                new FreeInterval(from, from.plusDays(1)),
+                new FreeInterval(from.plusDays(2), from.plusDays(3)),
+                new FreeInterval(from.plusDays(4), from.plusDays(6)),
+                new FreeInterval(from.plusDays(7), to));
+    }
+
+    @Test
+    void onBookingChanged_shouldEvictItemsOfTheEvent() {
+        ItemAvailability availability = new ItemAvailability(bookingRepository, bookingRules, true, 10);
+        availability.getFree(1, from, to);
+        availability.getFree(2, from, to);
+
+        availability.onBookingChanged(new BookingChanged(BookingChanged.Type.RECURRING, List.of(), Set.of(),
+                Set.of(1)));
+        availability.getFree(1, from, to);
+        availability.getFree(2, from, to);
+
+        verify(bookingRepository, times(2)).findBlockingPeriodsByItem(1, from, to);
+        verify(bookingRepository, times(1)).findBlockingPeriodsByItem(2, from, to);
+    }
+
+    private ItemPeriod period(int startDay, int endDay) {
+        return new ItemPeriod(1, from.plusDays(startDay), from.plusDays(endDay));
+    }
+}
@@ -0,0 +1,60 @@
+package ru.practicum.shareit.booking.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    LocalDateTime origin;
+    TimingWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        origin = LocalDateTime.now().withNano(0);
+        wheel = new TimingWheel<>(8, 1000, origin);
+    }
+
+    @Test
+    void advance_shouldReturnTaskNotBeforeItsDeadline() {
+        wheel.schedule(origin.plusNanos(2_500_000_000L), "task");
+
+        assertThat(wheel.advance(origin.plusSeconds(2))).isEmpty();
+        assertThat(wheel.advance(origin.plusNanos(2_999_000_000L))).isEmpty();
+        assertThat(wheel.advance(origin.plusSeconds(3))).containsExactly("task");
+        assertThat(wheel.advance(origin.plusSeconds(4))).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advance_shouldKeepTasksOfLaterTurnsInSharedBucket() {
+        wheel.schedule(origin.plusSeconds(3), "near");
+        wheel.schedule(origin.plusSeconds(11), "far");
+
+        assertThat(wheel.advance(origin.plusSeconds(3))).containsExactly("near");
+        assertThat(wheel.advance(origin.plusSeconds(10))).isEmpty();
+        assertThat(wheel.advance(origin.plusSeconds(11))).containsExactly("far");
+    }
+
+    @Test
+    void advance_shouldReturnEveryOverdueTaskAfterPauseLongerThanOneTurn() {
+        wheel.schedule(origin.plusSeconds(1), "first");
+        wheel.schedule(origin.plusSeconds(20), "second");
+        wheel.schedule(origin.plusSeconds(40), "later");
+
+        assertThat(wheel.advance(origin.plusSeconds(30))).containsExactlyInAnyOrder("first", "second");
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void schedule_shouldFireOverdueTaskOnNextAdvance() {
+        wheel.advance(origin.plusSeconds(5));
+
+        wheel.schedule(origin.minusDays(1), "overdue");
+
+        assertThat(wheel.advance(origin.plusSeconds(6))).containsExactly("overdue");
+    }
+}
@@ -0,0 +1,165 @@
+package ru.practicum.shareit.integration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.service.BookingIngestion;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.item.dto.ItemDtoIn;
+import ru.practicum.shareit.item.dto.ItemDtoOut;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.dto.UserDtoIn;
+import ru.practicum.shareit.user.dto.UserDtoOut;
+import ru.practicum.shareit.user.service.UserService;
+import ru.practicum.shareit.util.exception.BookingOverlapException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@IntegrationTest
+@TestPropertySource(properties = {
+        "shareit.booking.ingestion.enabled=true",
+        "shareit.booking.ingestion.shards=2",
+        "shareit.booking.ingestion.batch-size=8",
+        "shareit.booking.ingestion.max-linger-ms=20"
+})
+public class BookingIngestionIT {
+
+    @Autowired
+    BookingIngestion bookingIngestion;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    ItemService itemService;
+
+    UserDtoOut savedBooker;
+    ItemDtoOut savedItem;
+    LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now();
+
+        UserDtoOut savedOwner = userService.create(UserDtoIn.builder()
+                .name("owner")
+                .email("owner@gmail.com")
+                .build());
+
+        savedBooker = userService.create(UserDtoIn.builder()
+                .name("booker")
+                .email("booker@gmail.com")
+                .build());
+
+        savedItem = (ItemDtoOut) itemService.create(ItemDtoIn.builder()
+                .name("name")
+                .description("description")
+                .available(true)
+                .build(), savedOwner.getId());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void should_commitBatchWithoutRetryWhenOneRequestOverlaps() throws Exception {
+        BookingDtoIn first = booking(now.plusDays(1), now.plusDays(2));
+        BookingDtoIn overlapping = booking(now.plusDays(1).plusHours(12), now.plusDays(3));
+        BookingDtoIn disjoint = booking(now.plusDays(4), now.plusDays(5));
+        bookingService.create(first, savedBooker.getId());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<BookingDtoOutAbs> refused = executor.submit(() -> bookingIngestion.create(overlapping,
+                savedBooker.getId()));
+        Future<BookingDtoOutAbs> saved = executor.submit(() -> bookingIngestion.create(disjoint,
+                savedBooker.getId()));
+
+        assertThatThrownBy(() -> refused.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(BookingOverlapException.class);
+        assertThat(saved.get(10, TimeUnit.SECONDS)).isNotNull();
+        executor.shutdown();
+
+        assertThat(bookingService.getAll(BookingQuery.builder()
+                .role(BookingRole.BOOKER)
+                .userId(savedBooker.getId())
+                .size(20)
+                .build())).hasSize(2);
+        assertThat(meterRegistry.get("booking.ingestion.bookings").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("booking.ingestion.retried.batches").counter().count()).isZero();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void should_createEveryDisjointBookingAndOnlyOneOfOverlapping() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            // Even threads book disjoint days, odd threads all book the same overlapping period.
+            LocalDateTime startDate = i % 2 == 0 ? now.plusDays(10 + i) : now.plusHours(24 + i);
+            LocalDateTime endDate = i % 2 == 0 ? startDate.plusHours(12) : now.plusHours(48 + i);
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    bookingIngestion.create(booking(startDate, endDate), savedBooker.getId());
+                    return true;
+                } catch (BookingOverlapException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        int saved = 0;
+        for (Future<Boolean> result : results) {
+            saved += result.get(10, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        List<? extends BookingDtoOutAbs> bookings = bookingService.getAll(BookingQuery.builder()
+                .role(BookingRole.BOOKER)
+                .userId(savedBooker.getId())
+                .size(20)
+                .build());
+
+        assertThat(saved).isEqualTo(threads / 2 + 1);
+        assertThat(bookings).hasSize(saved);
+        assertThat(meterRegistry.get("booking.ingestion.bookings").counter().count()).isEqualTo(threads);
+        assertThat(meterRegistry.get("booking.ingestion.retried.batches").counter().count()).isZero();
+        assertThat(meterRegistry.get("booking.ingestion.queue.depth").gauges())
+                .extracting(Gauge::value)
+                .containsExactly(0.0, 0.0);
+    }
+
+    private BookingDtoIn booking(LocalDateTime startDate, LocalDateTime endDate) {
+        return BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(startDate)
+                .endDate(endDate)
+                .build();
+    }
+}
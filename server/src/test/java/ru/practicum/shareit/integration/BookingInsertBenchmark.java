@@ -0,0 +1,106 @@
+package ru.practicum.shareit.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.item.dto.ItemDtoIn;
+import ru.practicum.shareit.item.dto.ItemDtoOut;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.dto.UserDtoIn;
+import ru.practicum.shareit.user.dto.UserDtoOut;
+import ru.practicum.shareit.user.service.UserService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares rows per second of one POST /bookings per booking with POST /bookings/batch.
+ * Not part of the regular build: run with {@code mvn test -pl server -Dtest=BookingInsertBenchmark}.
+ */
+@IntegrationTest
+@Slf4j
+public class BookingInsertBenchmark {
+
+    private static final int ROWS = 2_000;
+
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    ItemService itemService;
+
+    UserDtoOut savedBooker;
+    ItemDtoOut savedItem;
+    LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now().withNano(0);
+
+        UserDtoOut savedOwner = userService.create(UserDtoIn.builder()
+                .name("owner")
+                .email("owner@gmail.com")
+                .build());
+
+        savedBooker = userService.create(UserDtoIn.builder()
+                .name("booker")
+                .email("booker@gmail.com")
+                .build());
+
+        savedItem = (ItemDtoOut) itemService.create(ItemDtoIn.builder()
+                .name("name")
+                .description("description")
+                .available(true)
+                .build(), savedOwner.getId());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void compareSingleAndBatchInserts() {
+        List<BookingDtoIn> bookings = new ArrayList<>(ROWS * 2);
+        for (int i = 0; i < ROWS * 2; i++) {
+            bookings.add(BookingDtoIn.builder()
+                    .itemId(savedItem.getId())
+                    .startDate(now.plusHours(2L * i + 1))
+                    .endDate(now.plusHours(2L * i + 2))
+                    .build());
+        }
+
+        long start = System.nanoTime();
+        for (BookingDtoIn booking : bookings.subList(0, ROWS)) {
+            bookingService.create(booking, savedBooker.getId());
+        }
+        double single = rowsPerSecond(start);
+
+        start = System.nanoTime();
+        for (int from = ROWS; from < ROWS * 2; from += BATCH_SIZE) {
+            bookingService.createAll(bookings.subList(from, from + BATCH_SIZE), savedBooker.getId());
+        }
+        double batch = rowsPerSecond(start);
+
+        log.info("Single inserts: {} rows/sec, batches of {}: {} rows/sec", Math.round(single), BATCH_SIZE,
+                Math.round(batch));
+        assertThat(bookingRepository.count()).isEqualTo(ROWS * 2);
+    }
+
+    private static double rowsPerSecond(long start) {
+        return ROWS * 1e9 / (System.nanoTime() - start);
+    }
+}
@@ -3,29 +3,58 @@ package ru.practicum.shareit.integration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoOut;
 import ru.practicum.shareit.booking.dto.BookingDtoOutAbs;
+import ru.practicum.shareit.booking.dto.BookingSummary;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoIn;
+import ru.practicum.shareit.booking.dto.RecurringBookingDtoOut;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingFrequency;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
 import ru.practicum.shareit.booking.service.BookingService;
 import ru.practicum.shareit.item.dto.ItemDtoIn;
 import ru.practicum.shareit.item.dto.ItemDtoOut;
+import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.user.dto.UserDtoIn;
 import ru.practicum.shareit.user.dto.UserDtoOut;
+import ru.practicum.shareit.user.repository.UserRepository;
 import ru.practicum.shareit.user.service.UserService;
+import ru.practicum.shareit.util.exception.BookingOverlapException;
+import ru.practicum.shareit.util.exception.ForbiddenException;
 import ru.practicum.shareit.util.exception.ItemIsNotAvailableException;
 import ru.practicum.shareit.util.exception.NotFoundException;
+import ru.practicum.shareit.util.exception.StatusChangeException;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.practicum.shareit.booking.model.BookingRole.BOOKER;
+import static ru.practicum.shareit.booking.model.BookingRole.OWNER;
+import static ru.practicum.shareit.booking.model.BookingState.*;
 
 @IntegrationTest
+@TestPropertySource(properties = "shareit.booking.summary.counters-enabled=true")
 public class BookingServiceIT {
 
     @Autowired
@@ -37,6 +66,15 @@ public class BookingServiceIT {
     @Autowired
     ItemService itemService;
 
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
 
     UserDtoOut savedBooker, savedOwner;
     ItemDtoOut savedItem;
@@ -44,7 +82,8 @@ public class BookingServiceIT {
 
     @BeforeEach
     void setUp() {
-        now = LocalDateTime.now();
+        // The API exchanges dates with second precision; sub-microsecond parts would be rounded by the database
+        now = LocalDateTime.now().withNano(0);
 
         UserDtoIn owner = UserDtoIn.builder()
                 .name("owner")
@@ -79,6 +118,132 @@ public class BookingServiceIT {
         bookingService.create(bookingDtoIn, savedBooker.getId());
     }
 
+    @Test
+    void should_throwException_when_bookingOverlapsWaitingBooking() {
+        bookingService.create(BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(3))
+                .build(), savedBooker.getId());
+
+        assertThatThrownBy(() -> bookingService.create(BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(now.plusDays(2))
+                .endDate(now.plusDays(4))
+                .build(), savedBooker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+    }
+
+    @Test
+    void should_saveBooking_when_overlappingBookingIsRejectedOrAdjacent() {
+        BookingDtoOut rejected = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(3))
+                .build(), savedBooker.getId());
+        bookingService.approve(rejected.getId(), savedOwner.getId(), false, false);
+
+        bookingService.create(BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(now.plusDays(2))
+                .endDate(now.plusDays(4))
+                .build(), savedBooker.getId());
+
+        bookingService.create(BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(now.plusDays(4))
+                .endDate(now.plusDays(5))
+                .build(), savedBooker.getId());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void should_saveOnlyOneBooking_when_overlappingBookingsAreCreatedConcurrently() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int shift = i;
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    bookingService.create(BookingDtoIn.builder()
+                            .itemId(savedItem.getId())
+                            .startDate(now.plusHours(24 + shift))
+                            .endDate(now.plusHours(48 + shift))
+                            .build(), savedBooker.getId());
+                    return true;
+                } catch (BookingOverlapException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        int saved = 0;
+        for (Future<Boolean> result : results) {
+            saved += result.get(10, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertThat(saved).isEqualTo(1);
+        assertThat(getAll(BOOKER, savedBooker.getId(), ALL, 0, 10)).hasSize(1);
+    }
+
+    @Test
+    void should_approveBookingOnlyOnce() {
+        BookingDtoOut booking = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(2))
+                .build(), savedBooker.getId());
+
+        assertThatThrownBy(() -> bookingService.approve(booking.getId(), savedBooker.getId(), true, false))
+                .isInstanceOf(ForbiddenException.class);
+        assertThatThrownBy(() -> bookingService.approve(booking.getId() + 1, savedOwner.getId(), true, false))
+                .isInstanceOf(NotFoundException.class);
+
+        BookingDtoOut approved = (BookingDtoOut) bookingService.approve(booking.getId(), savedOwner.getId(), true, false);
+        assertThat(approved.getStatus()).isEqualTo(BookingStatus.APPROVED);
+
+        assertThatThrownBy(() -> bookingService.approve(booking.getId(), savedOwner.getId(), false, false))
+                .isInstanceOf(StatusChangeException.class);
+        assertThat(((BookingDtoOut) bookingService.getById(booking.getId(), savedOwner.getId())).getStatus())
+                .isEqualTo(BookingStatus.APPROVED);
+    }
+
+    @Test
+    void should_rejectOverlappingWaitingBookings_when_bookingIsApproved() {
+        BookingDtoOut booking = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(now.plusDays(2))
+                .endDate(now.plusDays(4))
+                .build(), savedBooker.getId());
+        BookingDtoOut adjacent = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(now.plusDays(4))
+                .endDate(now.plusDays(5))
+                .build(), savedBooker.getId());
+        // Overlapping pending rows can only predate the create-time overlap check, so they are inserted directly.
+        Booking overlapping = bookingRepository.save(Booking.builder()
+                .item(itemRepository.getReferenceById(savedItem.getId()))
+                .booker(userRepository.getReferenceById(savedBooker.getId()))
+                .status(BookingStatus.WAITING)
+                .startDate(now.plusDays(1))
+                .endDate(now.plusDays(3))
+                .build());
+
+        BookingDtoOut approved = (BookingDtoOut) bookingService.approve(booking.getId(), savedOwner.getId(), true, true);
+
+        assertThat(approved.getStatus()).isEqualTo(BookingStatus.APPROVED);
+        assertThat(approved.getRejectedBookingIds()).containsExactly(overlapping.getId());
+        assertThat(((BookingDtoOut) bookingService.getById(overlapping.getId(), savedOwner.getId())).getStatus())
+                .isEqualTo(BookingStatus.REJECTED);
+        assertThat(((BookingDtoOut) bookingService.getById(adjacent.getId(), savedOwner.getId())).getStatus())
+                .isEqualTo(BookingStatus.WAITING);
+    }
+
     @Test
     void should_throwException_when_savingItemIsNotAvailable() {
         ItemDtoIn itemDtoIn = ItemDtoIn.builder()
@@ -148,7 +313,7 @@ public class BookingServiceIT {
             bookingService.create(bookingDtoIn, savedBooker.getId());
         }
 
-        List<? extends BookingDtoOutAbs> allByBooker = bookingService.getAllByBooker(savedBooker.getId(), 3, 2);
+        List<? extends BookingDtoOutAbs> allByBooker = getAll(BOOKER, savedBooker.getId(), ALL, 3, 2);
 
         assertThat(allByBooker.stream().map((Function<BookingDtoOutAbs, LocalDateTime>) bookingDtoOutAbs ->
                 ((BookingDtoOut) bookingDtoOutAbs).getStartDate())).hasSameElementsAs(Arrays.asList(
@@ -157,6 +322,36 @@ public class BookingServiceIT {
         ));
     }
 
+    @Test
+    void should_getAllByBookerWithCursor() {
+        for (int i = 1; i < 10; i++) {
+            BookingDtoIn bookingDtoIn = BookingDtoIn.builder()
+                    .itemId(savedItem.getId())
+                    .startDate(now.plusDays(i))
+                    .endDate(now.plusDays(i + 1))
+                    .build();
+
+            bookingService.create(bookingDtoIn, savedBooker.getId());
+        }
+
+        List<? extends BookingDtoOutAbs> firstPage = getAll(BOOKER, savedBooker.getId(), ALL, 0, 3);
+        BookingCursor cursor = BookingCursor.of((BookingDtoOut) firstPage.get(firstPage.size() - 1), BookingSort.START);
+
+        List<? extends BookingDtoOutAbs> secondPage = bookingService.getAll(BookingQuery.builder()
+                .role(BOOKER)
+                .userId(savedBooker.getId())
+                .cursor(cursor)
+                .size(3)
+                .build());
+
+        assertThat(secondPage.stream().map((Function<BookingDtoOutAbs, LocalDateTime>) bookingDtoOutAbs ->
+                ((BookingDtoOut) bookingDtoOutAbs).getStartDate())).containsExactly(
+                now.plusDays(6),
+                now.plusDays(5),
+                now.plusDays(4)
+        );
+    }
+
     @Test
     void should_getBookingByBookerAndStatus() {
         for (int i = 1; i < 10; i++) {
@@ -169,10 +364,10 @@ public class BookingServiceIT {
             BookingDtoOut booking = (BookingDtoOut) bookingService.create(bookingDtoIn, savedBooker.getId());
 
             if (i % 2 == 0)
-                bookingService.approve(booking.getId(), savedOwner.getId(), true);
+                bookingService.approve(booking.getId(), savedOwner.getId(), false, false);
         }
 
-        List<? extends BookingDtoOutAbs> booking = bookingService.getBookingByBookerAndStatus(savedBooker.getId(), BookingStatus.APPROVED, 2, 2);
+        List<? extends BookingDtoOutAbs> booking = getAll(BOOKER, savedBooker.getId(), REJECTED, 2, 2);
 
         assertThat(booking.stream().map((Function<BookingDtoOutAbs, LocalDateTime>) bookingDtoOutAbs ->
                 ((BookingDtoOut) bookingDtoOutAbs).getStartDate())).hasSameElementsAs(Arrays.asList(
@@ -203,11 +398,11 @@ public class BookingServiceIT {
                 .build(), savedBooker.getId());
 
 
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getPastBookingByBooker(savedBooker.getId(), 0, 10);
+        List<? extends BookingDtoOutAbs> bookings = getAll(BOOKER, savedBooker.getId(), PAST, 0, 10);
         assertThat(bookings.get(0)).isEqualTo(past);
-        bookings = bookingService.getCurrentBookingByBooker(savedBooker.getId(), 0, 10);
+        bookings = getAll(BOOKER, savedBooker.getId(), CURRENT, 0, 10);
         assertThat(bookings.get(0)).isEqualTo(current);
-        bookings = bookingService.getFutureBookingByBooker(savedBooker.getId(), 0, 10);
+        bookings = getAll(BOOKER, savedBooker.getId(), FUTURE, 0, 10);
         assertThat(bookings.get(0)).isEqualTo(future);
     }
 
@@ -224,7 +419,7 @@ public class BookingServiceIT {
         }
 
 
-        List<? extends BookingDtoOutAbs> allByBooker = bookingService.getAllByOwner(savedOwner.getId(), 3, 2);
+        List<? extends BookingDtoOutAbs> allByBooker = getAll(OWNER, savedOwner.getId(), ALL, 3, 2);
 
         assertThat(allByBooker.stream().map((Function<BookingDtoOutAbs, LocalDateTime>) bookingDtoOutAbs ->
                 ((BookingDtoOut) bookingDtoOutAbs).getStartDate())).hasSameElementsAs(Arrays.asList(
@@ -246,10 +441,10 @@ public class BookingServiceIT {
             BookingDtoOut booking = (BookingDtoOut) bookingService.create(bookingDtoIn, savedBooker.getId());
 
             if (i % 2 == 0)
-                bookingService.approve(booking.getId(), savedOwner.getId(), true);
+                bookingService.approve(booking.getId(), savedOwner.getId(), false, false);
         }
 
-        List<? extends BookingDtoOutAbs> booking = bookingService.getBookingByOwnerAndStatus(savedOwner.getId(), BookingStatus.APPROVED, 2, 2);
+        List<? extends BookingDtoOutAbs> booking = getAll(OWNER, savedOwner.getId(), REJECTED, 2, 2);
 
         assertThat(booking.stream().map((Function<BookingDtoOutAbs, LocalDateTime>) bookingDtoOutAbs ->
                 ((BookingDtoOut) bookingDtoOutAbs).getStartDate())).hasSameElementsAs(Arrays.asList(
@@ -279,11 +474,11 @@ public class BookingServiceIT {
                 .build(), savedBooker.getId());
 
 
-        List<? extends BookingDtoOutAbs> bookings = bookingService.getPastBookingByOwner(savedOwner.getId(), 0, 10);
+        List<? extends BookingDtoOutAbs> bookings = getAll(OWNER, savedOwner.getId(), PAST, 0, 10);
         assertThat(bookings.get(0)).isEqualTo(past);
-        bookings = bookingService.getCurrentBookingByOwner(savedOwner.getId(), 0, 10);
+        bookings = getAll(OWNER, savedOwner.getId(), CURRENT, 0, 10);
         assertThat(bookings.get(0)).isEqualTo(current);
-        bookings = bookingService.getFutureBookingByOwner(savedOwner.getId(), 0, 10);
+        bookings = getAll(OWNER, savedOwner.getId(), FUTURE, 0, 10);
         assertThat(bookings.get(0)).isEqualTo(future);
     }
 
@@ -297,13 +492,143 @@ public class BookingServiceIT {
 
         BookingDtoOut booking2 = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
                 .itemId(savedItem.getId())
-                .startDate(now.plusDays(1))
-                .endDate(now.plusDays(2))
+                .startDate(now.plusDays(2))
+                .endDate(now.plusDays(3))
                 .build(), savedBooker.getId());
 
 
         bookingService.delete(booking1.getId());
-        assertThat(bookingService.getAllByOwner(savedOwner.getId(), 0, 10).get(0)).isEqualTo(booking2);
+        assertThat(getAll(OWNER, savedOwner.getId(), ALL, 0, 10).get(0)).isEqualTo(booking2);
     }
 
+
+    private List<? extends BookingDtoOutAbs> getAll(BookingRole role, int userId, BookingState state, int from, int size) {
+        return bookingService.getAll(BookingQuery.builder()
+                .role(role)
+                .userId(userId)
+                .state(state)
+                .from(from)
+                .size(size)
+                .build());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void should_createWholeBatch() {
+        List<? extends BookingDtoOutAbs> saved = bookingService.createAll(List.of(
+                batchBooking(now.plusDays(1), now.plusDays(2)),
+                batchBooking(now.plusDays(3), now.plusDays(4)),
+                batchBooking(now.plusDays(2), now.plusDays(3))), savedBooker.getId());
+
+        assertThat(saved).hasSize(3);
+        assertThat(bookingRepository.findAll())
+                .hasSize(3)
+                .allMatch(booking -> booking.getStatus() == BookingStatus.WAITING)
+                .allMatch(booking -> booking.getOwner().getId().equals(savedOwner.getId()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void should_createNothing_when_anyBookingOfBatchOverlaps() {
+        bookingService.create(batchBooking(now.plusDays(5), now.plusDays(6)), savedBooker.getId());
+
+        assertThatThrownBy(() -> bookingService.createAll(List.of(
+                batchBooking(now.plusDays(1), now.plusDays(2)),
+                batchBooking(now.plusDays(4), now.plusDays(7))), savedBooker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+        assertThatThrownBy(() -> bookingService.createAll(List.of(
+                batchBooking(now.plusDays(1), now.plusDays(3)),
+                batchBooking(now.plusDays(2), now.plusDays(4))), savedBooker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+
+        assertThat(bookingRepository.findAll()).hasSize(1);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void should_keepCountersInStepWithBookings() {
+        BookingDtoOut approved = (BookingDtoOut) bookingService.create(batchBooking(now.plusDays(1), now.plusDays(2)),
+                savedBooker.getId());
+        BookingDtoOut deleted = (BookingDtoOut) bookingService.create(batchBooking(now.plusDays(2), now.plusDays(3)),
+                savedBooker.getId());
+        bookingService.createAll(List.of(
+                batchBooking(now.plusDays(3), now.plusDays(4)),
+                batchBooking(now.plusDays(4), now.plusDays(5))), savedBooker.getId());
+        assertThatThrownBy(() -> bookingService.createAll(List.of(
+                batchBooking(now.plusDays(6), now.plusDays(7)),
+                batchBooking(now.plusDays(1), now.plusDays(7))), savedBooker.getId()))
+                .isInstanceOf(BookingOverlapException.class);
+        bookingService.approve(approved.getId(), savedOwner.getId(), true, false);
+        bookingService.delete(deleted.getId());
+
+        LocalDateTime summaryTime = LocalDateTime.now();
+        assertThat(bookingService.getSummary(BOOKER, savedBooker.getId()))
+                .isEqualTo(bookingRepository.countByState(BOOKER, savedBooker.getId(), summaryTime));
+        assertThat(bookingService.getSummary(OWNER, savedOwner.getId()))
+                .isEqualTo(bookingRepository.countByState(OWNER, savedOwner.getId(), summaryTime));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void should_subtractBookingsOfDeletedItemFromCounters() {
+        BookingDtoOut approved = (BookingDtoOut) bookingService.create(batchBooking(now.plusDays(1), now.plusDays(2)),
+                savedBooker.getId());
+        bookingService.create(batchBooking(now.plusDays(2), now.plusDays(3)), savedBooker.getId());
+        bookingService.approve(approved.getId(), savedOwner.getId(), true, false);
+
+        itemService.delete(savedItem.getId());
+
+        LocalDateTime summaryTime = LocalDateTime.now();
+        assertThat(bookingService.getSummary(BOOKER, savedBooker.getId()))
+                .isEqualTo(bookingRepository.countByState(BOOKER, savedBooker.getId(), summaryTime));
+        assertThat(bookingService.getSummary(OWNER, savedOwner.getId()).getAll()).isZero();
+    }
+
+    @Test
+    void should_mergeRecurringOccurrencesIntoListingAndSummary() {
+        bookingService.create(batchBooking(now.plusDays(1), now.plusDays(1).plusHours(1)), savedBooker.getId());
+        bookingService.create(batchBooking(now.plusDays(3), now.plusDays(3).plusHours(1)), savedBooker.getId());
+        RecurringBookingDtoOut rule = bookingService.createRecurring(RecurringBookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(now.plusDays(2))
+                .endDate(now.plusDays(2).plusHours(1))
+                .frequency(BookingFrequency.DAILY)
+                .interval(2)
+                .count(3)
+                .build(), savedBooker.getId());
+
+        List<LocalDateTime> starts = new ArrayList<>();
+        BookingCursor cursor = null;
+        List<? extends BookingDtoOutAbs> page;
+        do {
+            page = bookingService.getAll(BookingQuery.builder()
+                    .role(BOOKER)
+                    .userId(savedBooker.getId())
+                    .cursor(cursor)
+                    .size(2)
+                    .build());
+            for (BookingDtoOutAbs booking : page) {
+                starts.add(((BookingDtoOut) booking).getStartDate());
+                cursor = BookingCursor.of((BookingDtoOut) booking, BookingSort.START);
+            }
+        } while (!page.isEmpty());
+
+        assertThat(starts).containsExactly(now.plusDays(6), now.plusDays(4), now.plusDays(3), now.plusDays(2),
+                now.plusDays(1));
+        assertThat(getAll(OWNER, savedOwner.getId(), FUTURE, 1, 2))
+                .extracting(booking -> ((BookingDtoOut) booking).getRuleId())
+                .containsExactly(rule.getId(), null);
+        BookingSummary summary = bookingService.getSummary(BOOKER, savedBooker.getId());
+        assertThat(summary.getAll()).isEqualTo(5);
+        assertThat(summary.getFuture()).isEqualTo(5);
+        assertThat(summary.getWaiting()).isEqualTo(5);
+    }
+
+    private BookingDtoIn batchBooking(LocalDateTime startDate, LocalDateTime endDate) {
+        return BookingDtoIn.builder()
+                .itemId(savedItem.getId())
+                .startDate(startDate)
+                .endDate(endDate)
+                .build();
+    }
 }
@@ -0,0 +1,136 @@
+package ru.practicum.shareit.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.item.model.ItemText;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the window search, which drops booked items with NOT EXISTS on the bookings of each item,
+ * with a text search whose results are filtered in Java by one overlap query per item.
+ * The tables come from schema.sql alone, so the seed can rely on its identity columns.
+ * Not part of the regular build: run with {@code mvn test -pl server -Dtest=ItemSearchBenchmark}.
+ */
+@IntegrationTest
+@TestPropertySource(properties = "spring.jpa.hibernate.ddl-auto=none")
+@Slf4j
+public class ItemSearchBenchmark {
+
+    private static final int ITEMS = 100_000;
+
+    private static final int BOOKINGS_PER_ITEM = 10;
+
+    private static final int RUNS = 5;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    LocalDateTime base;
+
+    // Every hundredth item is a drill; the bookings of an item follow each other every three days, every other
+    // one approved, with the items shifted by one day so that a window meets a different booking per item.
+    @BeforeEach
+    void setUp() {
+        base = LocalDateTime.now().withNano(0).plusDays(1);
+
+        jdbcTemplate.execute("INSERT INTO users (name, email) " +
+                "SELECT 'user' || x, 'user' || x || '@mail.ru' FROM SYSTEM_RANGE(1, 1000)");
+        int firstUserId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Integer.class);
+
+        jdbcTemplate.update("INSERT INTO items (name, description, available, owner_id) " +
+                "SELECT CASE WHEN MOD(x, 100) = 0 THEN 'drill ' ELSE 'item ' END || x, 'description ' || x, " +
+                "TRUE, ? + MOD(x, 1000) FROM SYSTEM_RANGE(0, ?)", firstUserId, ITEMS - 1);
+        int firstItemId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM items", Integer.class);
+
+        // H2 cannot type a parameter inside DATEADD or MOD, so the constants are inlined; each slice of
+        // bookings commits on its own, one transaction over all of them being far slower
+        String day = "3 * (x / " + ITEMS + ") + MOD(x, 3)";
+        String item = "MOD(x, " + ITEMS + ")";
+        for (int slice = 0; slice < BOOKINGS_PER_ITEM; slice++) {
+            jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, booker_id, status, " +
+                            "owner_id, created) " +
+                            "SELECT DATEADD('DAY', " + day + ", CAST(? AS TIMESTAMP)), " +
+                            "DATEADD('DAY', " + day + " + 2, CAST(? AS TIMESTAMP)), " +
+                            firstItemId + " + " + item + ", " + firstUserId + " + MOD(x * 7, 1000), " +
+                            "CASE WHEN MOD(x / " + ITEMS + ", 2) = 0 THEN 'APPROVED' ELSE 'WAITING' END, " +
+                            firstUserId + " + MOD(" + item + ", 1000), " +
+                            "LOCALTIMESTAMP FROM SYSTEM_RANGE(" + slice * ITEMS + ", " +
+                            ((slice + 1) * ITEMS - 1) + ")",
+                    Timestamp.valueOf(base), Timestamp.valueOf(base));
+            log.info("{} bookings seeded", (slice + 1) * ITEMS);
+        }
+
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void compareAntiJoinWithPostFiltering() {
+        LocalDateTime from = base.plusDays(6);
+        LocalDateTime to = from.plusDays(1);
+
+        List<Integer> antiJoin = List.of();
+        long start = System.nanoTime();
+        for (int run = 0; run < RUNS; run++) {
+            antiJoin = ids(() -> itemRepository.findAvailableTextsByNameOrDescriptionFreeBetween("drill", from, to));
+        }
+        double antiJoinMillis = millisPerRun(start);
+
+        List<Integer> postFiltered = List.of();
+        start = System.nanoTime();
+        for (int run = 0; run < RUNS; run++) {
+            postFiltered = ids(() -> itemRepository.findAvailableTextsByNameOrDescription("drill")).stream()
+                    .filter(itemId -> !isBooked(itemId, from, to))
+                    .collect(Collectors.toList());
+        }
+        double postFilterMillis = millisPerRun(start);
+
+        log.info("{} items, {} bookings: NOT EXISTS {} ms, post-filtering {} ms, {} of {} drills are free",
+                ITEMS, ITEMS * BOOKINGS_PER_ITEM, Math.round(antiJoinMillis), Math.round(postFilterMillis),
+                antiJoin.size(), ITEMS / 100);
+        assertThat(antiJoin).containsExactlyInAnyOrderElementsOf(postFiltered);
+        assertThat(antiJoin).isNotEmpty().hasSizeLessThan(ITEMS / 100);
+    }
+
+    private boolean isBooked(int itemId, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) > 0 FROM bookings WHERE item_id = ? " +
+                        "AND status = 'APPROVED' AND start_date < ? AND end_date > ?", Boolean.class,
+                itemId, Timestamp.valueOf(to), Timestamp.valueOf(from));
+    }
+
+    // The rows are streamed, which needs a transaction to keep the result set open
+    private List<Integer> ids(Supplier<Stream<ItemText>> query) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            try (Stream<ItemText> rows = query.get()) {
+                return rows.map(ItemText::getId).collect(Collectors.toList());
+            }
+        });
+    }
+
+    private static double millisPerRun(long start) {
+        return (System.nanoTime() - start) / 1e6 / RUNS;
+    }
+}
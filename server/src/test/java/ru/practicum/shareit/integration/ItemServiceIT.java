@@ -4,15 +4,25 @@ package ru.practicum.shareit.integration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoOut;
 import ru.practicum.shareit.booking.dto.ShortBookingDtoOut;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingArchiver;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.item.dto.CommentDtoIn;
+import ru.practicum.shareit.item.dto.CommentDtoOut;
 import ru.practicum.shareit.item.dto.FullItemDtoOut;
 import ru.practicum.shareit.item.dto.ItemDtoIn;
 import ru.practicum.shareit.item.dto.ItemDtoOut;
+import ru.practicum.shareit.item.dto.ItemDtoOutAbs;
+import ru.practicum.shareit.item.dto.ItemSearchPage;
+import ru.practicum.shareit.item.model.ItemSearchQuery;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.request.dto.ItemRequestDtoIn;
 import ru.practicum.shareit.request.dto.ItemRequestDtoOut;
@@ -25,11 +35,13 @@ import ru.practicum.shareit.util.exception.NotFoundException;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 
 @IntegrationTest
+@TestPropertySource(properties = "shareit.booking.archive.after-days=0")
 public class ItemServiceIT {
 
     @Autowired
@@ -44,6 +56,18 @@ public class ItemServiceIT {
     @Autowired
     ItemRequestService itemRequestService;
 
+    @Autowired
+    BookingArchiver bookingArchiver;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
     UserDtoIn owner, user;
     ItemDtoIn itemDtoIn;
 
@@ -141,6 +165,68 @@ public class ItemServiceIT {
         assertThat(byId.getNextBooking()).isEqualTo(expectedBooking3);
     }
 
+    @Test
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void shouldMoveNextBookingWhenBookingIsDeleted() {
+        UserDtoOut savedOwner = userService.create(owner);
+
+        UserDtoOut savedUser = userService.create(user);
+
+        ItemDtoOut savedItem = (ItemDtoOut) itemService.create(itemDtoIn, savedOwner.getId());
+
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        BookingDtoOut booking1 = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                        .startDate(now.plusDays(1))
+                        .endDate(now.plusDays(2))
+                        .itemId(savedItem.getId())
+                        .build(),
+                savedUser.getId());
+
+        FullItemDtoOut byId = (FullItemDtoOut) itemService.getById(savedItem.getId(), savedOwner.getId());
+        assertThat(byId.getNextBooking().getId()).isEqualTo(booking1.getId());
+
+        BookingDtoOut booking2 = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                        .startDate(now.plusDays(3))
+                        .endDate(now.plusDays(4))
+                        .itemId(savedItem.getId())
+                        .build(),
+                savedUser.getId());
+
+        bookingService.delete(booking1.getId());
+
+        byId = (FullItemDtoOut) itemService.getById(savedItem.getId(), savedOwner.getId());
+        assertThat(byId.getNextBooking().getId()).isEqualTo(booking2.getId());
+        assertThat(byId.getLastBooking()).isNull();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void shouldNotShowNextBookingWhenItsTransactionRollsBack() {
+        UserDtoOut savedOwner = userService.create(owner);
+
+        UserDtoOut savedUser = userService.create(user);
+
+        ItemDtoOut savedItem = (ItemDtoOut) itemService.create(itemDtoIn, savedOwner.getId());
+
+        FullItemDtoOut byId = (FullItemDtoOut) itemService.getById(savedItem.getId(), savedOwner.getId());
+        assertThat(byId.getNextBooking()).isNull();
+
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        transactionTemplate.executeWithoutResult(status -> {
+            bookingService.create(BookingDtoIn.builder()
+                            .startDate(now.plusDays(1))
+                            .endDate(now.plusDays(2))
+                            .itemId(savedItem.getId())
+                            .build(),
+                    savedUser.getId());
+            status.setRollbackOnly();
+        });
+
+        byId = (FullItemDtoOut) itemService.getById(savedItem.getId(), savedOwner.getId());
+        assertThat(byId.getNextBooking()).isNull();
+    }
+
     @Test
     public void shouldSaveItemWithRequest() {
         UserDtoOut savedUser = userService.create(owner);
@@ -205,6 +291,50 @@ public class ItemServiceIT {
                 .isEqualTo(expected);
     }
 
+    @Test
+    public void shouldGetItemsByOwnerWithLastAndNextBooking() {
+        UserDtoOut savedOwner = userService.create(owner);
+
+        UserDtoOut savedUser = userService.create(user);
+
+        ItemDtoOut savedItem = (ItemDtoOut) itemService.create(itemDtoIn, savedOwner.getId());
+
+        ItemDtoOut itemWithoutBookings = (ItemDtoOut) itemService.create(itemDtoIn, savedOwner.getId());
+
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        BookingDtoOut last = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                        .startDate(now.minusDays(3))
+                        .endDate(now.minusDays(2))
+                        .itemId(savedItem.getId())
+                        .build(),
+                savedUser.getId());
+
+        BookingDtoOut next = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                        .startDate(now.plusDays(1))
+                        .endDate(now.plusDays(2))
+                        .itemId(savedItem.getId())
+                        .build(),
+                savedUser.getId());
+
+        List<? extends ItemDtoOutAbs> items = itemService.getAvailableItemByOwner(savedOwner.getId());
+
+        FullItemDtoOut withBookings = (FullItemDtoOut) items.get(0);
+        assertThat(withBookings.getId()).isEqualTo(savedItem.getId());
+        assertThat(withBookings.getLastBooking()).isEqualTo(ShortBookingDtoOut.builder()
+                .id(last.getId())
+                .bookerId(savedUser.getId())
+                .startDate(last.getStartDate())
+                .endDate(last.getEndDate())
+                .build());
+        assertThat(withBookings.getNextBooking().getId()).isEqualTo(next.getId());
+
+        FullItemDtoOut withoutBookings = (FullItemDtoOut) items.get(1);
+        assertThat(withoutBookings.getId()).isEqualTo(itemWithoutBookings.getId());
+        assertThat(withoutBookings.getLastBooking()).isNull();
+        assertThat(withoutBookings.getNextBooking()).isNull();
+    }
+
     @Test
     public void shouldGetAvailableItemByPattern() {
         UserDtoOut savedOwner = userService.create(owner);
@@ -233,8 +363,19 @@ public class ItemServiceIT {
                 .available(true)
                 .build(), savedOwner.getId());
 
-        assertThat(itemService.getAvailableItemByPattern("asd"))
-                .hasSize(3);
+        ItemSearchPage first = itemService.getAvailableItemByPattern(ItemSearchQuery.builder()
+                .text("asd")
+                .size(2)
+                .build());
+        ItemSearchPage second = itemService.getAvailableItemByPattern(ItemSearchQuery.builder()
+                .text("asd")
+                .size(2)
+                .cursor(first.getNext())
+                .build());
+
+        assertThat(first.getItems()).isEqualTo(List.of(savedItem1, savedItem2));
+        assertThat(second.getItems()).isEqualTo(List.of(savedItem3));
+        assertThat(second.getNext()).isNull();
     }
 
     @Test
@@ -290,4 +431,44 @@ public class ItemServiceIT {
                 .hasSize(1);
     }
 
+    @Test
+    public void shouldKeepLastBookingAndCommentAfterArchiveAndDeleteArchivedBookingsWithItem() {
+        UserDtoOut savedOwner = userService.create(owner);
+        UserDtoOut savedUser = userService.create(user);
+        ItemDtoOut savedItem = (ItemDtoOut) itemService.create(itemDtoIn, savedOwner.getId());
+
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        BookingDtoOut older = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                        .startDate(now.minusDays(5))
+                        .endDate(now.minusDays(4))
+                        .itemId(savedItem.getId())
+                        .build(),
+                savedUser.getId());
+        BookingDtoOut last = (BookingDtoOut) bookingService.create(BookingDtoIn.builder()
+                        .startDate(now.minusDays(3))
+                        .endDate(now.minusDays(2))
+                        .itemId(savedItem.getId())
+                        .build(),
+                savedUser.getId());
+        bookingService.approve(older.getId(), savedOwner.getId(), true, false);
+        bookingService.approve(last.getId(), savedOwner.getId(), true, false);
+
+        assertThat(bookingArchiver.archive(LocalDateTime.now().plusSeconds(1))).isEqualTo(1);
+        assertThat(bookingRepository.findArchivedById(older.getId())).isPresent();
+
+        CommentDtoOut comment = (CommentDtoOut) itemService.create(new CommentDtoIn("comment"),
+                savedItem.getId(), savedUser.getId());
+        assertThat(comment.getText()).isEqualTo("comment");
+
+        FullItemDtoOut byId = (FullItemDtoOut) itemService.getById(savedItem.getId(), savedOwner.getId());
+        assertThat(byId.getLastBooking().getId()).isEqualTo(last.getId());
+
+        itemService.delete(savedItem.getId());
+        bookingRepository.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bookings_archive WHERE item_id = ?",
+                Integer.class, savedItem.getId())).isZero();
+        assertThatThrownBy(() -> itemService.getById(savedItem.getId(), savedOwner.getId()))
+                .isInstanceOf(NotFoundException.class);
+    }
 }
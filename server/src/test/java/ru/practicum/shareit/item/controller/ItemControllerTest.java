@@ -12,15 +12,20 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.practicum.shareit.booking.dto.FreeInterval;
 import ru.practicum.shareit.item.ItemBaseTest;
 import ru.practicum.shareit.item.dto.CommentDtoIn;
 import ru.practicum.shareit.item.dto.ItemDtoIn;
+import ru.practicum.shareit.item.dto.ItemSearchCursor;
+import ru.practicum.shareit.item.dto.ItemSearchPage;
+import ru.practicum.shareit.item.model.ItemSearchQuery;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.util.ErrorHandler;
 import ru.practicum.shareit.util.exception.ForbiddenException;
 import ru.practicum.shareit.util.exception.NotFoundException;
 
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
@@ -28,8 +33,10 @@ import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.practicum.shareit.util.Util.NEXT_CURSOR_HEADER;
 import static ru.practicum.shareit.util.Util.USER_ID_HEADER;
 
 @SpringBootTest
@@ -120,11 +127,31 @@ public class ItemControllerTest extends ItemBaseTest {
                 .andExpect(jsonPath("$", is("Not found")));
     }
 
+    @SneakyThrows
+    @Test
+    void getAvailability_shouldAnswerOKWithFreeIntervals() {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 0, 0);
+        when(itemService.getAvailability(1, 2, from, from.plusDays(7)))
+                .thenReturn(List.of(new FreeInterval(from.plusDays(2), from.plusDays(7))));
+
+        mvc.perform(get("/items/1/availability")
+                        .header(USER_ID_HEADER, "2")
+                        .param("from", "2030-01-01T00:00:00")
+                        .param("to", "2030-01-08T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].start", is("2030-01-03T00:00:00")))
+                .andExpect(jsonPath("$[0].end", is("2030-01-08T00:00:00")));
+    }
+
     @SneakyThrows
     @Test
     void getAll_shouldAnswerOKAndReturnFoundedItems() {
-        doReturn(List.of(itemDtoOut)).when(itemService)
-                .getAvailableItemByPattern(anyString());
+        doReturn(new ItemSearchPage(List.of(itemDtoOut), null)).when(itemService)
+                .getAvailableItemByPattern(argThat(query -> query.getText().equals("na") && query.getFrom() == null
+                        && query.getTo() == null && !query.isFuzzy() && query.getSize() == null
+                        && query.getCursor() == null));
 
         mvc.perform(get("/items/search")
                         .param("text", "na")
@@ -132,12 +159,92 @@ public class ItemControllerTest extends ItemBaseTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(NEXT_CURSOR_HEADER))
                 .andExpect(jsonPath("$[0].id", is(itemDtoOut.getId())))
                 .andExpect(jsonPath("$[0].name", is(itemDtoOut.getName())))
                 .andExpect(jsonPath("$[0].description", is(itemDtoOut.getDescription())))
                 .andExpect(jsonPath("$[0].available", is(itemDtoOut.getAvailable())));
     }
 
+    @SneakyThrows
+    @Test
+    void searchByKeyword_shouldPassWindowToService() {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 0, 0);
+        doReturn(new ItemSearchPage(List.of(itemDtoOut), null)).when(itemService)
+                .getAvailableItemByPattern(argThat(query -> from.equals(query.getFrom())
+                        && from.plusDays(7).equals(query.getTo())));
+
+        mvc.perform(get("/items/search")
+                        .param("text", "na")
+                        .param("from", "2030-01-01T00:00:00")
+                        .param("to", "2030-01-08T00:00:00")
+                        .param("size", "100")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(itemDtoOut.getId())));
+    }
+
+    @SneakyThrows
+    @Test
+    void searchByKeyword_shouldPassFuzzyToService() {
+        doReturn(new ItemSearchPage(List.of(itemDtoOut), null)).when(itemService)
+                .getAvailableItemByPattern(argThat(ItemSearchQuery::isFuzzy));
+
+        mvc.perform(get("/items/search")
+                        .param("text", "nmae")
+                        .param("fuzzy", "true")
+                        .param("size", "100")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(itemDtoOut.getId())));
+    }
+
+    @SneakyThrows
+    @Test
+    void searchByKeyword_shouldPassCursorAndAnswerNextCursor() {
+        ItemSearchCursor cursor = new ItemSearchCursor(2, 1, 7);
+        ItemSearchCursor next = new ItemSearchCursor(1, 0, 3);
+        doReturn(new ItemSearchPage(List.of(itemDtoOut), next)).when(itemService)
+                .getAvailableItemByPattern(argThat(query -> cursor.equals(query.getCursor())
+                        && query.getSize() == 1));
+
+        mvc.perform(get("/items/search")
+                        .param("text", "na")
+                        .param("size", "1")
+                        .param("cursor", cursor.encode())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER, next.encode()))
+                .andExpect(jsonPath("$[0].id", is(itemDtoOut.getId())));
+    }
+
+    @SneakyThrows
+    @Test
+    void searchByKeyword_shouldAnswerBadRequestWhenCursorIsMalformed() {
+        mvc.perform(get("/items/search")
+                        .param("text", "na")
+                        .param("size", "1")
+                        .param("cursor", "not a cursor")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(itemService, never()).getAvailableItemByPattern(any());
+    }
+
+    @SneakyThrows
+    @Test
+    void suggest_shouldAnswerNamesFromService() {
+        doReturn(List.of("Drill", "Driver")).when(itemService).suggestNames("dr", 5);
+
+        mvc.perform(get("/items/suggest")
+                        .param("prefix", "dr")
+                        .param("limit", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]", is("Drill")))
+                .andExpect(jsonPath("$[1]", is("Driver")));
+    }
+
     @SneakyThrows
     @Test
     void getAll_shouldAnswerOK() {
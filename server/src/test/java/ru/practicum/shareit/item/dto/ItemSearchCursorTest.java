@@ -0,0 +1,42 @@
+package ru.practicum.shareit.item.dto;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.util.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ItemSearchCursorTest {
+
+    @Test
+    void decode_shouldReturnTheSameCursorAsEncoded() {
+        ItemSearchCursor cursor = new ItemSearchCursor(2, 15, 7);
+
+        assertThat(ItemSearchCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void decode_shouldThrowInvalidCursorExceptionWhenTokenIsNotBase64() {
+        assertThatThrownBy(() -> ItemSearchCursor.decode("not a cursor"))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void decode_shouldThrowInvalidCursorExceptionWhenPartIsMissing() {
+        String token = Base64.getUrlEncoder().encodeToString("2|7".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> ItemSearchCursor.decode(token))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void decode_shouldThrowInvalidCursorExceptionWhenHitsAreNegative() {
+        String token = Base64.getUrlEncoder().encodeToString("-1|0|7".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> ItemSearchCursor.decode(token))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+}
@@ -5,15 +5,23 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemText;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.util.OffsetLimitPageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @DataJpaTest
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
@@ -26,6 +34,9 @@ public class ItemRepositoryTest {
     @Autowired
     ItemRepository itemRepository;
 
+    @Autowired
+    BookingRepository bookingRepository;
+
     User owner1, owner2;
 
 
@@ -68,7 +79,7 @@ public class ItemRepositoryTest {
     }
 
     @Test
-    void findAvailableItemsByNameOrDescription_shouldInvokeRepositoryAndReturnTheSame() {
+    void findAvailableTextsByNameOrDescription_shouldStreamAvailableMatches() {
         String commonPart = "common";
 
         Item item1 = itemRepository.save(Item.builder()
@@ -92,10 +103,103 @@ public class ItemRepositoryTest {
                 .owner(owner1)
                 .build());
 
-        List<Item> items = itemRepository.findAvailableItemsByNameOrDescription(commonPart);
+        try (Stream<ItemText> texts = itemRepository.findAvailableTextsByNameOrDescription(commonPart)) {
+            assertThat(texts)
+                    .extracting(ItemText::getId, ItemText::getName, ItemText::getDescription)
+                    .containsExactlyInAnyOrder(tuple(item1.getId(), "item1", commonPart + "erd"),
+                            tuple(item3.getId(), "item3", "jjl" + commonPart));
+        }
+    }
 
-        assertThat(items)
-                .hasSize(2)
-                .containsAll(List.of(item1, item3));
+    @Test
+    void findAvailableTextsByNameOrDescriptionFreeBetween_shouldExcludeItemsWithOverlappingApprovedBooking() {
+        LocalDateTime from = LocalDateTime.now().withNano(0).plusDays(10);
+        LocalDateTime to = from.plusDays(2);
+        Item booked = itemRepository.save(item("drill booked"));
+        Item waiting = itemRepository.save(item("drill waiting"));
+        Item adjacent = itemRepository.save(item("drill adjacent"));
+        Item free = itemRepository.save(item("drill free"));
+        bookingRepository.save(booking(booked, BookingStatus.APPROVED, from.plusDays(1), to.plusDays(1)));
+        bookingRepository.save(booking(waiting, BookingStatus.WAITING, from, to));
+        bookingRepository.save(booking(adjacent, BookingStatus.APPROVED, to, to.plusDays(1)));
+        bookingRepository.save(booking(free, BookingStatus.REJECTED, from, to));
+
+        try (Stream<ItemText> texts = itemRepository.findAvailableTextsByNameOrDescriptionFreeBetween("drill", from,
+                to)) {
+            assertThat(texts)
+                    .extracting(ItemText::getId)
+                    .containsExactlyInAnyOrder(waiting.getId(), adjacent.getId(), free.getId());
+        }
+    }
+
+    @Test
+    void findAvailableIdsFreeBetween_shouldApplyAntiJoinToGivenIds() {
+        LocalDateTime from = LocalDateTime.now().withNano(0).plusDays(10);
+        LocalDateTime to = from.plusDays(2);
+        Item booked = itemRepository.save(item("drill booked"));
+        Item free = itemRepository.save(item("drill free"));
+        itemRepository.save(item("drill other"));
+        bookingRepository.save(booking(booked, BookingStatus.APPROVED, from, to));
+
+        List<Integer> ids = itemRepository.findAvailableIdsFreeBetween(List.of(booked.getId(), free.getId()),
+                from, to);
+
+        assertThat(ids).containsExactly(free.getId());
+    }
+
+    @Test
+    void findAvailableTextsAfter_shouldPageAvailableItemsInIdOrder() {
+        Item first = itemRepository.save(item("first"));
+        Item unavailable = item("unavailable");
+        unavailable.setAvailable(false);
+        itemRepository.save(unavailable);
+        Item second = itemRepository.save(item("second"));
+        Item third = itemRepository.save(item("third"));
+
+        List<ItemText> page = itemRepository.findAvailableTextsAfter(0, new OffsetLimitPageable(0, 2, Sort.unsorted()));
+
+        assertThat(page).extracting(ItemText::getId).containsExactly(first.getId(), second.getId());
+        assertThat(page.get(0).getName()).isEqualTo("first");
+        assertThat(itemRepository.findAvailableTextsAfter(second.getId(),
+                new OffsetLimitPageable(0, 2, Sort.unsorted())))
+                .extracting(ItemText::getId).containsExactly(third.getId());
+    }
+
+    @Test
+    void findAvailableNamesByPrefix_shouldGroupNamesIgnoringCaseAndRankByItemCount() {
+        itemRepository.save(item("Drill"));
+        itemRepository.save(item("drill"));
+        itemRepository.save(item("Driver"));
+        itemRepository.save(item("Dr_ll"));
+        Item unavailable = item("Dryer");
+        unavailable.setAvailable(false);
+        itemRepository.save(unavailable);
+
+        assertThat(itemRepository.findAvailableNamesByPrefix("dr%", new OffsetLimitPageable(0, 10, Sort.unsorted())))
+                .containsExactly("Drill", "Dr_ll", "Driver");
+        assertThat(itemRepository.findAvailableNamesByPrefix("dr\\_%", new OffsetLimitPageable(0, 10,
+                Sort.unsorted())))
+                .containsExactly("Dr_ll");
+        assertThat(itemRepository.findAvailableNamesByPrefix("dr%", new OffsetLimitPageable(0, 1, Sort.unsorted())))
+                .containsExactly("Drill");
+    }
+
+    private Item item(String name) {
+        return Item.builder()
+                .name(name)
+                .description("description")
+                .available(true)
+                .owner(owner1)
+                .build();
+    }
+
+    private Booking booking(Item item, BookingStatus status, LocalDateTime start, LocalDateTime end) {
+        return Booking.builder()
+                .booker(owner2)
+                .item(item)
+                .status(status)
+                .startDate(start)
+                .endDate(end)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,130 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.integration.IntegrationTest;
+import ru.practicum.shareit.item.model.ItemText;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.util.OffsetLimitPageable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the fuzzy search of the index, which looks the words of the pattern up in the symmetric-delete
+ * vocabulary, with a scan computing the edit distance between the pattern and every word of every item.
+ * Names combine five adjectives with eight tools, so the vocabulary stays small while the items grow.
+ * Not part of the regular build: run with {@code mvn test -pl server -Dtest=ItemFuzzySearchBenchmark}.
+ */
+@IntegrationTest
+@TestPropertySource(properties = "spring.jpa.hibernate.ddl-auto=none")
+@Slf4j
+public class ItemFuzzySearchBenchmark {
+
+    private static final int ITEMS = 1_000_000;
+
+    private static final int SLICE = 100_000;
+
+    private static final int RUNS = 5;
+
+    private static final List<String> PATTERNS = List.of("drlil", "дрелл", "wrnech", "compcat ladder", "hevy пилла");
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("INSERT INTO users (name, email) " +
+                "SELECT 'user' || x, 'user' || x || '@mail.ru' FROM SYSTEM_RANGE(1, 1000)");
+        int firstUserId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Integer.class);
+
+        String tool = "CASE MOD(x / 5, 8) WHEN 0 THEN 'drill' WHEN 1 THEN 'hammer' WHEN 2 THEN 'ladder' " +
+                "WHEN 3 THEN 'wrench' WHEN 4 THEN 'sander' WHEN 5 THEN 'дрель' WHEN 6 THEN 'пила' " +
+                "ELSE 'стремянка' END";
+        String adjective = "CASE MOD(x, 5) WHEN 0 THEN 'cordless' WHEN 1 THEN 'heavy' WHEN 2 THEN 'compact' " +
+                "WHEN 3 THEN 'electric' ELSE 'manual' END";
+        for (int slice = 0; slice < ITEMS / SLICE; slice++) {
+            jdbcTemplate.update("INSERT INTO items (name, description, available, owner_id) " +
+                    "SELECT " + adjective + " || ' ' || " + tool + ", 'rental ' || " + tool + " || ' number ' || x, " +
+                    "TRUE, " + firstUserId + " + MOD(x, 1000) " +
+                    "FROM SYSTEM_RANGE(" + slice * SLICE + ", " + ((slice + 1) * SLICE - 1) + ")");
+        }
+        log.info("{} items seeded", ITEMS);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void compareVocabularyLookupWithScan() {
+        ItemSearchIndex index = new ItemSearchIndex(itemRepository, true, 10_000);
+        long start = System.nanoTime();
+        index.load();
+        log.info("Index loaded in {} ms", Math.round((System.nanoTime() - start) / 1e6));
+
+        List<ItemText> rows = new ArrayList<>(ITEMS);
+        int afterId = 0;
+        List<ItemText> page;
+        do {
+            page = itemRepository.findAvailableTextsAfter(afterId, new OffsetLimitPageable(0, 10_000,
+                    Sort.unsorted()));
+            rows.addAll(page);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (!page.isEmpty());
+
+        for (String pattern : PATTERNS) {
+            List<Integer> indexed = List.of();
+            start = System.nanoTime();
+            for (int run = 0; run < RUNS; run++) {
+                indexed = index.search(pattern, true).orElseThrow();
+            }
+            double indexMillis = millisPerRun(start);
+
+            List<Integer> scanned = List.of();
+            start = System.nanoTime();
+            for (int run = 0; run < RUNS; run++) {
+                scanned = scan(rows, pattern);
+            }
+            double scanMillis = millisPerRun(start);
+
+            log.info("'{}' over {} items: vocabulary lookup {} ms, edit distance scan {} ms, {} items found",
+                    pattern, rows.size(), String.format(Locale.ROOT, "%.2f", indexMillis), Math.round(scanMillis),
+                    indexed.size());
+            assertThat(indexed).isNotEmpty().isEqualTo(scanned);
+        }
+    }
+
+    // Every word of the pattern is in the text or within its allowed edits of a word of the text
+    private static List<Integer> scan(List<ItemText> rows, String pattern) {
+        Set<String> words = ItemTermVocabulary.words(pattern.toLowerCase(Locale.ROOT));
+        List<Integer> found = new ArrayList<>();
+        for (ItemText row : rows) {
+            String text = row.getName().toLowerCase(Locale.ROOT) + " " + row.getDescription().toLowerCase(Locale.ROOT);
+            Set<String> rowWords = ItemTermVocabulary.words(text);
+            if (words.stream().allMatch(word -> text.contains(word) || rowWords.stream().anyMatch(rowWord ->
+                    ItemTermVocabulary.distance(word, rowWord, ItemTermVocabulary.edits(word.length()))
+                            <= ItemTermVocabulary.edits(word.length())))) {
+                found.add(row.getId());
+            }
+        }
+        return found;
+    }
+
+    private static double millisPerRun(long start) {
+        return (System.nanoTime() - start) / 1e6 / RUNS;
+    }
+}
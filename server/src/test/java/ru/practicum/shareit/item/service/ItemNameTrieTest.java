@@ -0,0 +1,75 @@
+package ru.practicum.shareit.item.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemNameTrieTest {
+
+    ItemNameTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new ItemNameTrie();
+        trie.add("drill", "Drill");
+        trie.add("drill", "Drill");
+        trie.add("drill press", "Drill press");
+        trie.add("driver", "Driver");
+        trie.add("dryer", "Dryer");
+        trie.add("dryer", "Dryer");
+        trie.add("dryer", "Dryer");
+    }
+
+    @Test
+    void suggest_shouldRankNamesByItemCountThenByName() {
+        assertThat(trie.suggest("d", 10)).containsExactly("Dryer", "Drill", "Drill press", "Driver");
+        assertThat(trie.suggest("dri", 10)).containsExactly("Drill", "Drill press", "Driver");
+        assertThat(trie.suggest("dri", 2)).containsExactly("Drill", "Drill press");
+    }
+
+    @Test
+    void suggest_shouldMatchPrefixEndingInsideEdge() {
+        assertThat(trie.suggest("drill p", 10)).containsExactly("Drill press");
+        assertThat(trie.suggest("drill", 10)).containsExactly("Drill", "Drill press");
+        assertThat(trie.suggest("drills", 10)).isEmpty();
+        assertThat(trie.suggest("saw", 10)).isEmpty();
+    }
+
+    @Test
+    void remove_shouldDemoteNameAndDropItWithLastItem() {
+        trie.remove("dryer");
+        trie.remove("dryer");
+
+        assertThat(trie.suggest("d", 10)).containsExactly("Drill", "Drill press", "Driver", "Dryer");
+
+        trie.remove("dryer");
+        trie.remove("drill press");
+        trie.remove("saw");
+
+        assertThat(trie.suggest("d", 10)).containsExactly("Drill", "Driver");
+        assertThat(trie.suggest("dry", 10)).isEmpty();
+        assertThat(trie.suggest("drill ", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_shouldKeepOnlyTopNamesAndRefillAfterRemoval() {
+        List<String> names = IntStream.range(0, 30)
+                .mapToObj(i -> String.format("saw %02d", i))
+                .collect(Collectors.toList());
+        names.forEach(name -> trie.add(name, name));
+        trie.add("saw 29", "saw 29");
+
+        assertThat(trie.suggest("saw", 100)).hasSize(ItemNameTrie.TOP).startsWith("saw 29", "saw 00");
+
+        trie.remove("saw 00");
+        trie.remove("saw 01");
+
+        assertThat(trie.suggest("saw", 100)).hasSize(ItemNameTrie.TOP).startsWith("saw 29", "saw 02")
+                .contains("saw 20").doesNotContain("saw 00", "saw 01");
+    }
+}
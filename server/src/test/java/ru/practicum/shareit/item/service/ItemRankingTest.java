@@ -0,0 +1,96 @@
+package ru.practicum.shareit.item.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.dto.ItemSearchCursor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemRankingTest {
+
+    @Test
+    void ids_shouldOrderByNameHitsThenDescriptionHitsThenId() {
+        ItemRanking ranking = ItemRanking.exact("Set", null, 10);
+        ranking.offer(1, "Socket", "Set of sockets, a set for the car");
+        ranking.offer(2, "Tool set", "Cordless");
+        ranking.offer(3, "Set", "A set");
+        ranking.offer(4, "Settee", "Sofa");
+        ranking.offer(5, "Saw", "Hand saw");
+
+        assertThat(ranking.ids()).containsExactly(3, 2, 4, 1, 5);
+        assertThat(ranking.next()).isNull();
+    }
+
+    @Test
+    void ids_shouldSumHitsOfEveryTermGroup() {
+        ItemRanking ranking = new ItemRanking(List.of(Set.of("drill", "drills"), Set.of("bit")), null, 10);
+        ranking.offer(1, "Bit", "For a drill");
+        ranking.offer(2, "Drill", "Bits included");
+        ranking.offer(3, "Drill with bit", "");
+
+        assertThat(ranking.ids()).containsExactly(3, 1, 2);
+    }
+
+    @Test
+    void ids_shouldKeepBestPageOfManyItemsAndContinueAfterCursor() {
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>();
+        for (int id = 0; id < 1000; id++) {
+            names.add("drill ".repeat(random.nextInt(3)) + "saw");
+        }
+        List<Integer> expected = IntStream.range(0, 1000).boxed()
+                .sorted(Comparator.comparing((Integer id) -> -names.get(id).length()).thenComparing(id -> id))
+                .collect(Collectors.toList());
+
+        List<Integer> paged = new ArrayList<>();
+        ItemSearchCursor cursor = null;
+        do {
+            ItemRanking ranking = ItemRanking.exact("drill", cursor, 64);
+            for (int id = 999; id >= 0; id--) {
+                ranking.offer(id, names.get(id), "");
+            }
+            paged.addAll(ranking.ids());
+            cursor = ranking.next();
+        } while (cursor != null);
+
+        assertThat(paged).isEqualTo(expected);
+    }
+
+    @Test
+    void next_shouldPointAtLastItemOfFullPage() {
+        ItemRanking ranking = ItemRanking.exact("drill", null, 2);
+        ranking.offer(7, "Drill", "Drill and drill bits");
+        ranking.offer(8, "Drill", "");
+        ranking.offer(9, "Saw", "Drill");
+
+        assertThat(ranking.ids()).containsExactly(7, 8);
+        assertThat(ranking.next()).isEqualTo(new ItemSearchCursor(1, 0, 8));
+    }
+
+    @Test
+    void ids_shouldBeEmptyWhenSizeIsZero() {
+        ItemRanking ranking = ItemRanking.exact("drill", null, 0);
+        ranking.offer(1, "Drill", "");
+
+        assertThat(ranking.ids()).isEmpty();
+        assertThat(ranking.next()).isNull();
+    }
+
+    @Test
+    void ids_shouldKeepEveryItemWhenSizeIsUnbounded() {
+        ItemRanking ranking = ItemRanking.exact("drill", null, Integer.MAX_VALUE);
+        for (int id = 1; id <= 100; id++) {
+            ranking.offer(id, "Drill", "");
+        }
+
+        assertThat(ranking.ids()).isEqualTo(IntStream.rangeClosed(1, 100).boxed().collect(Collectors.toList()));
+        assertThat(ranking.next()).isNull();
+    }
+}
@@ -0,0 +1,215 @@
+package ru.practicum.shareit.item.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.dto.ItemSearchCursor;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemText;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ItemSearchIndexTest {
+
+    ItemRepository itemRepository;
+    ItemSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        itemRepository = mock(ItemRepository.class);
+        when(itemRepository.findAvailableTextsAfter(eq(0), any())).thenReturn(List.of(
+                new ItemText(1, "Drill", "Cordless drill"),
+                new ItemText(2, "Hammer", "Steel claw hammer")));
+        when(itemRepository.findAvailableTextsAfter(eq(2), any())).thenReturn(List.of(
+                new ItemText(5, "Ладья", "Деревянная лодка")));
+        index = new ItemSearchIndex(itemRepository, true, 2);
+    }
+
+    @Test
+    void search_shouldReturnNothingUntilLoaded() {
+        assertThat(index.search("drill", false)).isEmpty();
+
+        index.load();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.search("drill", false)).contains(List.of(1));
+        verify(itemRepository, times(2)).findAvailableTextsAfter(anyInt(), any());
+    }
+
+    @Test
+    void search_shouldMatchSubstringsIgnoringCase() {
+        index.load();
+
+        assertThat(index.search("RILL", false)).contains(List.of(1));
+        assertThat(index.search("less dr", false)).contains(List.of(1));
+        assertThat(index.search("ЛОД", false)).contains(List.of(5));
+        assertThat(index.search("claws", false)).contains(List.of());
+        assertThat(index.search("drill hammer", false)).contains(List.of());
+    }
+
+    @Test
+    void search_shouldMatchPatternsShorterThanTrigram() {
+        index.load();
+
+        assertThat(index.search("m", false)).contains(List.of(2));
+        assertThat(index.search("r", false)).contains(List.of(1, 2));
+        assertThat(index.search("dr", false)).contains(List.of(1));
+        assertThat(index.search("ья", false)).contains(List.of(5));
+        assertThat(index.search("q", false)).contains(List.of());
+    }
+
+    @Test
+    void search_shouldLeaveLikeWildcardsToSql() {
+        index.load();
+
+        assertThat(index.search("dr%l", false)).isEmpty();
+        assertThat(index.search("dri_l", false)).isEmpty();
+    }
+
+    @Test
+    void put_shouldReindexChangedItemAndDropUnavailableOne() {
+        index.load();
+
+        index.put(item(1, "Screwdriver", "Electric", true));
+        index.put(item(2, "Hammer", "Steel claw hammer", false));
+        index.put(item(7, "Drill press", "Bench drill", true));
+
+        assertThat(index.search("drill", false)).contains(List.of(7));
+        assertThat(index.search("driver", false)).contains(List.of(1));
+        assertThat(index.search("hammer", false)).contains(List.of());
+    }
+
+    @Test
+    void remove_shouldDropItem() {
+        index.load();
+
+        index.remove(1);
+
+        assertThat(index.search("drill", false)).contains(List.of());
+        assertThat(index.search("r", false)).contains(List.of(2));
+    }
+
+    @Test
+    void load_shouldKeepItemsChangedWhileLoading() {
+        index.put(item(1, "Saw", "Hand saw", true));
+        index.remove(2);
+
+        index.load();
+
+        assertThat(index.search("drill", false)).contains(List.of());
+        assertThat(index.search("saw", false)).contains(List.of(1));
+        assertThat(index.search("hammer", false)).contains(List.of());
+    }
+
+    @Test
+    void put_shouldKeepResultsAfterCompaction() {
+        index.load();
+
+        for (int i = 0; i < 3000; i++) {
+            index.put(item(100 + i % 10, "Rake " + i, "Garden rake", true));
+        }
+
+        List<Integer> rakes = IntStream.range(100, 110).boxed().collect(Collectors.toList());
+        assertThat(index.search("rake", false)).contains(rakes);
+        assertThat(index.search("rake 2999", false)).contains(List.of(109));
+        assertThat(index.search("rake 0", false)).contains(List.of());
+        assertThat(index.search("drill", false)).contains(List.of(1));
+        assertThat(index.search("a", false).orElseThrow()).contains(2, 100, 109).doesNotContain(1, 5);
+    }
+
+    @Test
+    void suggest_shouldFollowLoadAndChangesOfNames() {
+        assertThat(index.suggest("dr", 10)).isEmpty();
+
+        index.load();
+
+        assertThat(index.suggest(" DR", 10)).contains(List.of("Drill"));
+
+        index.put(item(7, "Drill press", "Bench drill", true));
+        index.put(item(8, "drill", "Another drill", true));
+        index.put(item(2, "Hammer drill", "Steel claw hammer", true));
+
+        assertThat(index.suggest("dr", 10)).contains(List.of("drill", "Drill press"));
+        assertThat(index.suggest("h", 10)).contains(List.of("Hammer drill"));
+
+        index.put(item(1, "Drill", "Cordless drill", false));
+        index.remove(8);
+
+        assertThat(index.suggest("dr", 10)).contains(List.of("Drill press"));
+        assertThat(index.suggest("лад", 10)).contains(List.of("Ладья"));
+    }
+
+    @Test
+    void search_shouldMatchMisspeltWordsWhenFuzzy() {
+        index.load();
+
+        assertThat(index.search("drlil", false)).contains(List.of());
+        assertThat(index.search("drlil", true)).contains(List.of(1));
+        assertThat(index.search("cordles drlil", true)).contains(List.of(1));
+        assertThat(index.search("hamer", true)).contains(List.of(2));
+        assertThat(index.search("ладя", true)).contains(List.of(5));
+        assertThat(index.search("dr", true)).contains(List.of(1));
+        assertThat(index.search("drlil hamer", true)).contains(List.of());
+        assertThat(index.search("drlil%", true)).contains(List.of(1));
+    }
+
+    @Test
+    void search_shouldForgetWordsOfChangedItemsWhenFuzzy() {
+        index.load();
+
+        index.put(item(1, "Saw", "Hand saw", true));
+
+        assertThat(index.search("drlil", true)).contains(List.of());
+        assertThat(index.search("hnad", true)).contains(List.of(1));
+    }
+
+    @Test
+    void rank_shouldPutNameHitsFirstAndPageAfterCursor() {
+        index.load();
+        index.put(item(3, "Drill press", "Bench drill, drills steel", true));
+        index.put(item(4, "Bit set", "Drill bits for a drill", true));
+
+        ItemRanking first = index.rank("drill", false, null, null, 2).orElseThrow();
+        ItemRanking second = index.rank("drill", false, null, first.next(), 2).orElseThrow();
+
+        assertThat(first.ids()).containsExactly(3, 1);
+        assertThat(first.next()).isEqualTo(new ItemSearchCursor(1, 1, 1));
+        assertThat(second.ids()).containsExactly(4);
+        assertThat(second.next()).isNull();
+    }
+
+    @Test
+    void rank_shouldRankOnlyGivenItemsStillIndexed() {
+        index.load();
+
+        assertThat(index.rank("drill", false, List.of(5, 1, 9), null, 10).orElseThrow().ids()).containsExactly(1, 5);
+    }
+
+    @Test
+    void rank_shouldCountCloseWordsWhenFuzzy() {
+        index.load();
+        index.put(item(3, "Dril", "Old", true));
+
+        assertThat(index.rank("drlil", true, null, null, 10).orElseThrow().ids()).containsExactly(1, 3);
+        assertThat(index.rank("drlil", false, null, null, 10).orElseThrow().ids()).isEmpty();
+        assertThat(index.rank("dr%l", false, null, null, 10)).isEmpty();
+    }
+
+    private static Item item(int id, String name, String description, boolean available) {
+        return Item.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .available(available)
+                .owner(new User())
+                .build();
+    }
+}
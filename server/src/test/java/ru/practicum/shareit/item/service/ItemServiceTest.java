@@ -6,13 +6,24 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import ru.practicum.shareit.booking.dto.FreeInterval;
+import ru.practicum.shareit.booking.model.BookingPeriod;
+import ru.practicum.shareit.booking.model.ItemPeriod;
+import ru.practicum.shareit.booking.model.LastNextBooking;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.service.BookingRules;
 import ru.practicum.shareit.item.ItemBaseTest;
 import ru.practicum.shareit.item.dto.CommentDtoIn;
 import ru.practicum.shareit.item.dto.CommentDtoOutAbs;
 import ru.practicum.shareit.item.dto.ItemDtoIn;
+import ru.practicum.shareit.item.dto.FullItemDtoOut;
 import ru.practicum.shareit.item.dto.ItemDtoOutAbs;
+import ru.practicum.shareit.item.dto.ItemSearchCursor;
+import ru.practicum.shareit.item.dto.ItemSearchPage;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemSearchQuery;
+import ru.practicum.shareit.item.model.ItemText;
 import ru.practicum.shareit.item.repository.CommentRepository;
 import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.user.model.User;
@@ -23,8 +34,12 @@ import ru.practicum.shareit.util.exception.NotFoundException;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -52,6 +67,15 @@ public class ItemServiceTest extends ItemBaseTest {
     @MockBean
     CommentMapper commentMapper;
 
+    @MockBean
+    BookingRepository bookingRepo;
+
+    @MockBean
+    BookingRules bookingRules;
+
+    @MockBean
+    ItemSearchIndex itemSearchIndex;
+
     @BeforeEach
     protected void setUp() {
         super.setUp();
@@ -82,6 +106,7 @@ public class ItemServiceTest extends ItemBaseTest {
 
         assertThat(savedItem)
                 .isEqualTo(itemDtoOut);
+        verify(itemSearchIndex).put(item);
 
         verify(itemRepo, times(1)).save(item);
     }
@@ -122,6 +147,32 @@ public class ItemServiceTest extends ItemBaseTest {
         verify(itemRepo, times(1)).findByOwner(item.getOwner().getId());
     }
 
+    @Test
+    void getAvailableItemByOwner_shouldSetLastAndNextBookingFromOneRepositoryCall() {
+        FullItemDtoOut withoutBookings = FullItemDtoOut.builder()
+                .id(item.getId())
+                .name(item.getName())
+                .build();
+        BookingPeriod last = new BookingPeriod(1, 2, now.minusDays(2), now.minusDays(1));
+        BookingPeriod next = new BookingPeriod(3, 2, now.plusDays(1), now.plusDays(2));
+
+        when(itemRepo.findByOwner(anyInt()))
+                .thenReturn(Collections.singletonList(item));
+        when(itemMapper.toFullDto(anyList()))
+                .thenReturn(List.of(withoutBookings));
+        when(bookingRepo.findLastAndNextByOwner(anyInt(), any(LocalDateTime.class)))
+                .thenReturn(Map.of(item.getId(), new LastNextBooking(item.getId(), last, next)));
+
+        List<? extends ItemDtoOutAbs> items = itemService.getAvailableItemByOwner(item.getOwner().getId());
+
+        FullItemDtoOut itemDto = (FullItemDtoOut) items.get(0);
+        assertThat(itemDto.getLastBooking().getId()).isEqualTo(1);
+        assertThat(itemDto.getNextBooking().getId()).isEqualTo(3);
+        assertThat(itemDto.getNextBooking().getStartDate()).isEqualTo(next.getStartDate());
+
+        verify(bookingRepo, times(1)).findLastAndNextByOwner(eq(item.getOwner().getId()), any(LocalDateTime.class));
+    }
+
     @Test
     void getAvailableItemByOwner_shouldInvokeRepositoryAndReturnTheSameItemDtoOut() {
         when(itemRepo.findByOwner(anyInt()))
@@ -151,38 +202,161 @@ public class ItemServiceTest extends ItemBaseTest {
 
     @Test
     void getAvailableItemByPattern_shouldInvokeRepositoryAndReturnTheSame() {
-        when(itemRepo.findAvailableItemsByNameOrDescription(anyString()))
-                .thenReturn(Collections.singletonList(item));
+        when(itemRepo.findAvailableTextsByNameOrDescription(anyString()))
+                .thenReturn(Stream.of(new ItemText(item.getId(), item.getName(), item.getDescription())));
+        when(itemRepo.findAllById(List.of(item.getId()))).thenReturn(List.of(item));
 
-        List<? extends ItemDtoOutAbs> items = itemService.getAvailableItemByPattern("desc");
+        ItemSearchPage page = itemService.getAvailableItemByPattern(query("desc").build());
 
-        assertThat(items).isEqualTo(List.of(itemDtoOut));
+        assertThat(page.getItems()).isEqualTo(List.of(itemDtoOut));
+        assertThat(page.getNext()).isNull();
+
+        verify(itemRepo, times(1)).findAvailableTextsByNameOrDescription("desc");
+    }
+
+    @Test
+    void getAvailableItemByPattern_shouldRankNameHitsFirstThenDescriptionHits() {
+        Item saw = item(1, "Saw", "Cuts drill bits");
+        Item drill = item(2, "Drill", "Cordless");
+        Item set = item(3, "Set", "Drill, drill and drill");
+        when(itemRepo.findAvailableTextsByNameOrDescription("drill")).thenReturn(Stream.of(saw, drill, set)
+                .map(found -> new ItemText(found.getId(), found.getName(), found.getDescription())));
+        when(itemRepo.findAllById(List.of(2, 3))).thenReturn(List.of(set, drill));
+
+        ItemSearchPage page = itemService.getAvailableItemByPattern(query("drill").size(2).build());
+
+        verify(itemMapper).toDto(List.of(drill, set));
+        assertThat(page.getNext()).isEqualTo(new ItemSearchCursor(0, 3, 3));
+    }
+
+    @Test
+    void getAvailableItemByPattern_shouldContinueAfterCursor() {
+        Item saw = item(1, "Saw", "Cuts drill bits");
+        Item drill = item(2, "Drill", "Cordless");
+        when(itemRepo.findAvailableTextsByNameOrDescription("drill")).thenReturn(Stream.of(saw, drill)
+                .map(found -> new ItemText(found.getId(), found.getName(), found.getDescription())));
+        when(itemRepo.findAllById(List.of(1))).thenReturn(List.of(saw));
+
+        ItemSearchPage page = itemService.getAvailableItemByPattern(query("drill").size(2)
+                .cursor(new ItemSearchCursor(1, 0, 2)).build());
+
+        verify(itemMapper).toDto(List.of(saw));
+        assertThat(page.getNext()).isNull();
+    }
+
+    @Test
+    void getAvailableItemByPattern_shouldReadItemsRankedByIndex() {
+        ItemRanking ranking = ItemRanking.exact("desc", null, 10);
+        ranking.offer(item.getId(), item.getName(), item.getDescription());
+        when(itemSearchIndex.rank("desc", false, null, null, 10)).thenReturn(Optional.of(ranking));
+        when(itemRepo.findAllById(List.of(item.getId()))).thenReturn(List.of(item));
+
+        ItemSearchPage page = itemService.getAvailableItemByPattern(query("desc").build());
+
+        assertThat(page.getItems()).isEqualTo(List.of(itemDtoOut));
+        verify(itemMapper).toDto(List.of(item));
+        verify(itemRepo, never()).findAvailableTextsByNameOrDescription(anyString());
+    }
+
+    @Test
+    void getAvailableItemByPattern_shouldPassFuzzyToIndex() {
+        ItemRanking ranking = ItemRanking.exact("desc", null, 10);
+        ranking.offer(item.getId(), item.getName(), item.getDescription());
+        when(itemSearchIndex.rank("dsec", true, null, null, 10)).thenReturn(Optional.of(ranking));
+        when(itemRepo.findAllById(List.of(item.getId()))).thenReturn(List.of(item));
+
+        itemService.getAvailableItemByPattern(query("dsec").fuzzy(true).build());
+
+        verify(itemMapper).toDto(List.of(item));
+    }
+
+    @Test
+    void getAvailableItemByPattern_shouldApplyWindowToItemsMatchedByIndex() {
+        ItemRanking ranking = ItemRanking.exact("desc", null, 10);
+        ranking.offer(item.getId(), item.getName(), item.getDescription());
+        when(itemSearchIndex.search("desc", false)).thenReturn(Optional.of(List.of(item.getId(), 9)));
+        when(itemRepo.findAvailableIdsFreeBetween(List.of(item.getId(), 9), now, now.plusDays(1)))
+                .thenReturn(List.of(item.getId()));
+        when(itemSearchIndex.rank("desc", false, Set.of(item.getId()), null, 10)).thenReturn(Optional.of(ranking));
+        when(itemRepo.findAllById(List.of(item.getId()))).thenReturn(List.of(item));
+
+        itemService.getAvailableItemByPattern(query("desc").from(now).to(now.plusDays(1)).build());
+
+        verify(itemMapper).toDto(List.of(item));
+        verify(itemRepo, never()).findAvailableTextsByNameOrDescriptionFreeBetween(anyString(), any(), any());
+    }
+
+    @Test
+    void getAvailableItemByPattern_shouldExcludeItemsBookedInWindow() {
+        when(itemRepo.findAvailableTextsByNameOrDescriptionFreeBetween("desc", now, now.plusDays(1)))
+                .thenReturn(Stream.of(new ItemText(item.getId(), item.getName(), item.getDescription())));
+        when(itemRepo.findAllById(List.of(item.getId()))).thenReturn(List.of(item));
+
+        ItemSearchPage page = itemService.getAvailableItemByPattern(query("desc").from(now).to(now.plusDays(1))
+                .build());
+
+        assertThat(page.getItems()).isEqualTo(List.of(itemDtoOut));
+        verify(itemRepo, never()).findAvailableTextsByNameOrDescription(anyString());
+    }
 
-        verify(itemRepo, times(1)).findAvailableItemsByNameOrDescription("desc");
+    @Test
+    void getAvailableItemByPattern_shouldExcludeItemsWithApprovedOccurrenceInWindow() {
+        when(itemRepo.findAvailableTextsByNameOrDescriptionFreeBetween("desc", now, now.plusDays(1)))
+                .thenReturn(Stream.of(new ItemText(item.getId(), item.getName(), item.getDescription())));
+        when(bookingRules.findOccurrences(List.of(item.getId()), now, now.plusDays(1), EnumSet.of(APPROVED)))
+                .thenReturn(List.of(new ItemPeriod(item.getId(), now.minusHours(1), now.plusHours(1))));
+
+        ItemSearchPage page = itemService.getAvailableItemByPattern(query("desc").from(now).to(now.plusDays(1))
+                .build());
+
+        verify(itemRepo, never()).findAllById(any());
+        verify(itemMapper).toDto(List.<Item>of());
+        assertThat(page.getNext()).isNull();
+    }
+
+    @Test
+    void suggestNames_shouldServeFromIndex() {
+        when(itemSearchIndex.suggest("Dr", 5)).thenReturn(Optional.of(List.of("Drill")));
+
+        assertThat(itemService.suggestNames("Dr", 5)).containsExactly("Drill");
+        verify(itemRepo, never()).findAvailableNamesByPrefix(anyString(), any());
+    }
+
+    @Test
+    void suggestNames_shouldEscapeLikeWildcardsWhenIndexIsNotLoaded() {
+        when(itemRepo.findAvailableNamesByPrefix(eq("50\\% d\\_r%"), any())).thenReturn(List.of("50% d_rill"));
+
+        assertThat(itemService.suggestNames("  50% D_r", 5)).containsExactly("50% d_rill");
+    }
+
+    @Test
+    void suggestNames_shouldGetEmptyListWhenPrefixIsBlank() {
+        assertThat(itemService.suggestNames(" ", 5)).isEmpty();
+        verifyNoInteractions(itemSearchIndex);
     }
 
     @Test
     void getAvailableItemByPattern_shouldGetEmptyItemWhenPatternIsNull() {
-        assertThat(itemService.getAvailableItemByPattern(null))
+        assertThat(itemService.getAvailableItemByPattern(query(null).build()).getItems())
                 .isEmpty();
 
-        verify(itemRepo, never()).findAvailableItemsByNameOrDescription(null);
+        verify(itemRepo, never()).findAvailableTextsByNameOrDescription(null);
     }
 
     @Test
     void getAvailableItemByPattern_shouldGetEmptyItemWhenPatternIsEmpty() {
-        assertThat(itemService.getAvailableItemByPattern(""))
+        assertThat(itemService.getAvailableItemByPattern(query("").build()).getItems())
                 .isEmpty();
 
-        verify(itemRepo, never()).findAvailableItemsByNameOrDescription("");
+        verify(itemRepo, never()).findAvailableTextsByNameOrDescription("");
     }
 
     @Test
     void getAvailableItemByPattern_shouldGetEmptyItemWhenPatternIsBlank() {
-        assertThat(itemService.getAvailableItemByPattern(" "))
+        assertThat(itemService.getAvailableItemByPattern(query(" ").build()).getItems())
                 .isEmpty();
 
-        verify(itemRepo, never()).findAvailableItemsByNameOrDescription(" ");
+        verify(itemRepo, never()).findAvailableTextsByNameOrDescription(" ");
     }
 
     @Test
@@ -208,24 +382,53 @@ public class ItemServiceTest extends ItemBaseTest {
         assertThat(updatedItem).isEqualTo(itemDtoOut);
 
         verify(itemRepo, times(1)).findById(1);
+        verify(itemSearchIndex).put(item);
+    }
+
+    @Test
+    void getAvailability_shouldReturnGapsBetweenBlockingBookings() {
+        LocalDateTime from = now.withNano(0);
+        LocalDateTime to = from.plusDays(10);
+        when(itemRepo.findById(anyInt()))
+                .thenReturn(Optional.of(item));
+        when(bookingRepo.findBlockingPeriodsByItem(item.getId(), from, to))
+                .thenReturn(List.of(new ItemPeriod(item.getId(), from.minusDays(1), from.plusDays(1)),
+                        new ItemPeriod(item.getId(), from.plusDays(3), from.plusDays(4))));
+
+        assertThat(itemService.getAvailability(item.getId(), 1, from, to)).containsExactly(
+                new FreeInterval(from.plusDays(1), from.plusDays(3)),
+                new FreeInterval(from.plusDays(4), to));
+    }
+
+    @Test
+    void getAvailability_shouldReturnNothingWhenItemIsNotAvailable() {
+        item.setAvailable(false);
+        when(itemRepo.findById(anyInt()))
+                .thenReturn(Optional.of(item));
+
+        assertThat(itemService.getAvailability(item.getId(), 1, now, now.plusDays(1))).isEmpty();
+        verify(bookingRepo, never()).findBlockingPeriodsByItem(anyInt(), any(), any());
     }
 
     @Test
     void delete_shouldInvokeRepositoryDelete() {
-        when(itemRepo.existsById(anyInt()))
-                .thenReturn(true);
+        when(itemRepo.findById(anyInt()))
+                .thenReturn(Optional.of(item));
 
         doNothing().when(itemRepo)
                 .deleteById(anyInt());
 
         itemService.delete(1);
+        verify(bookingRepo).deleteArchivedByItem(1);
+        verify(bookingRules).deleteByItem(1);
         verify(itemRepo, times(1)).deleteById(1);
+        verify(itemSearchIndex).remove(1);
     }
 
     @Test
     void delete_shouldThrowNotFoundExceptionWhenInvokeRepositoryWithWrongId() {
-        when(itemRepo.existsById(anyInt()))
-                .thenReturn(false);
+        when(itemRepo.findById(anyInt()))
+                .thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> itemService.delete(1))
                 .isInstanceOf(NotFoundException.class)
@@ -298,4 +501,20 @@ public class ItemServiceTest extends ItemBaseTest {
 
         assertThat(savedComment).isEqualTo(commentDtoOut);
     }
-}
\ No newline at end of file
+
+    private Item item(int id, String name, String description) {
+        return Item.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .available(true)
+                .owner(item.getOwner())
+                .build();
+    }
+
+    private static ItemSearchQuery.ItemSearchQueryBuilder query(String text) {
+        return ItemSearchQuery.builder()
+                .text(text)
+                .size(10);
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum.shareit.item.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemTermVocabularyTest {
+
+    ItemTermVocabulary vocabulary;
+
+    @BeforeEach
+    void setUp() {
+        vocabulary = new ItemTermVocabulary();
+        vocabulary.add(ItemTermVocabulary.words("\0cordless drill\0drill 18v, two batteries\0"));
+        vocabulary.add(ItemTermVocabulary.words("\0дрель\0ударная дрель\0"));
+        vocabulary.add(ItemTermVocabulary.words("\0screwdriver\0electric screwdriver\0"));
+    }
+
+    @Test
+    void words_shouldSplitOnEverythingButLettersAndDigits() {
+        assertThat(ItemTermVocabulary.words("\0cordless drill\0drill 18v, two batteries\0"))
+                .containsExactlyInAnyOrder("cordless", "drill", "18v", "two", "batteries");
+    }
+
+    @Test
+    void distance_shouldCountAdjacentTranspositionAsOneEdit() {
+        assertThat(ItemTermVocabulary.distance("drlil", "drill", 2)).isEqualTo(1);
+        assertThat(ItemTermVocabulary.distance("дрелл", "дрель", 2)).isEqualTo(1);
+        assertThat(ItemTermVocabulary.distance("driver", "drill", 2)).isEqualTo(3);
+        assertThat(ItemTermVocabulary.distance("screwdrivre", "screwdriver", 2)).isEqualTo(1);
+    }
+
+    @Test
+    void similar_shouldFindWordsWithinEditsAllowedForLength() {
+        assertThat(vocabulary.similar("drlil")).containsExactly("drill");
+        assertThat(vocabulary.similar("дрелл")).containsExactly("дрель");
+        assertThat(vocabulary.similar("scrwedrivr")).containsExactly("screwdriver");
+        assertThat(vocabulary.similar("drill")).containsExactly("drill");
+        assertThat(vocabulary.similar("dirl")).isEmpty();
+        assertThat(vocabulary.similar("tw")).isEmpty();
+    }
+
+    @Test
+    void add_shouldKeepOnlyWordsOfLetters() {
+        assertThat(vocabulary.size()).isEqualTo(8);
+        assertThat(vocabulary.similar("18w")).isEmpty();
+    }
+
+    @Test
+    void remove_shouldDropWordWithItsLastItem() {
+        vocabulary.add(List.of("drill"));
+        vocabulary.remove(List.of("drill"));
+
+        assertThat(vocabulary.similar("drlil")).containsExactly("drill");
+
+        vocabulary.remove(List.of("drill", "unknown"));
+
+        assertThat(vocabulary.similar("drlil")).isEmpty();
+        assertThat(vocabulary.size()).isEqualTo(7);
+    }
+}
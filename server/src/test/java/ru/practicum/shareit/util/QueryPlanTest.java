@@ -0,0 +1,435 @@
+package ru.practicum.shareit.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.model.BookingPhase;
+import ru.practicum.shareit.booking.model.BookingQuery;
+import ru.practicum.shareit.booking.model.BookingRole;
+import ru.practicum.shareit.booking.model.BookingSort;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.BookingRuleRepository;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.request.repository.ItemRequestRepository;
+import ru.practicum.shareit.util.OffsetLimitPageable;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+/**
+ * Runs EXPLAIN for the SQL issued by every custom repository query against a seeded database
+ * built from schema.sql and schema-h2.sql and fails when a query falls back to a table scan.
+ * <p>
+ * Not covered: ItemRepository.findAvailableTextsByNameOrDescription and its FreeBetween variant (a
+ * leading-wildcard LIKE cannot use a b-tree index), ItemRepository.findAvailableNamesByPrefix (a fallback while the
+ * search index loads, grouping all names) and ItemRequestRepository.findAll (reads every row by
+ * definition).
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=ru.practicum.shareit.util.SqlCaptor"
+})
+class QueryPlanTest {
+
+    private static final String TABLE_SCAN = ".tableScan";
+
+    private static final String SEQUENCE_CALL = "call next value for";
+
+    private static final Pattern PLAN_INDEX = Pattern.compile("/\\* PUBLIC\\.(\\w+):");
+
+    private static final Pattern PLAN_INDEX_CONDITION = Pattern.compile("/\\* PUBLIC\\.\\w+: (.*) \\*/");
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    BookingRuleRepository bookingRuleRepository;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    ItemRequestRepository requestRepository;
+
+    int userId, itemId;
+    LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        // ANALYZE commits in H2, so the data outlives the test transaction and is seeded only once
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class) == 0) {
+            seed();
+        }
+
+        userId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Integer.class) + 1;
+        itemId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM items", Integer.class) + 1;
+        now = LocalDateTime.now();
+    }
+
+    @Test
+    void findBookings_shouldNotScanTableForAnyRoleStateAndCursor() {
+        for (BookingRole role : BookingRole.values()) {
+            for (BookingState state : BookingState.values()) {
+                for (BookingCursor cursor : Arrays.asList(null, new BookingCursor(BookingSort.START, now, Integer.MAX_VALUE))) {
+                    assertNoTableScan(() -> bookingRepository.findBookings(BookingQuery.builder()
+                            .role(role)
+                            .userId(userId)
+                            .state(state)
+                            .cursor(cursor)
+                            .size(10)
+                            .now(now)
+                            .build()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void findBookings_shouldNotScanTableForAnySortItemAndWindow() {
+        for (BookingRole role : BookingRole.values()) {
+            for (BookingSort sort : BookingSort.values()) {
+                for (Integer item : Arrays.asList(null, itemId)) {
+                    for (LocalDateTime since : Arrays.asList(null, now.minusDays(30))) {
+                        for (LocalDateTime until : Arrays.asList(null, now.plusDays(30))) {
+                            for (BookingCursor cursor : Arrays.asList(null,
+                                    new BookingCursor(sort, now, Integer.MAX_VALUE))) {
+                                assertNoTableScan(() -> bookingRepository.findBookings(BookingQuery.builder()
+                                        .role(role)
+                                        .userId(userId)
+                                        .itemId(item)
+                                        .since(since)
+                                        .until(until)
+                                        .sort(sort)
+                                        .cursor(cursor)
+                                        .size(10)
+                                        .build()));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // The item filter is an index lookup rather than a filter over every booking of the owner
+    @Test
+    void findBookings_shouldLookUpItemInIndex() {
+        for (BookingSort sort : BookingSort.values()) {
+            assertIndexCondition("ITEM_ID = ", () -> bookingRepository.findBookings(BookingQuery.builder()
+                    .role(BookingRole.OWNER)
+                    .userId(userId)
+                    .itemId(itemId)
+                    .since(now.minusDays(30))
+                    .sort(sort)
+                    .size(10)
+                    .build()));
+        }
+    }
+
+    @Test
+    void findArchivedBookings_shouldNotScanTableForAnyRoleStateSortAndCursor() {
+        for (BookingRole role : BookingRole.values()) {
+            for (BookingState state : BookingState.values()) {
+                for (BookingSort sort : BookingSort.values()) {
+                    for (BookingCursor cursor : Arrays.asList(null, new BookingCursor(sort, now, Integer.MAX_VALUE))) {
+                        assertNoTableScan(() -> bookingRepository.findArchivedBookings(BookingQuery.builder()
+                                .role(role)
+                                .userId(userId)
+                                .state(state)
+                                .sort(sort)
+                                .cursor(cursor)
+                                .size(10)
+                                .now(now)
+                                .build()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void archiveQueries_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.findArchivedById(userId));
+        assertNoTableScan(() -> bookingRepository.findArchiveWatermark());
+        assertNoTableScan(() -> bookingRepository.findArchivable(now.minusDays(90), now, 100));
+        assertNoTableScan(() -> bookingRepository.archive(List.of(userId, itemId)));
+        for (BookingRole role : BookingRole.values()) {
+            assertNoTableScan(() -> bookingRepository.countArchivedByState(role, userId, now));
+        }
+    }
+
+    @Test
+    void getPeriodsByItem_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.getPeriodsByItem(itemId));
+    }
+
+    @Test
+    void streamByOwner_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.streamByOwner(userId, 100, row -> {
+        }));
+    }
+
+    @Test
+    void findLastAndNextByOwner_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.findLastAndNextByOwner(userId, now));
+    }
+
+    @Test
+    void insertWaiting_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.insertWaiting(itemId, userId, now.minusYears(10),
+                now.minusYears(10).plusDays(1)));
+    }
+
+    @Test
+    void findBlockingPeriods_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.findBlockingPeriods(List.of(itemId, itemId + 1), now,
+                now.plusDays(1)));
+    }
+
+    @Test
+    void findBlockingPeriodsByItem_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.findBlockingPeriodsByItem(itemId, now, now.plusDays(30)));
+        assertNoTableScan(() -> bookingRepository.findItemIds(List.of(userId, itemId)));
+        assertNoTableScan(() -> bookingRepository.findBookerIdsByItem(itemId));
+    }
+
+    @Test
+    void bookingRuleQueries_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRuleRepository.findOverlapping(List.of(itemId), now, now.plusDays(30),
+                EnumSet.of(BookingStatus.WAITING, BookingStatus.APPROVED)));
+        assertNoTableScan(() -> bookingRuleRepository.findByBookerOverlappingAfter(userId, 0, now, now.plusDays(30),
+                EnumSet.allOf(BookingStatus.class), new OffsetLimitPageable(0, 10, Sort.unsorted())));
+        assertNoTableScan(() -> bookingRuleRepository.findByOwnerOverlappingAfter(userId, 0, now, now.plusDays(30),
+                EnumSet.allOf(BookingStatus.class), new OffsetLimitPageable(0, 10, Sort.unsorted())));
+        assertNoTableScan(() -> bookingRuleRepository.findByBooker(userId));
+        assertNoTableScan(() -> bookingRuleRepository.findByOwner(userId));
+        assertNoTableScan(() -> bookingRuleRepository.findBookerIdsByItem(itemId));
+        assertNoTableScan(() -> bookingRuleRepository.decideWaiting(itemId, userId, BookingStatus.APPROVED));
+        assertNoTableScan(() -> bookingRuleRepository.deleteByItemId(itemId));
+    }
+
+    @Test
+    void decideWaiting_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.decideWaiting(itemId, userId, BookingStatus.APPROVED));
+    }
+
+    @Test
+    void findOwnerIdById_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.findOwnerIdById(itemId));
+    }
+
+    @Test
+    void lockOverlappingWaiting_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.lockOverlappingWaiting(userId, itemId, now, now.plusDays(1)));
+    }
+
+    @Test
+    void rejectWaiting_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.rejectWaiting(List.of(userId, itemId)));
+    }
+
+    @Test
+    void findWaitingStartingBefore_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.findWaitingStartingBefore(now));
+    }
+
+    @Test
+    void findStartingBetween_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.findStartingBetween(now, now.plusMinutes(10)));
+    }
+
+    @Test
+    void findEndingBetween_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.findEndingBetween(now, now.plusMinutes(10)));
+    }
+
+    @Test
+    void lifecycleLocks_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.lockWaitingStarted(List.of(userId, itemId), now));
+        assertNoTableScan(() -> bookingRepository.lockApprovedStarted(List.of(userId, itemId), now));
+        assertNoTableScan(() -> bookingRepository.lockApprovedEnded(List.of(userId, itemId), now));
+        assertNoTableScan(() -> bookingRepository.updatePhase(List.of(userId, itemId), BookingPhase.STARTED));
+    }
+
+    @Test
+    void countByState_shouldNotScanTable() {
+        for (BookingRole role : BookingRole.values()) {
+            assertNoTableScan(() -> bookingRepository.countByState(role, userId, now));
+            assertNoTableScan(() -> bookingRepository.countUnfinishedByState(role, userId, now));
+            assertNoTableScan(() -> bookingRepository.countByUser(role, List.of(userId, itemId)));
+            assertNoTableScan(() -> bookingRepository.countByItem(role, itemId));
+        }
+    }
+
+    @Test
+    void findNextStartAndEnd_shouldNotScanTable() {
+        for (BookingRole role : BookingRole.values()) {
+            assertNoTableScan(() -> bookingRepository.findNextStart(role, userId, now));
+            assertNoTableScan(() -> bookingRepository.findNextEnd(role, userId, now));
+        }
+    }
+
+    @Test
+    void counters_shouldNotScanTable() {
+        assertNoTableScan(() -> bookingRepository.findCounters(BookingRole.OWNER, userId));
+        assertNoTableScan(() -> bookingRepository.addToCounter(BookingRole.OWNER, userId, BookingStatus.WAITING, 0));
+    }
+
+    @Test
+    void findByOwner_shouldNotScanTable() {
+        assertNoTableScan(() -> itemRepository.findByOwner(userId));
+    }
+
+    @Test
+    void findAvailableIdsFreeBetween_shouldNotScanTable() {
+        LocalDateTime from = LocalDateTime.now();
+        assertNoTableScan(() -> itemRepository.findAvailableIdsFreeBetween(List.of(itemId, itemId + 1), from,
+                from.plusDays(1)));
+    }
+
+    @Test
+    void findAvailableTextsAfter_shouldNotScanTable() {
+        assertNoTableScan(() -> itemRepository.findAvailableTextsAfter(itemId,
+                new OffsetLimitPageable(0, 100, Sort.unsorted())));
+    }
+
+    @Test
+    void getItemRequestByRequestor_shouldNotScanTable() {
+        assertNoTableScan(() -> requestRepository.getItemRequestByRequestor(userId));
+    }
+
+    @Test
+    void findAllByRequestorIdNot_shouldNotScanTable() {
+        assertNoTableScan(() -> requestRepository.findAllByRequestorIdNot(userId,
+                new OffsetLimitPageable(0, 10, Sort.by(Sort.Direction.ASC, "created"))));
+    }
+
+    @Test
+    void itemBookingsAndComments_shouldNotScanTable() {
+        assertNoTableScan(() -> itemRepository.findById(itemId).ifPresent(item -> {
+            item.getBookings().size();
+            item.getComments().size();
+        }));
+    }
+
+    private void seed() {
+        jdbcTemplate.execute("INSERT INTO users (name, email) " +
+                "SELECT 'user' || x, 'user' || x || '@mail.ru' FROM SYSTEM_RANGE(1, 1000)");
+        int firstUserId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Integer.class);
+
+        jdbcTemplate.update("INSERT INTO requests (description, created, requestor_id) " +
+                "SELECT 'request' || x, DATEADD('MINUTE', x, LOCALTIMESTAMP), ? + MOD(x, 1000) " +
+                "FROM SYSTEM_RANGE(1, 2000)", firstUserId);
+        int firstRequestId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM requests", Integer.class);
+
+        jdbcTemplate.update("INSERT INTO items (name, description, available, owner_id, request_id) " +
+                "SELECT 'item' || x, 'description' || x, TRUE, ? + MOD(x, 1000), " +
+                "CASE WHEN MOD(x, 10) = 0 THEN ? + MOD(x, 2000) END " +
+                "FROM SYSTEM_RANGE(0, 4999)", firstUserId, firstRequestId);
+        int firstItemId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM items", Integer.class);
+
+        jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, booker_id, status, owner_id, " +
+                "created) " +
+                "SELECT DATEADD('HOUR', x - 10000, LOCALTIMESTAMP), DATEADD('HOUR', x - 9990, LOCALTIMESTAMP), " +
+                "? + MOD(x, 5000), ? + MOD(x * 7, 1000), 'APPROVED', ? + MOD(MOD(x, 5000), 1000), " +
+                "DATEADD('HOUR', x - 10100, LOCALTIMESTAMP) " +
+                "FROM SYSTEM_RANGE(0, 19999)", firstItemId, firstUserId, firstUserId);
+
+        jdbcTemplate.update("INSERT INTO bookings_archive (id, start_date, end_date, item_id, booker_id, status, " +
+                "owner_id, created) " +
+                "SELECT 1000000 + x, DATEADD('HOUR', x - 40000, LOCALTIMESTAMP), " +
+                "DATEADD('HOUR', x - 39990, LOCALTIMESTAMP), ? + MOD(x, 5000), ? + MOD(x * 7, 1000), 'APPROVED', " +
+                "? + MOD(MOD(x, 5000), 1000), DATEADD('HOUR', x - 40100, LOCALTIMESTAMP) " +
+                "FROM SYSTEM_RANGE(0, 19999)", firstItemId, firstUserId, firstUserId);
+
+        jdbcTemplate.update("INSERT INTO comments (text, item_id, author_id, created) " +
+                "SELECT 'comment' || x, ? + MOD(x, 5000), ? + MOD(x, 1000), LOCALTIMESTAMP " +
+                "FROM SYSTEM_RANGE(0, 4999)", firstItemId, firstUserId);
+
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private void assertIndexCondition(String condition, Runnable query) {
+        entityManager.clear();
+        SqlCaptor.clear();
+
+        query.run();
+
+        // The listing comes first, the rest load the associations of the bookings found
+        assertThat(SqlCaptor.statements()).isNotEmpty();
+        Matcher matcher = PLAN_INDEX_CONDITION.matcher(explain(SqlCaptor.statements().get(0)));
+        assertThat(matcher.find()).isTrue();
+        assertThat(matcher.group(1)).contains(condition);
+    }
+
+    private void assertNoTableScan(Runnable query) {
+        entityManager.clear();
+        SqlCaptor.clear();
+
+        query.run();
+
+        // Identifier generators call the sequences directly, there is no plan to check
+        List<String> statements = SqlCaptor.statements().stream()
+                .filter(sql -> !sql.startsWith(SEQUENCE_CALL))
+                .collect(Collectors.toList());
+        assertThat(statements).isNotEmpty();
+        statements.forEach(sql -> {
+            String plan = explain(sql);
+            assertThat(plan).as("Plan of %s", sql).doesNotContain(TABLE_SCAN);
+
+            Matcher matcher = PLAN_INDEX.matcher(plan);
+            while (matcher.find()) {
+                assertThat(hasDeclaredIndexWithSameLeadingColumn(matcher.group(1)))
+                        .as("Index %s used in plan of %s is not declared in schema.sql", matcher.group(1), sql)
+                        .isTrue();
+            }
+        });
+    }
+
+    // H2 silently indexes every foreign key, Postgres does not. A plan that relies on such an index
+    // is only valid if schema.sql declares an index with the same leading column.
+    private boolean hasDeclaredIndexWithSameLeadingColumn(String indexName) {
+        if (!indexName.startsWith("CONSTRAINT_INDEX")) {
+            return true;
+        }
+        Integer declared = jdbcTemplate.queryForObject("SELECT COUNT(*) " +
+                "FROM INFORMATION_SCHEMA.INDEX_COLUMNS implicit " +
+                "JOIN INFORMATION_SCHEMA.INDEX_COLUMNS ix ON ix.TABLE_NAME = implicit.TABLE_NAME " +
+                "AND ix.COLUMN_NAME = implicit.COLUMN_NAME AND ix.ORDINAL_POSITION = 1 " +
+                "WHERE implicit.INDEX_NAME = ? AND implicit.ORDINAL_POSITION = 1 " +
+                "AND ix.INDEX_NAME LIKE 'IX\\_%'", Integer.class, indexName);
+        return declared != null && declared > 0;
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+                 ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package ru.practicum.shareit.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedLruCacheTest {
+
+    // Keys are group * 100 + n
+    private final AtomicInteger overflows = new AtomicInteger();
+
+    private final StripedLruCache<Integer, String> cache =
+            new StripedLruCache<>(3, key -> key / 100, overflows::incrementAndGet);
+
+    @Test
+    void put_shouldNotStoreValueLoadedWhileItsGroupWasDropped() {
+        long generation = cache.generation(1);
+        cache.drop(1);
+
+        assertThat(cache.put(101, "stale", generation)).isFalse();
+        assertThat(cache.put(101, "fresh", cache.generation(1))).isTrue();
+        assertThat(cache.get(101)).isEqualTo("fresh");
+    }
+
+    @Test
+    void drop_shouldRemoveEntriesOfTheGroupOnly() {
+        cache.put(101, "a", cache.generation(1));
+        cache.put(102, "b", cache.generation(1));
+        cache.put(201, "c", cache.generation(2));
+
+        assertThat(cache.drop(1)).isEqualTo(2);
+
+        assertThat(cache.get(101)).isNull();
+        assertThat(cache.get(102)).isNull();
+        assertThat(cache.get(201)).isEqualTo("c");
+    }
+
+    @Test
+    void put_shouldPushOutLeastRecentlyUsedEntryBeyondTheBound() {
+        cache.put(101, "a", cache.generation(1));
+        cache.put(201, "b", cache.generation(2));
+        cache.put(301, "c", cache.generation(3));
+        cache.get(101);
+
+        cache.put(401, "d", cache.generation(4));
+
+        assertThat(cache.get(201)).isNull();
+        assertThat(cache.get(101)).isEqualTo("a");
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(overflows).hasValue(1);
+        assertThat(cache.drop(2)).isZero();
+    }
+
+    @Test
+    void dropAll_shouldRemoveEveryEntryAndMoveEveryGeneration() {
+        long generation = cache.generation(5);
+        cache.put(101, "a", cache.generation(1));
+
+        assertThat(cache.dropAll()).isEqualTo(1);
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.put(501, "stale", generation)).isFalse();
+    }
+
+    @Test
+    void change_shouldUpdateCachedValueAndRejectValueLoadedBeforeTheChange() {
+        cache.put(101, "a", cache.generation(1));
+        long generation = cache.generation(1);
+
+        cache.change(101, value -> value + "b");
+        cache.change(102, value -> value + "b");
+
+        assertThat(cache.get(101)).isEqualTo("ab");
+        assertThat(cache.get(102)).isNull();
+        assertThat(cache.put(102, "stale", generation)).isFalse();
+    }
+}